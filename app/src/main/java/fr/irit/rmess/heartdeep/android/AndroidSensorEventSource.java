@@ -0,0 +1,137 @@
+/***********************************************************************
+ Name............ : AndroidSensorEventSource.java
+ Description..... : A source of sensor events backed by the Android SensorManager, on a dedicated thread
+ Author.......... : Kevin Jiokeng for IRIT, RMESS Team
+ Creation Date... : 18/10/2026
+ ************************************************************************/
+
+package fr.irit.rmess.heartdeep.android;
+
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import fr.irit.rmess.heartdeep.capture.SensorEventSink;
+import fr.irit.rmess.heartdeep.capture.SensorEventSource;
+
+/**
+ * A source of sensor events backed by the Android SensorManager.
+ *
+ * Callbacks run on a dedicated high-priority HandlerThread, instead of the main looper where they would compete with the UI.
+ * With a non-zero maximum report latency, the sensor hub is allowed to batch events in its hardware FIFO
+ * and deliver them in bursts, which lets the application processor sleep in between.
+ */
+public class AndroidSensorEventSource implements SensorEventSource, SensorEventListener {
+
+    /**
+     * The sensor manager to register to
+     */
+    private final SensorManager sensorManager;
+
+    /**
+     * The sensors delivering events
+     */
+    private final List<Sensor> sensors;
+
+    /**
+     * The sampling period (in microseconds, or one of the SensorManager.SENSOR_DELAY_* constants)
+     */
+    private final int samplingPeriodUs;
+
+    /**
+     * The maximum time (in microseconds) events may be delayed by batching. 0 disables batching
+     */
+    private final int maxReportLatencyUs;
+
+    /**
+     * The thread callbacks run on, or {@code null} when stopped
+     */
+    private HandlerThread thread = null;
+
+    /**
+     * The sink events are delivered to
+     */
+    private volatile SensorEventSink sink = null;
+
+    /**
+     * Creates a source
+     *
+     * @param sensorManager      The sensor manager to register to
+     * @param sensors            The sensors delivering events
+     * @param samplingPeriodUs   The sampling period (in microseconds, or one of the SensorManager.SENSOR_DELAY_* constants)
+     * @param maxReportLatencyUs The maximum time (in microseconds) events may be delayed by batching. 0 disables batching
+     */
+    public AndroidSensorEventSource(SensorManager sensorManager, List<Sensor> sensors, int samplingPeriodUs, int maxReportLatencyUs) {
+        this.sensorManager = sensorManager;
+        this.sensors = new ArrayList<>(sensors);
+        this.samplingPeriodUs = samplingPeriodUs;
+        this.maxReportLatencyUs = maxReportLatencyUs;
+    }
+
+    @Override
+    public synchronized void start(SensorEventSink sink) {
+        if (thread != null) {
+            return;
+        }
+
+        this.sink = sink;
+        thread = new HandlerThread("HeartDeep-Sensors", Process.THREAD_PRIORITY_URGENT_DISPLAY);
+        thread.start();
+        Handler handler = new Handler(thread.getLooper());
+
+        for (Sensor sensor : sensors) {
+            if (maxReportLatencyUs > 0 && sensor.getFifoMaxEventCount() == 0) {
+                Log.i("SENSORS", sensor.getStringType() + " cannot batch events: they are delivered as they come");
+            }
+            sensorManager.registerListener(this, sensor, samplingPeriodUs, maxReportLatencyUs, handler);
+        }
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (thread == null) {
+            return;
+        }
+
+        sensorManager.unregisterListener(this);
+
+        // Let the callbacks already queued run, then wait for the thread to end, so that the sink is not called anymore
+        thread.quitSafely();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                thread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        thread = null;
+        sink = null;
+    }
+
+    @Override
+    public void onSensorChanged(SensorEvent sensorEvent) {
+        SensorEventSink currentSink = sink;
+        if (currentSink != null) {
+            currentSink.onSensorEvent(sensorEvent.sensor.getType(), sensorEvent.timestamp, sensorEvent.values);
+        }
+    }
+
+    @Override
+    public void onAccuracyChanged(Sensor sensor, int newAccuracy) {
+
+    }
+}
@@ -11,27 +11,52 @@ import android.app.Service;
 import android.content.Context;
 import android.content.Intent;
 import android.hardware.Sensor;
-import android.hardware.SensorEvent;
-import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
 import android.media.AudioManager;
 import android.media.ToneGenerator;
 import android.os.Bundle;
+import android.os.Handler;
 import android.os.IBinder;
+import android.os.Looper;
 import android.os.PowerManager;
 import android.util.Log;
 import android.widget.Toast;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
-
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import fr.irit.rmess.heartdeep.BuildConfig;
+import fr.irit.rmess.heartdeep.capture.OrientationTracker;
+import fr.irit.rmess.heartdeep.capture.SensorCapture;
+import fr.irit.rmess.heartdeep.capture.SensorChannels;
+import fr.irit.rmess.heartdeep.capture.SensorEventSink;
+import fr.irit.rmess.heartdeep.capture.SensorEventSource;
+import fr.irit.rmess.heartdeep.capture.SensorFrame;
+import fr.irit.rmess.heartdeep.capture.SensorFrameJoiner;
+import fr.irit.rmess.heartdeep.datatype.HeartDeepObservable;
+import fr.irit.rmess.heartdeep.datatype.HeartDeepObserver;
 import fr.irit.rmess.heartdeep.datatype.SensorReadings;
+import fr.irit.rmess.heartdeep.datatype.SensorReadingsRingBuffer;
+import fr.irit.rmess.heartdeep.datatype.SensorReadingsWindow;
+import fr.irit.rmess.heartdeep.datatype.TimelinedData;
 import fr.irit.rmess.heartdeep.helpers.HeartDeepFileWriter;
-
-public class HeartDeepSensorListenerService extends Service implements SensorEventListener {
+import fr.irit.rmess.heartdeep.helpers.LogSampler;
+import fr.irit.rmess.heartdeep.helpers.MetricsRegistry;
+import fr.irit.rmess.heartdeep.helpers.SensorCsvEncoder;
+import fr.irit.rmess.heartdeep.helpers.SensorRecordFormat;
+import fr.irit.rmess.heartdeep.helpers.SensorRecordSink;
+import fr.irit.rmess.heartdeep.helpers.StreamingRecordWriter;
+import fr.irit.rmess.heartdeep.processing.OrientationFilter;
+import fr.irit.rmess.heartdeep.processing.StreamingResampler;
+
+public class HeartDeepSensorListenerService extends Service implements SensorEventSink, SensorCapture.Listener, SensorFrameJoiner.Listener,
+        OrientationTracker.Listener {
 
     /**
      * The scenario for which we are to record data
@@ -62,45 +87,129 @@ public class HeartDeepSensorListenerService extends Service implements SensorEve
      */
     private static long sampleLength = (long) (0.02 * 1000 * 1000 * 1000L);
     /**
-     * The last not yet processed accelerometer readings
+     * The amount of time (in nanoseconds) a recording phase should last
      */
-    private static List<double[]> accReadings = new ArrayList<>();
+    private static long recordingTimeLength = (long) (60 * 1000 * 1000 * 1000L);
     /**
-     * The last not yet processed accelerometer readings' timestamps
+     * The amount of time (in nanoseconds) to wait before starting processing or even recording
      */
-    private static List<Long> accReadingsTimestamps = new ArrayList<>();
+    private static long beginningDelay = (long) 2 * 1000 * 1000 * 1000L;
     /**
-     * The last not yet processed gyroscope readings
+     * The maximum time (in nanoseconds) a sensor may lag behind another without batching, before windows stop waiting for it
      */
-    private static List<double[]> gyrReadings = new ArrayList<>();
+    private static final long MIN_SENSORS_SKEW = 100 * 1000 * 1000L;
     /**
-     * The last not yet processed gyroscope readings's timestamps
+     * The maximum time (in microseconds) sensor events may be delayed to be delivered in batches. 0 disables batching
      */
-    private static List<Long> gyrReadingsTimestamps = new ArrayList<>();
+    private static int maxReportLatency = 0;
     /**
-     * The beginning timestamp of the current sample
+     * The time (in nanoseconds) between two readings of the windows, which are resampled to this uniform rate. 0 disables resampling
      */
-    private static long beginningTimestamp = -1;
+    private static long resamplingPeriod = 2500 * 1000L;
     /**
-     * The timestamp at which recording is begun (should correspond to the timestamp of the first sensor event received).
+     * The interpolation of the resampled readings. Should be one of the StreamingResampler.INTERPOLATION_* constants
      */
-    private static long recordingBeginningTimestamp = -1;
+    private static int resamplingInterpolation = StreamingResampler.INTERPOLATION_CUBIC;
     /**
-     * The amount of time (in nanoseconds) a recording phase should last
+     * The maximum time (in nanoseconds) between two consecutive readings, above which they are not interpolated (and a gap is reported)
      */
-    private static long recordingTimeLength = (long) (60 * 1000 * 1000 * 1000L);
+    private static final long MAX_READINGS_GAP = 50 * 1000 * 1000L;
     /**
-     * The amount of time (in nanoseconds) to wait before starting processing or even recording
+     * The source of the sensor events, running its callbacks on a dedicated thread. {@code null} when HeartDeep internals are stopped
      */
-    private static long beginningDelay = (long) 2 * 1000 * 1000 * 1000L;
+    private static SensorEventSource eventSource = null;
+    /**
+     * The capture of the current recording: windowing and recording of the sensor events
+     */
+    private static SensorCapture capture = null;
+    /**
+     * The join of the events of all the registered sensors into time-aligned frames, the (linear) accelerometer being the reference
+     */
+    private static SensorFrameJoiner frameJoiner = null;
+    /**
+     * The maximum time (in nanoseconds) between the readings of the reference sensor and of another sensor to be joined in a frame
+     */
+    private static final long FRAME_TOLERANCE = 10 * 1000 * 1000L;
+    /**
+     * The objects receiving the joined frames, on the sensor thread
+     */
+    private static final List<SensorFrameJoiner.Listener> frameListeners = new CopyOnWriteArrayList<>();
+    /**
+     * The tracking of the orientation of the device from the joined frames. {@code null} when HeartDeep internals are stopped,
+     * or without accelerometer or gyroscope
+     */
+    private static OrientationTracker orientationTracker = null;
+    /**
+     * The maximum time (in nanoseconds) between two consecutive gyroscope readings, above which the orientation is initialized again
+     */
+    private static final long ORIENTATION_MAX_GAP = 100 * 1000 * 1000L;
+    /**
+     * Whether the orientation sensors derived by Android (orientation, rotation vector and gravity) are registered and recorded.
+     * The orientation of the device is fused by HeartDeep anyway (see {@link OrientationTracker}): not registering them saves sensor bandwidth
+     */
+    private static boolean derivedSensorsRegistered = true;
+    /**
+     * The counter of joined frames
+     */
+    private static MetricsRegistry.Counter framesCounter = null;
+    /**
+     * A handler to run code on the main thread (the capture callbacks run on the sensor thread)
+     */
+    private static Handler mainHandler = null;
+    /**
+     * The storage backend used to save the readings. Should be one of the HeartDeepFileWriter.STORAGE_* constants
+     */
+    private static int storage = HeartDeepFileWriter.STORAGE_STREAMING;
+    /**
+     * Whether a CSV copy of each recording is exported next to it once saved (see {@link HeartDeepFileWriter#convertToCsv(String, Context)})
+     */
+    private static boolean csvExported = true;
+    /**
+     * The sink to-be-written-to-file data is sent to, in the binary recording format.
+     * {@code null} when no recording is open
+     */
+    private static SensorRecordSink recordWriter = null;
+    /**
+     * The name of the current recording file
+     */
+    private static String recordingFilename = null;
+    /**
+     * The registered sensors, whose channel ids are also their ids in the recording dictionary
+     */
+    private static SensorChannels channels = new SensorChannels();
+    /**
+     * The encoder formatting the CSV line logged for each sensor event, built on the recording dictionary
+     */
+    private static SensorCsvEncoder eventLineEncoder = null;
     /**
-     * Indicates whether we are still waiting for the beginning delay to be elapsed
+     * The reusable buffer the CSV line of each sensor event is encoded into
      */
-    private static boolean waitingBegin = true;
+    private static byte[] eventLine = new byte[0];
     /**
-     * A string builder to store to-be-written-to-file data
+     * The minimum time (in nanoseconds) between two sensor events logged in debug builds
      */
-    private static StringBuilder recordsStringBuilder = new StringBuilder();
+    private static final long EVENT_LOG_INTERVAL = 1000000000L;
+    /**
+     * The time (in milliseconds) between two metrics snapshots logged in debug builds
+     */
+    private static final long METRICS_LOG_PERIOD = 5000;
+    /**
+     * The sampler choosing which sensor events are logged, in debug builds only
+     */
+    private static final LogSampler eventLogSampler = new LogSampler(EVENT_LOG_INTERVAL);
+    /**
+     * The counter of events of each registered sensor, indexed by channel id
+     */
+    private static MetricsRegistry.Counter[] eventCounters = new MetricsRegistry.Counter[0];
+    /**
+     * The observer logging the periodic metrics snapshots, in debug builds only
+     */
+    private static final HeartDeepObserver<MetricsRegistry.Snapshot> metricsLogger = new HeartDeepObserver<MetricsRegistry.Snapshot>() {
+        @Override
+        public void update(HeartDeepObservable<MetricsRegistry.Snapshot> eventSource, MetricsRegistry.Snapshot newValue) {
+            Log.d("METRICS", newValue.toString());
+        }
+    };
     /**
      * A wake lock to prevent the phone from entering idle mode.
      * This service needs indeed to continue its execution even when the phone screen is off
@@ -126,34 +235,85 @@ public class HeartDeepSensorListenerService extends Service implements SensorEve
     }
 
     /**
-     * Helper function to save readings to file.
-     * The file will be created in the internal directory of the app.
+     * Helper function to open the file to which readings will be saved, in the binary recording format (see {@link SensorRecordFormat}).
+     * The file will be created in the internal directory of the app, and filled in the background while recording goes on.
      *
-     * @param filename The name of the file to be written
-     * @param context  The Android context from which to write
+     * @param sensorNames The sensors dictionary: the name of each sensor, indexed by its id
+     * @param context     The Android context from which to write
+     * @return The name of the opened file, or {@code null} if an error occurred
      */
-    public String saveReadingsToFile(String filename, Context context) {
+    private String openRecordingFile(String[] sensorNames, Context context) {
         if (context == null) {
             return null;
         }
 
-        if (filename == null || filename == "") {
-            filename = dateFormat.format(new Date()) + ".csv";
-        } else if (!filename.endsWith(".csv")) {
-            filename += ".csv";
+        String filename = HeartDeepService.getSessionId() + "-" + position + "-" + scenario;
+        filename += "_" + dateFormat.format(new Date()) + SensorRecordFormat.FILE_EXTENSION;
+
+        recordWriter = HeartDeepFileWriter.openRecording(filename, sensorNames, storage, context);
+        recordingFilename = recordWriter != null ? filename : null;
+
+        return recordingFilename;
+    }
+
+    /**
+     * Helper function to save readings to file: completes the recording file opened when HeartDeep internals were started.
+     * If {@link #csvExported}, a CSV copy of the file is then exported from a background thread (the conversion reads the whole file).
+     *
+     * @param context The Android context from which to write
+     * @return The name of the written file, or {@code null} if an error occurred
+     */
+    public String saveReadingsToFile(Context context) {
+        if (context == null || recordWriter == null) {
+            return null;
         }
 
-        String fileContent = "timestamp,sensor,x,y,z\n" + recordsStringBuilder.toString();
-        String result = HeartDeepFileWriter.writeToFile(filename, fileContent, context);
+        SensorRecordSink writer = recordWriter;
+        String filename = recordingFilename;
+        recordWriter = null;
+        recordingFilename = null;
 
-        if (result != null) {
-            recordsStringBuilder.setLength(0);
-            recordsStringBuilder.trimToSize();
+        try {
+            writer.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+            Log.e("SAVE-FILE", "Error while saving file " + filename);
+            return null;
+        }
 
-            Toast.makeText(getApplicationContext(), "Saved " + filename, Toast.LENGTH_LONG).show();
+        if (writer instanceof StreamingRecordWriter) {
+            StreamingRecordWriter streamingWriter = (StreamingRecordWriter) writer;
+            Log.i("SAVE-FILE", "Saved " + filename + ": " + streamingWriter.getRecordsCount() + " records ("
+                    + streamingWriter.getDroppedRecordsCount() + " dropped), " + streamingWriter.getBytesWritten() + " bytes, "
+                    + "flush latency avg=" + streamingWriter.getAverageFlushLatencyNanos() + "ns max=" + streamingWriter.getMaxFlushLatencyNanos() + "ns");
         }
+        Toast.makeText(getApplicationContext(), "Saved " + filename, Toast.LENGTH_LONG).show();
 
-        return result;
+        if (csvExported) {
+            exportToCsv(filename, context.getApplicationContext());
+        }
+
+        return filename;
+    }
+
+    /**
+     * Helper function to export a saved recording to CSV, from a background thread
+     *
+     * @param filename The name of the saved recording
+     * @param context  The Android context from which to read and write
+     */
+    private static void exportToCsv(final String filename, final Context context) {
+        Thread exportThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                String csvFilename = HeartDeepFileWriter.convertToCsv(filename, context);
+                if (csvFilename != null) {
+                    Log.i("SAVE-FILE", "Exported " + filename + " to " + csvFilename);
+                }
+            }
+        }, "HeartDeep-CsvExport");
+        exportThread.setPriority(Thread.MIN_PRIORITY);
+        exportThread.start();
     }
 
     /**
@@ -188,13 +348,15 @@ public class HeartDeepSensorListenerService extends Service implements SensorEve
         }
 
 
-        // List all available sensors
-        List<Sensor> sensors = sensorManager.getSensorList(Sensor.TYPE_ALL);
-        Log.d("SENSORS", "NAME,TYPE,VENDOR,RESOLUTION,POWER (mA),MIN_DELAY (us),MAX_DELAY (us),MAX_RANGE");
-        for(Sensor sensor: sensors){
-            Log.d("SENSORS", "---SENSOR:" + sensor.getName() + "," + sensor.getStringType() + "," + sensor.getVendor() + ","
-            + sensor.getResolution() + "," + sensor.getPower() + ","
-                    + sensor.getMinDelay() + "," + sensor.getMaxDelay()  + ","  + sensor.getMaximumRange());
+        // List all available sensors (debug builds only)
+        if (BuildConfig.DEBUG) {
+            List<Sensor> sensors = sensorManager.getSensorList(Sensor.TYPE_ALL);
+            Log.d("SENSORS", "NAME,TYPE,VENDOR,RESOLUTION,POWER (mA),MIN_DELAY (us),MAX_DELAY (us),MAX_RANGE");
+            for(Sensor sensor: sensors){
+                Log.d("SENSORS", "---SENSOR:" + sensor.getName() + "," + sensor.getStringType() + "," + sensor.getVendor() + ","
+                + sensor.getResolution() + "," + sensor.getPower() + ","
+                        + sensor.getMinDelay() + "," + sensor.getMaxDelay()  + ","  + sensor.getMaximumRange());
+            }
         }
     }
 
@@ -241,21 +403,78 @@ public class HeartDeepSensorListenerService extends Service implements SensorEve
 //        sensorManager.registerListener(this, accelerometerSensor, SensorManager.SENSOR_DELAY_FASTEST);
 //        sensorManager.registerListener(this, gyroscopeSensor, SensorManager.SENSOR_DELAY_FASTEST);
 
-        int[] sensorsToRecord = {
+        int[] sensorsToRecord = derivedSensorsRegistered ? new int[]{
                 Sensor.TYPE_LINEAR_ACCELERATION,
                 Sensor.TYPE_GYROSCOPE,
                 Sensor.TYPE_ACCELEROMETER,
                 Sensor.TYPE_MAGNETIC_FIELD,
+                Sensor.TYPE_PRESSURE,
                 Sensor.TYPE_ORIENTATION,
                 Sensor.TYPE_GRAVITY,
                 Sensor.TYPE_ROTATION_VECTOR,
+        } : new int[]{
+                Sensor.TYPE_LINEAR_ACCELERATION,
+                Sensor.TYPE_GYROSCOPE,
+                Sensor.TYPE_ACCELEROMETER,
+                Sensor.TYPE_MAGNETIC_FIELD,
+                Sensor.TYPE_PRESSURE,
         };
+        // Give a channel to each available sensor: sensor names (the recording dictionary) are resolved once and for all.
+        // Windows wait for the accelerometer and gyroscope readings, the other sensors being slower
+        List<Sensor> sensors = new ArrayList<>();
+        channels = new SensorChannels();
         for (int sensorType : sensorsToRecord) {
             Sensor sensor = sensorManager.getDefaultSensor(sensorType);
             if (sensor != null) {
-                sensorManager.registerListener(this, sensor, SensorManager.SENSOR_DELAY_FASTEST);
+                channels.register(sensorType, sensor.getStringType(), readingsTypeOf(sensorType, sensor.getStringType()),
+                        sensorType == Sensor.TYPE_LINEAR_ACCELERATION || sensorType == Sensor.TYPE_GYROSCOPE);
+                sensors.add(sensor);
             }
         }
+        MetricsRegistry metrics = MetricsRegistry.getDefault();
+        metrics.reset();
+        eventCounters = new MetricsRegistry.Counter[channels.getCount()];
+        for (int channel = 0; channel < channels.getCount(); channel++) {
+            eventCounters[channel] = metrics.counter(MetricsRegistry.SENSOR_EVENTS_PREFIX + channels.getName(channel));
+        }
+        String[] sensorNamesArray = channels.getNames();
+        eventLineEncoder = new SensorCsvEncoder(sensorNamesArray);
+        eventLine = new byte[eventLineEncoder.getMaxLineLength()];
+        openRecordingFile(sensorNamesArray, getApplicationContext());
+
+        // Buffers must hold the readings of a whole batch (assuming at most one reading per millisecond)
+        long maxReportLatencyNanos = maxReportLatency * 1000L;
+        capture = new SensorCapture(channels,
+                beginningDelay, sampleLength, recordingTimeLength,
+                2 * maxReportLatencyNanos + MIN_SENSORS_SKEW,
+                SensorReadingsRingBuffer.DEFAULT_CAPACITY + 2 * maxReportLatency / 1000,
+                this);
+        capture.setRecordSink(recordWriter);
+        capture.setLeakDetection(BuildConfig.DEBUG);
+        capture.setResampling(resamplingPeriod, resamplingInterpolation, MAX_READINGS_GAP);
+
+        // Join all the registered sensors, the first one of sensorsToRecord being the reference
+        int[] joinedSensorTypes = channels.getSensorTypes();
+        framesCounter = metrics.counter(MetricsRegistry.FRAMES_JOINED);
+        frameJoiner = joinedSensorTypes.length > 0 ? new SensorFrameJoiner(joinedSensorTypes, FRAME_TOLERANCE,
+                2 * maxReportLatencyNanos + MIN_SENSORS_SKEW, SensorReadingsRingBuffer.DEFAULT_CAPACITY + 2 * maxReportLatency / 1000, this) : null;
+
+        // Fuse the orientation of the device from the joined raw accelerometer, gyroscope and magnetometer readings
+        if (channels.getChannel(Sensor.TYPE_ACCELEROMETER) >= 0 && channels.getChannel(Sensor.TYPE_GYROSCOPE) >= 0) {
+            orientationTracker = new OrientationTracker(Sensor.TYPE_ACCELEROMETER, Sensor.TYPE_GYROSCOPE,
+                    channels.getChannel(Sensor.TYPE_MAGNETIC_FIELD) >= 0 ? Sensor.TYPE_MAGNETIC_FIELD : -1,
+                    OrientationFilter.DEFAULT_BETA, sampleLength, ORIENTATION_MAX_GAP, this);
+            registerFrameListener(orientationTracker);
+        }
+
+        mainHandler = new Handler(Looper.getMainLooper());
+        eventSource = new AndroidSensorEventSource(sensorManager, sensors, SensorManager.SENSOR_DELAY_FASTEST, maxReportLatency);
+        eventSource.start(this);
+
+        if (BuildConfig.DEBUG) {
+            metrics.registerObserver(metricsLogger);
+            metrics.startPeriodicSnapshots(METRICS_LOG_PERIOD);
+        }
 
         heartDeepInternalState = 1;
 
@@ -274,13 +493,27 @@ public class HeartDeepSensorListenerService extends Service implements SensorEve
      * @return {@code true} if everything went well, {@code false} if at least one of the required sensors is absent on the device
      */
     private boolean stopHeartDeepInternals() {
-        sensorManager.unregisterListener(this);
+        // Once stopped, the source does not deliver events anymore
+        if (eventSource != null) {
+            eventSource.stop();
+            eventSource = null;
+        }
+        capture = null;
+        frameJoiner = null;
+        if (orientationTracker != null) {
+            unRegisterFrameListener(orientationTracker);
+            orientationTracker = null;
+        }
+
+        if (BuildConfig.DEBUG) {
+            MetricsRegistry metrics = MetricsRegistry.getDefault();
+            metrics.stopPeriodicSnapshots();
+            metrics.unRegisterObserver(metricsLogger);
+            Log.d("METRICS", metrics.snapshot().toString());
+        }
 
         // Update the state variables
         heartDeepInternalState = 0;
-        waitingBegin = true;
-        recordingBeginningTimestamp = -1;
-        beginningTimestamp = -1;
 
         // Notify other components about start event
         Bundle statusBundle = new Bundle();
@@ -289,9 +522,11 @@ public class HeartDeepSensorListenerService extends Service implements SensorEve
         HeartDeepService.publishEvent(statusBundle);
 
         // Delete the recorded readings
-        clearAllReadingsBuffers();
-        recordsStringBuilder.setLength(0);
-        recordsStringBuilder.trimToSize();
+        if (recordWriter != null) { // The recording was not completed
+            recordWriter.abort();
+            recordWriter = null;
+            recordingFilename = null;
+        }
 
         // Actually stop the service (in the sense of Android)
         stopSelf();
@@ -299,167 +534,221 @@ public class HeartDeepSensorListenerService extends Service implements SensorEve
         return true;
     }
 
+    /**
+     * Called on the sensor thread for each sensor event: updates the metrics and hands the event to the capture
+     */
     @Override
-    public void onSensorChanged(SensorEvent sensorEvent) {
-        if (waitingBegin) {
-            if (beginningTimestamp < 0) {
-                beginningTimestamp = sensorEvent.timestamp;
-            }
-
-            if (sensorEvent.timestamp - beginningTimestamp < beginningDelay) {
-                return;
-            } else {
-                beginningTimestamp = -1;
-                waitingBegin = false;
-            }
-            return;
+    public void onSensorEvent(int sensorType, long timestamp, float[] values) {
+        int channel = channels.getChannel(sensorType);
+        if (channel >= 0 && channel < eventCounters.length) {
+            eventCounters[channel].increment();
         }
 
+        if (BuildConfig.DEBUG && channel >= 0 && eventLogSampler.sample(timestamp)) {
+            int length = eventLineEncoder.encodeRecord(eventLine, 0, timestamp, channel, values[0],
+                    values.length > 1 ? values[1] : 0, values.length > 2 ? values[2] : 0);
+            Log.d("SENSOR-EVENT", new String(eventLine, 0, length, StandardCharsets.UTF_8)
+                    + " (" + eventLogSampler.getAndResetSkippedCount() + " events skipped)");
+        }
 
-        int sensorEventType = sensorEvent.sensor.getType();
-//        if ((sensorEventType != Sensor.TYPE_LINEAR_ACCELERATION) && (sensorEventType != Sensor.TYPE_GYROSCOPE))
-//            return;
-
-
-        if (recordingBeginningTimestamp < 0) { // First value to be received
-            recordingBeginningTimestamp = sensorEvent.timestamp;
+        SensorCapture currentCapture = capture;
+        if (currentCapture != null) {
+            currentCapture.onSensorEvent(sensorType, timestamp, values);
+        }
 
-            Log.i("RECORDING", "RECORDING STARTED");
-//            Toast.makeText(getApplicationContext(), "RECORDING STARTED", Toast.LENGTH_SHORT).show();
+        SensorFrameJoiner currentJoiner = frameJoiner;
+        if (currentJoiner != null) {
+            currentJoiner.onSensorEvent(sensorType, timestamp, values);
+        }
+    }
 
-            // Play a notification sound
-            ToneGenerator toneGen1 = new ToneGenerator(AudioManager.STREAM_MUSIC, 65);
-            toneGen1.startTone(ToneGenerator.TONE_CDMA_ABBR_ALERT);
+    /**
+     * Helper function to get the type of the readings of a sensor
+     *
+     * @param sensorType The type of the sensor
+     * @param stringType The name of the sensor, as given by Sensor.getStringType()
+     * @return One of the SensorReadings.TYPE_*_READINGS for the known sensors, the name of the sensor for the others
+     */
+    private static String readingsTypeOf(int sensorType, String stringType) {
+        switch (sensorType) {
+            case Sensor.TYPE_LINEAR_ACCELERATION:
+                return SensorReadings.TYPE_ACCELEROMETER_READINGS;
+            case Sensor.TYPE_GYROSCOPE:
+                return SensorReadings.TYPE_GYROSCOPE_READINGS;
+            case Sensor.TYPE_ACCELEROMETER:
+                return SensorReadings.TYPE_RAW_ACCELEROMETER_READINGS;
+            case Sensor.TYPE_MAGNETIC_FIELD:
+                return SensorReadings.TYPE_MAGNETOMETER_READINGS;
+            case Sensor.TYPE_PRESSURE:
+                return SensorReadings.TYPE_BAROMETER_READINGS;
+            case Sensor.TYPE_ORIENTATION:
+                return SensorReadings.TYPE_ORIENTATION_READINGS;
+            case Sensor.TYPE_GRAVITY:
+                return SensorReadings.TYPE_GRAVITY_READINGS;
+            case Sensor.TYPE_ROTATION_VECTOR:
+                return SensorReadings.TYPE_ROTATION_VECTOR_READINGS;
+            default:
+                return stringType;
         }
+    }
 
+    /**
+     * Called on the sensor thread for each joined frame: hands it to the registered frame listeners
+     */
+    @Override
+    public void onFrame(SensorFrame frame) {
+        framesCounter.increment();
+        for (SensorFrameJoiner.Listener frameListener : frameListeners) {
+            frameListener.onFrame(frame);
+        }
+    }
 
-        // Add to list of to-be-processed data
-        switch (sensorEventType){
-            case Sensor.TYPE_LINEAR_ACCELERATION: {
-                accReadings.add(new double[]{sensorEvent.values[0], sensorEvent.values[1], sensorEvent.values[2]});
-                accReadingsTimestamps.add(sensorEvent.timestamp);
-                break;
-            }
-            case Sensor.TYPE_GYROSCOPE: {
-                gyrReadings.add(new double[]{sensorEvent.values[0], sensorEvent.values[1], sensorEvent.values[2]});
-                gyrReadingsTimestamps.add(sensorEvent.timestamp);
-                break;
-            }
+    /**
+     * Registers an object to receive the time-aligned frames of all the registered sensors.
+     * It is called on the sensor thread, with a reused frame: it must copy the frame to keep it, and return quickly
+     *
+     * @param frameListener The object to register
+     */
+    public static void registerFrameListener(SensorFrameJoiner.Listener frameListener) {
+        if (!frameListeners.contains(frameListener)) {
+            frameListeners.add(frameListener);
         }
+    }
 
-        // Record for logging
-        String data = sensorEvent.timestamp + "," + sensorEvent.sensor.getStringType() + ","
-                + sensorEvent.values[0] + "," + sensorEvent.values[1] + "," + sensorEvent.values[2];
-        recordsStringBuilder.append(data + "\n");
-        Log.d("SENSOR-EVENT", data);
+    /**
+     * Unregisters an object registered with {@link #registerFrameListener(SensorFrameJoiner.Listener)}
+     *
+     * @param frameListener The object to unregister
+     */
+    public static void unRegisterFrameListener(SensorFrameJoiner.Listener frameListener) {
+        frameListeners.remove(frameListener);
+    }
 
+    /**
+     * Called on the sensor thread for each window of orientations: hands it to HeartDeepService, whose processing thread
+     * publishes it to the observers
+     */
+    @Override
+    public void onOrientations(TimelinedData[] orientations) {
+        HeartDeepService.processOrientations(orientations);
+    }
 
-        if (recordingBeginningTimestamp < 0) { // First value to be received
-            recordingBeginningTimestamp = sensorEvent.timestamp;
-            beginningTimestamp = sensorEvent.timestamp;
-        }
+    @Override
+    public void onRecordingStarted(long timestamp) {
+        Log.i("RECORDING", "RECORDING STARTED");
+        HeartDeepService.startRecording();
+//            Toast.makeText(getApplicationContext(), "RECORDING STARTED", Toast.LENGTH_SHORT).show();
 
-        // Check to know whether a sampling time length has elapsed
-        if (sensorEvent.timestamp - beginningTimestamp >= sampleLength) {
-            beginningTimestamp = sensorEvent.timestamp;
-            triggerReadingsProcessing();
-        }
+        // Play a notification sound
+        ToneGenerator toneGen1 = new ToneGenerator(AudioManager.STREAM_MUSIC, 65);
+        toneGen1.startTone(ToneGenerator.TONE_CDMA_ABBR_ALERT);
+    }
 
+    @Override
+    public void onWindow(SensorReadingsWindow window) {
+        // Launch the processing of those readings (in background), which releases the window
+        HeartDeepService.processReadings(window);
+    }
 
-        if (sensorEvent.timestamp - recordingBeginningTimestamp >= recordingTimeLength) {
-//            Log.e("TOTO", "timestamp="+sensorEvent.timestamp + "; recordingBeginningTimestamp=" +
-//                    recordingBeginningTimestamp + "; diff=" + (sensorEvent.timestamp - recordingBeginningTimestamp)
-//                    + "; recordingTimeLength=" + recordingTimeLength);
+    @Override
+    public void onReadingsGap(int sensorType, long lastTimestamp, long nextTimestamp) {
+        Log.w("SENSORS", "No readings of sensor " + sensorType + " for " + (nextTimestamp - lastTimestamp) / 1000000 + " ms");
+    }
 
-            // Send the last recorded readings
-            triggerReadingsProcessing();
+    @Override
+    public void onWindowsLeaked(int count) {
+        Log.w("WINDOWS", count + " windows were never released by their holders");
+    }
 
-            // Play a notification sound
-            ToneGenerator toneGen1 = new ToneGenerator(AudioManager.STREAM_MUSIC, 65);
-            toneGen1.startTone(ToneGenerator.TONE_CDMA_ABBR_ALERT);
+    @Override
+    public void onRecordingCompleted(long timestamp) {
+        // Play a notification sound
+        ToneGenerator toneGen1 = new ToneGenerator(AudioManager.STREAM_MUSIC, 65);
+        toneGen1.startTone(ToneGenerator.TONE_CDMA_ABBR_ALERT);
 
-            Log.i("RECORDING", "RECORDING COMPLETED");
+        Log.i("RECORDING", "RECORDING COMPLETED");
 //            Toast.makeText(getApplicationContext(), "RECORDING COMPLETED", Toast.LENGTH_SHORT).show();
 
-            // Save the readings to file
-            Date date = new Date();
-            String filename = HeartDeepService.getSessionId() + "-" + position + "-" + scenario;
-            filename += "_" + dateFormat.format(date) + ".csv";
-            saveReadingsToFile(filename, getApplicationContext());
+        // The sensor thread cannot stop itself: save and stop from the main thread
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (heartDeepInternalState == 0) { // Already stopped in the meantime
+                    return;
+                }
 
-            // For the next time
-            recordingBeginningTimestamp = -1;
-            beginningTimestamp = -1;
+                // Save the readings to file
+                saveReadingsToFile(getApplicationContext());
 
-            // Stop receiving sensor readings
-            stopHeartDeepInternals();
-        }
+                // Stop receiving sensor readings
+                stopHeartDeepInternals();
+            }
+        });
     }
 
-    @Override
-    public void onAccuracyChanged(Sensor sensor, int newAccuracy) {
-
+    /**
+     * Setter for {@link #recordingTimeLength} variable
+     * @param newVal The new value
+     */
+    public static void setRecordingTimeLength(long newVal){
+        recordingTimeLength = newVal;
     }
 
     /**
-     * Helper function to encapsulate the last sensor readings in a SensorReadings instance
-     *
-     * @param type           The type of SensorReadings instance to build
-     * @param readingsList   The raw readings list. Each element of this list must be a 3-length array.
-     * @param timestampsList The timestamps list²
-     * @return A SensorReadings instance corresponding to the last sensor readings
-     */
-    private SensorReadings buildLastSensorReadings(String type, List<double[]> readingsList, List<Long> timestampsList) {
-        int size = readingsList.size();
-        double[] x = new double[size];
-        double[] y = new double[size];
-        double[] z = new double[size];
-        double[] timestamps = new double[size];
-        double[] readings;
-        for (int i = 0; i < size; i++) {
-            readings = readingsList.get(i);
-            x[i] = readings[0];
-            y[i] = readings[1];
-            z[i] = readings[2];
-            timestamps[i] = timestampsList.get(i);
-        }
-        SensorReadings sensorReadings = new SensorReadings(type,
-                size, x, y, z, timestamps);
-
-        return sensorReadings;
+     * Setter for {@link #storage} variable. The new value is taken into account at the next start of HeartDeep internals
+     * @param newVal The new value. Should be one of the HeartDeepFileWriter.STORAGE_* constants
+     */
+    public static void setStorage(int newVal){
+        storage = newVal;
     }
 
     /**
-     * Helper function to clear all the {@code List} which serve as buffer for sensor readings and their timestamps
+     * Setter for {@link #csvExported} variable
+     * @param newVal {@code true} to export a CSV copy of each recording once saved, {@code false} to only keep the binary recording
      */
-    private void clearAllReadingsBuffers() {
-        accReadings.clear();
-        accReadingsTimestamps.clear();
+    public static void setCsvExported(boolean newVal){
+        csvExported = newVal;
+    }
 
-        gyrReadings.clear();
-        gyrReadingsTimestamps.clear();
+    /**
+     * Setter for {@link #maxReportLatency} variable. The new value is taken into account at the next start of HeartDeep internals.
+     * A non-zero latency lets the sensor hub batch events: they are then delivered in bursts, the live outputs being delayed as much
+     * @param newVal The new value, in microseconds. 0 disables batching
+     */
+    public static void setMaxReportLatency(int newVal){
+        maxReportLatency = newVal;
     }
 
     /**
-     * Helper function which converts the readings in the lists to SensorReadings instances,
-     * triggers their processing (by HeartDeepService), and empty the readings lists
+     * Setter for {@link #derivedSensorsRegistered} variable. The new value is taken into account at the next start of HeartDeep internals
+     * @param newVal {@code true} to register and record the orientation sensors derived by Android, {@code false} to only rely on
+     *               the orientations fused by HeartDeep
      */
-    private void triggerReadingsProcessing() {
-        // Build last sensor readings
-        SensorReadings accelerometerReadings = buildLastSensorReadings(SensorReadings.TYPE_ACCELEROMETER_READINGS, accReadings, accReadingsTimestamps);
-        SensorReadings gyroscopeReadings = buildLastSensorReadings(SensorReadings.TYPE_GYROSCOPE_READINGS, gyrReadings, gyrReadingsTimestamps);
+    public static void setDerivedSensorsRegistered(boolean newVal){
+        derivedSensorsRegistered = newVal;
+    }
 
-        // Launch the processing of those readings (in background) and clear the lists
-        HeartDeepService.processReadings(this, accelerometerReadings, gyroscopeReadings);
+    /**
+     * Getter for {@link #resamplingPeriod} variable
+     * @return The time (in nanoseconds) between two readings of the windows, or 0 if they are not resampled
+     */
+    public static long getResamplingPeriod(){
+        return resamplingPeriod;
+    }
 
-        clearAllReadingsBuffers();
+    /**
+     * Setter for {@link #resamplingPeriod} variable, from a sampling rate. The new value is taken into account at the next start of HeartDeep internals
+     * @param samplingRate The sampling rate (in Hz) of the readings of the windows, or 0 not to resample them
+     */
+    public static void setResamplingRate(double samplingRate){
+        resamplingPeriod = samplingRate > 0 ? Math.round(1e9 / samplingRate) : 0;
     }
 
     /**
-     * Setter for {@link #recordingTimeLength} variable
-     * @param newVal The new value
+     * Setter for {@link #resamplingInterpolation} variable. The new value is taken into account at the next start of HeartDeep internals
+     * @param newVal The new value. Should be one of the StreamingResampler.INTERPOLATION_* constants
      */
-    public static void setRecordingTimeLength(long newVal){
-        recordingTimeLength = newVal;
+    public static void setResamplingInterpolation(int newVal){
+        resamplingInterpolation = newVal;
     }
 }
@@ -8,17 +8,30 @@
 package fr.irit.rmess.heartdeep.android;
 
 import android.app.IntentService;
-import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
 import android.util.Log;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
 
+import fr.irit.rmess.heartdeep.BuildConfig;
+import fr.irit.rmess.heartdeep.datatype.FloatSensorReadings;
 import fr.irit.rmess.heartdeep.datatype.HeartDeepObservable;
 import fr.irit.rmess.heartdeep.datatype.HeartDeepObserver;
 import fr.irit.rmess.heartdeep.datatype.SensorReadings;
+import fr.irit.rmess.heartdeep.datatype.SensorReadingsWindow;
+import fr.irit.rmess.heartdeep.datatype.SensorStatistics;
+import fr.irit.rmess.heartdeep.datatype.TimelinedData;
+import fr.irit.rmess.heartdeep.helpers.LogSampler;
+import fr.irit.rmess.heartdeep.helpers.MetricsRegistry;
+import fr.irit.rmess.heartdeep.helpers.SpscQueue;
+import fr.irit.rmess.heartdeep.processing.FilterBank;
+import fr.irit.rmess.heartdeep.processing.HeartRateEstimator;
+import fr.irit.rmess.heartdeep.processing.SpectrumAnalyzer;
+import fr.irit.rmess.heartdeep.processing.StreamingStft;
+import fr.irit.rmess.heartdeep.processing.WindowFunction;
 
 /**
  * An Android IntentService used to handle the (actual) function of HeartDeep.
@@ -27,15 +40,110 @@ import fr.irit.rmess.heartdeep.datatype.SensorReadings;
 public class HeartDeepService extends IntentService implements HeartDeepObservable<Bundle> {
 
     /**
-     * A string key to access the temporal accelerometer readings in an output bundle
+     * A string key to access the window of the temporal readings in an output bundle: a pooled SensorReadingsWindow.
+     * The temporal readings of the bundle (OUTPUT_*_READINGS_TEMPORAL) are the ones of the window: they are only valid during
+     * the notification, unless the observer retains the window (and then releases it once done with them)
+     */
+    public static final String OUTPUT_WINDOW = "fr.irit.rmess.heartdeep.output.WINDOW";
+
+    /**
+     * A string key to access the temporal accelerometer readings in an output bundle: FloatSensorReadings, as captured
      */
     public static final String OUTPUT_ACC_READINGS_TEMPORAL = "fr.irit.rmess.heartdeep.output.ACC_READINGS_TEMPORAL";
 
     /**
-     * A string key to access the temporal gyroscope readings in an output bundle
+     * A string key to access the temporal gyroscope readings in an output bundle: FloatSensorReadings, as captured
      */
     public static final String OUTPUT_GYR_READINGS_TEMPORAL = "fr.irit.rmess.heartdeep.output.GYR_READINGS_TEMPORAL";
 
+    /**
+     * A string key to access the temporal readings of all the captured sensors in an output bundle: an array of FloatSensorReadings,
+     * each one identified by its type
+     */
+    public static final String OUTPUT_READINGS_TEMPORAL = "fr.irit.rmess.heartdeep.output.READINGS_TEMPORAL";
+
+    /**
+     * A string key to access the frequential accelerometer readings (amplitude spectrum) in an output bundle.
+     * The spectrum is refilled for every window: it is only valid during the notification (copy it to keep it)
+     */
+    public static final String OUTPUT_ACC_READINGS_FREQUENTIAL = "fr.irit.rmess.heartdeep.output.ACC_READINGS_FREQUENTIAL";
+
+    /**
+     * A string key to access the frequential gyroscope readings (amplitude spectrum) in an output bundle.
+     * The spectrum is refilled for every window: it is only valid during the notification (copy it to keep it)
+     */
+    public static final String OUTPUT_GYR_READINGS_FREQUENTIAL = "fr.irit.rmess.heartdeep.output.GYR_READINGS_FREQUENTIAL";
+
+    /**
+     * A string key to access the accelerometer readings filtered in the cardiac band in an output bundle.
+     * The readings are refilled for every window: they are only valid during the notification (copy them to keep them)
+     */
+    public static final String OUTPUT_ACC_READINGS_CARDIAC = "fr.irit.rmess.heartdeep.output.ACC_READINGS_CARDIAC";
+
+    /**
+     * A string key to access the gyroscope readings filtered in the cardiac band in an output bundle.
+     * The readings are refilled for every window: they are only valid during the notification (copy them to keep them)
+     */
+    public static final String OUTPUT_GYR_READINGS_CARDIAC = "fr.irit.rmess.heartdeep.output.GYR_READINGS_CARDIAC";
+
+    /**
+     * A string key to access the accelerometer readings filtered in the respiration band in an output bundle.
+     * The readings are refilled for every window: they are only valid during the notification (copy them to keep them)
+     */
+    public static final String OUTPUT_ACC_READINGS_RESPIRATION = "fr.irit.rmess.heartdeep.output.ACC_READINGS_RESPIRATION";
+
+    /**
+     * A string key to access the gyroscope readings filtered in the respiration band in an output bundle.
+     * The readings are refilled for every window: they are only valid during the notification (copy them to keep them)
+     */
+    public static final String OUTPUT_GYR_READINGS_RESPIRATION = "fr.irit.rmess.heartdeep.output.GYR_READINGS_RESPIRATION";
+
+    /**
+     * A string key to access an accelerometer spectrogram frame (amplitude spectra) in an output bundle
+     */
+    public static final String OUTPUT_ACC_SPECTROGRAM_FRAME = "fr.irit.rmess.heartdeep.output.ACC_SPECTROGRAM_FRAME";
+
+    /**
+     * A string key to access a gyroscope spectrogram frame (amplitude spectra) in an output bundle
+     */
+    public static final String OUTPUT_GYR_SPECTROGRAM_FRAME = "fr.irit.rmess.heartdeep.output.GYR_SPECTROGRAM_FRAME";
+
+    /**
+     * A string key to access the timestamp (in nanoseconds, as a long) of the last reading of a spectrogram frame in an output bundle
+     */
+    public static final String OUTPUT_SPECTROGRAM_FRAME_TIMESTAMP = "fr.irit.rmess.heartdeep.output.SPECTROGRAM_FRAME_TIMESTAMP";
+
+    /**
+     * A string key to access the estimated heart rate (in beats per minute, as a double) in an output bundle.
+     * Absent until enough readings were processed since the start of the recording
+     */
+    public static final String OUTPUT_HEART_RATE = "fr.irit.rmess.heartdeep.output.HEART_RATE";
+
+    /**
+     * A string key to access the confidence (between 0 and 1, as a double) of the estimated heart rate in an output bundle
+     */
+    public static final String OUTPUT_HEART_RATE_CONFIDENCE = "fr.irit.rmess.heartdeep.output.HEART_RATE_CONFIDENCE";
+
+    /**
+     * A string key to access the statistics of the readings of the window in an output bundle: an array of SensorStatistics,
+     * one per captured sensor, each one identified by its type.
+     * The statistics are computed again for every window: they are only valid during the notification (copy them to keep them)
+     */
+    public static final String OUTPUT_STATISTICS = "fr.irit.rmess.heartdeep.output.STATISTICS";
+
+    /**
+     * A string key to access the statistics of all the readings of the recording so far in an output bundle: an array of
+     * SensorStatistics, one per captured sensor, each one identified by its type.
+     * The statistics keep being updated by the next windows: they are only valid during the notification (copy them to keep them)
+     */
+    public static final String OUTPUT_SESSION_STATISTICS = "fr.irit.rmess.heartdeep.output.SESSION_STATISTICS";
+
+    /**
+     * A string key to access the orientations of the device in an output bundle: an array of the w, x, y and z components
+     * of the orientation quaternions, as TimelinedData of type TimelinedData.TYPE_TIMELINED_ORIENTATIONS
+     */
+    public static final String OUTPUT_ORIENTATIONS = "fr.irit.rmess.heartdeep.output.ORIENTATIONS";
+
 
     /**
      * A string key to access the result type field in an output bundle.
@@ -49,6 +157,14 @@ public class HeartDeepService extends IntentService implements HeartDeepObservab
      * A bundle type to indicate a complete result (including all the possible output fields)
      */
     public static final String BUNDLE_TYPE_COMPLETE_RESULT = "fr.irit.rmess.heartdeep.BUNDLE_TYPE.COMPLETE_RESULT";
+    /**
+     * A bundle type to indicate a spectrogram frame of one sensor (OUTPUT_*_SPECTROGRAM_FRAME and OUTPUT_SPECTROGRAM_FRAME_TIMESTAMP fields)
+     */
+    public static final String BUNDLE_TYPE_SPECTROGRAM_FRAME = "fr.irit.rmess.heartdeep.BUNDLE_TYPE.SPECTROGRAM_FRAME";
+    /**
+     * A bundle type to indicate a window of orientations of the device (OUTPUT_ORIENTATIONS field)
+     */
+    public static final String BUNDLE_TYPE_ORIENTATIONS = "fr.irit.rmess.heartdeep.BUNDLE_TYPE.ORIENTATIONS";
     /**
      * A bundle type to indicate a component status event
      */
@@ -68,9 +184,44 @@ public class HeartDeepService extends IntentService implements HeartDeepObservab
 
 
     /**
-     * A String describing 'process readings' as the action to be executed
+     * The maximum number of windows waiting to be processed
+     */
+    private static final int WINDOWS_QUEUE_CAPACITY = 256;
+
+    /**
+     * The maximum number of windows of orientations waiting to be published
      */
-    private static final String ACTION_PROCESS_READINGS = "fr.irit.rmess.heartdeep.action.PROCESS_READINGS";
+    private static final int ORIENTATIONS_QUEUE_CAPACITY = 64;
+
+    /**
+     * The default number of readings of a spectrogram frame: about 4 s at the fastest sampling rate
+     */
+    public static final int DEFAULT_SPECTROGRAM_WINDOW_LENGTH = 2048;
+
+    /**
+     * The default number of readings between two spectrogram frames: about 0.5 s at the fastest sampling rate
+     */
+    public static final int DEFAULT_SPECTROGRAM_HOP_SIZE = 256;
+
+    /**
+     * The sampling rate (in Hz) the filters assume when the readings are not resampled: the usual fastest rate
+     */
+    private static final double NOMINAL_SAMPLING_RATE = 400;
+
+    /**
+     * The maximum time (in nanoseconds) between two consecutive readings of a filtered stream, above which the filters restart
+     */
+    private static final long FILTERS_MAX_GAP = 100 * 1000 * 1000L;
+
+    /**
+     * The maximum time (in nanoseconds) between two consecutive readings of a spectrogram, above which it restarts
+     */
+    private static final long SPECTROGRAM_MAX_GAP = 1000 * 1000 * 1000L;
+
+    /**
+     * The minimum time (in nanoseconds) between two processing times logged in debug builds
+     */
+    private static final long PROCESSING_LOG_INTERVAL = 5000 * 1000 * 1000L;
 
 
 
@@ -82,9 +233,10 @@ public class HeartDeepService extends IntentService implements HeartDeepObservab
     private static HeartDeepService lastInstance = null;
 
     /**
-     * A list of observers registered to listen to this service
+     * A list of observers registered to listen to this service.
+     * Observers are notified from the processing thread while they (un)register from others, hence the copy-on-write list
      */
-    private static List<HeartDeepObserver<Bundle>> observers = new ArrayList<>();
+    private static List<HeartDeepObserver<Bundle>> observers = new CopyOnWriteArrayList<>();
 
     /**
      * A string to identify the current measurement session.
@@ -92,6 +244,215 @@ public class HeartDeepService extends IntentService implements HeartDeepObservab
      */
     private static String sessionId = "";
 
+    /**
+     * The windows handed off by the sensor listener, waiting to be processed by {@link #processingThread}
+     */
+    private static final SpscQueue<SensorReadingsWindow> windowsQueue = new SpscQueue<>(WINDOWS_QUEUE_CAPACITY);
+
+    /**
+     * The windows of orientations handed off by the sensor listener, waiting to be published by {@link #processingThread}
+     */
+    private static final SpscQueue<TimelinedData[]> orientationsQueue = new SpscQueue<>(ORIENTATIONS_QUEUE_CAPACITY);
+
+    /**
+     * The long-lived thread processing the windows of {@link #windowsQueue}, and publishing the ones of {@link #orientationsQueue}.
+     * Started on the first handoff
+     */
+    private static volatile Thread processingThread = null;
+
+    /**
+     * The stage computing the spectra of the windows. Only used by {@link #processingThread}
+     */
+    private static final SpectrumAnalyzer spectrumAnalyzer = new SpectrumAnalyzer();
+
+    /**
+     * The readings published when the accelerometer was not captured
+     */
+    private static final FloatSensorReadings noAccReadings = new FloatSensorReadings(SensorReadings.TYPE_ACCELEROMETER_READINGS, 0);
+
+    /**
+     * The readings published when the gyroscope was not captured
+     */
+    private static final FloatSensorReadings noGyrReadings = new FloatSensorReadings(SensorReadings.TYPE_GYROSCOPE_READINGS, 0);
+
+    /**
+     * The accelerometer readings of the window, widened to double precision for the processing stages.
+     * Refilled for every window. Only used by {@link #processingThread}
+     */
+    private static final SensorReadings accReadings = new SensorReadings(SensorReadings.TYPE_ACCELEROMETER_READINGS, 0);
+
+    /**
+     * The gyroscope readings of the window, widened to double precision for the processing stages.
+     * Refilled for every window. Only used by {@link #processingThread}
+     */
+    private static final SensorReadings gyrReadings = new SensorReadings(SensorReadings.TYPE_GYROSCOPE_READINGS, 0);
+
+    /**
+     * The spectrum of the accelerometer readings, refilled for every window. Only used by {@link #processingThread}
+     */
+    private static final SensorReadings accSpectrum = new SensorReadings(SensorReadings.TYPE_ACCELEROMETER_FREQUENTIAL_READINGS, 0);
+
+    /**
+     * The spectrum of the gyroscope readings, refilled for every window. Only used by {@link #processingThread}
+     */
+    private static final SensorReadings gyrSpectrum = new SensorReadings(SensorReadings.TYPE_GYROSCOPE_FREQUENTIAL_READINGS, 0);
+
+    /**
+     * The filters of the accelerometer readings. Only used by {@link #processingThread}
+     */
+    private static FilterBank accFilterBank = null;
+
+    /**
+     * The filters of the gyroscope readings. Only used by {@link #processingThread}
+     */
+    private static FilterBank gyrFilterBank = null;
+
+    /**
+     * The accelerometer readings filtered in the cardiac band, refilled for every window. Only used by {@link #processingThread}
+     */
+    private static final SensorReadings accCardiacReadings = new SensorReadings(SensorReadings.TYPE_ACCELEROMETER_READINGS, 0);
+
+    /**
+     * The gyroscope readings filtered in the cardiac band, refilled for every window. Only used by {@link #processingThread}
+     */
+    private static final SensorReadings gyrCardiacReadings = new SensorReadings(SensorReadings.TYPE_GYROSCOPE_READINGS, 0);
+
+    /**
+     * The accelerometer readings filtered in the respiration band, refilled for every window. Only used by {@link #processingThread}
+     */
+    private static final SensorReadings accRespirationReadings = new SensorReadings(SensorReadings.TYPE_ACCELEROMETER_READINGS, 0);
+
+    /**
+     * The gyroscope readings filtered in the respiration band, refilled for every window. Only used by {@link #processingThread}
+     */
+    private static final SensorReadings gyrRespirationReadings = new SensorReadings(SensorReadings.TYPE_GYROSCOPE_READINGS, 0);
+
+    /**
+     * The heart rate estimator, fed with the cardiac band of the accelerometer readings. Only used by {@link #processingThread}
+     */
+    private static HeartRateEstimator heartRateEstimator = null;
+
+    /**
+     * The number of the current recording, incremented by the sensor listener thread at the beginning of each one
+     */
+    private static int recordingNumber = 0;
+
+    /**
+     * The statistics of the readings of each captured sensor since the beginning of the recording (owned by the processing thread)
+     */
+    private static SensorStatistics[] sessionStatistics = new SensorStatistics[0];
+
+    /**
+     * The statistics of the readings of each captured sensor in the current window, computed again for every window
+     * (owned by the processing thread)
+     */
+    private static SensorStatistics[] windowStatistics = new SensorStatistics[0];
+
+    /**
+     * The number of the recording {@link #sessionStatistics} are about
+     */
+    private static int sessionStatisticsRecordingNumber = -1;
+
+    /**
+     * The parameters of the spectrograms: window length, hop size and window function (see {@link #setSpectrogramParameters(int, int, int)}).
+     * Replaced as a whole, so that the processing thread never sees a mix of old and new parameters
+     */
+    private static volatile int[] spectrogramParameters = {DEFAULT_SPECTROGRAM_WINDOW_LENGTH, DEFAULT_SPECTROGRAM_HOP_SIZE, WindowFunction.TYPE_HANN};
+
+    /**
+     * The STFT of the accelerometer readings. Only used by {@link #processingThread}
+     */
+    private static StreamingStft accSpectrogram = null;
+
+    /**
+     * The STFT of the gyroscope readings. Only used by {@link #processingThread}
+     */
+    private static StreamingStft gyrSpectrogram = null;
+
+    /**
+     * Publishes the spectrogram frames to the observers, as they are computed
+     */
+    private static final StreamingStft.Listener spectrogramListener = new StreamingStft.Listener() {
+        @Override
+        public void onFrame(StreamingStft stft, SensorReadings frame, double endTimestamp) {
+            Bundle bundle = new Bundle();
+            bundle.putString(BUNDLE_TYPE, BUNDLE_TYPE_SPECTROGRAM_FRAME);
+            bundle.putSerializable(stft == accSpectrogram ? OUTPUT_ACC_SPECTROGRAM_FRAME : OUTPUT_GYR_SPECTROGRAM_FRAME, frame);
+            bundle.putLong(OUTPUT_SPECTROGRAM_FRAME_TIMESTAMP, (long) endTimestamp);
+            getLastInstance().notifyAllObservers(bundle);
+        }
+    };
+
+    /**
+     * The number of windows dropped because {@link #windowsQueue} was full
+     */
+    private static volatile long droppedWindowsCount = 0;
+
+    /**
+     * The number of windows of orientations dropped because {@link #orientationsQueue} was full
+     */
+    private static volatile long droppedOrientationsCount = 0;
+
+    /**
+     * The number of windows taken by the processing thread so far, whether their processing succeeded or failed
+     */
+    private static volatile long handedOffWindowsCount = 0;
+
+    /**
+     * The number of windows processed so far
+     */
+    private static volatile long processedWindowsCount = 0;
+
+    /**
+     * The number of windows whose processing failed
+     */
+    private static volatile long failedWindowsCount = 0;
+
+    /**
+     * The counter of windows handed off to the processing thread
+     */
+    private static final MetricsRegistry.Counter windowsEmittedMetric = MetricsRegistry.getDefault().counter(MetricsRegistry.WINDOWS_EMITTED);
+
+    /**
+     * The counter of windows dropped because {@link #windowsQueue} was full
+     */
+    private static final MetricsRegistry.Counter windowsDroppedMetric = MetricsRegistry.getDefault().counter(MetricsRegistry.WINDOWS_DROPPED);
+
+    /**
+     * The counter of windows whose processing failed
+     */
+    private static final MetricsRegistry.Counter windowsFailedMetric = MetricsRegistry.getDefault().counter(MetricsRegistry.WINDOWS_FAILED);
+
+    /**
+     * The gauge of the number of windows waiting in {@link #windowsQueue}
+     */
+    private static final MetricsRegistry.Gauge windowsQueueDepthMetric = MetricsRegistry.getDefault().gauge(MetricsRegistry.WINDOWS_QUEUE_DEPTH);
+
+    /**
+     * The gauge of the time taken to process a window (in microseconds), whose high-water mark is the longest one
+     */
+    private static final MetricsRegistry.Gauge processingTimeMetric = MetricsRegistry.getDefault().gauge(MetricsRegistry.WINDOWS_PROCESSING_TIME);
+
+    /**
+     * The sampler choosing which processing times are logged, in debug builds only
+     */
+    private static final LogSampler processingLogSampler = new LogSampler(PROCESSING_LOG_INTERVAL);
+
+    /**
+     * The time (in nanoseconds) between the handoff and the beginning of the processing of the last window
+     */
+    private static volatile long lastHandoffLatency = 0;
+
+    /**
+     * The longest time (in nanoseconds) between the handoff and the beginning of the processing of a window
+     */
+    private static volatile long maxHandoffLatency = 0;
+
+    /**
+     * The total time (in nanoseconds) between the handoff and the beginning of the processing of the windows
+     */
+    private static volatile long totalHandoffLatency = 0;
+
     /**
      * Creates a new HeartDeepService and initialize its fields
      */
@@ -117,18 +478,148 @@ public class HeartDeepService extends IntentService implements HeartDeepObservab
     }
 
     /**
-     * Public function to launch the processing of sensor readings
-     * It stands as a wrapper for {@link #handleProcessReadingsAction(SensorReadings, SensorReadings)}
-     * @param context The context from which the function is called
-     * @param accReadings Accelerometer readings to be processed
-     * @param gyrReadings Gyroscope readings to be processed
+     * Public function to launch the processing of sensor readings.
+     * The window is handed off (without any copy nor serialization) to the processing thread,
+     * which runs {@link #handleProcessReadingsAction(SensorReadingsWindow)} and then releases it.
+     * Must always be called from the same thread (typically the sensor listener one).
+     *
+     * @param window The window of readings to be processed, one per captured sensor. Its reference is handed over to this service
+     * @return {@code true} if the readings were handed off, {@code false} if they were dropped because too many windows are waiting
      */
-    public static void processReadings(Context context, SensorReadings accReadings, SensorReadings gyrReadings) {
-        Intent intent = new Intent(context, HeartDeepService.class);
-        intent.setAction(ACTION_PROCESS_READINGS);
-        intent.putExtra(SensorReadings.TYPE_ACCELEROMETER_READINGS, accReadings);
-        intent.putExtra(SensorReadings.TYPE_GYROSCOPE_READINGS, gyrReadings);
-        context.startService(intent);
+    public static boolean processReadings(SensorReadingsWindow window) {
+        Thread thread = processingThread;
+        if (thread == null) {
+            thread = startProcessingThread();
+        }
+
+        window.setHandoffTime(System.nanoTime());
+        window.setRecordingNumber(recordingNumber);
+        if (!windowsQueue.offer(window)) {
+            window.release();
+            droppedWindowsCount++;
+            windowsDroppedMetric.increment();
+            return false;
+        }
+        windowsEmittedMetric.increment();
+        windowsQueueDepthMetric.set(windowsQueue.size());
+
+        LockSupport.unpark(thread);
+        return true;
+    }
+
+    /**
+     * Public function to publish a window of orientations to the observers (BUNDLE_TYPE_ORIENTATIONS bundle).
+     * The orientations are handed off to the processing thread, which notifies the observers, so that the calling thread
+     * (typically the sensor listener one) does not wait for them.
+     * Must always be called from the same thread.
+     *
+     * @param orientations The w, x, y and z components of the orientations. Their reference is handed over to this service
+     * @return {@code true} if the orientations were handed off, {@code false} if they were dropped because too many are waiting
+     */
+    public static boolean processOrientations(TimelinedData[] orientations) {
+        Thread thread = processingThread;
+        if (thread == null) {
+            thread = startProcessingThread();
+        }
+
+        if (!orientationsQueue.offer(orientations)) {
+            droppedOrientationsCount++;
+            return false;
+        }
+
+        LockSupport.unpark(thread);
+        return true;
+    }
+
+    /**
+     * Helper function to start the processing thread
+     *
+     * @return The started thread
+     */
+    private static synchronized Thread startProcessingThread() {
+        if (processingThread == null) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    runProcessingLoop();
+                }
+            }, "HeartDeep-Processing");
+            thread.setDaemon(true);
+            thread.start();
+            processingThread = thread;
+        }
+
+        return processingThread;
+    }
+
+    /**
+     * The loop run by the processing thread: processes the handed off windows (and publishes the orientations) as they come,
+     * and sleeps when there is none.
+     * A window whose processing fails is logged, counted and skipped: the thread keeps processing the next ones
+     */
+    private static void runProcessingLoop() {
+        while (true) {
+            TimelinedData[] orientations = orientationsQueue.poll();
+            if (orientations != null) {
+                publishOrientations(orientations);
+            }
+
+            SensorReadingsWindow window = windowsQueue.poll();
+            if (window == null) {
+                if (orientations == null) {
+                    LockSupport.park(windowsQueue);
+                }
+                continue;
+            }
+
+            long handoffLatency = System.nanoTime() - window.getHandoffTime();
+            handedOffWindowsCount++;
+            lastHandoffLatency = handoffLatency;
+            totalHandoffLatency += handoffLatency;
+            if (handoffLatency > maxHandoffLatency) {
+                maxHandoffLatency = handoffLatency;
+            }
+
+            // Measure the total processing time
+            long processingStart = System.nanoTime();
+
+            try {
+                getLastInstance().handleProcessReadingsAction(window);
+                processedWindowsCount++;
+            } catch (RuntimeException e) {
+                failedWindowsCount++;
+                windowsFailedMetric.increment();
+                Log.e("PROCESSING", "Error while processing a window", e);
+            } finally {
+                // The observers which kept the readings have retained the window
+                window.release();
+            }
+
+            long processingEnd = System.nanoTime();
+            long processingTime = (processingEnd - processingStart) / 1000;
+            processingTimeMetric.set(processingTime);
+            if (BuildConfig.DEBUG && processingLogSampler.sample(processingEnd)) {
+                Log.d("PROCESSING-TIME", "processingTime=" + processingTime + "us, max=" + processingTimeMetric.getHighWaterMark()
+                        + "us (" + processingLogSampler.getAndResetSkippedCount() + " windows skipped)");
+            }
+        }
+    }
+
+    /**
+     * Helper function to notify the observers of a window of orientations, on the processing thread.
+     * An observer failing is logged: the thread keeps going
+     *
+     * @param orientations The w, x, y and z components of the orientations
+     */
+    private static void publishOrientations(TimelinedData[] orientations) {
+        Bundle bundle = new Bundle();
+        bundle.putString(BUNDLE_TYPE, BUNDLE_TYPE_ORIENTATIONS);
+        bundle.putSerializable(OUTPUT_ORIENTATIONS, orientations);
+        try {
+            getLastInstance().notifyAllObservers(bundle);
+        } catch (RuntimeException e) {
+            Log.e("PROCESSING", "Error while publishing orientations", e);
+        }
     }
 
     @Override
@@ -140,37 +631,169 @@ public class HeartDeepService extends IntentService implements HeartDeepObservab
 
     @Override
     protected void onHandleIntent(Intent intent) {
-        if (intent != null) {
-            final String action = intent.getAction();
-            if (ACTION_PROCESS_READINGS.equals(action)) {
-                final SensorReadings accReadings = (SensorReadings) intent.getSerializableExtra(SensorReadings.TYPE_ACCELEROMETER_READINGS);
-                final SensorReadings gyrReadings = (SensorReadings) intent.getSerializableExtra(SensorReadings.TYPE_GYROSCOPE_READINGS);
+        // Readings are not delivered through intents: see processReadings()
+    }
+
+    /**
+     * Actual processing of the readings.
+     * Nothing is allocated per window but the output bundle: the stages work on readings and statistics owned by the service,
+     * refilled for every window, once their arrays have grown to the size of the windows
+     * @param window The window of readings to be processed, one per captured sensor
+     */
+    private void handleProcessReadingsAction(SensorReadingsWindow window) {
+        FloatSensorReadings accCaptured = readingsOf(window, SensorReadings.TYPE_ACCELEROMETER_READINGS, noAccReadings);
+        FloatSensorReadings gyrCaptured = readingsOf(window, SensorReadings.TYPE_GYROSCOPE_READINGS, noGyrReadings);
 
-                // Measure the total processing time
-                long processingTime = System.currentTimeMillis();
+        // Create the output bundle (the temporal readings are published as captured, in single precision)
+        Bundle bundle = new Bundle();
+        bundle.putString(BUNDLE_TYPE, BUNDLE_TYPE_COMPLETE_RESULT);
+        bundle.putSerializable(OUTPUT_WINDOW, window);
+        bundle.putSerializable(OUTPUT_READINGS_TEMPORAL, window.getReadings());
+        bundle.putSerializable(OUTPUT_ACC_READINGS_TEMPORAL, accCaptured);
+        bundle.putSerializable(OUTPUT_GYR_READINGS_TEMPORAL, gyrCaptured);
+
+        // The processing stages work in double precision, on readings reused for every window
+        accCaptured.widenTo(accReadings);
+        gyrCaptured.widenTo(gyrReadings);
+
+        // Statistics of the window, and of the recording so far
+        updateStatistics(window, bundle);
+
+        // Spectra, along each axis
+        analyze(accReadings, accSpectrum);
+        analyze(gyrReadings, gyrSpectrum);
+        bundle.putSerializable(OUTPUT_ACC_READINGS_FREQUENTIAL, accSpectrum);
+        bundle.putSerializable(OUTPUT_GYR_READINGS_FREQUENTIAL, gyrSpectrum);
+
+        // Physiological bands, filtered into the readings reused for every window (the readings are also analyzed as they are)
+        updateFilterBanks(window.getResamplingPeriod());
+        accFilterBank.filter(accReadings, FilterBank.BAND_CARDIAC, accCardiacReadings);
+        gyrFilterBank.filter(gyrReadings, FilterBank.BAND_CARDIAC, gyrCardiacReadings);
+        accFilterBank.filter(accReadings, FilterBank.BAND_RESPIRATION, accRespirationReadings);
+        gyrFilterBank.filter(gyrReadings, FilterBank.BAND_RESPIRATION, gyrRespirationReadings);
+        bundle.putSerializable(OUTPUT_ACC_READINGS_CARDIAC, accCardiacReadings);
+        bundle.putSerializable(OUTPUT_GYR_READINGS_CARDIAC, gyrCardiacReadings);
+        bundle.putSerializable(OUTPUT_ACC_READINGS_RESPIRATION, accRespirationReadings);
+        bundle.putSerializable(OUTPUT_GYR_READINGS_RESPIRATION, gyrRespirationReadings);
+
+        // Heart rate, from the beats in the cardiac band of the accelerometer
+        heartRateEstimator.push(accCardiacReadings);
+        if (heartRateEstimator.hasEstimate()) {
+            bundle.putDouble(OUTPUT_HEART_RATE, heartRateEstimator.getBpm());
+            bundle.putDouble(OUTPUT_HEART_RATE_CONFIDENCE, heartRateEstimator.getConfidence());
+        }
+
+        // Notify all the registered listeners
+        notifyAllObservers(bundle);
 
-                handleProcessReadingsAction(accReadings, gyrReadings);
+        // Spectrograms, whose frames are published separately, every hop
+        updateSpectrograms();
+        accSpectrogram.push(accReadings);
+        gyrSpectrogram.push(gyrReadings);
+    }
 
-                processingTime = System.currentTimeMillis() - processingTime;
-                Log.d("PROCESSING-TIME", "processingTime=" + processingTime);
+    /**
+     * Helper function to compute the statistics of the readings of a window, merge them into the ones of the recording,
+     * and put both in the output bundle.
+     * The statistics of the recording are started again with the first window of each recording.
+     * Both are updated in place: nothing is allocated but for the first window of a recording
+     *
+     * @param window The window of readings
+     * @param bundle The output bundle
+     */
+    private static void updateStatistics(SensorReadingsWindow window, Bundle bundle) {
+        FloatSensorReadings[] readings = window.getReadings();
+        if (window.getRecordingNumber() != sessionStatisticsRecordingNumber || sessionStatistics.length != readings.length) {
+            sessionStatistics = new SensorStatistics[readings.length];
+            windowStatistics = new SensorStatistics[readings.length];
+            for (int i = 0; i < readings.length; i++) {
+                sessionStatistics[i] = new SensorStatistics(readings[i].getType());
+                windowStatistics[i] = new SensorStatistics(readings[i].getType());
             }
+            sessionStatisticsRecordingNumber = window.getRecordingNumber();
         }
+
+        for (int i = 0; i < readings.length; i++) {
+            windowStatistics[i].reset();
+            windowStatistics[i].add(readings[i]);
+            sessionStatistics[i].merge(windowStatistics[i]);
+        }
+        bundle.putSerializable(OUTPUT_STATISTICS, windowStatistics);
+        bundle.putSerializable(OUTPUT_SESSION_STATISTICS, sessionStatistics);
     }
 
     /**
-     * Actual processing of the readings
-     * @param accReadings Accelerometer readings to be processed
-     * @param gyrReadings Gyroscope readings to be processed
+     * Helper function to get the readings of a given type in a window
+     *
+     * @param window  The window of readings
+     * @param type    The type of the readings: one of SensorReadings.TYPE_*_READINGS
+     * @param missing The (empty) readings to return if the sensor was not captured
+     * @return The readings of this type, or the missing ones if the sensor was not captured
      */
-    private void handleProcessReadingsAction(SensorReadings accReadings, SensorReadings gyrReadings) {
-        // Create the output bundle
-        Bundle bundle = new Bundle();
-        bundle.putString(BUNDLE_TYPE, BUNDLE_TYPE_COMPLETE_RESULT);
-        bundle.putSerializable(OUTPUT_ACC_READINGS_TEMPORAL, accReadings);
-        bundle.putSerializable(OUTPUT_GYR_READINGS_TEMPORAL, gyrReadings);
+    private static FloatSensorReadings readingsOf(SensorReadingsWindow window, String type, FloatSensorReadings missing) {
+        FloatSensorReadings readings = window.getReadings(type);
+        return readings != null ? readings : missing;
+    }
 
-        // Notify all the registered listeners
-        notifyAllObservers(bundle);
+    /**
+     * Helper function to compute the spectrum of readings into reused frequential readings, growing them if needed
+     *
+     * @param readings The temporal readings
+     * @param spectrum The frequential readings receiving the spectrum
+     */
+    private static void analyze(SensorReadings readings, SensorReadings spectrum) {
+        spectrum.ensureCapacity(SpectrumAnalyzer.getSpectrumLength(readings.getN()));
+        spectrumAnalyzer.analyze(readings, spectrum);
+    }
+
+    /**
+     * Helper function to (re)create the filter banks and the heart rate estimator when they do not exist or the sampling rate changed.
+     * Their coefficients are only designed then, not for every window.
+     * The sampling rate is the one of the capture which produced the window, not the pending setting of the next capture
+     *
+     * @param resamplingPeriod The resampling period (in nanoseconds) of the window being processed, or 0 if it was not resampled
+     */
+    private static void updateFilterBanks(long resamplingPeriod) {
+        double samplingRate = resamplingPeriod > 0 ? 1e9 / resamplingPeriod : NOMINAL_SAMPLING_RATE;
+        if (accFilterBank == null || accFilterBank.getSamplingRate() != samplingRate) {
+            accFilterBank = new FilterBank(samplingRate, FILTERS_MAX_GAP);
+            gyrFilterBank = new FilterBank(samplingRate, FILTERS_MAX_GAP);
+            heartRateEstimator = new HeartRateEstimator(samplingRate, FILTERS_MAX_GAP);
+        }
+    }
+
+    /**
+     * Helper function to (re)create the STFTs when they do not exist or their parameters changed
+     */
+    private static void updateSpectrograms() {
+        int[] parameters = spectrogramParameters;
+        int windowLength = parameters[0];
+        int hopSize = parameters[1];
+        int windowFunction = parameters[2];
+        if (accSpectrogram == null || accSpectrogram.getWindowLength() != windowLength
+                || accSpectrogram.getHopSize() != hopSize || accSpectrogram.getWindowFunction() != windowFunction) {
+            accSpectrogram = new StreamingStft(SensorReadings.TYPE_ACCELEROMETER_FREQUENTIAL_READINGS,
+                    windowLength, hopSize, windowFunction, SPECTROGRAM_MAX_GAP, spectrogramListener);
+            gyrSpectrogram = new StreamingStft(SensorReadings.TYPE_GYROSCOPE_FREQUENTIAL_READINGS,
+                    windowLength, hopSize, windowFunction, SPECTROGRAM_MAX_GAP, spectrogramListener);
+        }
+    }
+
+    /**
+     * Sets the parameters of the spectrograms of the accelerometer and gyroscope readings.
+     * They apply from the next processed window, and restart the spectrograms.
+     *
+     * @param windowLength   The number of readings of a frame (at least 2)
+     * @param hopSize        The number of readings between two frames (between 1 and windowLength)
+     * @param windowFunction The window function tapering the frames: one of the WindowFunction.TYPE_* constants
+     */
+    public static void setSpectrogramParameters(int windowLength, int hopSize, int windowFunction) {
+        // Fail now rather than on the processing thread
+        if (windowLength < 2 || hopSize < 1 || hopSize > windowLength || !WindowFunction.isKnown(windowFunction)) {
+            throw new IllegalArgumentException("Invalid spectrogram parameters: " + windowLength + ", " + hopSize + ", " + windowFunction);
+        }
+
+        spectrogramParameters = new int[]{windowLength, hopSize, windowFunction};
     }
 
 
@@ -228,4 +851,85 @@ public class HeartDeepService extends IntentService implements HeartDeepObservab
     public static String getSessionId(){
         return sessionId;
     }
+
+    /**
+     * Starts a new recording: the statistics of the recording start again with its first window.
+     * Must be called from the thread calling {@link #processReadings(SensorReadingsWindow)}, before the first window of the recording
+     */
+    public static void startRecording(){
+        recordingNumber++;
+    }
+
+    /**
+     * Gets the number of windows waiting to be processed
+     * @return The current depth of the windows queue
+     */
+    public static int getWindowsQueueDepth(){
+        return windowsQueue.size();
+    }
+
+    /**
+     * Gets the number of windows dropped because too many windows were waiting to be processed
+     * @return The number of dropped windows
+     */
+    public static long getDroppedWindowsCount(){
+        return droppedWindowsCount;
+    }
+
+    /**
+     * Gets the number of windows of orientations dropped because too many were waiting to be published
+     * @return The number of dropped windows of orientations
+     */
+    public static long getDroppedOrientationsCount(){
+        return droppedOrientationsCount;
+    }
+
+    /**
+     * Gets the number of windows taken by the processing thread so far (processed or failed)
+     * @return The number of handed off windows
+     */
+    public static long getHandedOffWindowsCount(){
+        return handedOffWindowsCount;
+    }
+
+    /**
+     * Gets the number of windows processed so far
+     * @return The number of processed windows
+     */
+    public static long getProcessedWindowsCount(){
+        return processedWindowsCount;
+    }
+
+    /**
+     * Gets the number of windows whose processing failed (an exception thrown by the processing or by an observer)
+     * @return The number of failed windows
+     */
+    public static long getFailedWindowsCount(){
+        return failedWindowsCount;
+    }
+
+    /**
+     * Gets the time between the handoff and the beginning of the processing of the last window
+     * @return The latency in nanoseconds
+     */
+    public static long getLastHandoffLatencyNanos(){
+        return lastHandoffLatency;
+    }
+
+    /**
+     * Gets the longest time between the handoff and the beginning of the processing of a window
+     * @return The latency in nanoseconds
+     */
+    public static long getMaxHandoffLatencyNanos(){
+        return maxHandoffLatency;
+    }
+
+    /**
+     * Gets the average time between the handoff and the beginning of the processing of the windows
+     * @return The latency in nanoseconds, or 0 if no window was handed off
+     */
+    public static long getAverageHandoffLatencyNanos(){
+        long count = handedOffWindowsCount;
+        return count == 0 ? 0 : totalHandoffLatency / count;
+    }
 }
@@ -25,7 +25,8 @@ import androidx.appcompat.app.AppCompatActivity;
 import fr.irit.rmess.heartdeep.R;
 import fr.irit.rmess.heartdeep.datatype.HeartDeepObservable;
 import fr.irit.rmess.heartdeep.datatype.HeartDeepObserver;
-import fr.irit.rmess.heartdeep.datatype.SensorReadings;
+import fr.irit.rmess.heartdeep.datatype.SensorReadingsAccessor;
+import fr.irit.rmess.heartdeep.datatype.SensorReadingsWindow;
 
 public class RecordingActivity extends AppCompatActivity implements HeartDeepObserver<Bundle> {
 
@@ -194,7 +195,7 @@ public class RecordingActivity extends AppCompatActivity implements HeartDeepObs
      *
      * @param sensorReadings
      */
-    public void plot(SensorReadings sensorReadings) {
+    public void plot(SensorReadingsAccessor sensorReadings) {
         if (sensorReadings == null) {
             return;
         }
@@ -206,28 +207,24 @@ public class RecordingActivity extends AppCompatActivity implements HeartDeepObs
             return;
         }
 
-        double[] timestamps = sensorReadings.getTimestamps();
-        double[] x = sensorReadings.getX();
-        double[] y = sensorReadings.getY();
-        double[] z = sensorReadings.getZ();
         double timestamp;
 
         if(firstTimestamp <= 0){
-            firstTimestamp = timestamps[0];
+            firstTimestamp = sensorReadings.getTimestamp(0);
         }
 
         for (int i = 0; i < n-1; i++) {
-            timestamp = toTimeAxisValue(timestamps[i]);
-            xSeries.appendData(new DataPoint(timestamp, x[i]), false, N_PERIODS_TO_PLOT * n);
-            ySeries.appendData(new DataPoint(timestamp, y[i]), false, N_PERIODS_TO_PLOT * n);
-            zSeries.appendData(new DataPoint(timestamp, z[i]), false, N_PERIODS_TO_PLOT * n);
+            timestamp = toTimeAxisValue(sensorReadings.getTimestamp(i));
+            xSeries.appendData(new DataPoint(timestamp, sensorReadings.getX(i)), false, N_PERIODS_TO_PLOT * n);
+            ySeries.appendData(new DataPoint(timestamp, sensorReadings.getY(i)), false, N_PERIODS_TO_PLOT * n);
+            zSeries.appendData(new DataPoint(timestamp, sensorReadings.getZ(i)), false, N_PERIODS_TO_PLOT * n);
         }
 
         // Add the last values and update the view (scroll to end)
-        timestamp = toTimeAxisValue(timestamps[n-1]);
-        xSeries.appendData(new DataPoint(timestamp, x[n-1]), true, N_PERIODS_TO_PLOT * n, true);
-        ySeries.appendData(new DataPoint(timestamp, y[n-1]), true, N_PERIODS_TO_PLOT * n, true);
-        zSeries.appendData(new DataPoint(timestamp, z[n-1]), true, N_PERIODS_TO_PLOT * n, false);
+        timestamp = toTimeAxisValue(sensorReadings.getTimestamp(n-1));
+        xSeries.appendData(new DataPoint(timestamp, sensorReadings.getX(n-1)), true, N_PERIODS_TO_PLOT * n, true);
+        ySeries.appendData(new DataPoint(timestamp, sensorReadings.getY(n-1)), true, N_PERIODS_TO_PLOT * n, true);
+        zSeries.appendData(new DataPoint(timestamp, sensorReadings.getZ(n-1)), true, N_PERIODS_TO_PLOT * n, false);
 
         // Update the viewport x axis
         graphView.getViewport().setXAxisBoundsManual(true);
@@ -259,10 +256,22 @@ public class RecordingActivity extends AppCompatActivity implements HeartDeepObs
             return;
         }
 
+        // The readings to plot are the ones of a pooled window: keep it until they are plotted
+        final SensorReadingsWindow window = (SensorReadingsWindow) bundle.getSerializable(HeartDeepService.OUTPUT_WINDOW);
+        if (window != null) {
+            window.retain();
+        }
+
         runOnUiThread(new Runnable() {
             @Override
             public void run() {
-                internalUpdate(eventSource, bundle);
+                try {
+                    internalUpdate(eventSource, bundle);
+                } finally {
+                    if (window != null) {
+                        window.release();
+                    }
+                }
             }
         });
     }
@@ -282,15 +291,15 @@ public class RecordingActivity extends AppCompatActivity implements HeartDeepObs
         }
 
         if (bundleType.equals(HeartDeepService.BUNDLE_TYPE_COMPLETE_RESULT)) {
-            SensorReadings sensorReadingsToBePlotted = null;
+            SensorReadingsAccessor sensorReadingsToBePlotted = null;
 
             switch (readingsType) {
                 case READINGS_TYPE_ACC: {
-                    sensorReadingsToBePlotted = (SensorReadings) bundle.getSerializable(HeartDeepService.OUTPUT_ACC_READINGS_TEMPORAL);
+                    sensorReadingsToBePlotted = (SensorReadingsAccessor) bundle.getSerializable(HeartDeepService.OUTPUT_ACC_READINGS_TEMPORAL);
                     break;
                 }
                 case READINGS_TYPE_GYR: {
-                    sensorReadingsToBePlotted = (SensorReadings) bundle.getSerializable(HeartDeepService.OUTPUT_GYR_READINGS_TEMPORAL);
+                    sensorReadingsToBePlotted = (SensorReadingsAccessor) bundle.getSerializable(HeartDeepService.OUTPUT_GYR_READINGS_TEMPORAL);
                     break;
                 }
             }
@@ -0,0 +1,240 @@
+/***********************************************************************
+ Name............ : OrientationTracker.java
+ Description..... : The tracking of the orientation of the device from the joined frames, in windows of TimelinedData
+ Author.......... : Kevin Jiokeng for IRIT, RMESS Team
+ Creation Date... : 18/10/2026
+ ************************************************************************/
+
+package fr.irit.rmess.heartdeep.capture;
+
+import java.util.Arrays;
+
+import fr.irit.rmess.heartdeep.datatype.TimelinedData;
+import fr.irit.rmess.heartdeep.processing.OrientationFilter;
+
+/**
+ * The tracking of the orientation of the device, fusing the raw accelerometer, gyroscope and magnetometer readings of the
+ * frames of a {@link SensorFrameJoiner} with an {@link OrientationFilter}.
+ * It replaces the orientation sensors derived by Android (orientation, rotation vector and gravity), which do not need to be registered.
+ *
+ * Every frame with a new gyroscope reading updates the filter, the frames being time-aligned readings of all the sensors.
+ * The joiner keeps the nearest reading of each sensor, so a gyroscope slower than the reference sensor (or jittering against it) has
+ * the same reading joined into consecutive frames: these frames are skipped, the reading having already been fused.
+ * The filter is initialized from the accelerometer and magnetometer readings of the first frame, and again after each gap
+ * (or if the gyroscope timestamps step backward).
+ * The orientations (unit quaternions from the device frame to the earth frame, see {@link OrientationFilter}) are gathered into windows
+ * of {@link TimelinedData#TYPE_TIMELINED_ORIENTATIONS} data: one TimelinedData per component (w, x, y and z), sharing their timestamps.
+ *
+ * Updating the filter allocates nothing; only the windows handed to the listener are allocated, so that they can be handed to other threads.
+ * Frames must be delivered by a single thread, on which the listener is called.
+ */
+public class OrientationTracker implements SensorFrameJoiner.Listener {
+
+    /**
+     * A custom interface to define the behavior of a class receiving the windows of orientations
+     */
+    public interface Listener {
+        /**
+         * Called for each window of orientations
+         *
+         * @param orientations The w, x, y and z components of the orientations of the window, in this order. New instances
+         */
+        void onOrientations(TimelinedData[] orientations);
+    }
+
+    /**
+     * The initial capacity of the buffers of the current window
+     */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * The type of the accelerometer sensor in the frames (the raw one, measuring the gravity)
+     */
+    private final int accelerometerType;
+
+    /**
+     * The type of the gyroscope sensor in the frames
+     */
+    private final int gyroscopeType;
+
+    /**
+     * The type of the magnetometer sensor in the frames
+     */
+    private final int magnetometerType;
+
+    /**
+     * The length (in nanoseconds) of a window of orientations
+     */
+    private final long windowLength;
+
+    /**
+     * The maximum time (in nanoseconds) between two consecutive gyroscope readings, above which the filter is initialized again
+     */
+    private final long maxGap;
+
+    /**
+     * The object receiving the windows of orientations
+     */
+    private final Listener listener;
+
+    /**
+     * The orientation filter
+     */
+    private final OrientationFilter filter;
+
+    /**
+     * The timestamp of the last gyroscope reading fused, or {@code -1} if none was since the last gap
+     */
+    private long lastTimestamp = -1;
+
+    /**
+     * The timestamp of the first orientation of the current window
+     */
+    private long windowStart = 0;
+
+    /**
+     * The number of orientations of the current window
+     */
+    private int count = 0;
+
+    /**
+     * The w components of the orientations of the current window
+     */
+    private double[] w = new double[INITIAL_CAPACITY];
+
+    /**
+     * The x components of the orientations of the current window
+     */
+    private double[] x = new double[INITIAL_CAPACITY];
+
+    /**
+     * The y components of the orientations of the current window
+     */
+    private double[] y = new double[INITIAL_CAPACITY];
+
+    /**
+     * The z components of the orientations of the current window
+     */
+    private double[] z = new double[INITIAL_CAPACITY];
+
+    /**
+     * The timestamps of the orientations of the current window
+     */
+    private long[] timestamps = new long[INITIAL_CAPACITY];
+
+    /**
+     * Creates a tracker
+     *
+     * @param accelerometerType The type of the accelerometer sensor in the frames (the raw one, measuring the gravity)
+     * @param gyroscopeType     The type of the gyroscope sensor in the frames
+     * @param magnetometerType  The type of the magnetometer sensor in the frames, or -1 to only fuse the accelerometer and gyroscope
+     * @param beta              The gain of the filter, in rad/s (see {@link OrientationFilter#DEFAULT_BETA})
+     * @param windowLength      The length (in nanoseconds) of a window of orientations
+     * @param maxGap            The maximum time (in nanoseconds) between two consecutive gyroscope readings, above which the filter
+     *                          is initialized again
+     * @param listener          The object receiving the windows of orientations
+     */
+    public OrientationTracker(int accelerometerType, int gyroscopeType, int magnetometerType, double beta,
+                              long windowLength, long maxGap, Listener listener) {
+        this.accelerometerType = accelerometerType;
+        this.gyroscopeType = gyroscopeType;
+        this.magnetometerType = magnetometerType;
+        this.windowLength = windowLength;
+        this.maxGap = maxGap;
+        this.listener = listener;
+        this.filter = new OrientationFilter(beta);
+    }
+
+    @Override
+    public void onFrame(SensorFrame frame) {
+        int gyroscope = frame.indexOf(gyroscopeType);
+        if (gyroscope < 0 || !frame.isPresent(gyroscope)) {
+            return;
+        }
+        int accelerometer = frame.indexOf(accelerometerType);
+        boolean hasAccelerometer = accelerometer >= 0 && frame.isPresent(accelerometer);
+        int magnetometer = magnetometerType >= 0 ? frame.indexOf(magnetometerType) : -1;
+        boolean hasMagnetometer = magnetometer >= 0 && frame.isPresent(magnetometer);
+
+        double ax = hasAccelerometer ? frame.getValue(accelerometer, 0) : 0;
+        double ay = hasAccelerometer ? frame.getValue(accelerometer, 1) : 0;
+        double az = hasAccelerometer ? frame.getValue(accelerometer, 2) : 0;
+        double mx = hasMagnetometer ? frame.getValue(magnetometer, 0) : 0;
+        double my = hasMagnetometer ? frame.getValue(magnetometer, 1) : 0;
+        double mz = hasMagnetometer ? frame.getValue(magnetometer, 2) : 0;
+
+        long timestamp = frame.getSensorTimestamp(gyroscope);
+        if (timestamp == lastTimestamp) {
+            // The same gyroscope reading, joined into the previous frame too
+            return;
+        }
+        if (lastTimestamp < 0 || timestamp < lastTimestamp || timestamp - lastTimestamp > maxGap) {
+            // First reading, or after a gap: the orientation is only known again once the gravity is
+            if (!hasAccelerometer) {
+                lastTimestamp = -1;
+                return;
+            }
+            filter.reset();
+            filter.initialize(ax, ay, az, mx, my, mz);
+        } else {
+            filter.update(frame.getValue(gyroscope, 0), frame.getValue(gyroscope, 1), frame.getValue(gyroscope, 2),
+                    ax, ay, az, mx, my, mz, (timestamp - lastTimestamp) * 1e-9);
+        }
+        lastTimestamp = timestamp;
+
+        add(frame.getTimestamp());
+    }
+
+    /**
+     * Adds the current orientation of the filter to the current window, which is emitted first if it is complete
+     *
+     * @param timestamp The timestamp of the orientation
+     */
+    private void add(long timestamp) {
+        if (count > 0 && timestamp - windowStart >= windowLength) {
+            emitWindow();
+        }
+        if (count == 0) {
+            windowStart = timestamp;
+        }
+        if (count == timestamps.length) {
+            int capacity = 2 * count;
+            w = Arrays.copyOf(w, capacity);
+            x = Arrays.copyOf(x, capacity);
+            y = Arrays.copyOf(y, capacity);
+            z = Arrays.copyOf(z, capacity);
+            timestamps = Arrays.copyOf(timestamps, capacity);
+        }
+
+        w[count] = filter.getW();
+        x[count] = filter.getX();
+        y[count] = filter.getY();
+        z[count] = filter.getZ();
+        timestamps[count] = timestamp;
+        count++;
+    }
+
+    /**
+     * Hands the current window to the listener, and starts a new one
+     */
+    private void emitWindow() {
+        long[] windowTimestamps = Arrays.copyOf(timestamps, count);
+        TimelinedData[] orientations = {
+                new TimelinedData(TimelinedData.TYPE_TIMELINED_ORIENTATIONS, count, Arrays.copyOf(w, count), windowTimestamps),
+                new TimelinedData(TimelinedData.TYPE_TIMELINED_ORIENTATIONS, count, Arrays.copyOf(x, count), windowTimestamps),
+                new TimelinedData(TimelinedData.TYPE_TIMELINED_ORIENTATIONS, count, Arrays.copyOf(y, count), windowTimestamps),
+                new TimelinedData(TimelinedData.TYPE_TIMELINED_ORIENTATIONS, count, Arrays.copyOf(z, count), windowTimestamps),
+        };
+        count = 0;
+        listener.onOrientations(orientations);
+    }
+
+    /**
+     * Gets the orientation filter, holding the last orientation
+     *
+     * @return The filter
+     */
+    public OrientationFilter getFilter() {
+        return filter;
+    }
+}
@@ -0,0 +1,524 @@
+/***********************************************************************
+ Name............ : SensorCapture.java
+ Description..... : The device-independent capture of a recording: windowing and recording of sensor events
+ Author.......... : Kevin Jiokeng for IRIT, RMESS Team
+ Creation Date... : 18/10/2026
+ ************************************************************************/
+
+package fr.irit.rmess.heartdeep.capture;
+
+import fr.irit.rmess.heartdeep.datatype.SensorReadingsRingBuffer;
+import fr.irit.rmess.heartdeep.datatype.SensorReadingsWindow;
+import fr.irit.rmess.heartdeep.datatype.SensorReadingsWindowPool;
+import fr.irit.rmess.heartdeep.helpers.MetricsRegistry;
+import fr.irit.rmess.heartdeep.helpers.SensorRecordSink;
+import fr.irit.rmess.heartdeep.processing.StreamingResampler;
+
+/**
+ * The device-independent capture of a recording, fed by a {@link SensorEventSource}.
+ *
+ * The captured sensors are the channels of a {@link SensorChannels} registry: each event is dispatched to the state of its channel
+ * (buffer, resampler...) by a single array lookup, and events of unregistered sensors are ignored.
+ * A recording starts with the first event received after a beginning delay, and lasts a fixed time.
+ * Meanwhile, every event is written to a {@link SensorRecordSink} (the channel id being the sensor id of the recording dictionary),
+ * and the readings of every channel are cut into fixed-length windows, handed to a {@link Listener}.
+ *
+ * Everything is driven by the event timestamps, never by the arrival time, so that batched delivery is supported:
+ * when the sensor hub delivers a batch of accelerometer events and then a batch of gyroscope events covering the same period,
+ * a window is only emitted once all the paced channels have delivered events past its end (or once one of them lags
+ * more than a maximum skew behind the others, for instance because it stopped).
+ * Windows thus always hold the readings of all the paced channels over the same period; the other channels (slow or on-change
+ * sensors, which would delay windows) just contribute the readings they delivered before the end of the window.
+ * Windows are acquired from a {@link SensorReadingsWindowPool} and filled in place: once they are steadily released by their
+ * holders, emitting a window allocates nothing.
+ *
+ * The readings of the paced channels can be resampled (see {@link #setResampling(long, int, long)}) on a uniform grid starting at
+ * the beginning of the recording, shared by all of them: windows then hold evenly spaced readings, at the same timestamps for all
+ * the paced channels. Recorded events are never resampled.
+ *
+ * Events must be delivered by a single thread, on which the listener is called.
+ */
+public class SensorCapture implements SensorEventSink {
+
+    /**
+     * A custom interface to define the behavior of a class following a capture
+     */
+    public interface Listener {
+        /**
+         * Called when the recording starts (after the beginning delay)
+         *
+         * @param timestamp The timestamp of the beginning of the recording
+         */
+        void onRecordingStarted(long timestamp);
+
+        /**
+         * Called for each window of readings
+         *
+         * @param window The window, whose readings are indexed by channel id (empty readings for the channels without any),
+         *               with the precision of the sensors. The listener owns its only reference: it must release it once done
+         *               (or hand it to a holder which will)
+         */
+        void onWindow(SensorReadingsWindow window);
+
+        /**
+         * Called when the readings of a resampled sensor have a gap: no readings are interpolated in between
+         *
+         * @param sensorType    The type of the sensor
+         * @param lastTimestamp The timestamp of the reading before the gap
+         * @param nextTimestamp The timestamp of the reading after the gap
+         */
+        void onReadingsGap(int sensorType, long lastTimestamp, long nextTimestamp);
+
+        /**
+         * Called when windows are detected as leaked: garbage collected without having been released by their holders.
+         * Only called when leak detection is enabled (see {@link #setLeakDetection(boolean)})
+         *
+         * @param count The number of windows leaked since the last call
+         */
+        void onWindowsLeaked(int count);
+
+        /**
+         * Called once, when the recording is complete (after its last window). No event is handled afterwards
+         *
+         * @param timestamp The timestamp of the end of the recording
+         */
+        void onRecordingCompleted(long timestamp);
+    }
+
+    /**
+     * The maximum number of released windows kept to be filled again
+     */
+    private static final int MAX_POOLED_WINDOWS = 32;
+
+    /**
+     * The state of a capture waiting for the beginning delay to be elapsed
+     */
+    private static final int STATE_WAITING = 0;
+
+    /**
+     * The state of a capture recording events
+     */
+    private static final int STATE_RECORDING = 1;
+
+    /**
+     * The state of a completed capture
+     */
+    private static final int STATE_COMPLETED = 2;
+
+    /**
+     * The captured sensors
+     */
+    private final SensorChannels channels;
+
+    /**
+     * The number of channels
+     */
+    private final int channelsCount;
+
+    /**
+     * Whether each channel paces the windows
+     */
+    private final boolean[] paced;
+
+    /**
+     * Whether there is at least one paced channel
+     */
+    private final boolean hasPacedChannel;
+
+    /**
+     * The amount of time (in nanoseconds) to wait before recording
+     */
+    private final long beginningDelay;
+
+    /**
+     * The length in time (in nanoseconds) of a window
+     */
+    private final long sampleLength;
+
+    /**
+     * The amount of time (in nanoseconds) a recording lasts
+     */
+    private final long recordingTimeLength;
+
+    /**
+     * The maximum time (in nanoseconds) a paced channel may lag behind the others before windows are emitted without waiting for it
+     */
+    private final long maxSkew;
+
+    /**
+     * The object following this capture
+     */
+    private final Listener listener;
+
+    /**
+     * The readings of each channel not yet handed in a window
+     */
+    private final SensorReadingsRingBuffer[] readingsBuffers;
+
+    /**
+     * The windows the readings are handed in
+     */
+    private final SensorReadingsWindowPool windowPool;
+
+    /**
+     * The number of leaked windows already reported to the listener
+     */
+    private int reportedLeaksCount = 0;
+
+    /**
+     * The gauge of the number of readings of each channel buffered when a window is emitted
+     */
+    private final MetricsRegistry.Gauge[] bufferFills;
+
+    /**
+     * The sink recorded events are written to, or {@code null} if events are not recorded
+     */
+    private SensorRecordSink recordSink = null;
+
+    /**
+     * The time (in nanoseconds) between two resampled readings, or 0 if readings are not resampled
+     */
+    private long resamplingPeriod = 0;
+
+    /**
+     * The interpolation of the resampled readings: one of the StreamingResampler.INTERPOLATION_* constants
+     */
+    private int resamplingInterpolation = StreamingResampler.INTERPOLATION_LINEAR;
+
+    /**
+     * The maximum time (in nanoseconds) between two consecutive readings, above which they are not interpolated
+     */
+    private long resamplingMaxGap = 0;
+
+    /**
+     * The resampler of each channel, {@code null} if its readings are not resampled (or the recording has not started)
+     */
+    private final StreamingResampler[] resamplers;
+
+    /**
+     * The current state: one of the STATE_* constants
+     */
+    private int state = STATE_WAITING;
+
+    /**
+     * The timestamp of the first event received
+     */
+    private long firstTimestamp = -1;
+
+    /**
+     * The timestamp of the beginning of the recording
+     */
+    private long recordingBeginningTimestamp = -1;
+
+    /**
+     * The timestamp (excluded) of the end of the recording
+     */
+    private long recordingEndTimestamp = -1;
+
+    /**
+     * The timestamp of the beginning of the next window
+     */
+    private long windowBeginningTimestamp = -1;
+
+    /**
+     * The timestamp of the last event (or resampled reading) of each paced channel, {@code Long.MIN_VALUE} if none was received
+     */
+    private final long[] lastTimestamps;
+
+    /**
+     * Creates a capture
+     *
+     * @param channels            The captured sensors. They must not be registered to afterwards
+     * @param beginningDelay      The amount of time (in nanoseconds) to wait before recording
+     * @param sampleLength        The length in time (in nanoseconds) of a window
+     * @param recordingTimeLength The amount of time (in nanoseconds) a recording lasts
+     * @param maxSkew             The maximum time (in nanoseconds) a paced channel may lag behind the others, typically a few times
+     *                            the maximum report latency of batched sensors
+     * @param bufferCapacity      The number of readings of each channel which can be buffered while waiting for the others
+     * @param listener            The object following this capture
+     */
+    public SensorCapture(SensorChannels channels, long beginningDelay, long sampleLength, long recordingTimeLength,
+                         long maxSkew, int bufferCapacity, Listener listener) {
+        if (sampleLength <= 0) {
+            throw new IllegalArgumentException("Sample length must be positive: " + sampleLength);
+        }
+
+        this.channels = channels;
+        this.channelsCount = channels.getCount();
+        this.beginningDelay = beginningDelay;
+        this.sampleLength = sampleLength;
+        this.recordingTimeLength = recordingTimeLength;
+        this.maxSkew = maxSkew;
+        this.listener = listener;
+
+        this.paced = new boolean[channelsCount];
+        this.readingsBuffers = new SensorReadingsRingBuffer[channelsCount];
+        this.bufferFills = new MetricsRegistry.Gauge[channelsCount];
+        this.resamplers = new StreamingResampler[channelsCount];
+        this.lastTimestamps = new long[channelsCount];
+        String[] readingsTypes = new String[channelsCount];
+        boolean anyPaced = false;
+        for (int channel = 0; channel < channelsCount; channel++) {
+            readingsTypes[channel] = channels.getReadingsType(channel);
+            paced[channel] = channels.isPaced(channel);
+            anyPaced |= paced[channel];
+            readingsBuffers[channel] = new SensorReadingsRingBuffer(bufferCapacity);
+            bufferFills[channel] = MetricsRegistry.getDefault().gauge(MetricsRegistry.BUFFER_FILL_PREFIX + channels.getName(channel));
+            lastTimestamps[channel] = Long.MIN_VALUE;
+        }
+        this.hasPacedChannel = anyPaced;
+        this.windowPool = new SensorReadingsWindowPool(readingsTypes, 0, MAX_POOLED_WINDOWS);
+    }
+
+    /**
+     * Sets the sink recorded events are written to, with the channel ids as sensor ids. Must be called before events are delivered
+     *
+     * @param recordSink The sink to write to, whose dictionary is the names of the channels, or {@code null} not to record events
+     */
+    public void setRecordSink(SensorRecordSink recordSink) {
+        this.recordSink = recordSink;
+    }
+
+    /**
+     * Resamples the readings of the paced channels on a uniform grid. Must be called before events are delivered
+     *
+     * @param period        The time (in nanoseconds) between two resampled readings, or 0 not to resample
+     * @param interpolation The interpolation: one of the StreamingResampler.INTERPOLATION_* constants
+     * @param maxGap        The maximum time (in nanoseconds) between two consecutive readings, above which they are not
+     *                      interpolated and a gap is reported to the listener
+     */
+    public void setResampling(long period, int interpolation, long maxGap) {
+        this.resamplingPeriod = period;
+        this.resamplingInterpolation = interpolation;
+        this.resamplingMaxGap = maxGap;
+    }
+
+    /**
+     * Enables or disables the detection of the windows their holders did not release (in debug builds, as it allocates
+     * for each window), reported to the listener
+     *
+     * @param enabled {@code true} to detect leaked windows
+     */
+    public void setLeakDetection(boolean enabled) {
+        windowPool.setLeakDetection(enabled);
+    }
+
+    @Override
+    public void onSensorEvent(int sensorType, long timestamp, float[] values) {
+        int channel = channels.getChannel(sensorType);
+        if (state == STATE_COMPLETED || channel < 0) {
+            return;
+        }
+
+        if (state == STATE_WAITING) {
+            if (firstTimestamp < 0) {
+                firstTimestamp = timestamp;
+            }
+            if (timestamp - firstTimestamp < beginningDelay) {
+                return;
+            }
+
+            state = STATE_RECORDING;
+            recordingBeginningTimestamp = timestamp;
+            recordingEndTimestamp = timestamp + recordingTimeLength;
+            windowBeginningTimestamp = timestamp;
+            if (resamplingPeriod > 0) {
+                for (int i = 0; i < channelsCount; i++) {
+                    if (paced[i]) {
+                        resamplers[i] = new StreamingResampler(timestamp, resamplingPeriod, resamplingInterpolation, resamplingMaxGap,
+                                new ResampledReadingsWriter(channels.getSensorType(i), readingsBuffers[i]));
+                    }
+                }
+            }
+            listener.onRecordingStarted(timestamp);
+        }
+
+        boolean recorded = timestamp >= recordingBeginningTimestamp && timestamp < recordingEndTimestamp;
+        // Sensors with less than 3 values (such as the barometer) only fill the first ones
+        float x = values[0];
+        float y = values.length > 1 ? values[1] : 0;
+        float z = values.length > 2 ? values[2] : 0;
+
+        // Add to the to-be-processed readings. Resamplers are also fed the readings past the end, to interpolate up to it
+        StreamingResampler resampler = resamplers[channel];
+        if (resampler != null) {
+            resampler.push(timestamp, x, y, z);
+        } else if (recorded) {
+            readingsBuffers[channel].write(timestamp, x, y, z);
+        }
+
+        if (recorded && recordSink != null) {
+            recordSink.writeRecord(timestamp, channel, x, y, z);
+        }
+
+        // Only the paced channels make windows progress (unless there is none)
+        long watermark;
+        if (paced[channel]) {
+            lastTimestamps[channel] = resampler != null ? resampler.getNextTimestamp() : timestamp;
+            watermark = watermark();
+        } else if (!hasPacedChannel) {
+            watermark = timestamp;
+        } else {
+            return;
+        }
+
+        emitCompleteWindows(watermark);
+    }
+
+    /**
+     * Gets the time up to which all the paced channels have delivered their readings (or their resampled readings)
+     *
+     * @return The lowest last timestamp of the paced channels, unless one lags more than {@link #maxSkew} behind the newest
+     */
+    private long watermark() {
+        long oldest = Long.MAX_VALUE;
+        long newest = Long.MIN_VALUE;
+        for (int channel = 0; channel < channelsCount; channel++) {
+            if (paced[channel]) {
+                oldest = Math.min(oldest, lastTimestamps[channel]);
+                newest = Math.max(newest, lastTimestamps[channel]);
+            }
+        }
+        return Math.max(oldest, newest - maxSkew);
+    }
+
+    /**
+     * Emits the windows ending before a given time, and completes the recording if it ends before it
+     *
+     * @param watermark The time up to which events have been delivered
+     */
+    private void emitCompleteWindows(long watermark) {
+        while (windowBeginningTimestamp + sampleLength <= recordingEndTimestamp
+                && watermark >= windowBeginningTimestamp + sampleLength) {
+            windowBeginningTimestamp += sampleLength;
+            emitWindow(windowBeginningTimestamp);
+        }
+
+        if (watermark >= recordingEndTimestamp) {
+            // Send the last recorded readings
+            emitWindow(recordingEndTimestamp);
+            state = STATE_COMPLETED;
+            listener.onRecordingCompleted(recordingEndTimestamp);
+        }
+    }
+
+    /**
+     * Hands the buffered readings older than a given timestamp to the listener, if there are any
+     *
+     * @param endTimestamp The timestamp (excluded) of the end of the window
+     */
+    private void emitWindow(long endTimestamp) {
+        boolean empty = true;
+        for (int channel = 0; channel < channelsCount && empty; channel++) {
+            empty = readingsBuffers[channel].countBefore(endTimestamp) == 0;
+        }
+        if (empty) {
+            return;
+        }
+
+        SensorReadingsWindow window = windowPool.acquire();
+        int leakedCount = windowPool.getLeakedCount();
+        if (leakedCount > reportedLeaksCount) {
+            listener.onWindowsLeaked(leakedCount - reportedLeaksCount);
+            reportedLeaksCount = leakedCount;
+        }
+
+        for (int channel = 0; channel < channelsCount; channel++) {
+            bufferFills[channel].set(readingsBuffers[channel].size());
+            readingsBuffers[channel].drainTo(window.getReadings()[channel], endTimestamp);
+        }
+        window.setResamplingPeriod(resamplingPeriod);
+        listener.onWindow(window);
+    }
+
+    /**
+     * Writes the resampled readings of a sensor in its buffer, up to the end of the recording, and reports its gaps
+     */
+    private class ResampledReadingsWriter implements StreamingResampler.Listener {
+
+        /**
+         * The type of the resampled sensor
+         */
+        private final int sensorType;
+
+        /**
+         * The buffer the resampled readings are written to
+         */
+        private final SensorReadingsRingBuffer buffer;
+
+        /**
+         * The counter of gaps in the readings
+         */
+        private final MetricsRegistry.Counter gapsCounter = MetricsRegistry.getDefault().counter(MetricsRegistry.READINGS_GAPS);
+
+        /**
+         * Creates a writer
+         *
+         * @param sensorType The type of the resampled sensor
+         * @param buffer     The buffer the resampled readings are written to
+         */
+        ResampledReadingsWriter(int sensorType, SensorReadingsRingBuffer buffer) {
+            this.sensorType = sensorType;
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void onSample(long timestamp, double x, double y, double z) {
+            if (timestamp < recordingEndTimestamp) {
+                // Readings are buffered with the precision of the sensors
+                buffer.write(timestamp, (float) x, (float) y, (float) z);
+            }
+        }
+
+        @Override
+        public void onGap(long lastTimestamp, long nextTimestamp) {
+            gapsCounter.increment();
+            listener.onReadingsGap(sensorType, lastTimestamp, nextTimestamp);
+        }
+    }
+
+    /**
+     * Indicates whether the recording is complete
+     *
+     * @return {@code true} if the recording is complete, {@code false} otherwise
+     */
+    public boolean isCompleted() {
+        return state == STATE_COMPLETED;
+    }
+
+    /**
+     * Indicates whether the recording has started (after the beginning delay)
+     *
+     * @return {@code true} if the recording has started, {@code false} if waiting for the beginning delay
+     */
+    public boolean isRecording() {
+        return state == STATE_RECORDING;
+    }
+
+    /**
+     * Gets the captured sensors
+     *
+     * @return The channels registry
+     */
+    public SensorChannels getChannels() {
+        return channels;
+    }
+
+    /**
+     * Gets the pool of the windows
+     *
+     * @return The pool the windows are acquired from
+     */
+    public SensorReadingsWindowPool getWindowPool() {
+        return windowPool;
+    }
+
+    /**
+     * Gets the timestamp of the beginning of the recording
+     *
+     * @return The timestamp, or -1 if the recording has not started
+     */
+    public long getRecordingBeginningTimestamp() {
+        return recordingBeginningTimestamp;
+    }
+}
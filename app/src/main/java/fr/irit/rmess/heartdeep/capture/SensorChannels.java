@@ -0,0 +1,170 @@
+/***********************************************************************
+ Name............ : SensorChannels.java
+ Description..... : The registry of the sensors captured, each one given a dense channel id
+ Author.......... : Kevin Jiokeng for IRIT, RMESS Team
+ Creation Date... : 18/10/2026
+ ************************************************************************/
+
+package fr.irit.rmess.heartdeep.capture;
+
+import java.util.Arrays;
+
+/**
+ * The registry of the sensors captured: each registered sensor type is given a channel, identified by a dense id
+ * (0, 1, 2... in registration order), which indexes the per-sensor state of the capture (buffers, resamplers, counters...)
+ * and the readings of the windows. The channel of a sensor type is a single array lookup, so that the dispatch of each event costs nothing.
+ *
+ * Each channel also holds the name of its sensor (the one of the recording dictionary, in which the channel id is the sensor id),
+ * the type of its readings (one of the SensorReadings.TYPE_*_READINGS), and whether windows wait for its readings (see {@link SensorCapture}).
+ *
+ * Channels are registered before the capture starts, and only read afterwards, possibly from other threads.
+ */
+public class SensorChannels {
+
+    /**
+     * The channel of each registered sensor, indexed by sensor type ({@code -1} for unregistered sensors)
+     */
+    private int[] channels = new int[0];
+
+    /**
+     * The type of the sensor of each channel
+     */
+    private int[] sensorTypes = new int[0];
+
+    /**
+     * The name of the sensor of each channel
+     */
+    private String[] names = new String[0];
+
+    /**
+     * The type of the readings of each channel: one of the SensorReadings.TYPE_*_READINGS
+     */
+    private String[] readingsTypes = new String[0];
+
+    /**
+     * Whether windows wait for the readings of each channel
+     */
+    private boolean[] paced = new boolean[0];
+
+    /**
+     * The number of registered channels
+     */
+    private int count = 0;
+
+    /**
+     * Registers a sensor, and gives it the next channel id
+     *
+     * @param sensorType   The type of the sensor (a non-negative integer)
+     * @param name         The name of the sensor
+     * @param readingsType The type of the readings of the sensor: one of the SensorReadings.TYPE_*_READINGS
+     * @param paced        {@code true} if windows wait for the readings of the sensor (and they are resampled, if the capture resamples),
+     *                     {@code false} if windows just take the readings delivered so far
+     * @return The channel id of the sensor
+     */
+    public int register(int sensorType, String name, String readingsType, boolean paced) {
+        if (sensorType < 0) {
+            throw new IllegalArgumentException("Invalid sensor type: " + sensorType);
+        }
+        if (getChannel(sensorType) >= 0) {
+            throw new IllegalArgumentException("Sensor already registered: " + sensorType);
+        }
+
+        if (sensorType >= channels.length) {
+            int length = channels.length;
+            channels = Arrays.copyOf(channels, sensorType + 1);
+            Arrays.fill(channels, length, channels.length, -1);
+        }
+        if (count == sensorTypes.length) {
+            int capacity = Math.max(4, 2 * count);
+            sensorTypes = Arrays.copyOf(sensorTypes, capacity);
+            names = Arrays.copyOf(names, capacity);
+            readingsTypes = Arrays.copyOf(readingsTypes, capacity);
+            this.paced = Arrays.copyOf(this.paced, capacity);
+        }
+
+        int channel = count++;
+        channels[sensorType] = channel;
+        sensorTypes[channel] = sensorType;
+        names[channel] = name;
+        readingsTypes[channel] = readingsType;
+        this.paced[channel] = paced;
+        return channel;
+    }
+
+    /**
+     * Gets the channel of a sensor
+     *
+     * @param sensorType The type of the sensor
+     * @return The channel id, or -1 if the sensor is not registered
+     */
+    public int getChannel(int sensorType) {
+        return sensorType >= 0 && sensorType < channels.length ? channels[sensorType] : -1;
+    }
+
+    /**
+     * Gets the number of registered channels
+     *
+     * @return The number of channels: channel ids range from 0 to this number (excluded)
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the type of the sensor of a channel
+     *
+     * @param channel The channel id
+     * @return The sensor type
+     */
+    public int getSensorType(int channel) {
+        return sensorTypes[channel];
+    }
+
+    /**
+     * Gets the name of the sensor of a channel
+     *
+     * @param channel The channel id
+     * @return The sensor name
+     */
+    public String getName(int channel) {
+        return names[channel];
+    }
+
+    /**
+     * Gets the names of the sensors of all the channels: the recording dictionary
+     *
+     * @return A new array of the names, indexed by channel id
+     */
+    public String[] getNames() {
+        return Arrays.copyOf(names, count);
+    }
+
+    /**
+     * Gets the sensor types of all the channels
+     *
+     * @return A new array of the sensor types, indexed by channel id
+     */
+    public int[] getSensorTypes() {
+        return Arrays.copyOf(sensorTypes, count);
+    }
+
+    /**
+     * Gets the type of the readings of a channel
+     *
+     * @param channel The channel id
+     * @return The readings type: one of the SensorReadings.TYPE_*_READINGS
+     */
+    public String getReadingsType(int channel) {
+        return readingsTypes[channel];
+    }
+
+    /**
+     * Tells whether windows wait for the readings of a channel
+     *
+     * @param channel The channel id
+     * @return {@code true} if the channel paces the windows
+     */
+    public boolean isPaced(int channel) {
+        return paced[channel];
+    }
+}
@@ -0,0 +1,24 @@
+/***********************************************************************
+ Name............ : SensorEventSink.java
+ Description..... : A custom interface to define the behavior of a class receiving sensor events from a source
+ Author.......... : Kevin Jiokeng for IRIT, RMESS Team
+ Creation Date... : 18/10/2026
+ ************************************************************************/
+
+package fr.irit.rmess.heartdeep.capture;
+
+/**
+ * A custom interface to define the behavior of a class receiving sensor events from a {@link SensorEventSource}.
+ * Events are delivered by a single thread, in increasing timestamp order for a given sensor.
+ * When events are batched, the events of different sensors are not interleaved by timestamp.
+ */
+public interface SensorEventSink {
+    /**
+     * Called for each sensor event
+     *
+     * @param sensorType The type of the sensor (as given by Sensor.getType())
+     * @param timestamp  The timestamp of the event, in nanoseconds
+     * @param values     The values of the event. The array may be reused by the source after this call returns
+     */
+    void onSensorEvent(int sensorType, long timestamp, float[] values);
+}
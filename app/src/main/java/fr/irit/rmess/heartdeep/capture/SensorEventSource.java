@@ -0,0 +1,28 @@
+/***********************************************************************
+ Name............ : SensorEventSource.java
+ Description..... : A custom interface to define the behavior of a source of sensor events
+ Author.......... : Kevin Jiokeng for IRIT, RMESS Team
+ Creation Date... : 18/10/2026
+ ************************************************************************/
+
+package fr.irit.rmess.heartdeep.capture;
+
+/**
+ * A custom interface to define the behavior of a source of sensor events (typically the sensors of the device),
+ * independently of the platform.
+ *
+ * @see SensorEventSink
+ */
+public interface SensorEventSource {
+    /**
+     * Starts delivering events to the given sink
+     *
+     * @param sink The sink to deliver events to
+     */
+    void start(SensorEventSink sink);
+
+    /**
+     * Stops delivering events. Once this method returns, the sink is not called anymore
+     */
+    void stop();
+}
@@ -0,0 +1,210 @@
+/***********************************************************************
+ Name............ : SensorFrame.java
+ Description..... : A time-aligned frame of the readings of several sensors
+ Author.......... : Kevin Jiokeng for IRIT, RMESS Team
+ Creation Date... : 18/10/2026
+ ************************************************************************/
+
+package fr.irit.rmess.heartdeep.capture;
+
+/**
+ * A time-aligned frame of the readings of several sensors, built by a {@link SensorFrameJoiner}:
+ * one reading of the reference sensor, and the reading of each other sensor nearest to it (if there is one close enough).
+ *
+ * Frames are reused by the joiner: an instance is only valid during the call it is handed in.
+ * Listeners needing it afterwards must copy it (see {@link #copy()}).
+ */
+public class SensorFrame {
+
+    /**
+     * The maximum number of values of a reading (rotation vectors have up to 5)
+     */
+    public static final int MAX_VALUES = 5;
+
+    /**
+     * The types of the joined sensors, the reference sensor first
+     */
+    private final int[] sensorTypes;
+
+    /**
+     * Whether each sensor has a reading in the frame
+     */
+    private final boolean[] present;
+
+    /**
+     * The timestamp of the reading of each sensor (meaningless for absent ones)
+     */
+    private final long[] timestamps;
+
+    /**
+     * The number of values of the reading of each sensor
+     */
+    private final int[] valuesCounts;
+
+    /**
+     * The values of the reading of each sensor: {@link #MAX_VALUES} slots per sensor
+     */
+    private final float[] values;
+
+    /**
+     * Creates an empty frame
+     *
+     * @param sensorTypes The types of the joined sensors, the reference sensor first
+     */
+    public SensorFrame(int[] sensorTypes) {
+        this.sensorTypes = sensorTypes.clone();
+        this.present = new boolean[sensorTypes.length];
+        this.timestamps = new long[sensorTypes.length];
+        this.valuesCounts = new int[sensorTypes.length];
+        this.values = new float[sensorTypes.length * MAX_VALUES];
+    }
+
+    /**
+     * Copy constructor: creates a new frame holding the same readings as the given one
+     *
+     * @param frame The frame to be copied
+     */
+    public SensorFrame(SensorFrame frame) {
+        this.sensorTypes = frame.sensorTypes.clone();
+        this.present = frame.present.clone();
+        this.timestamps = frame.timestamps.clone();
+        this.valuesCounts = frame.valuesCounts.clone();
+        this.values = frame.values.clone();
+    }
+
+    /**
+     * Creates a copy of this frame, which can be kept after the call it was handed in
+     *
+     * @return The copy
+     */
+    public SensorFrame copy() {
+        return new SensorFrame(this);
+    }
+
+    /**
+     * Marks the reading of a sensor as absent
+     *
+     * @param index The index of the sensor in the frame
+     */
+    void clear(int index) {
+        present[index] = false;
+    }
+
+    /**
+     * Sets the reading of a sensor
+     *
+     * @param index       The index of the sensor in the frame
+     * @param timestamp   The timestamp of the reading
+     * @param source      The array holding the values of the reading
+     * @param offset      The index of the first value in the source array
+     * @param valuesCount The number of values
+     */
+    void set(int index, long timestamp, float[] source, int offset, int valuesCount) {
+        present[index] = true;
+        timestamps[index] = timestamp;
+        valuesCounts[index] = valuesCount;
+        System.arraycopy(source, offset, values, index * MAX_VALUES, valuesCount);
+    }
+
+    /**
+     * Gets the timestamp of the frame: the one of the reading of the reference sensor
+     *
+     * @return The timestamp, in nanoseconds
+     */
+    public long getTimestamp() {
+        return timestamps[0];
+    }
+
+    /**
+     * Gets the number of joined sensors
+     *
+     * @return The number of sensors, the reference one included
+     */
+    public int getSensorsCount() {
+        return sensorTypes.length;
+    }
+
+    /**
+     * Gets the type of a joined sensor
+     *
+     * @param index The index of the sensor in the frame (0 for the reference sensor)
+     * @return The sensor type
+     */
+    public int getSensorType(int index) {
+        return sensorTypes[index];
+    }
+
+    /**
+     * Gets the index of a sensor in the frame
+     *
+     * @param sensorType The sensor type
+     * @return The index, or -1 if the sensor is not joined
+     */
+    public int indexOf(int sensorType) {
+        for (int i = 0; i < sensorTypes.length; i++) {
+            if (sensorTypes[i] == sensorType) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Indicates whether a sensor has a reading in the frame
+     *
+     * @param index The index of the sensor in the frame
+     * @return {@code true} if it has a reading close enough to the one of the reference sensor, {@code false} otherwise
+     */
+    public boolean isPresent(int index) {
+        return present[index];
+    }
+
+    /**
+     * Gets the timestamp of the reading of a sensor
+     *
+     * @param index The index of the sensor in the frame
+     * @return The timestamp, in nanoseconds (meaningless if the sensor is not present)
+     */
+    public long getSensorTimestamp(int index) {
+        return timestamps[index];
+    }
+
+    /**
+     * Gets the number of values of the reading of a sensor
+     *
+     * @param index The index of the sensor in the frame
+     * @return The number of values (meaningless if the sensor is not present)
+     */
+    public int getValuesCount(int index) {
+        return valuesCounts[index];
+    }
+
+    /**
+     * Gets a value of the reading of a sensor
+     *
+     * @param index      The index of the sensor in the frame
+     * @param valueIndex The index of the value (0 for x, 1 for y, ...)
+     * @return The value (meaningless if the sensor is not present)
+     */
+    public float getValue(int index, int valueIndex) {
+        return values[index * MAX_VALUES + valueIndex];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("SensorFrame{timestamp=").append(getTimestamp());
+        for (int i = 0; i < sensorTypes.length; i++) {
+            builder.append(", ").append(sensorTypes[i]).append('=');
+            if (!present[i]) {
+                builder.append("absent");
+                continue;
+            }
+            builder.append('[');
+            for (int j = 0; j < valuesCounts[i]; j++) {
+                builder.append(j > 0 ? ", " : "").append(values[i * MAX_VALUES + j]);
+            }
+            builder.append("]@").append(timestamps[i]);
+        }
+        return builder.append('}').toString();
+    }
+}
@@ -0,0 +1,306 @@
+/***********************************************************************
+ Name............ : SensorFrameJoiner.java
+ Description..... : A streaming merge-join of sensor events into time-aligned multi-sensor frames
+ Author.......... : Kevin Jiokeng for IRIT, RMESS Team
+ Creation Date... : 18/10/2026
+ ************************************************************************/
+
+package fr.irit.rmess.heartdeep.capture;
+
+/**
+ * A streaming merge-join of the events of several sensors into time-aligned multi-sensor frames.
+ *
+ * One sensor is the reference: each of its readings makes a {@link SensorFrame}, joined with the reading of every other sensor
+ * nearest to it in time, if it is within a tolerance (the sensor is absent from the frame otherwise).
+ *
+ * Like {@link SensorCapture}, everything is driven by event timestamps, so that batched delivery is supported:
+ * a frame is only emitted once every other sensor has delivered an event past its timestamp plus the tolerance
+ * (when no closer reading can come anymore), or once the frame lags more than a maximum skew behind the newest event
+ * (for instance because a sensor stopped, or runs much slower than the tolerance).
+ *
+ * Each sensor has a bounded ring buffer of pending readings, in which the readings too old to be joined are discarded as
+ * the reference moves forward: every reading is written once and discarded once, so the work per event is O(1) amortized.
+ * When a buffer is full, its oldest reading is overwritten. The frame handed to the listener is reused: nothing is allocated
+ * once the joiner is created.
+ *
+ * Events must be delivered by a single thread, on which the listener is called.
+ */
+public class SensorFrameJoiner implements SensorEventSink {
+
+    /**
+     * A custom interface to define the behavior of a class receiving joined frames
+     */
+    public interface Listener {
+        /**
+         * Called for each frame, in increasing timestamp order
+         *
+         * @param frame The frame. It is reused afterwards: it must be copied to be kept after the call
+         */
+        void onFrame(SensorFrame frame);
+    }
+
+    /**
+     * The types of the joined sensors, the reference sensor first
+     */
+    private final int[] sensorTypes;
+
+    /**
+     * The index of each joined sensor, indexed by sensor type ({@code -1} for sensors which are not joined)
+     */
+    private final int[] sensorIndices;
+
+    /**
+     * The maximum time (in nanoseconds) between the readings of the reference sensor and of another sensor to be joined
+     */
+    private final long tolerance;
+
+    /**
+     * The maximum time (in nanoseconds) a frame may wait for the readings of other sensors
+     */
+    private final long maxSkew;
+
+    /**
+     * The object receiving the frames
+     */
+    private final Listener listener;
+
+    /**
+     * The capacity of the buffer of each sensor. Always a power of two
+     */
+    private final int capacity;
+
+    /**
+     * The mask used to wrap indexes around the buffers ({@code capacity - 1})
+     */
+    private final int mask;
+
+    /**
+     * The timestamps of the pending readings, per sensor
+     */
+    private final long[][] timestamps;
+
+    /**
+     * The values of the pending readings, per sensor: {@link SensorFrame#MAX_VALUES} slots per reading
+     */
+    private final float[][] values;
+
+    /**
+     * The number of values of the pending readings, per sensor
+     */
+    private final int[][] valuesCounts;
+
+    /**
+     * The index of the oldest pending reading, per sensor
+     */
+    private final int[] heads;
+
+    /**
+     * The number of pending readings, per sensor
+     */
+    private final int[] sizes;
+
+    /**
+     * The timestamp of the last event, per sensor ({@code Long.MIN_VALUE} if none was received)
+     */
+    private final long[] lastTimestamps;
+
+    /**
+     * The frame handed to the listener, reused
+     */
+    private final SensorFrame frame;
+
+    /**
+     * The timestamp of the newest event received
+     */
+    private long newestTimestamp = Long.MIN_VALUE;
+
+    /**
+     * The number of frames emitted
+     */
+    private long framesCount = 0;
+
+    /**
+     * The number of readings lost because their buffer was full
+     */
+    private long overwrittenCount = 0;
+
+    /**
+     * Creates a joiner
+     *
+     * @param sensorTypes    The types of the joined sensors, the reference sensor first
+     * @param tolerance      The maximum time (in nanoseconds) between the readings of the reference sensor and of another sensor
+     *                       to be joined, typically half the period of the slowest sensor
+     * @param maxSkew        The maximum time (in nanoseconds) a frame may wait for the readings of other sensors, typically a few times
+     *                       the maximum report latency of batched sensors
+     * @param bufferCapacity The number of pending readings of each sensor which can be buffered
+     * @param listener       The object receiving the frames
+     */
+    public SensorFrameJoiner(int[] sensorTypes, long tolerance, long maxSkew, int bufferCapacity, Listener listener) {
+        if (sensorTypes.length == 0) {
+            throw new IllegalArgumentException("At least one sensor must be joined");
+        }
+        if (bufferCapacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + bufferCapacity);
+        }
+
+        this.sensorTypes = sensorTypes.clone();
+        this.tolerance = tolerance;
+        this.maxSkew = maxSkew;
+        this.listener = listener;
+
+        int maxSensorType = 0;
+        for (int sensorType : sensorTypes) {
+            maxSensorType = Math.max(maxSensorType, sensorType);
+        }
+        sensorIndices = new int[maxSensorType + 1];
+        for (int i = 0; i < sensorIndices.length; i++) {
+            sensorIndices[i] = -1;
+        }
+        for (int i = 0; i < sensorTypes.length; i++) {
+            sensorIndices[sensorTypes[i]] = i;
+        }
+
+        int c = Integer.highestOneBit(bufferCapacity);
+        if (c < bufferCapacity) {
+            c <<= 1;
+        }
+        capacity = c;
+        mask = c - 1;
+
+        int count = sensorTypes.length;
+        timestamps = new long[count][capacity];
+        values = new float[count][capacity * SensorFrame.MAX_VALUES];
+        valuesCounts = new int[count][capacity];
+        heads = new int[count];
+        sizes = new int[count];
+        lastTimestamps = new long[count];
+        for (int i = 0; i < count; i++) {
+            lastTimestamps[i] = Long.MIN_VALUE;
+        }
+        frame = new SensorFrame(sensorTypes);
+    }
+
+    @Override
+    public void onSensorEvent(int sensorType, long timestamp, float[] eventValues) {
+        int sensorIndex = sensorType >= 0 && sensorType < sensorIndices.length ? sensorIndices[sensorType] : -1;
+        if (sensorIndex < 0 || timestamp <= lastTimestamps[sensorIndex]) {
+            return;
+        }
+
+        // Append to the pending readings of the sensor
+        int index;
+        if (sizes[sensorIndex] == capacity) {
+            index = heads[sensorIndex];
+            heads[sensorIndex] = (index + 1) & mask;
+            overwrittenCount++;
+        } else {
+            index = (heads[sensorIndex] + sizes[sensorIndex]) & mask;
+            sizes[sensorIndex]++;
+        }
+        int valuesCount = Math.min(eventValues.length, SensorFrame.MAX_VALUES);
+        timestamps[sensorIndex][index] = timestamp;
+        valuesCounts[sensorIndex][index] = valuesCount;
+        System.arraycopy(eventValues, 0, values[sensorIndex], index * SensorFrame.MAX_VALUES, valuesCount);
+
+        lastTimestamps[sensorIndex] = timestamp;
+        if (timestamp > newestTimestamp) {
+            newestTimestamp = timestamp;
+        }
+
+        emitReadyFrames();
+    }
+
+    /**
+     * Emits the frames of the pending readings of the reference sensor which cannot be joined better anymore
+     */
+    private void emitReadyFrames() {
+        while (sizes[0] > 0) {
+            int referenceIndex = heads[0];
+            long timestamp = timestamps[0][referenceIndex];
+
+            // Wait for closer readings, unless the frame is late
+            if (newestTimestamp - timestamp <= maxSkew) {
+                for (int i = 1; i < sensorTypes.length; i++) {
+                    if (lastTimestamps[i] < timestamp + tolerance) {
+                        return;
+                    }
+                }
+            }
+
+            frame.set(0, timestamp, values[0], referenceIndex * SensorFrame.MAX_VALUES, valuesCounts[0][referenceIndex]);
+            for (int i = 1; i < sensorTypes.length; i++) {
+                join(i, timestamp);
+            }
+
+            heads[0] = (referenceIndex + 1) & mask;
+            sizes[0]--;
+            framesCount++;
+            listener.onFrame(frame);
+        }
+    }
+
+    /**
+     * Sets in the frame the pending reading of a sensor nearest to a timestamp, if it is within the tolerance.
+     * The readings older than it are discarded: they cannot be nearer to the next (later) readings of the reference sensor
+     *
+     * @param sensorIndex The index of the sensor
+     * @param timestamp   The timestamp of the reading of the reference sensor
+     */
+    private void join(int sensorIndex, long timestamp) {
+        long[] sensorTimestamps = timestamps[sensorIndex];
+        int head = heads[sensorIndex];
+        int size = sizes[sensorIndex];
+
+        // Discard the readings too old for this frame, thus for the next ones
+        while (size > 0 && sensorTimestamps[head] < timestamp - tolerance) {
+            head = (head + 1) & mask;
+            size--;
+        }
+
+        // Move to the nearest reading
+        while (size > 1) {
+            long next = sensorTimestamps[(head + 1) & mask];
+            if (next > timestamp + tolerance || Math.abs(next - timestamp) > Math.abs(sensorTimestamps[head] - timestamp)) {
+                break;
+            }
+            head = (head + 1) & mask;
+            size--;
+        }
+
+        heads[sensorIndex] = head;
+        sizes[sensorIndex] = size;
+
+        if (size > 0 && sensorTimestamps[head] <= timestamp + tolerance) {
+            frame.set(sensorIndex, sensorTimestamps[head], values[sensorIndex], head * SensorFrame.MAX_VALUES, valuesCounts[sensorIndex][head]);
+        } else {
+            frame.clear(sensorIndex);
+        }
+    }
+
+    /**
+     * Gets the types of the joined sensors
+     *
+     * @return A copy of the sensor types, the reference sensor first
+     */
+    public int[] getSensorTypes() {
+        return sensorTypes.clone();
+    }
+
+    /**
+     * Gets the number of frames emitted so far
+     *
+     * @return The number of frames
+     */
+    public long getFramesCount() {
+        return framesCount;
+    }
+
+    /**
+     * Gets the number of readings lost because their buffer was full
+     *
+     * @return The number of overwritten readings
+     */
+    public long getOverwrittenCount() {
+        return overwrittenCount;
+    }
+}
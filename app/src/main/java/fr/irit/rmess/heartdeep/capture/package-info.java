@@ -0,0 +1,14 @@
+/**
+ * Name............ : package-info.java
+ * Description..... : A file used to generate the javadoc of the current package
+ * Author.......... : Kevin Jiokeng for IRIT, RMESS Team
+ * Creation Date... : 18/10/2026
+ */
+
+/**
+ * Provides the device-independent capture of sensor events: event sources, and the windowing and recording of their readings.
+ * Nothing in this package depends on Android, so it can be tested on the JVM.
+ *
+ * @author Kevin Jiokeng
+ */
+package fr.irit.rmess.heartdeep.capture;
@@ -0,0 +1,176 @@
+/***********************************************************************
+ Name............ : BinaryEncoding.java
+ Description..... : Helper functions shared by the compact binary encodings of the data types
+ Author.......... : Kevin Jiokeng for IRIT, RMESS Team
+ Creation Date... : 18/10/2026
+ ************************************************************************/
+
+package fr.irit.rmess.heartdeep.datatype;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Helper functions shared by the compact binary encodings of the data types.
+ * Arrays are written in bulk, as raw big-endian values.
+ */
+final class BinaryEncoding {
+
+    /**
+     * The charset used to encode strings
+     */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private BinaryEncoding() {
+    }
+
+    /**
+     * Gets the encoded size of a string
+     *
+     * @param value The string (may be {@code null})
+     * @return The number of bytes written by {@link #putString(ByteBuffer, String)}
+     */
+    static int stringSize(String value) {
+        return 4 + (value == null ? 0 : value.getBytes(UTF_8).length);
+    }
+
+    /**
+     * Encodes a string: its length in bytes ({@code -1} for {@code null}) followed by its UTF-8 bytes
+     *
+     * @param buffer The buffer to write to
+     * @param value  The string to write (may be {@code null})
+     */
+    static void putString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            buffer.putInt(-1);
+            return;
+        }
+
+        byte[] bytes = value.getBytes(UTF_8);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    /**
+     * Decodes a string written by {@link #putString(ByteBuffer, String)}
+     *
+     * @param buffer The buffer to read from
+     * @return The decoded string (may be {@code null})
+     */
+    static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * Writes the {@code n} first values of an array in bulk
+     *
+     * @param buffer The buffer to write to
+     * @param values The array to write
+     * @param n      The number of values to write
+     */
+    static void putDoubles(ByteBuffer buffer, double[] values, int n) {
+        buffer.asDoubleBuffer().put(values, 0, n);
+        buffer.position(buffer.position() + 8 * n);
+    }
+
+    /**
+     * Reads {@code n} values written by {@link #putDoubles(ByteBuffer, double[], int)}
+     *
+     * @param buffer The buffer to read from
+     * @param n      The number of values to read
+     * @return A new n-long array holding the values
+     */
+    static double[] getDoubles(ByteBuffer buffer, int n) {
+        double[] values = new double[n];
+        buffer.asDoubleBuffer().get(values);
+        buffer.position(buffer.position() + 8 * n);
+        return values;
+    }
+
+    /**
+     * Writes the {@code n} first values of an array in bulk
+     *
+     * @param buffer The buffer to write to
+     * @param values The array to write
+     * @param n      The number of values to write
+     */
+    static void putFloats(ByteBuffer buffer, float[] values, int n) {
+        buffer.asFloatBuffer().put(values, 0, n);
+        buffer.position(buffer.position() + 4 * n);
+    }
+
+    /**
+     * Reads {@code n} values written by {@link #putFloats(ByteBuffer, float[], int)}
+     *
+     * @param buffer The buffer to read from
+     * @param n      The number of values to read
+     * @return A new n-long array holding the values
+     */
+    static float[] getFloats(ByteBuffer buffer, int n) {
+        float[] values = new float[n];
+        buffer.asFloatBuffer().get(values);
+        buffer.position(buffer.position() + 4 * n);
+        return values;
+    }
+
+    /**
+     * Writes the {@code n} first values of an array in bulk
+     *
+     * @param buffer The buffer to write to
+     * @param values The array to write
+     * @param n      The number of values to write
+     */
+    static void putLongs(ByteBuffer buffer, long[] values, int n) {
+        buffer.asLongBuffer().put(values, 0, n);
+        buffer.position(buffer.position() + 8 * n);
+    }
+
+    /**
+     * Reads {@code n} values written by {@link #putLongs(ByteBuffer, long[], int)}
+     *
+     * @param buffer The buffer to read from
+     * @param n      The number of values to read
+     * @return A new n-long array holding the values
+     */
+    static long[] getLongs(ByteBuffer buffer, int n) {
+        long[] values = new long[n];
+        buffer.asLongBuffer().get(values);
+        buffer.position(buffer.position() + 8 * n);
+        return values;
+    }
+
+    /**
+     * Writes an encoded object to an object output, as its length followed by its bytes
+     *
+     * @param out     The output to write to
+     * @param encoded The buffer holding the encoded object (from position 0 to its current position)
+     * @throws IOException If an I/O error occurs
+     */
+    static void writeEncoded(ObjectOutput out, ByteBuffer encoded) throws IOException {
+        out.writeInt(encoded.position());
+        out.write(encoded.array(), 0, encoded.position());
+    }
+
+    /**
+     * Reads an encoded object written by {@link #writeEncoded(ObjectOutput, ByteBuffer)}
+     *
+     * @param in The input to read from
+     * @return A buffer holding the encoded object, ready to be decoded
+     * @throws IOException If an I/O error occurs
+     */
+    static ByteBuffer readEncoded(ObjectInput in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return ByteBuffer.wrap(bytes);
+    }
+}
@@ -0,0 +1,394 @@
+/***********************************************************************
+ Name............ : FloatSensorReadings.java
+ Description..... : Sensor readings stored in single precision, as delivered by the sensors
+ Author.......... : Kevin Jiokeng for IRIT, RMESS Team
+ Creation Date... : 18/10/2026
+ ************************************************************************/
+
+package fr.irit.rmess.heartdeep.datatype;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Sensor readings stored as they are delivered by the sensors: single-precision values and nanosecond timestamps.
+ * Widening them to double precision ({@link SensorReadings}) gains no precision, but doubles their memory and their serialized size:
+ * readings are thus kept in this form from the capture to the outputs, and only widened by {@link #toSensorReadings()}
+ * for the processing stages needing double precision.
+ *
+ * Like SensorReadings, it is serialized with a compact hand-written binary encoding (see {@link #encode(ByteBuffer)}).
+ */
+public class FloatSensorReadings implements SensorReadingsAccessor, Externalizable {
+
+    /* Fields */
+
+    /**
+     * The type of the readings.
+     * Should be one of the known types: SensorReadings.TYPE_*_READINGS
+     */
+    private String type;
+
+    /**
+     * The length (number) of the readings
+     */
+    private int n;
+
+    /**
+     * The readings along x axis
+     */
+    private float[] x;
+
+    /**
+     * The readings along y axis
+     */
+    private float[] y;
+
+    /**
+     * The readings along z axis
+     */
+    private float[] z;
+
+    /**
+     * The timestamps (in nanoseconds) at which those readings were delivered
+     */
+    private long[] timestamps;
+
+
+    /* Constructors */
+
+    /**
+     * Creates an empty FloatSensorReadings instance, without any type nor readings
+     */
+    public FloatSensorReadings() {
+        this(null, 0);
+    }
+
+    /**
+     * Creates a FloatSensorReadings instance of the specified type and the specified length (number of readings)
+     *
+     * @param type The type of the readings
+     *             Should be one of the known types: SensorReadings.TYPE_*_READINGS
+     * @param n    The length of the readings
+     */
+    public FloatSensorReadings(String type, int n) {
+        this(type, n, new float[n], new float[n], new float[n], new long[n]);
+    }
+
+    /**
+     * Creates a FloatSensorReadings instance with the specified type, length and values (which are not copied)
+     *
+     * @param type       The type of the readings
+     *                   Should be one of the known types: SensorReadings.TYPE_*_READINGS
+     * @param n          The length of the readings. The arrays must hold at least n values
+     * @param x          The readings along x axis
+     * @param y          The readings along y axis
+     * @param z          The readings along z axis
+     * @param timestamps The timestamps (in nanoseconds) at which the readings where delivered
+     */
+    public FloatSensorReadings(String type, int n, float[] x, float[] y, float[] z, long[] timestamps) {
+        this.type = type;
+        this.n = n;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.timestamps = timestamps;
+    }
+
+    /**
+     * Copy constructor: creates a new instance of FloatSensorReadings similar to the given one
+     *
+     * @param sensorReadings The instance to be copied
+     */
+    public FloatSensorReadings(FloatSensorReadings sensorReadings) {
+        this.type = sensorReadings.type;
+        this.n = sensorReadings.n;
+        this.x = sensorReadings.x.clone();
+        this.y = sensorReadings.y.clone();
+        this.z = sensorReadings.z.clone();
+        this.timestamps = sensorReadings.timestamps.clone();
+    }
+
+
+    /* Conversion */
+
+    /**
+     * Widens these readings to double precision, for the processing stages
+     *
+     * @return A new SensorReadings instance holding the n readings (exactly n-long arrays)
+     */
+    public SensorReadings toSensorReadings() {
+        double[] xOut = new double[n];
+        double[] yOut = new double[n];
+        double[] zOut = new double[n];
+        double[] timestampsOut = new double[n];
+        for (int i = 0; i < n; i++) {
+            xOut[i] = x[i];
+            yOut[i] = y[i];
+            zOut[i] = z[i];
+            timestampsOut[i] = timestamps[i];
+        }
+        return new SensorReadings(type, n, xOut, yOut, zOut, timestampsOut);
+    }
+
+    /**
+     * Widens these readings to double precision into existing readings, for the processing stages.
+     * The arrays of the target are reused (and grown if needed), so that widening window after window allocates nothing once warmed up
+     *
+     * @param target The readings receiving the n readings (their type and length are set too)
+     */
+    public void widenTo(SensorReadings target) {
+        target.setType(type);
+        target.ensureCapacity(n);
+        target.setN(n);
+
+        double[] xOut = target.getX();
+        double[] yOut = target.getY();
+        double[] zOut = target.getZ();
+        double[] timestampsOut = target.getTimestamps();
+        for (int i = 0; i < n; i++) {
+            xOut[i] = x[i];
+            yOut[i] = y[i];
+            zOut[i] = z[i];
+            timestampsOut[i] = timestamps[i];
+        }
+    }
+
+
+    /* Getters */
+
+    @Override
+    public String getType() {
+        return type;
+    }
+
+    @Override
+    public int getN() {
+        return n;
+    }
+
+    /**
+     * Sets the number of readings
+     *
+     * @param n The number of readings. The arrays must hold at least n values (see {@link #ensureCapacity(int)})
+     */
+    public void setN(int n) {
+        this.n = n;
+    }
+
+    /**
+     * Makes sure the arrays can hold a given number of readings, growing them if needed (by at least half their length,
+     * so that readings refilled again and again soon stop growing). The n first readings are kept
+     *
+     * @param capacity The number of readings the arrays must be able to hold
+     */
+    public void ensureCapacity(int capacity) {
+        if (x.length >= capacity) {
+            return;
+        }
+
+        int length = Math.max(capacity, x.length + (x.length >> 1));
+        x = Arrays.copyOf(x, length);
+        y = Arrays.copyOf(y, length);
+        z = Arrays.copyOf(z, length);
+        timestamps = Arrays.copyOf(timestamps, length);
+    }
+
+    /**
+     * Gets the readings along x axis
+     *
+     * @return The readings along x axis (only the n first values are relevant)
+     */
+    public float[] getX() {
+        return x;
+    }
+
+    /**
+     * Gets the readings along y axis
+     *
+     * @return The readings along y axis (only the n first values are relevant)
+     */
+    public float[] getY() {
+        return y;
+    }
+
+    /**
+     * Gets the readings along z axis
+     *
+     * @return The readings along z axis (only the n first values are relevant)
+     */
+    public float[] getZ() {
+        return z;
+    }
+
+    /**
+     * Gets the timestamps of the readings
+     *
+     * @return The timestamps (in nanoseconds) of the readings (only the n first values are relevant)
+     */
+    public long[] getTimestamps() {
+        return timestamps;
+    }
+
+    @Override
+    public double getX(int index) {
+        return x[index];
+    }
+
+    @Override
+    public double getY(int index) {
+        return y[index];
+    }
+
+    @Override
+    public double getZ(int index) {
+        return z[index];
+    }
+
+    @Override
+    public double getTimestamp(int index) {
+        return timestamps[index];
+    }
+
+
+    /* Views */
+
+    /**
+     * Gets a read-only view over a range of these readings, without copying them
+     *
+     * @param from The index of the first reading of the range
+     * @param to   The index of the end of the range (excluded)
+     * @return A view sharing these readings
+     * @throws IndexOutOfBoundsException If the range is not within the readings
+     */
+    public SensorReadingsView slice(int from, int to) {
+        return new SensorReadingsView(this, from, to - from);
+    }
+
+    /**
+     * Gets a read-only view over these readings within a time range, without copying them.
+     * The timestamps must be in increasing order
+     *
+     * @param startTimestamp The beginning of the time range
+     * @param endTimestamp   The end of the time range (excluded)
+     * @return A view sharing these readings, possibly empty
+     */
+    public SensorReadingsView sliceByTime(double startTimestamp, double endTimestamp) {
+        return new SensorReadingsView(this).sliceByTime(startTimestamp, endTimestamp);
+    }
+
+
+    /* Compact binary encoding */
+
+    /**
+     * Gets the number of bytes needed to encode this instance with {@link #encode(ByteBuffer)}
+     *
+     * @return The encoded size in bytes: 20 bytes per reading, instead of the 32 bytes of SensorReadings
+     */
+    public int getEncodedSize() {
+        return BinaryEncoding.stringSize(type) + 4 + 20 * n;
+    }
+
+    /**
+     * Encodes this instance at the current position of the given buffer: type, n, then the n first values of each array, in bulk
+     *
+     * @param buffer The buffer to write to. It must have at least {@link #getEncodedSize()} remaining bytes
+     */
+    public void encode(ByteBuffer buffer) {
+        BinaryEncoding.putString(buffer, type);
+        buffer.putInt(n);
+        BinaryEncoding.putFloats(buffer, x, n);
+        BinaryEncoding.putFloats(buffer, y, n);
+        BinaryEncoding.putFloats(buffer, z, n);
+        BinaryEncoding.putLongs(buffer, timestamps, n);
+    }
+
+    /**
+     * Decodes an instance written by {@link #encode(ByteBuffer)} at the current position of the given buffer
+     *
+     * @param buffer The buffer to read from
+     * @return The decoded instance
+     */
+    public static FloatSensorReadings decode(ByteBuffer buffer) {
+        FloatSensorReadings sensorReadings = new FloatSensorReadings();
+        sensorReadings.decodeFields(buffer);
+        return sensorReadings;
+    }
+
+    /**
+     * Sets the fields of this instance from an encoding written by {@link #encode(ByteBuffer)}
+     *
+     * @param buffer The buffer to read from
+     */
+    private void decodeFields(ByteBuffer buffer) {
+        type = BinaryEncoding.getString(buffer);
+        n = buffer.getInt();
+        x = BinaryEncoding.getFloats(buffer, n);
+        y = BinaryEncoding.getFloats(buffer, n);
+        z = BinaryEncoding.getFloats(buffer, n);
+        timestamps = BinaryEncoding.getLongs(buffer, n);
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(getEncodedSize());
+        encode(buffer);
+        BinaryEncoding.writeEncoded(out, buffer);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        decodeFields(BinaryEncoding.readEncoded(in));
+    }
+
+
+    /* Equals, hashcode and toString*/
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof FloatSensorReadings)) return false;
+
+        FloatSensorReadings that = (FloatSensorReadings) o;
+
+        if (n != that.n) return false;
+        if (type != null ? !type.equals(that.type) : that.type != null) return false;
+        for (int i = 0; i < n; i++) {
+            if (Float.floatToIntBits(x[i]) != Float.floatToIntBits(that.x[i])
+                    || Float.floatToIntBits(y[i]) != Float.floatToIntBits(that.y[i])
+                    || Float.floatToIntBits(z[i]) != Float.floatToIntBits(that.z[i])
+                    || timestamps[i] != that.timestamps[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = type != null ? type.hashCode() : 0;
+        result = 31 * result + n;
+        for (int i = 0; i < n; i++) {
+            result = 31 * result + Float.floatToIntBits(x[i]);
+            result = 31 * result + Float.floatToIntBits(y[i]);
+            result = 31 * result + Float.floatToIntBits(z[i]);
+            result = 31 * result + (int) (timestamps[i] ^ (timestamps[i] >>> 32));
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "FloatSensorReadings{" +
+                "type='" + type + '\'' +
+                ", n=" + n +
+                ", x=" + Arrays.toString(Arrays.copyOf(x, n)) +
+                ", y=" + Arrays.toString(Arrays.copyOf(y, n)) +
+                ", z=" + Arrays.toString(Arrays.copyOf(z, n)) +
+                ", timestamps=" + Arrays.toString(Arrays.copyOf(timestamps, n)) +
+                '}';
+    }
+}
@@ -7,13 +7,19 @@
 
 package fr.irit.rmess.heartdeep.datatype;
 
-import java.io.Serializable;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 /**
- * A class representing sensor readings
+ * A class representing sensor readings.
+ * It is serialized with a compact hand-written binary encoding (see {@link #encode(ByteBuffer)}), rather than the default (reflective) one.
+ * The readings are stored in double precision, as processed; see {@link FloatSensorReadings} for the readings as captured.
  */
-public class SensorReadings implements Serializable {
+public class SensorReadings implements SensorReadingsAccessor, Externalizable {
 
     /**
      * A constant type for accelerometer readings (obtained from Sensor.TYPE_LINEAR_ACCELERATION sensor)
@@ -45,6 +51,26 @@ public class SensorReadings implements Serializable {
      */
     public static String TYPE_MAGNETOMETER_READINGS = "fr.irit.rmess.heartdeep.datatype.SensorReadings.MAGNETOMETER";
 
+    /**
+     * A constant type for gravity readings (obtained from Sensor.TYPE_GRAVITY sensor)
+     */
+    public static String TYPE_GRAVITY_READINGS = "fr.irit.rmess.heartdeep.datatype.SensorReadings.GRAVITY";
+
+    /**
+     * A constant type for orientation readings: azimuth, pitch and roll (obtained from Sensor.TYPE_ORIENTATION sensor)
+     */
+    public static String TYPE_ORIENTATION_READINGS = "fr.irit.rmess.heartdeep.datatype.SensorReadings.ORIENTATION";
+
+    /**
+     * A constant type for rotation vector readings: its x, y and z components (obtained from Sensor.TYPE_ROTATION_VECTOR sensor)
+     */
+    public static String TYPE_ROTATION_VECTOR_READINGS = "fr.irit.rmess.heartdeep.datatype.SensorReadings.ROTATION_VECTOR";
+
+    /**
+     * A constant type for barometer readings: the pressure along x axis (obtained from Sensor.TYPE_PRESSURE sensor)
+     */
+    public static String TYPE_BAROMETER_READINGS = "fr.irit.rmess.heartdeep.datatype.SensorReadings.BAROMETER";
+
 
     /* Fields */
 
@@ -284,6 +310,41 @@ public class SensorReadings implements Serializable {
         this.n = n;
     }
 
+    /**
+     * Makes sure the arrays can hold a given number of readings, growing them if needed (by at least half their length,
+     * so that readings refilled again and again soon stop growing). The n first readings are kept
+     * @param capacity The number of readings the arrays must be able to hold
+     */
+    public void ensureCapacity(int capacity) {
+        int length = Math.min(Math.min(lengthOf(x), lengthOf(y)), Math.min(lengthOf(z), lengthOf(timestamps)));
+        if (length >= capacity) {
+            return;
+        }
+
+        length = Math.max(capacity, length + (length >> 1));
+        x = grow(x, length);
+        y = grow(y, length);
+        z = grow(z, length);
+        timestamps = grow(timestamps, length);
+    }
+
+    /**
+     * Helper function to get the length of an array which may not be allocated yet
+     */
+    private static int lengthOf(double[] array) {
+        return array == null ? 0 : array.length;
+    }
+
+    /**
+     * Helper function to grow an array (which may not be allocated yet) to a given length, keeping its values
+     */
+    private static double[] grow(double[] array, int length) {
+        if (array == null) {
+            return new double[length];
+        }
+        return array.length >= length ? array : Arrays.copyOf(array, length);
+    }
+
     /**
      * Gets the readings along x axis
      * @return The readings along x axis
@@ -435,6 +496,105 @@ public class SensorReadings implements Serializable {
     }
 
 
+    /* Views */
+
+    /**
+     * Gets a read-only view over a range of these readings, without copying them
+     *
+     * @param from The index of the first reading of the range
+     * @param to   The index of the end of the range (excluded)
+     * @return A view sharing these readings
+     * @throws IndexOutOfBoundsException If the range is not within the readings
+     */
+    public SensorReadingsView slice(int from, int to) {
+        return new SensorReadingsView(this, from, to - from);
+    }
+
+    /**
+     * Gets a read-only view over these readings within a time range, without copying them.
+     * The timestamps must be in increasing order
+     *
+     * @param startTimestamp The beginning of the time range
+     * @param endTimestamp   The end of the time range (excluded)
+     * @return A view sharing these readings, possibly empty
+     */
+    public SensorReadingsView sliceByTime(double startTimestamp, double endTimestamp) {
+        return new SensorReadingsView(this).sliceByTime(startTimestamp, endTimestamp);
+    }
+
+
+    /* Compact binary encoding */
+
+    /**
+     * Gets the number of bytes needed to encode this instance with {@link #encode(ByteBuffer)}
+     *
+     * @return The encoded size in bytes
+     */
+    public int getEncodedSize() {
+        int size = BinaryEncoding.stringSize(type) + 4 + 1;
+        if (x != null) size += 8 * n;
+        if (y != null) size += 8 * n;
+        if (z != null) size += 8 * n;
+        if (timestamps != null) size += 8 * n;
+        return size;
+    }
+
+    /**
+     * Encodes this instance at the current position of the given buffer: type, n, then the n first values of each array, in bulk.
+     * The arrays (if not {@code null}) must hold at least n values.
+     *
+     * @param buffer The buffer to write to. It must have at least {@link #getEncodedSize()} remaining bytes
+     */
+    public void encode(ByteBuffer buffer) {
+        BinaryEncoding.putString(buffer, type);
+        buffer.putInt(n);
+        buffer.put((byte) ((x != null ? 1 : 0) | (y != null ? 2 : 0) | (z != null ? 4 : 0) | (timestamps != null ? 8 : 0)));
+        if (x != null) BinaryEncoding.putDoubles(buffer, x, n);
+        if (y != null) BinaryEncoding.putDoubles(buffer, y, n);
+        if (z != null) BinaryEncoding.putDoubles(buffer, z, n);
+        if (timestamps != null) BinaryEncoding.putDoubles(buffer, timestamps, n);
+    }
+
+    /**
+     * Decodes an instance written by {@link #encode(ByteBuffer)} at the current position of the given buffer
+     *
+     * @param buffer The buffer to read from
+     * @return The decoded instance
+     */
+    public static SensorReadings decode(ByteBuffer buffer) {
+        SensorReadings sensorReadings = new SensorReadings();
+        sensorReadings.decodeFields(buffer);
+        return sensorReadings;
+    }
+
+    /**
+     * Sets the fields of this instance from an encoding written by {@link #encode(ByteBuffer)}
+     *
+     * @param buffer The buffer to read from
+     */
+    private void decodeFields(ByteBuffer buffer) {
+        type = BinaryEncoding.getString(buffer);
+        n = buffer.getInt();
+        int arrays = buffer.get();
+        x = (arrays & 1) != 0 ? BinaryEncoding.getDoubles(buffer, n) : null;
+        y = (arrays & 2) != 0 ? BinaryEncoding.getDoubles(buffer, n) : null;
+        z = (arrays & 4) != 0 ? BinaryEncoding.getDoubles(buffer, n) : null;
+        timestamps = (arrays & 8) != 0 ? BinaryEncoding.getDoubles(buffer, n) : null;
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(getEncodedSize());
+        encode(buffer);
+        BinaryEncoding.writeEncoded(out, buffer);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        decodeFields(BinaryEncoding.readEncoded(in));
+    }
+
+
     /* Equals, hashcode and toString*/
 
     @Override
@@ -0,0 +1,62 @@
+/***********************************************************************
+ Name............ : SensorReadingsAccessor.java
+ Description..... : The read access to 3-axis sensor readings, whatever their storage
+ Author.......... : Kevin Jiokeng for IRIT, RMESS Team
+ Creation Date... : 18/10/2026
+ ************************************************************************/
+
+package fr.irit.rmess.heartdeep.datatype;
+
+/**
+ * The read access to 3-axis sensor readings, whatever their storage: double-precision ({@link SensorReadings})
+ * or single-precision, as delivered by the sensors ({@link FloatSensorReadings}).
+ * It lets consumers which only read the readings (such as the plots) accept both.
+ */
+public interface SensorReadingsAccessor {
+
+    /**
+     * Gets the type of the readings
+     *
+     * @return One of the SensorReadings.TYPE_*_READINGS
+     */
+    String getType();
+
+    /**
+     * Gets the number of readings
+     *
+     * @return The number of readings
+     */
+    int getN();
+
+    /**
+     * Gets the index-th reading along x axis
+     *
+     * @param index The index of the reading, lower than {@link #getN()}
+     * @return The reading along x axis
+     */
+    double getX(int index);
+
+    /**
+     * Gets the index-th reading along y axis
+     *
+     * @param index The index of the reading, lower than {@link #getN()}
+     * @return The reading along y axis
+     */
+    double getY(int index);
+
+    /**
+     * Gets the index-th reading along z axis
+     *
+     * @param index The index of the reading, lower than {@link #getN()}
+     * @return The reading along z axis
+     */
+    double getZ(int index);
+
+    /**
+     * Gets the index-th timestamp of the readings (or frequency, for frequential readings)
+     *
+     * @param index The index of the reading, lower than {@link #getN()}
+     * @return The timestamp of the reading
+     */
+    double getTimestamp(int index);
+}
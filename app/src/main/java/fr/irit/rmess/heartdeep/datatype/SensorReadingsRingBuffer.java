@@ -0,0 +1,298 @@
+/***********************************************************************
+ Name............ : SensorReadingsRingBuffer.java
+ Description..... : A preallocated ring buffer storing 3-axis sensor readings as primitives
+ Author.......... : Kevin Jiokeng for IRIT, RMESS Team
+ Creation Date... : 18/10/2026
+ ************************************************************************/
+
+package fr.irit.rmess.heartdeep.datatype;
+
+/**
+ * A preallocated ring buffer storing 3-axis sensor readings and their timestamps as primitives.
+ * It is intended to be filled by a sensor listener (one call to {@link #write(long, float, float, float)} per sensor event)
+ * and periodically drained into a {@link FloatSensorReadings} instance (keeping the precision of the sensors),
+ * or into double arrays (see {@link #drainTo(double[], double[], double[], double[])}).
+ *
+ * Writing never allocates: when the buffer is full, the oldest reading is overwritten (and counted, see {@link #getOverwrittenCount()}).
+ * This class is not thread-safe: writes and drains are expected to happen on the same thread (the sensor listener one).
+ */
+public class SensorReadingsRingBuffer {
+
+    /**
+     * The default capacity of a ring buffer (number of readings)
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * The capacity of this buffer. Always a power of two
+     */
+    private final int capacity;
+
+    /**
+     * The mask used to wrap indexes around the buffer ({@code capacity - 1})
+     */
+    private final int mask;
+
+    /**
+     * The timestamps of the buffered readings
+     */
+    private final long[] timestamps;
+
+    /**
+     * The buffered readings along x axis
+     */
+    private final float[] x;
+
+    /**
+     * The buffered readings along y axis
+     */
+    private final float[] y;
+
+    /**
+     * The buffered readings along z axis
+     */
+    private final float[] z;
+
+    /**
+     * The index of the oldest buffered reading
+     */
+    private int head = 0;
+
+    /**
+     * The number of buffered readings
+     */
+    private int size = 0;
+
+    /**
+     * The number of readings lost because they were overwritten before being drained
+     */
+    private long overwrittenCount = 0;
+
+
+    /* Constructors */
+
+    /**
+     * Creates a ring buffer with the {@link #DEFAULT_CAPACITY default capacity}
+     */
+    public SensorReadingsRingBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a ring buffer able to store at least {@code minCapacity} readings.
+     * The actual capacity is rounded up to the next power of two.
+     *
+     * @param minCapacity The minimum number of readings the buffer should be able to store
+     */
+    public SensorReadingsRingBuffer(int minCapacity) {
+        if (minCapacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + minCapacity);
+        }
+
+        int c = Integer.highestOneBit(minCapacity);
+        if (c < minCapacity) {
+            c <<= 1;
+        }
+
+        capacity = c;
+        mask = c - 1;
+        timestamps = new long[c];
+        x = new float[c];
+        y = new float[c];
+        z = new float[c];
+    }
+
+
+    /* Buffer operations */
+
+    /**
+     * Appends a reading to the buffer. If the buffer is full, the oldest reading is overwritten.
+     *
+     * @param timestamp The timestamp of the reading
+     * @param xValue    The reading along x axis
+     * @param yValue    The reading along y axis
+     * @param zValue    The reading along z axis
+     */
+    public void write(long timestamp, float xValue, float yValue, float zValue) {
+        int index = (head + size) & mask;
+        timestamps[index] = timestamp;
+        x[index] = xValue;
+        y[index] = yValue;
+        z[index] = zValue;
+
+        if (size == capacity) {
+            head = (head + 1) & mask;
+            overwrittenCount++;
+        } else {
+            size++;
+        }
+    }
+
+    /**
+     * Moves all the buffered readings to the given arrays, starting at index 0, and empties the buffer.
+     * The arrays must be able to hold at least {@link #size()} values.
+     *
+     * @param xOut          The array receiving the readings along x axis
+     * @param yOut          The array receiving the readings along y axis
+     * @param zOut          The array receiving the readings along z axis
+     * @param timestampsOut The array receiving the timestamps
+     * @return The number of readings drained
+     */
+    public int drainTo(double[] xOut, double[] yOut, double[] zOut, double[] timestampsOut) {
+        int n = size;
+        copyOldest(n, xOut, yOut, zOut, timestampsOut);
+        clear();
+        return n;
+    }
+
+    /**
+     * Moves all the buffered readings to a new FloatSensorReadings instance, and empties the buffer.
+     * Only the resulting arrays are allocated: they are exactly {@link #size()}-long.
+     *
+     * @param type The type of FloatSensorReadings instance to build
+     *             Should be one of the known types: SensorReadings.TYPE_*_READINGS
+     * @return A FloatSensorReadings instance holding the drained readings
+     */
+    public FloatSensorReadings drain(String type) {
+        FloatSensorReadings sensorReadings = new FloatSensorReadings(type, size);
+        copyOldest(size, sensorReadings);
+        clear();
+        return sensorReadings;
+    }
+
+    /**
+     * Moves the buffered readings older than a given timestamp to a new FloatSensorReadings instance.
+     * The newer readings stay in the buffer. Readings are expected to be written in increasing timestamp order.
+     *
+     * @param type         The type of FloatSensorReadings instance to build
+     *                     Should be one of the known types: SensorReadings.TYPE_*_READINGS
+     * @param endTimestamp The timestamp (excluded) up to which readings are drained
+     * @return A FloatSensorReadings instance holding the drained readings
+     */
+    public FloatSensorReadings drain(String type, long endTimestamp) {
+        int n = countBefore(endTimestamp);
+        FloatSensorReadings sensorReadings = new FloatSensorReadings(type, n);
+        copyOldest(n, sensorReadings);
+        head = (head + n) & mask;
+        size -= n;
+        return sensorReadings;
+    }
+
+    /**
+     * Moves the buffered readings older than a given timestamp to existing FloatSensorReadings, replacing their readings.
+     * The newer readings stay in the buffer. Readings are expected to be written in increasing timestamp order.
+     * Nothing is allocated, unless the arrays of the target are too short for the readings (they are then grown).
+     *
+     * @param target       The readings receiving the drained ones (its type is kept)
+     * @param endTimestamp The timestamp (excluded) up to which readings are drained
+     * @return The number of readings drained
+     */
+    public int drainTo(FloatSensorReadings target, long endTimestamp) {
+        int n = countBefore(endTimestamp);
+        target.ensureCapacity(n);
+        copyOldest(n, target);
+        target.setN(n);
+        head = (head + n) & mask;
+        size -= n;
+        return n;
+    }
+
+    /**
+     * Counts the buffered readings older than a given timestamp.
+     * Readings are expected to be written in increasing timestamp order.
+     *
+     * @param endTimestamp The timestamp (excluded) up to which readings are counted
+     * @return The number of buffered readings with a timestamp strictly lower than {@code endTimestamp}
+     */
+    public int countBefore(long endTimestamp) {
+        // Binary search of the first reading at or after endTimestamp
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (timestamps[(head + middle) & mask] < endTimestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Copies the {@code n} oldest buffered readings to the given arrays, starting at index 0 (the buffer is not modified)
+     */
+    private void copyOldest(int n, double[] xOut, double[] yOut, double[] zOut, double[] timestampsOut) {
+        int index = head;
+        for (int i = 0; i < n; i++) {
+            xOut[i] = x[index];
+            yOut[i] = y[index];
+            zOut[i] = z[index];
+            timestampsOut[i] = timestamps[index];
+            index = (index + 1) & mask;
+        }
+    }
+
+    /**
+     * Copies the {@code n} oldest buffered readings to the arrays of FloatSensorReadings, starting at index 0 (the buffer is not modified).
+     * The readings keep their precision, and are copied in bulk: in at most two runs, the buffer wrapping around at most once
+     */
+    private void copyOldest(int n, FloatSensorReadings sensorReadings) {
+        int first = Math.min(n, capacity - head);
+        System.arraycopy(x, head, sensorReadings.getX(), 0, first);
+        System.arraycopy(y, head, sensorReadings.getY(), 0, first);
+        System.arraycopy(z, head, sensorReadings.getZ(), 0, first);
+        System.arraycopy(timestamps, head, sensorReadings.getTimestamps(), 0, first);
+        System.arraycopy(x, 0, sensorReadings.getX(), first, n - first);
+        System.arraycopy(y, 0, sensorReadings.getY(), first, n - first);
+        System.arraycopy(z, 0, sensorReadings.getZ(), first, n - first);
+        System.arraycopy(timestamps, 0, sensorReadings.getTimestamps(), first, n - first);
+    }
+
+    /**
+     * Empties the buffer (without touching its storage)
+     */
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+
+    /* Getters */
+
+    /**
+     * Gets the number of buffered (not yet drained) readings
+     *
+     * @return The number of buffered readings
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Indicates whether the buffer is empty
+     *
+     * @return {@code true} if no reading is buffered, {@code false} otherwise
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Gets the capacity of this buffer
+     *
+     * @return The maximum number of readings this buffer can hold
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Gets the number of readings lost because they were overwritten before being drained
+     *
+     * @return The number of overwritten readings since the creation of this buffer
+     */
+    public long getOverwrittenCount() {
+        return overwrittenCount;
+    }
+}
@@ -0,0 +1,254 @@
+/***********************************************************************
+ Name............ : SensorReadingsView.java
+ Description..... : A read-only view over a range of sensor readings, sharing their storage
+ Author.......... : Kevin Jiokeng for IRIT, RMESS Team
+ Creation Date... : 18/10/2026
+ ************************************************************************/
+
+package fr.irit.rmess.heartdeep.datatype;
+
+/**
+ * A read-only view over a contiguous range of sensor readings (an offset and a length), sharing their storage: nothing is copied,
+ * so that overlapping ranges of the same readings (analysis or plot windows) can be taken from a single buffer.
+ * The view reflects the changes of the readings it is over.
+ *
+ * Views are sliced by index ({@link #slice(int, int)}) or by timestamp ({@link #sliceByTime(double, double)}, the timestamps
+ * being in increasing order), and views of views share the same readings. Their accessors, equals and hashCode only consider
+ * the readings in the range. A view is not serializable: {@link #toSensorReadings()} copies its readings.
+ */
+public class SensorReadingsView implements SensorReadingsAccessor {
+
+    /**
+     * The readings the view is over
+     */
+    private final SensorReadingsAccessor readings;
+
+    /**
+     * The index, in {@link #readings}, of the first reading of the view
+     */
+    private final int offset;
+
+    /**
+     * The number of readings of the view
+     */
+    private final int n;
+
+    /**
+     * Creates a view over all the readings
+     *
+     * @param readings The readings
+     */
+    public SensorReadingsView(SensorReadingsAccessor readings) {
+        this(readings, 0, readings.getN());
+    }
+
+    /**
+     * Creates a view over a range of readings
+     *
+     * @param readings The readings
+     * @param offset   The index of the first reading of the view
+     * @param n        The number of readings of the view
+     * @throws IndexOutOfBoundsException If the range is not within the readings
+     */
+    public SensorReadingsView(SensorReadingsAccessor readings, int offset, int n) {
+        if (offset < 0 || n < 0 || offset > readings.getN() - n) {
+            throw new IndexOutOfBoundsException("Range [" + offset + ", " + offset + " + " + n + ") out of " + readings.getN() + " readings");
+        }
+
+        // Views of views are over the underlying readings
+        if (readings instanceof SensorReadingsView) {
+            SensorReadingsView view = (SensorReadingsView) readings;
+            this.readings = view.readings;
+            this.offset = view.offset + offset;
+        } else {
+            this.readings = readings;
+            this.offset = offset;
+        }
+        this.n = n;
+    }
+
+
+    /* Slicing */
+
+    /**
+     * Gets a view over a range of the readings of this view
+     *
+     * @param from The index (in this view) of the first reading of the range
+     * @param to   The index (in this view) of the end of the range (excluded)
+     * @return A view sharing the same readings
+     * @throws IndexOutOfBoundsException If the range is not within this view
+     */
+    public SensorReadingsView slice(int from, int to) {
+        return new SensorReadingsView(this, from, to - from);
+    }
+
+    /**
+     * Gets a view over the readings of this view within a time range, found by binary search
+     *
+     * @param startTimestamp The beginning of the time range
+     * @param endTimestamp   The end of the time range (excluded)
+     * @return A view sharing the same readings, possibly empty
+     */
+    public SensorReadingsView sliceByTime(double startTimestamp, double endTimestamp) {
+        int from = indexOf(this, startTimestamp);
+        int to = Math.max(from, indexOf(this, endTimestamp));
+        return slice(from, to);
+    }
+
+    /**
+     * Finds the first reading at or after a timestamp, the timestamps being in increasing order
+     *
+     * @param readings  The readings to search
+     * @param timestamp The timestamp
+     * @return The index of the first reading whose timestamp is not lower than {@code timestamp}, or the number of readings if none
+     */
+    static int indexOf(SensorReadingsAccessor readings, double timestamp) {
+        int low = 0;
+        int high = readings.getN();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (readings.getTimestamp(middle) < timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Copies the readings of this view
+     *
+     * @return A new SensorReadings instance holding the readings of the view (exactly n-long arrays)
+     */
+    public SensorReadings toSensorReadings() {
+        SensorReadings copy = new SensorReadings(getType(), n, new double[n], new double[n], new double[n], new double[n]);
+        for (int i = 0; i < n; i++) {
+            copy.setX(i, readings.getX(offset + i));
+            copy.setY(i, readings.getY(offset + i));
+            copy.setZ(i, readings.getZ(offset + i));
+            copy.getTimestamps()[i] = readings.getTimestamp(offset + i);
+        }
+        return copy;
+    }
+
+
+    /* Getters */
+
+    /**
+     * Gets the readings the view is over
+     *
+     * @return The underlying readings (never a view)
+     */
+    public SensorReadingsAccessor getReadings() {
+        return readings;
+    }
+
+    /**
+     * Gets the index, in the underlying readings, of the first reading of the view
+     *
+     * @return The offset of the view
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    @Override
+    public String getType() {
+        return readings.getType();
+    }
+
+    @Override
+    public int getN() {
+        return n;
+    }
+
+    @Override
+    public double getX(int index) {
+        return readings.getX(position(index));
+    }
+
+    @Override
+    public double getY(int index) {
+        return readings.getY(position(index));
+    }
+
+    @Override
+    public double getZ(int index) {
+        return readings.getZ(position(index));
+    }
+
+    @Override
+    public double getTimestamp(int index) {
+        return readings.getTimestamp(position(index));
+    }
+
+    /**
+     * Gets the position in the underlying readings of a reading of the view
+     *
+     * @param index The index of the reading in the view
+     * @return Its index in the underlying readings
+     * @throws IndexOutOfBoundsException If the index is not within the view
+     */
+    private int position(int index) {
+        if (index < 0 || index >= n) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of " + n + " readings");
+        }
+        return offset + index;
+    }
+
+
+    /* Equals, hashcode and toString*/
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof SensorReadingsView)) return false;
+
+        SensorReadingsView that = (SensorReadingsView) o;
+
+        if (n != that.n) return false;
+        String type = getType();
+        if (type != null ? !type.equals(that.getType()) : that.getType() != null) return false;
+        for (int i = 0; i < n; i++) {
+            if (Double.doubleToLongBits(readings.getX(offset + i)) != Double.doubleToLongBits(that.readings.getX(that.offset + i))
+                    || Double.doubleToLongBits(readings.getY(offset + i)) != Double.doubleToLongBits(that.readings.getY(that.offset + i))
+                    || Double.doubleToLongBits(readings.getZ(offset + i)) != Double.doubleToLongBits(that.readings.getZ(that.offset + i))
+                    || Double.doubleToLongBits(readings.getTimestamp(offset + i)) != Double.doubleToLongBits(that.readings.getTimestamp(that.offset + i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        String type = getType();
+        int result = type != null ? type.hashCode() : 0;
+        result = 31 * result + n;
+        for (int i = 0; i < n; i++) {
+            result = 31 * result + hash(readings.getX(offset + i));
+            result = 31 * result + hash(readings.getY(offset + i));
+            result = 31 * result + hash(readings.getZ(offset + i));
+            result = 31 * result + hash(readings.getTimestamp(offset + i));
+        }
+        return result;
+    }
+
+    /**
+     * Hashes a value as {@link Double#hashCode()} does
+     */
+    private static int hash(double value) {
+        long bits = Double.doubleToLongBits(value);
+        return (int) (bits ^ (bits >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return "SensorReadingsView{" +
+                "type='" + getType() + '\'' +
+                ", offset=" + offset +
+                ", n=" + n +
+                '}';
+    }
+}
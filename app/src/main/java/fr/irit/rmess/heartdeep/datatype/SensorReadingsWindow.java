@@ -0,0 +1,218 @@
+/***********************************************************************
+ Name............ : SensorReadingsWindow.java
+ Description..... : A class grouping the sensor readings of one processing window
+ Author.......... : Kevin Jiokeng for IRIT, RMESS Team
+ Creation Date... : 18/10/2026
+ ************************************************************************/
+
+package fr.irit.rmess.heartdeep.datatype;
+
+import java.io.Serializable;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A class grouping the sensor readings of one processing window (one FloatSensorReadings per captured sensor),
+ * as they are handed off from the sensor listener to the processing thread, and then to the observers of the results.
+ *
+ * Windows are reference-counted, so that they can be recycled by the {@link SensorReadingsWindowPool} they were acquired from:
+ * a window is created with one reference, each holder keeping it beyond the call it was given in {@link #retain() retains} it,
+ * and {@link #release() releases} it once done. The last release hands the window back to its pool, after which its readings
+ * are overwritten by a next window: they must not be read anymore.
+ * Windows which are not pooled (created by {@link #SensorReadingsWindow(FloatSensorReadings[])}, or deserialized) are just left
+ * to the garbage collector.
+ */
+public class SensorReadingsWindow implements Serializable {
+
+    /**
+     * The readings of the window, one per captured sensor (indexed by channel id)
+     */
+    private final FloatSensorReadings[] readings;
+
+    /**
+     * The time (as given by {@link System#nanoTime()}) at which the window was handed off
+     */
+    private long handoffTime;
+
+    /**
+     * The number of the recording the window belongs to
+     */
+    private int recordingNumber;
+
+    /**
+     * The time (in nanoseconds) between two readings of the paced sensors, as resampled by the capture, or 0 if they were not resampled
+     */
+    private long resamplingPeriod;
+
+    /**
+     * The number of references to the window: the window is recycled when it drops to 0
+     */
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    /**
+     * The pool the window is recycled to, or {@code null} if the window is not pooled
+     */
+    private final transient SensorReadingsWindowPool pool;
+
+    /**
+     * The reference tracking the window while it is acquired, when its pool detects leaks ({@code null} otherwise)
+     */
+    transient WeakReference<SensorReadingsWindow> leakTracker;
+
+    /**
+     * Creates a window with the given readings, which is not pooled
+     *
+     * @param readings The readings of the window, one per captured sensor
+     */
+    public SensorReadingsWindow(FloatSensorReadings[] readings) {
+        this(readings, null);
+    }
+
+    /**
+     * Creates a window with the given readings
+     *
+     * @param readings The readings of the window, one per captured sensor
+     * @param pool     The pool the window is recycled to, or {@code null} if the window is not pooled
+     */
+    SensorReadingsWindow(FloatSensorReadings[] readings, SensorReadingsWindowPool pool) {
+        this.readings = readings;
+        this.pool = pool;
+    }
+
+
+    /* Reference counting */
+
+    /**
+     * Adds a reference to the window: it will not be recycled before a matching {@link #release()}
+     *
+     * @return This window
+     * @throws IllegalStateException If the window was already released by all its holders
+     */
+    public SensorReadingsWindow retain() {
+        while (true) {
+            int count = references.get();
+            if (count <= 0) {
+                throw new IllegalStateException("Window already released");
+            }
+            if (references.compareAndSet(count, count + 1)) {
+                return this;
+            }
+        }
+    }
+
+    /**
+     * Removes a reference to the window. The last one hands it back to its pool
+     *
+     * @throws IllegalStateException If the window was already released by all its holders
+     */
+    public void release() {
+        int count = references.decrementAndGet();
+        if (count < 0) {
+            references.incrementAndGet();
+            throw new IllegalStateException("Window already released");
+        }
+        if (count == 0 && pool != null) {
+            pool.recycle(this);
+        }
+    }
+
+    /**
+     * Gets the number of references to the window
+     *
+     * @return The number of holders of the window, 0 if it was released by all of them
+     */
+    public int getReferenceCount() {
+        return references.get();
+    }
+
+    /**
+     * Prepares a recycled window to be acquired again: one reference, and no handoff
+     */
+    void reset() {
+        references.set(1);
+        handoffTime = 0;
+        recordingNumber = 0;
+        resamplingPeriod = 0;
+    }
+
+
+    /* Getters and setters */
+
+    /**
+     * Gets the readings of the window
+     *
+     * @return The readings, one per captured sensor
+     */
+    public FloatSensorReadings[] getReadings() {
+        return readings;
+    }
+
+    /**
+     * Gets the readings of a given type in the window
+     *
+     * @param type The type of the readings: one of SensorReadings.TYPE_*_READINGS
+     * @return The readings of this type, or {@code null} if the window has none (the sensor was not captured)
+     */
+    public FloatSensorReadings getReadings(String type) {
+        for (FloatSensorReadings sensorReadings : readings) {
+            if (type.equals(sensorReadings.getType())) {
+                return sensorReadings;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the time at which the window was handed off
+     *
+     * @return The handoff time, as given by {@link System#nanoTime()}
+     */
+    public long getHandoffTime() {
+        return handoffTime;
+    }
+
+    /**
+     * Sets the time at which the window was handed off
+     *
+     * @param handoffTime The handoff time, as given by {@link System#nanoTime()}
+     */
+    public void setHandoffTime(long handoffTime) {
+        this.handoffTime = handoffTime;
+    }
+
+    /**
+     * Gets the number of the recording the window belongs to
+     *
+     * @return The recording number, which changes with each recording
+     */
+    public int getRecordingNumber() {
+        return recordingNumber;
+    }
+
+    /**
+     * Sets the number of the recording the window belongs to
+     *
+     * @param recordingNumber The recording number
+     */
+    public void setRecordingNumber(int recordingNumber) {
+        this.recordingNumber = recordingNumber;
+    }
+
+    /**
+     * Gets the time between two readings of the paced sensors, as resampled by the capture which produced the window
+     *
+     * @return The resampling period (in nanoseconds), or 0 if the readings were not resampled
+     */
+    public long getResamplingPeriod() {
+        return resamplingPeriod;
+    }
+
+    /**
+     * Sets the time between two readings of the paced sensors, as resampled by the capture which produced the window
+     *
+     * @param resamplingPeriod The resampling period (in nanoseconds), or 0 if the readings were not resampled
+     */
+    public void setResamplingPeriod(long resamplingPeriod) {
+        this.resamplingPeriod = resamplingPeriod;
+    }
+}
@@ -0,0 +1,199 @@
+/***********************************************************************
+ Name............ : SensorReadingsWindowPool.java
+ Description..... : A pool of preallocated windows of sensor readings, recycled once released
+ Author.......... : Kevin Jiokeng for IRIT, RMESS Team
+ Creation Date... : 18/10/2026
+ ************************************************************************/
+
+package fr.irit.rmess.heartdeep.datatype;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A pool of windows of sensor readings (see {@link SensorReadingsWindow}), with one FloatSensorReadings per captured sensor.
+ * Windows are {@link #acquire() acquired} by the capture, filled, handed to their holders, and recycled to the pool by their
+ * last {@link SensorReadingsWindow#release() release}. Their readings arrays are only grown when a window holds more readings
+ * than any before: once the recording runs steadily, windows are neither allocated nor grown anymore.
+ *
+ * Windows are acquired from any thread, and released from any thread.
+ *
+ * Leak detection (for debug builds, as it allocates a weak reference per acquired window) reports the windows which were
+ * garbage collected without having been released: their holders forgot to release them, so they were never recycled.
+ * Leaks are only known once the leaked windows are collected, and are counted by {@link #getLeakedCount()}.
+ */
+public class SensorReadingsWindowPool {
+
+    /**
+     * The type of the readings of each captured sensor: one of the SensorReadings.TYPE_*_READINGS
+     */
+    private final String[] readingsTypes;
+
+    /**
+     * The initial number of readings of each sensor a new window can hold
+     */
+    private final int initialCapacity;
+
+    /**
+     * The windows waiting to be acquired (a stack, the most recently released being the most likely to be in the CPU caches)
+     */
+    private final SensorReadingsWindow[] pooled;
+
+    /**
+     * The number of windows waiting to be acquired
+     */
+    private int pooledCount = 0;
+
+    /**
+     * The number of windows allocated by the pool
+     */
+    private long allocatedCount = 0;
+
+    /**
+     * Whether acquired windows are tracked to detect leaks
+     */
+    private volatile boolean leakDetection = false;
+
+    /**
+     * The references to the acquired windows, when leak detection is enabled (they must be strongly held to be enqueued)
+     */
+    private final Set<Reference<SensorReadingsWindow>> leakTrackers = new HashSet<>();
+
+    /**
+     * The queue the references of the collected windows are enqueued in
+     */
+    private final ReferenceQueue<SensorReadingsWindow> collectedWindows = new ReferenceQueue<>();
+
+    /**
+     * The number of windows collected without having been released
+     */
+    private int leakedCount = 0;
+
+    /**
+     * Creates a pool
+     *
+     * @param readingsTypes   The type of the readings of each captured sensor: one of the SensorReadings.TYPE_*_READINGS
+     * @param initialCapacity The initial number of readings of each sensor a new window can hold
+     * @param maxPooled       The maximum number of windows waiting to be acquired: the windows released beyond are left to the
+     *                        garbage collector
+     */
+    public SensorReadingsWindowPool(String[] readingsTypes, int initialCapacity, int maxPooled) {
+        this.readingsTypes = readingsTypes.clone();
+        this.initialCapacity = initialCapacity;
+        this.pooled = new SensorReadingsWindow[maxPooled];
+    }
+
+    /**
+     * Acquires a window: a recycled one if there is any, a new one otherwise.
+     * The window has one reference, owned by the caller, and holds the readings of its last use (to be replaced)
+     *
+     * @return The window
+     */
+    public SensorReadingsWindow acquire() {
+        SensorReadingsWindow window;
+        synchronized (this) {
+            if (pooledCount > 0) {
+                window = pooled[--pooledCount];
+                pooled[pooledCount] = null;
+            } else {
+                window = null;
+                allocatedCount++;
+            }
+        }
+
+        if (window == null) {
+            FloatSensorReadings[] readings = new FloatSensorReadings[readingsTypes.length];
+            for (int i = 0; i < readingsTypes.length; i++) {
+                readings[i] = new FloatSensorReadings(readingsTypes[i], initialCapacity);
+                readings[i].setN(0);
+            }
+            window = new SensorReadingsWindow(readings, this);
+        } else {
+            window.reset();
+        }
+
+        if (leakDetection) {
+            track(window);
+        }
+        return window;
+    }
+
+    /**
+     * Hands a window released by all its holders back to the pool
+     *
+     * @param window The window to recycle
+     */
+    void recycle(SensorReadingsWindow window) {
+        synchronized (this) {
+            if (window.leakTracker != null) {
+                leakTrackers.remove(window.leakTracker);
+                window.leakTracker.clear();
+                window.leakTracker = null;
+            }
+            if (pooledCount < pooled.length) {
+                pooled[pooledCount++] = window;
+            }
+        }
+    }
+
+    /**
+     * Tracks an acquired window, and counts the windows collected since the last call without having been released
+     *
+     * @param window The acquired window
+     */
+    private synchronized void track(SensorReadingsWindow window) {
+        Reference<? extends SensorReadingsWindow> collected;
+        while ((collected = collectedWindows.poll()) != null) {
+            // Released windows have their reference cleared before being collected, so that it is never enqueued
+            if (leakTrackers.remove(collected)) {
+                leakedCount++;
+            }
+        }
+
+        window.leakTracker = new WeakReference<>(window, collectedWindows);
+        leakTrackers.add(window.leakTracker);
+    }
+
+
+    /* Getters and setters */
+
+    /**
+     * Enables or disables leak detection. Only the windows acquired while it is enabled are tracked
+     *
+     * @param enabled {@code true} to detect leaks (in debug builds)
+     */
+    public void setLeakDetection(boolean enabled) {
+        this.leakDetection = enabled;
+    }
+
+    /**
+     * Gets the number of windows detected as leaked: garbage collected without having been released.
+     * Leaks are detected when windows are acquired
+     *
+     * @return The number of leaked windows since the creation of the pool
+     */
+    public synchronized int getLeakedCount() {
+        return leakedCount;
+    }
+
+    /**
+     * Gets the number of windows allocated by the pool: it stops growing once windows are steadily recycled
+     *
+     * @return The number of allocated windows
+     */
+    public synchronized long getAllocatedCount() {
+        return allocatedCount;
+    }
+
+    /**
+     * Gets the number of windows waiting to be acquired
+     *
+     * @return The number of pooled windows
+     */
+    public synchronized int getPooledCount() {
+        return pooledCount;
+    }
+}
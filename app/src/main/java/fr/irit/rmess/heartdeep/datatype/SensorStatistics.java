@@ -0,0 +1,401 @@
+/***********************************************************************
+ Name............ : SensorStatistics.java
+ Description..... : The running statistics of 3-axis sensor readings, per axis
+ Author.......... : Kevin Jiokeng for IRIT, RMESS Team
+ Creation Date... : 18/10/2026
+ ************************************************************************/
+
+package fr.irit.rmess.heartdeep.datatype;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The running statistics of 3-axis sensor readings, along each axis: count, mean, variance, RMS, minimum and maximum.
+ *
+ * Readings are accumulated in a single pass over the three axes with Welford's algorithm, which stays accurate where the
+ * sum of squares would cancel out (readings with a large offset, such as the gravity, and small variations).
+ * Statistics are merged in constant time (Chan et al. parallel formula), so that the statistics of a whole session are
+ * the merge of the ones of its windows, without going through the readings again.
+ */
+public class SensorStatistics implements Externalizable {
+
+    /**
+     * The index of the x axis
+     */
+    public static final int AXIS_X = 0;
+
+    /**
+     * The index of the y axis
+     */
+    public static final int AXIS_Y = 1;
+
+    /**
+     * The index of the z axis
+     */
+    public static final int AXIS_Z = 2;
+
+    /**
+     * The type of the readings the statistics are about: one of the SensorReadings.TYPE_*_READINGS
+     */
+    private String type;
+
+    /**
+     * The number of readings accumulated
+     */
+    private long count = 0;
+
+    /**
+     * The mean of the readings along each axis
+     */
+    private final double[] mean = new double[3];
+
+    /**
+     * The sum of the squared deviations from the mean along each axis
+     */
+    private final double[] squaredDeviations = new double[3];
+
+    /**
+     * The minimum of the readings along each axis
+     */
+    private final double[] min = new double[3];
+
+    /**
+     * The maximum of the readings along each axis
+     */
+    private final double[] max = new double[3];
+
+
+    /* Constructors */
+
+    /**
+     * Creates empty statistics, without any type
+     */
+    public SensorStatistics() {
+        this((String) null);
+    }
+
+    /**
+     * Creates empty statistics about readings of a given type
+     *
+     * @param type The type of the readings: one of the SensorReadings.TYPE_*_READINGS
+     */
+    public SensorStatistics(String type) {
+        this.type = type;
+        reset();
+    }
+
+    /**
+     * Copy constructor: creates new statistics similar to the given ones
+     *
+     * @param statistics The statistics to be copied
+     */
+    public SensorStatistics(SensorStatistics statistics) {
+        this.type = statistics.type;
+        this.count = statistics.count;
+        System.arraycopy(statistics.mean, 0, mean, 0, 3);
+        System.arraycopy(statistics.squaredDeviations, 0, squaredDeviations, 0, 3);
+        System.arraycopy(statistics.min, 0, min, 0, 3);
+        System.arraycopy(statistics.max, 0, max, 0, 3);
+    }
+
+    /**
+     * Computes the statistics of readings
+     *
+     * @param readings The readings
+     * @return New statistics about the readings, of their type
+     */
+    public static SensorStatistics of(SensorReadingsAccessor readings) {
+        SensorStatistics statistics = new SensorStatistics(readings.getType());
+        statistics.add(readings);
+        return statistics;
+    }
+
+
+    /* Accumulation */
+
+    /**
+     * Empties the statistics
+     */
+    public void reset() {
+        count = 0;
+        Arrays.fill(mean, 0);
+        Arrays.fill(squaredDeviations, 0);
+        Arrays.fill(min, Double.POSITIVE_INFINITY);
+        Arrays.fill(max, Double.NEGATIVE_INFINITY);
+    }
+
+    /**
+     * Accumulates readings, in a single pass over the three axes
+     *
+     * @param readings The readings to accumulate
+     */
+    public void add(SensorReadingsAccessor readings) {
+        int n = readings.getN();
+        // The state is kept in locals during the pass
+        long k = count;
+        double meanX = mean[AXIS_X], meanY = mean[AXIS_Y], meanZ = mean[AXIS_Z];
+        double m2X = squaredDeviations[AXIS_X], m2Y = squaredDeviations[AXIS_Y], m2Z = squaredDeviations[AXIS_Z];
+        double minX = min[AXIS_X], minY = min[AXIS_Y], minZ = min[AXIS_Z];
+        double maxX = max[AXIS_X], maxY = max[AXIS_Y], maxZ = max[AXIS_Z];
+
+        for (int i = 0; i < n; i++) {
+            double x = readings.getX(i);
+            double y = readings.getY(i);
+            double z = readings.getZ(i);
+            double inverseCount = 1.0 / ++k;
+
+            double deltaX = x - meanX;
+            meanX += deltaX * inverseCount;
+            m2X += deltaX * (x - meanX);
+            double deltaY = y - meanY;
+            meanY += deltaY * inverseCount;
+            m2Y += deltaY * (y - meanY);
+            double deltaZ = z - meanZ;
+            meanZ += deltaZ * inverseCount;
+            m2Z += deltaZ * (z - meanZ);
+
+            if (x < minX) minX = x;
+            if (x > maxX) maxX = x;
+            if (y < minY) minY = y;
+            if (y > maxY) maxY = y;
+            if (z < minZ) minZ = z;
+            if (z > maxZ) maxZ = z;
+        }
+
+        count = k;
+        mean[AXIS_X] = meanX;
+        mean[AXIS_Y] = meanY;
+        mean[AXIS_Z] = meanZ;
+        squaredDeviations[AXIS_X] = m2X;
+        squaredDeviations[AXIS_Y] = m2Y;
+        squaredDeviations[AXIS_Z] = m2Z;
+        min[AXIS_X] = minX;
+        min[AXIS_Y] = minY;
+        min[AXIS_Z] = minZ;
+        max[AXIS_X] = maxX;
+        max[AXIS_Y] = maxY;
+        max[AXIS_Z] = maxZ;
+    }
+
+    /**
+     * Merges other statistics into these ones, in constant time: these statistics become the ones of both sets of readings
+     *
+     * @param other The statistics to merge (not modified)
+     */
+    public void merge(SensorStatistics other) {
+        if (other.count == 0) {
+            return;
+        }
+        if (count == 0) {
+            count = other.count;
+            System.arraycopy(other.mean, 0, mean, 0, 3);
+            System.arraycopy(other.squaredDeviations, 0, squaredDeviations, 0, 3);
+            System.arraycopy(other.min, 0, min, 0, 3);
+            System.arraycopy(other.max, 0, max, 0, 3);
+            return;
+        }
+
+        long total = count + other.count;
+        double otherWeight = (double) other.count / total;
+        for (int axis = 0; axis < 3; axis++) {
+            double delta = other.mean[axis] - mean[axis];
+            mean[axis] += delta * otherWeight;
+            squaredDeviations[axis] += other.squaredDeviations[axis] + delta * delta * count * otherWeight;
+            min[axis] = Math.min(min[axis], other.min[axis]);
+            max[axis] = Math.max(max[axis], other.max[axis]);
+        }
+        count = total;
+    }
+
+
+    /* Getters */
+
+    /**
+     * Gets the type of the readings the statistics are about
+     *
+     * @return One of the SensorReadings.TYPE_*_READINGS
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * Gets the number of readings accumulated
+     *
+     * @return The number of readings
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the mean of the readings along an axis
+     *
+     * @param axis One of the AXIS_* constants
+     * @return The mean, or 0 if there is no reading
+     */
+    public double getMean(int axis) {
+        return mean[axis];
+    }
+
+    /**
+     * Gets the (population) variance of the readings along an axis
+     *
+     * @param axis One of the AXIS_* constants
+     * @return The variance, or 0 if there is no reading
+     */
+    public double getVariance(int axis) {
+        return count > 0 ? squaredDeviations[axis] / count : 0;
+    }
+
+    /**
+     * Gets the standard deviation of the readings along an axis
+     *
+     * @param axis One of the AXIS_* constants
+     * @return The square root of the {@link #getVariance(int) variance}
+     */
+    public double getStandardDeviation(int axis) {
+        return Math.sqrt(getVariance(axis));
+    }
+
+    /**
+     * Gets the root mean square of the readings along an axis
+     *
+     * @param axis One of the AXIS_* constants
+     * @return The RMS, or 0 if there is no reading
+     */
+    public double getRms(int axis) {
+        return Math.sqrt(mean[axis] * mean[axis] + getVariance(axis));
+    }
+
+    /**
+     * Gets the minimum of the readings along an axis
+     *
+     * @param axis One of the AXIS_* constants
+     * @return The minimum, or {@code Double.POSITIVE_INFINITY} if there is no reading
+     */
+    public double getMin(int axis) {
+        return min[axis];
+    }
+
+    /**
+     * Gets the maximum of the readings along an axis
+     *
+     * @param axis One of the AXIS_* constants
+     * @return The maximum, or {@code Double.NEGATIVE_INFINITY} if there is no reading
+     */
+    public double getMax(int axis) {
+        return max[axis];
+    }
+
+
+    /* Compact binary encoding */
+
+    /**
+     * Gets the number of bytes needed to encode these statistics with {@link #encode(ByteBuffer)}
+     *
+     * @return The encoded size in bytes
+     */
+    public int getEncodedSize() {
+        return BinaryEncoding.stringSize(type) + 8 + 4 * 3 * 8;
+    }
+
+    /**
+     * Encodes these statistics at the current position of the given buffer: type, count, then the means, squared deviations,
+     * minimums and maximums along the three axes
+     *
+     * @param buffer The buffer to write to. It must have at least {@link #getEncodedSize()} remaining bytes
+     */
+    public void encode(ByteBuffer buffer) {
+        BinaryEncoding.putString(buffer, type);
+        buffer.putLong(count);
+        BinaryEncoding.putDoubles(buffer, mean, 3);
+        BinaryEncoding.putDoubles(buffer, squaredDeviations, 3);
+        BinaryEncoding.putDoubles(buffer, min, 3);
+        BinaryEncoding.putDoubles(buffer, max, 3);
+    }
+
+    /**
+     * Decodes statistics written by {@link #encode(ByteBuffer)} at the current position of the given buffer
+     *
+     * @param buffer The buffer to read from
+     * @return The decoded statistics
+     */
+    public static SensorStatistics decode(ByteBuffer buffer) {
+        SensorStatistics statistics = new SensorStatistics();
+        statistics.decodeFields(buffer);
+        return statistics;
+    }
+
+    /**
+     * Sets the fields of these statistics from an encoding written by {@link #encode(ByteBuffer)}
+     *
+     * @param buffer The buffer to read from
+     */
+    private void decodeFields(ByteBuffer buffer) {
+        type = BinaryEncoding.getString(buffer);
+        count = buffer.getLong();
+        System.arraycopy(BinaryEncoding.getDoubles(buffer, 3), 0, mean, 0, 3);
+        System.arraycopy(BinaryEncoding.getDoubles(buffer, 3), 0, squaredDeviations, 0, 3);
+        System.arraycopy(BinaryEncoding.getDoubles(buffer, 3), 0, min, 0, 3);
+        System.arraycopy(BinaryEncoding.getDoubles(buffer, 3), 0, max, 0, 3);
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(getEncodedSize());
+        encode(buffer);
+        BinaryEncoding.writeEncoded(out, buffer);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        decodeFields(BinaryEncoding.readEncoded(in));
+    }
+
+
+    /* Equals, hashcode and toString*/
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof SensorStatistics)) return false;
+
+        SensorStatistics that = (SensorStatistics) o;
+
+        if (count != that.count) return false;
+        if (type != null ? !type.equals(that.type) : that.type != null) return false;
+        if (!Arrays.equals(mean, that.mean)) return false;
+        if (!Arrays.equals(squaredDeviations, that.squaredDeviations)) return false;
+        if (!Arrays.equals(min, that.min)) return false;
+        return Arrays.equals(max, that.max);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = type != null ? type.hashCode() : 0;
+        result = 31 * result + (int) (count ^ (count >>> 32));
+        result = 31 * result + Arrays.hashCode(mean);
+        result = 31 * result + Arrays.hashCode(squaredDeviations);
+        result = 31 * result + Arrays.hashCode(min);
+        result = 31 * result + Arrays.hashCode(max);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "SensorStatistics{" +
+                "type='" + type + '\'' +
+                ", count=" + count +
+                ", mean=" + Arrays.toString(mean) +
+                ", variance=" + Arrays.toString(new double[]{getVariance(AXIS_X), getVariance(AXIS_Y), getVariance(AXIS_Z)}) +
+                ", min=" + Arrays.toString(min) +
+                ", max=" + Arrays.toString(max) +
+                '}';
+    }
+}
@@ -7,19 +7,38 @@
 
 package fr.irit.rmess.heartdeep.datatype;
 
-import java.io.Serializable;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 /**
- * A class to store multiple values that are associated with timestamps
+ * A class to store multiple values that are associated with timestamps: a time series of primitives.
+ * It is serialized with a compact hand-written binary encoding (see {@link #encode(ByteBuffer)}), rather than the default (reflective) one.
+ *
+ * Values can be {@link #append(long, double) appended} in increasing timestamp order, the arrays growing as needed (amortized
+ * constant time), so that histories can be kept over long sessions. Such a history can be bounded (see {@link #setRetention(int)}):
+ * the oldest values are then evicted as new ones are appended.
+ * Timestamps being ordered, values are looked up by binary search: {@link #indexOf(long)}, {@link #rangeByTime(long, long)}
+ * and {@link #valueAt(long)}, which interpolates between the values around a timestamp.
+ *
+ * The values (and timestamps) of the instance are the n ones of the arrays from an offset, which is only non-zero for bounded
+ * histories: {@link #getValues()} and {@link #getTimestamps()} first move them to the beginning of the arrays.
  */
-public class TimelinedData implements Serializable {
+public class TimelinedData implements Externalizable {
     /* Constants */
 
     public static final String TYPE_TIMELINED_ORIENTATIONS = "fr.irit.rmess.heartdeep.datatype.TimelinedData.ORIENTATIONS";
 
     public static final String TYPE_TIMELINED_BARO_READINGS = "fr.irit.rmess.heartdeep.datatype.TimelinedData.BARO_READINGS";
 
+    /**
+     * The initial capacity of the arrays of an instance values are appended to
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
 
     /* Fields */
 
@@ -44,6 +63,34 @@ public class TimelinedData implements Serializable {
      */
     private long[] timestamps;
 
+    /**
+     * The index in the arrays of the first value
+     */
+    private int offset = 0;
+
+    /**
+     * The maximum number of values kept, the oldest being evicted beyond, or 0 to keep them all
+     */
+    private int retention = 0;
+
+    /**
+     * Creates an empty TimelinedData instance, without any initialization.
+     * Required for deserialization
+     */
+    public TimelinedData() {
+        type = "";
+    }
+
+    /**
+     * Creates an empty TimelinedData instance of the specified type, to append values to
+     *
+     * @param type The type of the data to be stored.
+     *             Should be one of the known types: TYPE_TIMELINED_*
+     */
+    public TimelinedData(String type) {
+        this(type, 0, new double[INITIAL_CAPACITY], new long[INITIAL_CAPACITY]);
+    }
+
     /**
      * Creates a TimelinedData instance with the specified length, values and timestamps
      *
@@ -75,13 +122,148 @@ public class TimelinedData implements Serializable {
     }
 
     /**
-     * Copy constructor
+     * Copy constructor: creates a new instance of TimelinedData similar to the given one, with its own copy of the values
+     *
+     * @param otherInstance The instance to be copied
      */
     public TimelinedData(TimelinedData otherInstance){
         this.type = otherInstance.type;
         this.n = otherInstance.n;
-        this.values = otherInstance.values;
-        this.timestamps = otherInstance.timestamps;
+        this.retention = otherInstance.retention;
+        this.values = otherInstance.values != null
+                ? Arrays.copyOfRange(otherInstance.values, otherInstance.offset, otherInstance.offset + n) : null;
+        this.timestamps = otherInstance.timestamps != null
+                ? Arrays.copyOfRange(otherInstance.timestamps, otherInstance.offset, otherInstance.offset + n) : null;
+    }
+
+
+    /* Time series */
+
+    /**
+     * Appends a value, growing the arrays if needed. In a bounded history, the oldest value is evicted if it is full
+     *
+     * @param timestamp The timestamp of the value, not lower than the last one
+     * @param value     The value
+     * @throws IllegalArgumentException If the timestamp is lower than the last one
+     */
+    public void append(long timestamp, double value) {
+        if (n > 0 && timestamp < timestamps[offset + n - 1]) {
+            throw new IllegalArgumentException("Timestamp " + timestamp + " before the last one " + timestamps[offset + n - 1]);
+        }
+
+        if (retention > 0 && n == retention) {
+            offset++;
+            n--;
+        }
+        if (values == null || offset + n == values.length) {
+            makeRoom();
+        }
+
+        values[offset + n] = value;
+        timestamps[offset + n] = timestamp;
+        n++;
+    }
+
+    /**
+     * Makes room for a value after the last one: moves the values to the beginning of the arrays if at least half of them is
+     * free (evicted values of a bounded history, which are thus moved once every so many appends), grows the arrays otherwise
+     */
+    private void makeRoom() {
+        int capacity = values != null ? values.length : 0;
+        if (offset > 0 && n <= capacity / 2) {
+            moveToBeginning();
+            return;
+        }
+
+        int newCapacity = Math.max(INITIAL_CAPACITY, 2 * capacity);
+        double[] newValues = new double[newCapacity];
+        long[] newTimestamps = new long[newCapacity];
+        if (n > 0) {
+            System.arraycopy(values, offset, newValues, 0, n);
+            System.arraycopy(timestamps, offset, newTimestamps, 0, n);
+        }
+        values = newValues;
+        timestamps = newTimestamps;
+        offset = 0;
+    }
+
+    /**
+     * Moves the values (and timestamps) to the beginning of the arrays
+     */
+    private void moveToBeginning() {
+        if (offset > 0) {
+            System.arraycopy(values, offset, values, 0, n);
+            System.arraycopy(timestamps, offset, timestamps, 0, n);
+            offset = 0;
+        }
+    }
+
+    /**
+     * Removes all the values (the arrays are kept)
+     */
+    public void clear() {
+        n = 0;
+        offset = 0;
+    }
+
+    /**
+     * Finds the first value at or after a timestamp, by binary search
+     *
+     * @param timestamp The timestamp
+     * @return The index of the first value whose timestamp is not lower than {@code timestamp}, or n if there is none
+     */
+    public int indexOf(long timestamp) {
+        int low = 0;
+        int high = n;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (timestamps[offset + middle] < timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Gets the values within a time range, found by binary search
+     *
+     * @param from The beginning of the time range
+     * @param to   The end of the time range (excluded)
+     * @return A new TimelinedData instance of the same type holding (a copy of) the values of the range, possibly none
+     */
+    public TimelinedData rangeByTime(long from, long to) {
+        int first = indexOf(from);
+        int length = Math.max(0, indexOf(to) - first);
+        return new TimelinedData(type, length, Arrays.copyOfRange(values, offset + first, offset + first + length),
+                Arrays.copyOfRange(timestamps, offset + first, offset + first + length));
+    }
+
+    /**
+     * Gets the value at a given time, linearly interpolated between the values around it (found by binary search)
+     *
+     * @param timestamp The time
+     * @return The interpolated value, the first (or last) value if the time is before (or after) all the values,
+     * or {@code Double.NaN} if there are none
+     */
+    public double valueAt(long timestamp) {
+        if (n == 0) {
+            return Double.NaN;
+        }
+
+        int next = indexOf(timestamp);
+        if (next == n) {
+            return values[offset + n - 1];
+        }
+        if (next == 0 || timestamps[offset + next] == timestamp) {
+            return values[offset + next];
+        }
+
+        long previousTimestamp = timestamps[offset + next - 1];
+        double previousValue = values[offset + next - 1];
+        double fraction = (double) (timestamp - previousTimestamp) / (timestamps[offset + next] - previousTimestamp);
+        return previousValue + fraction * (values[offset + next] - previousValue);
     }
 
 
@@ -104,11 +286,48 @@ public class TimelinedData implements Serializable {
         this.n = n;
     }
 
+    /**
+     * Gets the type of data stored in this instance
+     *
+     * @return One of the known types: TYPE_TIMELINED_*
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * Gets the maximum number of values kept
+     *
+     * @return The retention, or 0 if all the values are kept
+     */
+    public int getRetention() {
+        return retention;
+    }
+
+    /**
+     * Bounds the number of values kept: once reached, each appended value evicts the oldest one.
+     * The oldest values beyond the new bound are evicted at once
+     *
+     * @param retention The maximum number of values kept, or 0 to keep them all
+     */
+    public void setRetention(int retention) {
+        if (retention < 0) {
+            throw new IllegalArgumentException("Retention must not be negative: " + retention);
+        }
+
+        this.retention = retention;
+        if (retention > 0 && n > retention) {
+            offset += n - retention;
+            n = retention;
+        }
+    }
+
     /**
      * Gets the data values stored in this instance
-     * @return The values stored in this instance
+     * @return The values stored in this instance (the n first ones of the array)
      */
     public double[] getValues() {
+        moveToBeginning();
         return values;
     }
 
@@ -117,14 +336,16 @@ public class TimelinedData implements Serializable {
      * @param values The values to be stored in this instance
      */
     public void setValues(double[] values) {
+        moveToBeginning();
         this.values = values;
     }
 
     /**
      * Gets the timestamps of the values stored in this instance
-     * @return The timestamps of the values stored in this instance
+     * @return The timestamps of the values stored in this instance (the n first ones of the array)
      */
     public long[] getTimestamps() {
+        moveToBeginning();
         return timestamps;
     }
 
@@ -133,6 +354,7 @@ public class TimelinedData implements Serializable {
      * @param timestamps The timestamps of the values to be stored in this instance
      */
     public void setTimestamps(long[] timestamps) {
+        moveToBeginning();
         this.timestamps = timestamps;
     }
 
@@ -143,7 +365,7 @@ public class TimelinedData implements Serializable {
      * @return The value stored at the given index
      */
     public double getValue(int index) {
-        return values[index];
+        return values[offset + index];
     }
 
     /**
@@ -153,7 +375,7 @@ public class TimelinedData implements Serializable {
      * @param value The value to be stored
      */
     public void setValue(int index, double value) {
-        this.values[index] = value;
+        this.values[offset + index] = value;
     }
 
     /**
@@ -163,7 +385,7 @@ public class TimelinedData implements Serializable {
      * @return The timestamp of the value at the given index
      */
     public long getTimestamp(int index) {
-        return timestamps[index];
+        return timestamps[offset + index];
     }
 
     /**
@@ -173,7 +395,75 @@ public class TimelinedData implements Serializable {
      * @param timestamp The new value of that timestamp
      */
     public void setTimestamp(int index, long timestamp) {
-        this.timestamps[index] = timestamp;
+        this.timestamps[offset + index] = timestamp;
+    }
+
+
+    /* Compact binary encoding */
+
+    /**
+     * Gets the number of bytes needed to encode this instance with {@link #encode(ByteBuffer)}
+     *
+     * @return The encoded size in bytes
+     */
+    public int getEncodedSize() {
+        int size = BinaryEncoding.stringSize(type) + 4 + 1;
+        if (values != null) size += 8 * n;
+        if (timestamps != null) size += 8 * n;
+        return size;
+    }
+
+    /**
+     * Encodes this instance at the current position of the given buffer: type, n, then the n first values and timestamps, in bulk.
+     * The arrays (if not {@code null}) must hold at least n values.
+     *
+     * @param buffer The buffer to write to. It must have at least {@link #getEncodedSize()} remaining bytes
+     */
+    public void encode(ByteBuffer buffer) {
+        BinaryEncoding.putString(buffer, type);
+        buffer.putInt(n);
+        buffer.put((byte) ((values != null ? 1 : 0) | (timestamps != null ? 2 : 0)));
+        moveToBeginning();
+        if (values != null) BinaryEncoding.putDoubles(buffer, values, n);
+        if (timestamps != null) BinaryEncoding.putLongs(buffer, timestamps, n);
+    }
+
+    /**
+     * Decodes an instance written by {@link #encode(ByteBuffer)} at the current position of the given buffer
+     *
+     * @param buffer The buffer to read from
+     * @return The decoded instance
+     */
+    public static TimelinedData decode(ByteBuffer buffer) {
+        TimelinedData timelinedData = new TimelinedData();
+        timelinedData.decodeFields(buffer);
+        return timelinedData;
+    }
+
+    /**
+     * Sets the fields of this instance from an encoding written by {@link #encode(ByteBuffer)}
+     *
+     * @param buffer The buffer to read from
+     */
+    private void decodeFields(ByteBuffer buffer) {
+        type = BinaryEncoding.getString(buffer);
+        n = buffer.getInt();
+        offset = 0;
+        int arrays = buffer.get();
+        values = (arrays & 1) != 0 ? BinaryEncoding.getDoubles(buffer, n) : null;
+        timestamps = (arrays & 2) != 0 ? BinaryEncoding.getLongs(buffer, n) : null;
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(getEncodedSize());
+        encode(buffer);
+        BinaryEncoding.writeEncoded(out, buffer);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        decodeFields(BinaryEncoding.readEncoded(in));
     }
 
 
@@ -188,16 +478,31 @@ public class TimelinedData implements Serializable {
 
         if (n != that.n) return false;
         if (type != null ? !type.equals(that.type) : that.type != null) return false;
-        if (!Arrays.equals(values, that.values)) return false;
-        return Arrays.equals(timestamps, that.timestamps);
+        if ((values == null) != (that.values == null) || (timestamps == null) != (that.timestamps == null)) return false;
+        for (int i = 0; i < n; i++) {
+            if (values != null && Double.doubleToLongBits(values[offset + i]) != Double.doubleToLongBits(that.values[that.offset + i])) {
+                return false;
+            }
+            if (timestamps != null && timestamps[offset + i] != that.timestamps[that.offset + i]) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
     public int hashCode() {
         int result = type != null ? type.hashCode() : 0;
         result = 31 * result + n;
-        result = 31 * result + Arrays.hashCode(values);
-        result = 31 * result + Arrays.hashCode(timestamps);
+        for (int i = 0; i < n; i++) {
+            if (values != null) {
+                long bits = Double.doubleToLongBits(values[offset + i]);
+                result = 31 * result + (int) (bits ^ (bits >>> 32));
+            }
+            if (timestamps != null) {
+                result = 31 * result + (int) (timestamps[offset + i] ^ (timestamps[offset + i] >>> 32));
+            }
+        }
         return result;
     }
 
@@ -205,8 +510,8 @@ public class TimelinedData implements Serializable {
     public String toString() {
         return "TimelinedData{" +
                 "n=" + n +
-                ", values=" + Arrays.toString(values) +
-                ", timestamps=" + Arrays.toString(timestamps) +
+                ", values=" + (values != null ? Arrays.toString(Arrays.copyOfRange(values, offset, offset + n)) : "null") +
+                ", timestamps=" + (timestamps != null ? Arrays.toString(Arrays.copyOfRange(timestamps, offset, offset + n)) : "null") +
                 '}';
     }
 }
@@ -0,0 +1,495 @@
+/***********************************************************************
+ Name............ : CompressedRecordReader.java
+ Description..... : A reader decoding compressed recordings block by block
+ Author.......... : Kevin Jiokeng for IRIT, RMESS Team
+ Creation Date... : 18/10/2026
+ ************************************************************************/
+
+package fr.irit.rmess.heartdeep.helpers;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A reader decoding compressed recordings (see {@link CompressedRecordWriter}) as a stream of records, one block at a time:
+ * memory use only depends on the block size, whatever the length of the recording.
+ *
+ * Within a block, the channels are merged back by timestamp (the records of a same timestamp in sensor id order),
+ * so records come out in the order of their timestamps rather than in the exact order they were written in.
+ *
+ * A reader of a file can also {@link #seekToBlock(long) seek} to a block, given its byte offset in the index of the recording
+ * (see {@link SensorRecordIndex}): the blocks before it are neither read nor decoded.
+ *
+ * Usage: {@code while (reader.next()) { ... reader.getTimestamp() ... }}.
+ * Records are decoded without allocating anything per record. A reader is used by a single thread.
+ */
+public class CompressedRecordReader implements Closeable {
+
+    /**
+     * The stream of the compressed recording
+     */
+    private DataInputStream in;
+
+    /**
+     * The file stream of the compressed recording, or {@code null} if it is not read from a file (the reader cannot seek then)
+     */
+    private final FileInputStream fileIn;
+
+    /**
+     * The sensors dictionary: the name of each sensor, indexed by its id
+     */
+    private final String[] sensorNames;
+
+    /**
+     * The maximum number of records of a block
+     */
+    private final int blockSize;
+
+    /**
+     * The bit stream the blocks are decoded from
+     */
+    private final TimeSeriesCodec.BitReader payload = new TimeSeriesCodec.BitReader();
+
+    /**
+     * The compressed payload of the current block
+     */
+    private byte[] payloadBytes = new byte[0];
+
+    /**
+     * The number of records of each channel in the current block, indexed by sensor id
+     */
+    private final int[] counts;
+
+    /**
+     * The index of the next record of each channel in the current block
+     */
+    private final int[] positions;
+
+    /**
+     * The timestamps of each channel in the current block
+     */
+    private final long[][] timestamps;
+
+    /**
+     * The readings along x axis of each channel in the current block
+     */
+    private final float[][] xs;
+
+    /**
+     * The readings along y axis of each channel in the current block
+     */
+    private final float[][] ys;
+
+    /**
+     * The readings along z axis of each channel in the current block
+     */
+    private final float[][] zs;
+
+    /**
+     * The number of records left in the current block
+     */
+    private int remaining = 0;
+
+    /**
+     * The timestamp of the current record
+     */
+    private long timestamp;
+
+    /**
+     * The id of the sensor of the current record
+     */
+    private int sensorId;
+
+    /**
+     * The reading along x axis of the current record
+     */
+    private float x;
+
+    /**
+     * The reading along y axis of the current record
+     */
+    private float y;
+
+    /**
+     * The reading along z axis of the current record
+     */
+    private float z;
+
+    /**
+     * Opens a compressed recording, and reads its header
+     *
+     * @param in The stream to read the compressed recording from. It is closed when the reader is closed
+     * @throws IOException If an I/O error occurs or if the input is not a compressed recording in a supported version
+     */
+    public CompressedRecordReader(InputStream in) throws IOException {
+        fileIn = in instanceof FileInputStream ? (FileInputStream) in : null;
+        this.in = new DataInputStream(in instanceof BufferedInputStream ? in : new BufferedInputStream(in));
+        try {
+            int magic = this.in.readInt();
+            if (magic != CompressedRecordWriter.MAGIC) {
+                throw new IOException("Not a HeartDeep compressed recording (bad magic number " + Integer.toHexString(magic) + ")");
+            }
+
+            short version = this.in.readShort();
+            if (version != CompressedRecordWriter.VERSION) {
+                throw new IOException("Unsupported compressed recording version " + version);
+            }
+
+            blockSize = this.in.readInt();
+            if (blockSize <= 0) {
+                throw new IOException("Malformed compressed recording: block size " + blockSize);
+            }
+            sensorNames = SensorRecordFormat.readHeader(this.in);
+        } catch (IOException e) {
+            this.in.close();
+            throw e;
+        }
+
+        int channels = sensorNames.length;
+        counts = new int[channels];
+        positions = new int[channels];
+        timestamps = new long[channels][0];
+        xs = new float[channels][0];
+        ys = new float[channels][0];
+        zs = new float[channels][0];
+    }
+
+    /**
+     * Opens a compressed recording file, and reads its header. The reader can {@link #seekToBlock(long) seek} to a block
+     *
+     * @param file The compressed recording
+     * @throws IOException If the file cannot be read or is not a compressed recording in a supported version
+     */
+    public CompressedRecordReader(File file) throws IOException {
+        this(new FileInputStream(file));
+    }
+
+    /**
+     * Indicates whether a file holds a compressed recording
+     *
+     * @param file The file
+     * @return {@code true} if it starts with the magic number of compressed recordings
+     * @throws IOException If the file cannot be read
+     */
+    public static boolean isCompressed(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            return in.readInt() == CompressedRecordWriter.MAGIC;
+        } catch (EOFException e) {
+            return false;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Opens a compressed recording as a stream holding the recording in the binary format (see {@link SensorRecordFormat}),
+     * decoded as the stream is read
+     *
+     * @param file The compressed recording
+     * @return The stream of the recording in the binary format
+     * @throws IOException If the file is not a compressed recording or cannot be read
+     */
+    public static InputStream openStream(File file) throws IOException {
+        return new BinaryInputStream(new CompressedRecordReader(new FileInputStream(file)));
+    }
+
+
+    /**
+     * Builds the index of a compressed recording saved without it, from the headers of its blocks only: the payloads are skipped
+     *
+     * @param file The compressed recording
+     * @return The index, holding the byte offset of each block
+     * @throws IOException If the file cannot be read or if the recording is malformed
+     */
+    public static SensorRecordIndex buildIndex(File file) throws IOException {
+        CompressedRecordReader reader = new CompressedRecordReader(file);
+        try {
+            FileChannel channel = reader.fileIn.getChannel();
+            long size = channel.size();
+            long offset = 4 + 2 + 4 + SensorRecordFormat.encodeHeader(reader.sensorNames).length;
+            ByteBuffer blockHeader = ByteBuffer.allocate(CompressedRecordWriter.BLOCK_HEADER_SIZE);
+            SensorRecordIndex index = new SensorRecordIndex(reader.blockSize);
+            while (offset < size) {
+                blockHeader.clear();
+                while (blockHeader.hasRemaining()) {
+                    if (channel.read(blockHeader, offset + blockHeader.position()) < 0) {
+                        throw new EOFException("Truncated block at byte " + offset);
+                    }
+                }
+                blockHeader.flip();
+
+                int payloadSize = blockHeader.getInt();
+                int recordsCount = blockHeader.getInt();
+                long minTimestamp = blockHeader.getLong();
+                long maxTimestamp = blockHeader.getLong();
+                if (payloadSize < 0 || recordsCount <= 0 || recordsCount > reader.blockSize
+                        || index.getRecordsCount() % reader.blockSize != 0) {
+                    throw new IOException("Malformed block at byte " + offset + ": " + recordsCount + " records in " + payloadSize + " bytes");
+                }
+
+                index.addBlock(offset, recordsCount, minTimestamp, maxTimestamp);
+                offset += CompressedRecordWriter.BLOCK_HEADER_SIZE + payloadSize;
+            }
+            if (offset > size) {
+                throw new EOFException("Truncated block payload at the end of " + file);
+            }
+            return index;
+        } finally {
+            reader.close();
+        }
+    }
+
+
+    /* Reading */
+
+    /**
+     * Positions the reader at the beginning of a block, dropping the records left in the current block
+     *
+     * @param offset The byte offset of the block in the recording (see {@link SensorRecordIndex#getBlockOffset(int)})
+     * @throws IOException If an I/O error occurs, or if the recording is not read from a file
+     */
+    public void seekToBlock(long offset) throws IOException {
+        if (fileIn == null) {
+            throw new IOException("Cannot seek in a compressed recording not read from a file");
+        }
+
+        fileIn.getChannel().position(offset);
+        in = new DataInputStream(new BufferedInputStream(fileIn));
+        remaining = 0;
+    }
+
+    /**
+     * Reads the next record
+     *
+     * @return {@code true} if a record was read (see the getters), {@code false} at the end of the recording
+     * @throws IOException If an I/O error occurs or if the recording is malformed
+     */
+    public boolean next() throws IOException {
+        while (remaining == 0) {
+            if (!readBlock()) {
+                return false;
+            }
+        }
+
+        // Merge the channels: take the earliest of their next records
+        int channel = -1;
+        long earliest = Long.MAX_VALUE;
+        for (int i = 0; i < counts.length; i++) {
+            if (positions[i] < counts[i] && (channel < 0 || timestamps[i][positions[i]] < earliest)) {
+                channel = i;
+                earliest = timestamps[i][positions[i]];
+            }
+        }
+
+        int position = positions[channel]++;
+        timestamp = earliest;
+        sensorId = channel;
+        x = xs[channel][position];
+        y = ys[channel][position];
+        z = zs[channel][position];
+        remaining--;
+        return true;
+    }
+
+    /**
+     * Reads and decodes the next block
+     *
+     * @return {@code false} at the end of the recording
+     * @throws IOException If an I/O error occurs or if the block is malformed
+     */
+    private boolean readBlock() throws IOException {
+        int payloadSize;
+        try {
+            payloadSize = in.readInt();
+        } catch (EOFException e) {
+            return false;
+        }
+        int recordsCount = in.readInt();
+        in.readLong();
+        in.readLong();
+        if (payloadSize < 0 || recordsCount < 0 || recordsCount > blockSize) {
+            throw new IOException("Malformed block: " + recordsCount + " records in " + payloadSize + " bytes");
+        }
+
+        if (payloadBytes.length < payloadSize) {
+            payloadBytes = new byte[payloadSize];
+        }
+        in.readFully(payloadBytes, 0, payloadSize);
+        payload.reset(payloadBytes, payloadSize);
+
+        int total = 0;
+        for (int channel = 0; channel < counts.length; channel++) {
+            long n = payload.readVarLong();
+            if (n < 0 || n > recordsCount - total) {
+                throw new IOException("Malformed block: " + n + " records for sensor " + channel);
+            }
+            int count = (int) n;
+            if (timestamps[channel].length < count) {
+                timestamps[channel] = new long[count];
+                xs[channel] = new float[count];
+                ys[channel] = new float[count];
+                zs[channel] = new float[count];
+            }
+
+            TimeSeriesCodec.decodeTimestamps(payload, timestamps[channel], count);
+            TimeSeriesCodec.decodeReadings(payload, xs[channel], count);
+            TimeSeriesCodec.decodeReadings(payload, ys[channel], count);
+            TimeSeriesCodec.decodeReadings(payload, zs[channel], count);
+            counts[channel] = count;
+            positions[channel] = 0;
+            total += count;
+        }
+        if (total != recordsCount) {
+            throw new IOException("Malformed block: " + total + " records instead of " + recordsCount);
+        }
+
+        remaining = total;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+
+    /* Getters */
+
+    /**
+     * Gets the sensors dictionary of the recording
+     *
+     * @return The name of each sensor, indexed by its id
+     */
+    public String[] getSensorNames() {
+        return sensorNames.clone();
+    }
+
+    /**
+     * Gets the timestamp of the current record
+     *
+     * @return The timestamp of the reading
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Gets the sensor of the current record
+     *
+     * @return The id of the sensor in the dictionary
+     */
+    public int getSensorId() {
+        return sensorId;
+    }
+
+    /**
+     * Gets the reading along x axis of the current record
+     *
+     * @return The reading along x axis
+     */
+    public float getX() {
+        return x;
+    }
+
+    /**
+     * Gets the reading along y axis of the current record
+     *
+     * @return The reading along y axis
+     */
+    public float getY() {
+        return y;
+    }
+
+    /**
+     * Gets the reading along z axis of the current record
+     *
+     * @return The reading along z axis
+     */
+    public float getZ() {
+        return z;
+    }
+
+
+    /**
+     * The stream of a compressed recording in the binary format: its header, then its records, decoded a few at a time
+     */
+    private static class BinaryInputStream extends InputStream {
+
+        /**
+         * The number of records decoded at a time
+         */
+        private static final int RECORDS_PER_FILL = 256;
+
+        /**
+         * The reader decoding the recording
+         */
+        private final CompressedRecordReader reader;
+
+        /**
+         * The bytes in the binary format not read yet
+         */
+        private ByteBuffer buffer = ByteBuffer.allocate(RECORDS_PER_FILL * SensorRecordFormat.RECORD_SIZE);
+
+        BinaryInputStream(CompressedRecordReader reader) {
+            this.reader = reader;
+            byte[] header = SensorRecordFormat.encodeHeader(reader.sensorNames);
+            if (header.length > buffer.capacity()) {
+                buffer = ByteBuffer.allocate(header.length);
+            }
+            buffer.put(header);
+            buffer.flip();
+        }
+
+        /**
+         * Decodes the next records into the buffer, if it was entirely read
+         *
+         * @return {@code false} at the end of the recording
+         * @throws IOException If an I/O error occurs or if the recording is malformed
+         */
+        private boolean fill() throws IOException {
+            if (buffer.hasRemaining()) {
+                return true;
+            }
+
+            buffer.clear();
+            while (buffer.remaining() >= SensorRecordFormat.RECORD_SIZE && reader.next()) {
+                SensorRecordFormat.putRecord(buffer, reader.timestamp, reader.sensorId, reader.x, reader.y, reader.z);
+            }
+            buffer.flip();
+            return buffer.hasRemaining();
+        }
+
+        @Override
+        public int read() throws IOException {
+            return fill() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+}
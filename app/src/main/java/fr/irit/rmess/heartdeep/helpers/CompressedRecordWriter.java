@@ -0,0 +1,595 @@
+/***********************************************************************
+ Name............ : CompressedRecordWriter.java
+ Description..... : A sensor records sink compressing records block by block, per sensor channel
+ Author.......... : Kevin Jiokeng for IRIT, RMESS Team
+ Creation Date... : 18/10/2026
+ ************************************************************************/
+
+package fr.irit.rmess.heartdeep.helpers;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A sensor records sink writing a compressed recording: records are gathered per sensor channel into blocks, and each channel
+ * of a block is compressed on its own (see {@link TimeSeriesCodec}): timestamps as delta-of-deltas, readings as XORs with the
+ * previous reading of the same sensor, both taking much fewer bytes than in the binary format or in CSV.
+ *
+ * A compressed recording starts with a header:
+ * <ul>
+ *     <li>the magic number {@link #MAGIC} (int)</li>
+ *     <li>the format version {@link #VERSION} (short)</li>
+ *     <li>the maximum number of records of a block (int)</li>
+ *     <li>the recording header of the binary format, holding the sensors dictionary (see {@link SensorRecordFormat})</li>
+ * </ul>
+ * It is followed by blocks made of a {@link #BLOCK_HEADER_SIZE}-byte header: size of the compressed payload in bytes (int),
+ * number of records (int), lowest and highest timestamps (longs); and of the compressed payload: for each sensor of the dictionary,
+ * the number of its records (varint), then their timestamps, x, y and z readings.
+ * All values are big-endian. Compressed recordings are read back with a {@link CompressedRecordReader}.
+ *
+ * The blocks written to a file are indexed, with their byte offsets (see {@link SensorRecordIndex#addBlock(long, int, long, long)}),
+ * and the index is saved next to the file when the writer is closed: readers seek to a block without decoding the ones before it.
+ *
+ * Writing a record is a plain copy into the current block, out of a fixed number of preallocated blocks. Full blocks are
+ * handed off to a dedicated I/O thread which compresses and writes them, then gives them back, so the thread writing records
+ * (the sensor thread) never waits for the compression nor for the storage. If the I/O thread is so late that no block is free,
+ * the record is dropped (and counted, see {@link #getDroppedRecordsCount()}).
+ * Nothing is allocated per record nor per block once the channels of the blocks have reached their size.
+ *
+ * Records must be written by a single thread. The statistics getters can be called from any thread.
+ */
+public class CompressedRecordWriter implements SensorRecordSink {
+
+    /**
+     * The magic number at the beginning of every compressed recording ("HDZ1")
+     */
+    public static final int MAGIC = 0x48445A31;
+
+    /**
+     * The version of the compressed format
+     */
+    public static final short VERSION = 1;
+
+    /**
+     * The size (in bytes) of the header of each block
+     */
+    public static final int BLOCK_HEADER_SIZE = 4 + 4 + 8 + 8;
+
+    /**
+     * The default maximum number of records of a block (about 10 seconds of two sensors at 200 Hz)
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 4096;
+
+    /**
+     * The default number of blocks (a few hundred kB of memory with the default block size)
+     */
+    public static final int DEFAULT_BLOCKS_COUNT = 4;
+
+    /**
+     * The initial number of records each channel can hold
+     */
+    private static final int INITIAL_CHANNEL_CAPACITY = 256;
+
+    /**
+     * The size (in bytes) of the buffer of the file the blocks are written to
+     */
+    private static final int FILE_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * A special block telling the I/O thread to stop
+     */
+    private static final Block END_OF_STREAM = new Block(0, 0);
+
+    /**
+     * The stream the blocks are written to. Only used by the I/O thread after construction
+     */
+    private final OutputStream outputStream;
+
+    /**
+     * The file the blocks are written to, or {@code null} if the writer was created on a stream
+     */
+    private final File file;
+
+    /**
+     * The maximum number of records of a block
+     */
+    private final int blockSize;
+
+    /**
+     * The blocks available to be filled
+     */
+    private final BlockingQueue<Block> freeBlocks;
+
+    /**
+     * The full blocks waiting to be compressed and written by the I/O thread
+     */
+    private final BlockingQueue<Block> fullBlocks;
+
+    /**
+     * The dedicated I/O thread
+     */
+    private final Thread ioThread;
+
+    /**
+     * The bit stream the blocks are compressed into. Only used by the I/O thread
+     */
+    private final TimeSeriesCodec.BitWriter payload;
+
+    /**
+     * The buffer the block headers are encoded into. Only used by the I/O thread
+     */
+    private final ByteBuffer blockHeader = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+
+    /**
+     * The sparse index of the blocks written so far, one index block per block. Only filled by the I/O thread
+     */
+    private final SensorRecordIndex index;
+
+    /**
+     * The block records are currently appended to, or {@code null} if none is available
+     */
+    private Block currentBlock;
+
+    /**
+     * Indicates whether this writer has been closed
+     */
+    private boolean closed = false;
+
+    /**
+     * The first error met by the I/O thread, if any
+     */
+    private volatile IOException ioError = null;
+
+    /**
+     * The number of records written (and not dropped) so far
+     */
+    private volatile long recordsCount = 0;
+
+    /**
+     * The number of records dropped because no block was available
+     */
+    private volatile long droppedRecordsCount = 0;
+
+    /**
+     * The number of blocks written by the I/O thread
+     */
+    private volatile long blocksCount = 0;
+
+    /**
+     * The number of bytes written to the stream (header included)
+     */
+    private volatile long bytesWritten = 0;
+
+    /**
+     * The app-wide counter of bytes written to storage
+     */
+    private final MetricsRegistry.Counter bytesWrittenMetric = MetricsRegistry.getDefault().counter(MetricsRegistry.BYTES_WRITTEN);
+
+    /**
+     * The app-wide counter of records dropped by the recording sinks
+     */
+    private final MetricsRegistry.Counter droppedRecordsMetric = MetricsRegistry.getDefault().counter(MetricsRegistry.RECORDS_DROPPED);
+
+    /**
+     * The app-wide gauge of the number of blocks waiting to be written
+     */
+    private final MetricsRegistry.Gauge queueDepthMetric = MetricsRegistry.getDefault().gauge(MetricsRegistry.STORAGE_QUEUE_DEPTH);
+
+    /**
+     * Creates a writer for the given file, with the default block size and count.
+     * The recording header is written immediately.
+     *
+     * @param file        The file to write to (created or overwritten)
+     * @param sensorNames The sensors dictionary: the name of each sensor, indexed by its id
+     * @throws IOException If the file cannot be opened or the header cannot be written
+     */
+    public CompressedRecordWriter(File file, String[] sensorNames) throws IOException {
+        this(file, sensorNames, DEFAULT_BLOCK_SIZE, DEFAULT_BLOCKS_COUNT);
+    }
+
+    /**
+     * Creates a writer for the given file.
+     * The recording header is written immediately.
+     *
+     * @param file        The file to write to (created or overwritten)
+     * @param sensorNames The sensors dictionary: the name of each sensor, indexed by its id
+     * @param blockSize   The maximum number of records of a block. It is also the number of records per block of the index
+     * @param blocksCount The number of blocks. Memory use is bounded by about {@code 20 * blockSize * blocksCount} bytes per sensor
+     * @throws IOException If the file cannot be opened or the header cannot be written
+     */
+    public CompressedRecordWriter(File file, String[] sensorNames, int blockSize, int blocksCount) throws IOException {
+        this(new BufferedOutputStream(new FileOutputStream(file), FILE_BUFFER_SIZE), file, sensorNames, blockSize, blocksCount);
+    }
+
+    /**
+     * Creates a writer for the given stream.
+     * The recording header is written immediately.
+     *
+     * @param outputStream The stream to write to. It is closed when the writer is closed
+     * @param sensorNames  The sensors dictionary: the name of each sensor, indexed by its id
+     * @param blockSize    The maximum number of records of a block. Larger blocks compress slightly better, but take more memory
+     * @param blocksCount  The number of blocks. Memory use is bounded by about {@code 20 * blockSize * blocksCount} bytes per sensor
+     * @throws IOException If the header cannot be written
+     */
+    public CompressedRecordWriter(OutputStream outputStream, String[] sensorNames, int blockSize, int blocksCount) throws IOException {
+        this(outputStream, null, sensorNames, blockSize, blocksCount);
+    }
+
+    private CompressedRecordWriter(OutputStream outputStream, File file, String[] sensorNames, int blockSize, int blocksCount) throws IOException {
+        if (blockSize <= 0 || blocksCount <= 0) {
+            outputStream.close();
+            throw new IllegalArgumentException("Invalid blocks configuration: " + blocksCount + " blocks of " + blockSize + " records");
+        }
+
+        this.outputStream = outputStream;
+        this.file = file;
+        this.blockSize = blockSize;
+        index = new SensorRecordIndex(blockSize);
+        if (file != null) {
+            // Remove the index of a previous recording with the same name
+            indexFile().delete();
+        }
+
+        freeBlocks = new ArrayBlockingQueue<>(blocksCount);
+        fullBlocks = new ArrayBlockingQueue<>(blocksCount + 1);
+        for (int i = 0; i < blocksCount; i++) {
+            freeBlocks.add(new Block(sensorNames.length, Math.min(blockSize, INITIAL_CHANNEL_CAPACITY)));
+        }
+        currentBlock = freeBlocks.poll();
+        payload = new TimeSeriesCodec.BitWriter(blockSize * 8);
+
+        try {
+            byte[] recordingHeader = SensorRecordFormat.encodeHeader(sensorNames);
+            ByteBuffer header = ByteBuffer.allocate(4 + 2 + 4 + recordingHeader.length);
+            header.putInt(MAGIC);
+            header.putShort(VERSION);
+            header.putInt(blockSize);
+            header.put(recordingHeader);
+            outputStream.write(header.array());
+            bytesWritten = header.capacity();
+        } catch (IOException e) {
+            outputStream.close();
+            throw e;
+        }
+
+        ioThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runIoLoop();
+            }
+        }, "HeartDeep-CompressedWriter");
+        ioThread.start();
+    }
+
+    @Override
+    public void writeRecord(long timestamp, int sensorId, float x, float y, float z) {
+        if (closed) {
+            return;
+        }
+
+        if (currentBlock == null) {
+            currentBlock = freeBlocks.poll();
+            if (currentBlock == null) {
+                droppedRecordsCount++;
+                droppedRecordsMetric.increment();
+                return;
+            }
+        }
+
+        currentBlock.add(timestamp, sensorId, x, y, z, blockSize);
+        recordsCount++;
+
+        if (currentBlock.count == blockSize) {
+            fullBlocks.add(currentBlock);
+            queueDepthMetric.set(fullBlocks.size());
+            currentBlock = freeBlocks.poll();
+        }
+    }
+
+    /**
+     * The loop run by the I/O thread: compresses and writes full blocks and gives them back, until {@link #END_OF_STREAM} is met
+     */
+    private void runIoLoop() {
+        while (true) {
+            Block block;
+            try {
+                block = fullBlocks.take();
+            } catch (InterruptedException e) {
+                // Only close() can stop this thread
+                continue;
+            }
+            queueDepthMetric.set(fullBlocks.size());
+
+            if (block == END_OF_STREAM) {
+                return;
+            }
+
+            if (ioError == null) {
+                writeBlock(block);
+            }
+
+            block.clear();
+            freeBlocks.add(block);
+        }
+    }
+
+    /**
+     * Compresses a block and writes it to the stream
+     *
+     * @param block The block to write
+     */
+    private void writeBlock(Block block) {
+        payload.reset();
+        for (int channel = 0; channel < block.counts.length; channel++) {
+            int n = block.counts[channel];
+            payload.writeVarLong(n);
+            TimeSeriesCodec.encodeTimestamps(payload, block.timestamps[channel], n);
+            TimeSeriesCodec.encodeReadings(payload, block.x[channel], n);
+            TimeSeriesCodec.encodeReadings(payload, block.y[channel], n);
+            TimeSeriesCodec.encodeReadings(payload, block.z[channel], n);
+        }
+        payload.pad();
+
+        blockHeader.clear();
+        blockHeader.putInt(payload.length());
+        blockHeader.putInt(block.count);
+        blockHeader.putLong(block.minTimestamp);
+        blockHeader.putLong(block.maxTimestamp);
+
+        try {
+            outputStream.write(blockHeader.array(), 0, BLOCK_HEADER_SIZE);
+            outputStream.write(payload.bytes(), 0, payload.length());
+            index.addBlock(bytesWritten, block.count, block.minTimestamp, block.maxTimestamp);
+            bytesWritten += BLOCK_HEADER_SIZE + payload.length();
+            bytesWrittenMetric.add(BLOCK_HEADER_SIZE + payload.length());
+            blocksCount++;
+        } catch (IOException e) {
+            ioError = e;
+        }
+    }
+
+    /**
+     * Writes all the pending blocks (the last one partial), stops the I/O thread and closes the stream.
+     * If the writer was created on a file, its index is then saved next to it
+     *
+     * @throws IOException If an I/O error occurred while writing
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        if (currentBlock != null && currentBlock.count > 0) {
+            fullBlocks.add(currentBlock);
+            currentBlock = null;
+        }
+        closed = true;
+        fullBlocks.add(END_OF_STREAM);
+
+        boolean interrupted = false;
+        while (true) {
+            try {
+                ioThread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        try {
+            outputStream.close();
+        } catch (IOException e) {
+            if (ioError == null) {
+                ioError = e;
+            }
+        }
+
+        if (ioError != null) {
+            throw ioError;
+        }
+
+        if (file != null) {
+            index.writeTo(indexFile());
+        }
+    }
+
+    /**
+     * Gets the index file of the file written to
+     *
+     * @return The file the index is saved to
+     */
+    private File indexFile() {
+        return SensorRecordIndex.indexFile(file.getAbsoluteFile().getParentFile(), file.getName());
+    }
+
+    /**
+     * Closes this writer, discarding any error, and deletes the file it was writing to (if it was created on a file).
+     * Used when a recording is cancelled.
+     */
+    @Override
+    public void abort() {
+        try {
+            close();
+        } catch (IOException e) {
+            // The file is deleted anyway
+        }
+
+        if (file != null) {
+            file.delete();
+            indexFile().delete();
+        }
+    }
+
+
+    /* Statistics */
+
+    /**
+     * Gets the number of full blocks waiting to be written by the I/O thread
+     *
+     * @return The current queue depth
+     */
+    public int getQueueDepth() {
+        int depth = fullBlocks.size();
+        return depth > 0 && fullBlocks.peek() == END_OF_STREAM ? depth - 1 : depth;
+    }
+
+    /**
+     * Gets the number of records accepted so far
+     *
+     * @return The number of records written (and not dropped)
+     */
+    public long getRecordsCount() {
+        return recordsCount;
+    }
+
+    /**
+     * Gets the number of records dropped because the I/O thread could not keep up
+     *
+     * @return The number of dropped records
+     */
+    public long getDroppedRecordsCount() {
+        return droppedRecordsCount;
+    }
+
+    /**
+     * Gets the number of blocks written to the stream so far
+     *
+     * @return The number of blocks
+     */
+    public long getBlocksCount() {
+        return blocksCount;
+    }
+
+    /**
+     * Gets the number of bytes written to the stream so far (header included)
+     *
+     * @return The number of bytes written
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Gets the sparse index of the blocks written so far
+     *
+     * @return The index
+     */
+    public SensorRecordIndex getIndex() {
+        return index;
+    }
+
+
+    /**
+     * A block of records, gathered per sensor channel until it is compressed
+     */
+    private static class Block {
+
+        /**
+         * The number of records of each channel, indexed by sensor id
+         */
+        private final int[] counts;
+
+        /**
+         * The timestamps of each channel
+         */
+        private final long[][] timestamps;
+
+        /**
+         * The readings along x axis of each channel
+         */
+        private final float[][] x;
+
+        /**
+         * The readings along y axis of each channel
+         */
+        private final float[][] y;
+
+        /**
+         * The readings along z axis of each channel
+         */
+        private final float[][] z;
+
+        /**
+         * The number of records of the block
+         */
+        private int count = 0;
+
+        /**
+         * The lowest timestamp of the block
+         */
+        private long minTimestamp;
+
+        /**
+         * The highest timestamp of the block
+         */
+        private long maxTimestamp;
+
+        /**
+         * Creates an empty block
+         *
+         * @param channels The number of sensor channels
+         * @param capacity The initial number of records each channel can hold
+         */
+        private Block(int channels, int capacity) {
+            counts = new int[channels];
+            timestamps = new long[channels][capacity];
+            x = new float[channels][capacity];
+            y = new float[channels][capacity];
+            z = new float[channels][capacity];
+        }
+
+        /**
+         * Appends a record to its channel, growing the channel if needed
+         *
+         * @param timestamp   The timestamp of the reading
+         * @param sensorId    The id of the sensor
+         * @param x           The reading along x axis
+         * @param y           The reading along y axis
+         * @param z           The reading along z axis
+         * @param maxCapacity The maximum number of records of a block
+         */
+        private void add(long timestamp, int sensorId, float x, float y, float z, int maxCapacity) {
+            int i = counts[sensorId];
+            if (i == timestamps[sensorId].length) {
+                int capacity = Math.min(maxCapacity, 2 * i);
+                timestamps[sensorId] = Arrays.copyOf(timestamps[sensorId], capacity);
+                this.x[sensorId] = Arrays.copyOf(this.x[sensorId], capacity);
+                this.y[sensorId] = Arrays.copyOf(this.y[sensorId], capacity);
+                this.z[sensorId] = Arrays.copyOf(this.z[sensorId], capacity);
+            }
+
+            timestamps[sensorId][i] = timestamp;
+            this.x[sensorId][i] = x;
+            this.y[sensorId][i] = y;
+            this.z[sensorId][i] = z;
+            counts[sensorId] = i + 1;
+
+            if (count == 0 || timestamp < minTimestamp) {
+                minTimestamp = timestamp;
+            }
+            if (count == 0 || timestamp > maxTimestamp) {
+                maxTimestamp = timestamp;
+            }
+            count++;
+        }
+
+        /**
+         * Empties the block, keeping its channels
+         */
+        private void clear() {
+            Arrays.fill(counts, 0);
+            count = 0;
+        }
+    }
+}
@@ -0,0 +1,357 @@
+/***********************************************************************
+ Name............ : DecimalEncoding.java
+ Description..... : Allocation-free encoding of numbers as ASCII decimal text
+ Author.......... : Kevin Jiokeng for IRIT, RMESS Team
+ Creation Date... : 18/10/2026
+ ************************************************************************/
+
+package fr.irit.rmess.heartdeep.helpers;
+
+import java.math.BigInteger;
+
+/**
+ * Allocation-free encoding of numbers as ASCII decimal text, directly into a byte array.
+ *
+ * The output is byte-for-byte the one of {@link Long#toString(long)} and {@link Float#toString(float)}.
+ * Floats in [10<sup>-3</sup>, 10<sup>7</sup>) (which covers all actual sensor readings) are written in plain notation
+ * with the shortest digits reading back to the same float, computed with the Ryu algorithm by Ulf Adams.
+ * Other floats are left to Float.toString: in scientific notation, older platform implementations
+ * (including Android's) sometimes write one more digit than needed, and this must be reproduced.
+ */
+public final class DecimalEncoding {
+
+    /**
+     * The maximum number of bytes written by {@link #putLong(byte[], int, long)}
+     */
+    public static final int MAX_LONG_LENGTH = 20;
+
+    /**
+     * The maximum number of bytes written by {@link #putFloat(byte[], int, float)}
+     */
+    public static final int MAX_FLOAT_LENGTH = 16;
+
+    /**
+     * The smallest magnitude written in plain notation
+     */
+    private static final float PLAIN_MIN = 1e-3f;
+
+    /**
+     * The magnitude from which scientific notation is used
+     */
+    private static final float PLAIN_MAX = 1e7f;
+
+    private static final int FLOAT_MANTISSA_BITS = 23;
+    private static final int FLOAT_EXPONENT_BITS = 8;
+    private static final int FLOAT_BIAS = 127;
+    private static final int POW5_INV_BITCOUNT = 59;
+    private static final int POW5_BITCOUNT = 61;
+
+    /**
+     * floor(2^(pow5bits(i) - 1 + POW5_INV_BITCOUNT) / 5^i) + 1, for the non-negative binary exponents
+     */
+    private static final long[] POW5_INV_SPLIT = new long[31];
+
+    /**
+     * The POW5_BITCOUNT most significant bits of 5^i, for the negative binary exponents
+     */
+    private static final long[] POW5_SPLIT = new long[47];
+
+    static {
+        // Computed once, at class loading
+        BigInteger five = BigInteger.valueOf(5);
+        for (int i = 0; i < POW5_SPLIT.length; i++) {
+            BigInteger pow = five.pow(i);
+            int bitLength = pow.bitLength();
+            POW5_SPLIT[i] = bitLength > POW5_BITCOUNT
+                    ? pow.shiftRight(bitLength - POW5_BITCOUNT).longValue()
+                    : pow.shiftLeft(POW5_BITCOUNT - bitLength).longValue();
+            if (i < POW5_INV_SPLIT.length) {
+                POW5_INV_SPLIT[i] = BigInteger.ONE.shiftLeft(bitLength - 1 + POW5_INV_BITCOUNT).divide(pow).longValue() + 1;
+            }
+        }
+    }
+
+    private DecimalEncoding() {
+    }
+
+    /**
+     * Writes a long in decimal, like {@link Long#toString(long)} does
+     *
+     * @param buffer The array to write to. It must have at least {@link #MAX_LONG_LENGTH} bytes after {@code offset}
+     * @param offset The index at which to write
+     * @param value  The value to write
+     * @return The index following the last written byte
+     */
+    public static int putLong(byte[] buffer, int offset, long value) {
+        if (value == Long.MIN_VALUE) {
+            // Its absolute value does not fit in a long
+            offset = putLong(buffer, offset, value / 10);
+            buffer[offset] = (byte) ('0' + 8);
+            return offset + 1;
+        }
+
+        if (value < 0) {
+            buffer[offset++] = '-';
+            value = -value;
+        }
+
+        int length = decimalLength(value);
+        int end = offset + length;
+        for (int i = end - 1; i >= offset; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return end;
+    }
+
+    /**
+     * Writes a float in decimal, like {@link Float#toString(float)} does
+     *
+     * @param buffer The array to write to. It must have at least {@link #MAX_FLOAT_LENGTH} bytes after {@code offset}
+     * @param offset The index at which to write
+     * @param value  The value to write
+     * @return The index following the last written byte
+     */
+    public static int putFloat(byte[] buffer, int offset, float value) {
+        float magnitude = Math.abs(value);
+        if (value != 0 && !(magnitude >= PLAIN_MIN && magnitude < PLAIN_MAX)) {
+            // Scientific notation, infinities and NaN: seldom met, left to the platform
+            return putAscii(buffer, offset, Float.toString(value));
+        }
+
+        int bits = Float.floatToRawIntBits(value);
+        if (bits < 0) {
+            buffer[offset++] = '-';
+        }
+
+        if (value == 0) {
+            buffer[offset] = '0';
+            buffer[offset + 1] = '.';
+            buffer[offset + 2] = '0';
+            return offset + 3;
+        }
+
+        int ieeeMantissa = bits & ((1 << FLOAT_MANTISSA_BITS) - 1);
+        int ieeeExponent = (bits >>> FLOAT_MANTISSA_BITS) & ((1 << FLOAT_EXPONENT_BITS) - 1);
+
+        // Ryu: shortest decimal output * 10^exponent in the rounding interval of the value
+        int e2 = ieeeExponent - FLOAT_BIAS - FLOAT_MANTISSA_BITS - 2;
+        int m2 = (1 << FLOAT_MANTISSA_BITS) | ieeeMantissa;
+        boolean acceptBounds = (m2 & 1) == 0;
+
+        int mv = 4 * m2;
+        int mp = 4 * m2 + 2;
+        int mmShift = ieeeMantissa != 0 || ieeeExponent <= 1 ? 1 : 0;
+        int mm = 4 * m2 - 1 - mmShift;
+
+        int vr, vp, vm;
+        int e10;
+        boolean vmIsTrailingZeros = false;
+        boolean vrIsTrailingZeros = false;
+        int lastRemovedDigit = 0;
+
+        if (e2 >= 0) {
+            int q = log10Pow2(e2);
+            e10 = q;
+            int k = POW5_INV_BITCOUNT + pow5bits(q) - 1;
+            int i = -e2 + q + k;
+            vr = mulShift(mv, POW5_INV_SPLIT[q], i);
+            vp = mulShift(mp, POW5_INV_SPLIT[q], i);
+            vm = mulShift(mm, POW5_INV_SPLIT[q], i);
+            if (q != 0 && (vp - 1) / 10 <= vm / 10) {
+                int l = POW5_INV_BITCOUNT + pow5bits(q - 1) - 1;
+                lastRemovedDigit = mulShift(mv, POW5_INV_SPLIT[q - 1], -e2 + q - 1 + l) % 10;
+            }
+            if (q <= 9) {
+                if (mv % 5 == 0) {
+                    vrIsTrailingZeros = multipleOfPowerOf5(mv, q);
+                } else if (acceptBounds) {
+                    vmIsTrailingZeros = multipleOfPowerOf5(mm, q);
+                } else if (multipleOfPowerOf5(mp, q)) {
+                    vp--;
+                }
+            }
+        } else {
+            int q = log10Pow5(-e2);
+            e10 = q + e2;
+            int i = -e2 - q;
+            int k = pow5bits(i) - POW5_BITCOUNT;
+            int j = q - k;
+            vr = mulShift(mv, POW5_SPLIT[i], j);
+            vp = mulShift(mp, POW5_SPLIT[i], j);
+            vm = mulShift(mm, POW5_SPLIT[i], j);
+            if (q != 0 && (vp - 1) / 10 <= vm / 10) {
+                j = q - 1 - (pow5bits(i + 1) - POW5_BITCOUNT);
+                lastRemovedDigit = mulShift(mv, POW5_SPLIT[i + 1], j) % 10;
+            }
+            if (q <= 1) {
+                vrIsTrailingZeros = true;
+                if (acceptBounds) {
+                    vmIsTrailingZeros = mmShift == 1;
+                } else {
+                    vp--;
+                }
+            } else if (q < 31) {
+                vrIsTrailingZeros = (mv & ((1 << (q - 1)) - 1)) == 0;
+            }
+        }
+
+        int removed = 0;
+        int output;
+        if (vmIsTrailingZeros || vrIsTrailingZeros) {
+            while (vp / 10 > vm / 10) {
+                vmIsTrailingZeros &= vm % 10 == 0;
+                vrIsTrailingZeros &= lastRemovedDigit == 0;
+                lastRemovedDigit = vr % 10;
+                vr /= 10;
+                vp /= 10;
+                vm /= 10;
+                removed++;
+            }
+            if (vmIsTrailingZeros) {
+                while (vm % 10 == 0) {
+                    vrIsTrailingZeros &= lastRemovedDigit == 0;
+                    lastRemovedDigit = vr % 10;
+                    vr /= 10;
+                    vp /= 10;
+                    vm /= 10;
+                    removed++;
+                }
+            }
+            if (vrIsTrailingZeros && lastRemovedDigit == 5 && vr % 2 == 0) {
+                // Round to even
+                lastRemovedDigit = 4;
+            }
+            output = vr + ((vr == vm && (!acceptBounds || !vmIsTrailingZeros)) || lastRemovedDigit >= 5 ? 1 : 0);
+        } else {
+            while (vp / 10 > vm / 10) {
+                lastRemovedDigit = vr % 10;
+                vr /= 10;
+                vp /= 10;
+                vm /= 10;
+                removed++;
+            }
+            output = vr + (vr == vm || lastRemovedDigit >= 5 ? 1 : 0);
+        }
+
+        // Drop the trailing zeros, so that the digits are exactly the significant ones
+        int exponent = e10 + removed;
+        while (output % 10 == 0) {
+            output /= 10;
+            exponent++;
+        }
+
+        return putPlain(buffer, offset, output, exponent);
+    }
+
+    /**
+     * Lays digits out in plain notation, like {@link Float#toString(float)} does for magnitudes in [10<sup>-3</sup>, 10<sup>7</sup>)
+     *
+     * @param buffer   The array to write to
+     * @param offset   The index at which to write
+     * @param digits   The significant digits (without trailing zeros)
+     * @param exponent The power of ten to multiply the digits with
+     * @return The index following the last written byte
+     */
+    private static int putPlain(byte[] buffer, int offset, int digits, int exponent) {
+        int length = decimalLength(digits);
+        int scientificExponent = exponent + length - 1;
+
+        if (scientificExponent < 0) { // 0.00ddd
+            buffer[offset++] = '0';
+            buffer[offset++] = '.';
+            for (int i = -1; i > scientificExponent; i--) {
+                buffer[offset++] = '0';
+            }
+            return putUnsigned(buffer, offset, digits, length);
+        }
+
+        int integerLength = scientificExponent + 1;
+        if (length <= integerLength) { // ddd00.0
+            offset = putUnsigned(buffer, offset, digits, length);
+            for (int i = length; i < integerLength; i++) {
+                buffer[offset++] = '0';
+            }
+            buffer[offset] = '.';
+            buffer[offset + 1] = '0';
+            return offset + 2;
+        }
+
+        // dd.ddd
+        int end = offset + length + 1;
+        for (int i = end - 1; i > offset + integerLength; i--) {
+            buffer[i] = (byte) ('0' + digits % 10);
+            digits /= 10;
+        }
+        buffer[offset + integerLength] = '.';
+        putUnsigned(buffer, offset, digits, integerLength);
+        return end;
+    }
+
+    /**
+     * Writes the {@code length} decimal digits of a non-negative value
+     */
+    private static int putUnsigned(byte[] buffer, int offset, int value, int length) {
+        int end = offset + length;
+        for (int i = end - 1; i >= offset; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return end;
+    }
+
+    /**
+     * Writes an ASCII string
+     */
+    private static int putAscii(byte[] buffer, int offset, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            buffer[offset++] = (byte) value.charAt(i);
+        }
+        return offset;
+    }
+
+    /**
+     * Gets the number of decimal digits of a non-negative value
+     */
+    private static int decimalLength(long value) {
+        int length = 1;
+        while (value >= 10) {
+            value /= 10;
+            length++;
+        }
+        return length;
+    }
+
+    private static int pow5bits(int e) {
+        return ((e * 1217359) >>> 19) + 1;
+    }
+
+    private static int log10Pow2(int e) {
+        return (e * 78913) >>> 18;
+    }
+
+    private static int log10Pow5(int e) {
+        return (e * 732923) >>> 20;
+    }
+
+    private static boolean multipleOfPowerOf5(int value, int p) {
+        int count = 0;
+        while (value % 5 == 0) {
+            value /= 5;
+            count++;
+        }
+        return count >= p;
+    }
+
+    /**
+     * Computes (m * factor) >> shift, with a 32-bit m, a 61-bit factor and a shift greater than 32
+     */
+    private static int mulShift(int m, long factor, int shift) {
+        long factorLow = factor & 0xFFFFFFFFL;
+        long factorHigh = factor >>> 32;
+        long bits0 = m * factorLow;
+        long bits1 = m * factorHigh;
+        long sum = (bits0 >>> 32) + bits1;
+        return (int) (sum >>> (shift - 32));
+    }
+}
@@ -12,6 +12,9 @@ import android.util.Log;
 
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -20,6 +23,21 @@ import java.util.Date;
  * A helper class for writing to files
  */
 public class HeartDeepFileWriter {
+    /**
+     * A storage backend streaming records to a single file from a background thread (see {@link StreamingRecordWriter})
+     */
+    public static final int STORAGE_STREAMING = 0;
+
+    /**
+     * A storage backend appending records to memory-mapped segment files (see {@link MappedSegmentLog})
+     */
+    public static final int STORAGE_MEMORY_MAPPED = 1;
+
+    /**
+     * A storage backend compressing records block by block, per sensor channel (see {@link CompressedRecordWriter})
+     */
+    public static final int STORAGE_COMPRESSED = 2;
+
     /**
      * Helper function to save readings to file, in recording mode.
      * The file will be created in the internal directory of the app.
@@ -57,4 +75,101 @@ public class HeartDeepFileWriter {
 
         return null;
     }
+
+    /**
+     * Helper function to open a recording, in recording mode.
+     * It will be created in the internal directory of the app, and filled as records are written to the returned sink.
+     *
+     * @param filename    The name of the recording
+     * @param sensorNames The sensors dictionary: the name of each sensor, indexed by its id
+     * @param storage     The storage backend to use. Should be one of the STORAGE_* constants
+     * @param context     The Android context from which to write
+     * @return A sink to write the records to, or {@code null} if an error occurred
+     */
+    public static SensorRecordSink openRecording(String filename, String[] sensorNames, int storage, Context context) {
+        if (context == null || sensorNames == null) {
+            return null;
+        }
+
+        if (filename == null || filename == "") {
+            DateFormat dateFormat = SimpleDateFormat.getDateTimeInstance();
+            filename = dateFormat.format(new Date()) + SensorRecordFormat.FILE_EXTENSION;
+        }
+
+        try {
+            File directory = context.getExternalFilesDir(null);
+            switch (storage) {
+                case STORAGE_MEMORY_MAPPED:
+                    return new MappedSegmentLog(directory, filename, sensorNames);
+                case STORAGE_COMPRESSED:
+                    return new CompressedRecordWriter(new File(directory, filename), sensorNames);
+                case STORAGE_STREAMING:
+                default:
+                    return new StreamingRecordWriter(new File(directory, filename), sensorNames);
+            }
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            Log.e("SAVE-FILE", "Error while opening file " + filename);
+        }
+
+        return null;
+    }
+
+    /**
+     * Helper function to open a recording (previously saved in the internal directory of the app) for reading,
+     * whatever the storage backend it was written with.
+     *
+     * @param filename The name of the recording
+     * @param context  The Android context from which to read
+     * @return A stream holding the recording in the binary format (see {@link SensorRecordFormat})
+     * @throws IOException If the recording cannot be opened
+     */
+    public static InputStream openRecordingStream(String filename, Context context) throws IOException {
+        return SensorRecordReader.openStream(context.getExternalFilesDir(null), filename);
+    }
+
+    /**
+     * Helper function to convert a binary recording (previously saved in the internal directory of the app)
+     * to the CSV format {@code timestamp,sensor,x,y,z}.
+     * The CSV file is created next to the binary one, with the same name and a ".csv" extension.
+     *
+     * @param filename The name of the binary recording file
+     * @param context  The Android context from which to read and write
+     * @return The name of the CSV file, or {@code null} if an error occurred
+     */
+    public static String convertToCsv(String filename, Context context) {
+        if (context == null || filename == null) {
+            return null;
+        }
+
+        String csvFilename = filename;
+        if (csvFilename.endsWith(SensorRecordFormat.FILE_EXTENSION)) {
+            csvFilename = csvFilename.substring(0, csvFilename.length() - SensorRecordFormat.FILE_EXTENSION.length());
+        }
+        csvFilename += ".csv";
+
+        try {
+            File directory = context.getExternalFilesDir(null);
+            InputStream in = openRecordingStream(filename, context);
+            try {
+                OutputStream out = new FileOutputStream(new File(directory, csvFilename));
+                try {
+                    SensorRecordCsvConverter.convert(in, out);
+                } finally {
+                    out.close();
+                }
+            } finally {
+                in.close();
+            }
+
+            return csvFilename;
+
+        } catch (Exception e) {
+            e.printStackTrace();
+            Log.e("SAVE-FILE", "Error while converting file " + filename + " to CSV");
+        }
+
+        return null;
+    }
 }
@@ -0,0 +1,74 @@
+/***********************************************************************
+ Name............ : LogSampler.java
+ Description..... : A lock-free rate limiter deciding which hot-path events are worth a debug log
+ Author.......... : Kevin Jiokeng for IRIT, RMESS Team
+ Creation Date... : 18/10/2026
+ ************************************************************************/
+
+package fr.irit.rmess.heartdeep.helpers;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free rate limiter deciding which hot-path events are worth a debug log: at most one per interval.
+ * The events which are not sampled are counted, so the log can tell how many were skipped.
+ *
+ * Callers are expected to guard the sampling with BuildConfig.DEBUG, so that it is compiled out of release builds:
+ * <pre>
+ *     if (BuildConfig.DEBUG &amp;&amp; sampler.sample(timestamp)) {
+ *         Log.d(...);
+ *     }
+ * </pre>
+ */
+public class LogSampler {
+
+    /**
+     * The minimum time between two sampled events
+     */
+    private final long intervalNanos;
+
+    /**
+     * The time from which the next event can be sampled
+     */
+    private final AtomicLong nextSampleTime = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * The number of events skipped since the last sampled one
+     */
+    private final AtomicLong skippedCount = new AtomicLong();
+
+    /**
+     * Creates a sampler
+     *
+     * @param intervalNanos The minimum time between two sampled events, in nanoseconds
+     */
+    public LogSampler(long intervalNanos) {
+        this.intervalNanos = intervalNanos;
+    }
+
+    /**
+     * Decides whether an event is sampled
+     *
+     * @param nowNanos The time of the event, in nanoseconds (on any monotonic clock, e.g. a sensor event timestamp)
+     * @return {@code true} if the event should be logged, {@code false} if it should be skipped
+     */
+    public boolean sample(long nowNanos) {
+        long next = nextSampleTime.get();
+        if (nowNanos >= next && nextSampleTime.compareAndSet(next, nowNanos + intervalNanos)) {
+            return true;
+        }
+
+        skippedCount.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Gets the number of events skipped since the last call, and resets it.
+     * Typically called right after a successful {@link #sample(long)}, to be added to the log.
+     *
+     * @return The number of skipped events
+     */
+    public long getAndResetSkippedCount() {
+        return skippedCount.getAndSet(0);
+    }
+}
@@ -0,0 +1,635 @@
+/***********************************************************************
+ Name............ : MappedSegmentLog.java
+ Description..... : A sensor records sink appending to pre-sized, memory-mapped segment files
+ Author.......... : Kevin Jiokeng for IRIT, RMESS Team
+ Creation Date... : 18/10/2026
+ ************************************************************************/
+
+package fr.irit.rmess.heartdeep.helpers;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A sensor records sink appending records to an append-only log made of pre-sized, memory-mapped segment files.
+ *
+ * Writing a record is a plain memory write into the mapped segment: there is no system call per record,
+ * the kernel writes the dirty pages back on its own. When a segment is full, the log rolls to the next one, which a dedicated
+ * thread has already created and mapped; the same thread then flushes the full segment to storage and closes its file.
+ * The thread writing records (the sensor thread) thus never maps, flushes nor closes a file, unless it fills a whole segment
+ * while the next one is being mapped (it then waits for it). If the next segment could not be created (e.g. the storage is full),
+ * records are dropped (and counted, see {@link #getDroppedRecordsCount()}) until it can.
+ *
+ * Every segment file starts with a {@link #SEGMENT_HEADER_SIZE}-byte header: magic number (int), segment index (int)
+ * and number of used bytes (long, updated after every record). The first segment then holds the recording header
+ * (see {@link SensorRecordFormat}); all the segments then hold whole records.
+ * Segment files keep their full size (they are never truncated while mapped): only the used bytes are meaningful,
+ * and the unused tail of the last segment is a hole, never written.
+ * Read back with {@link #openStream(File, String)}, the segments form a single recording in the binary format.
+ * The records are indexed (see {@link SensorRecordIndex}), and the index is saved next to the segments when the log is closed.
+ *
+ * Records must be written by a single thread. The statistics getters can be called from any thread.
+ */
+public class MappedSegmentLog implements SensorRecordSink {
+
+    /**
+     * The magic number at the beginning of every segment ("HDS1")
+     */
+    public static final int SEGMENT_MAGIC = 0x48445331;
+
+    /**
+     * The size (in bytes) of the header of each segment
+     */
+    public static final int SEGMENT_HEADER_SIZE = 4 + 4 + 8;
+
+    /**
+     * The default size (in bytes) of a segment (about 380,000 records)
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 8 * 1024 * 1024;
+
+    /**
+     * The offset of the "used bytes" field in a segment header
+     */
+    private static final int USED_BYTES_OFFSET = 8;
+
+    /**
+     * The delay (in milliseconds) before the rolling thread tries again to create a segment it failed to create
+     */
+    private static final long RETRY_DELAY_MS = 1000;
+
+    /**
+     * A special segment telling the writer that the next segment could not be created
+     */
+    private static final Segment FAILED_SEGMENT = new Segment(-1, null, null);
+
+    /**
+     * A special segment telling the rolling thread to stop
+     */
+    private static final Segment END_OF_LOG = new Segment(-1, null, null);
+
+    /**
+     * The directory holding the segments
+     */
+    private final File directory;
+
+    /**
+     * The name of the log. Segment files are named after it (see {@link #segmentFile(File, String, int)})
+     */
+    private final String name;
+
+    /**
+     * The size (in bytes) of each segment file
+     */
+    private final int segmentSize;
+
+    /**
+     * The encoded recording header, stored at the beginning of the first segment
+     */
+    private final byte[] recordingHeader;
+
+    /**
+     * The app-wide counter of bytes written to storage
+     */
+    private final MetricsRegistry.Counter bytesWrittenMetric = MetricsRegistry.getDefault().counter(MetricsRegistry.BYTES_WRITTEN);
+
+    /**
+     * The app-wide counter of records dropped by the recording sinks
+     */
+    private final MetricsRegistry.Counter droppedRecordsMetric = MetricsRegistry.getDefault().counter(MetricsRegistry.RECORDS_DROPPED);
+
+    /**
+     * The sparse index of the records written so far
+     */
+    private final SensorRecordIndex index = new SensorRecordIndex();
+
+    /**
+     * The next segment, mapped ahead by the rolling thread (or {@link #FAILED_SEGMENT})
+     */
+    private final BlockingQueue<Segment> preparedSegments = new ArrayBlockingQueue<>(1);
+
+    /**
+     * The full segments waiting to be completed by the rolling thread
+     */
+    private final BlockingQueue<Segment> retiredSegments = new ArrayBlockingQueue<>(4);
+
+    /**
+     * The dedicated rolling thread
+     */
+    private final Thread rollThread;
+
+    /**
+     * The index of the next segment the rolling thread creates. Only used by the rolling thread
+     */
+    private int nextSegmentIndex = 1;
+
+    /**
+     * The current segment, or {@code null} if none is available
+     */
+    private Segment segment;
+
+    /**
+     * Indicates whether the next segment could not be created, records being dropped until it can
+     */
+    private boolean rollFailed = false;
+
+    /**
+     * Indicates whether this log has been closed
+     */
+    private boolean closed = false;
+
+    /**
+     * The first error met by the rolling thread while completing a segment, if any
+     */
+    private volatile IOException ioError = null;
+
+    /**
+     * The number of records written (and not dropped) so far
+     */
+    private volatile long recordsCount = 0;
+
+    /**
+     * The number of records dropped because no segment was available
+     */
+    private volatile long droppedRecordsCount = 0;
+
+    /**
+     * The number of segments used so far
+     */
+    private volatile int segmentsCount = 0;
+
+    /**
+     * Creates a log with the {@link #DEFAULT_SEGMENT_SIZE default segment size}, and maps its first segment
+     *
+     * @param directory   The directory holding the segments
+     * @param name        The name of the log
+     * @param sensorNames The sensors dictionary: the name of each sensor, indexed by its id
+     * @throws IOException If the first segment cannot be created
+     */
+    public MappedSegmentLog(File directory, String name, String[] sensorNames) throws IOException {
+        this(directory, name, sensorNames, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Creates a log, maps its first segment, and starts the thread mapping the next ones
+     *
+     * @param directory   The directory holding the segments
+     * @param name        The name of the log
+     * @param sensorNames The sensors dictionary: the name of each sensor, indexed by its id
+     * @param segmentSize The size (in bytes) of each segment file
+     * @throws IOException If the first segment cannot be created
+     */
+    public MappedSegmentLog(File directory, String name, String[] sensorNames, int segmentSize) throws IOException {
+        this.directory = directory;
+        this.name = name;
+        this.segmentSize = segmentSize;
+        this.recordingHeader = SensorRecordFormat.encodeHeader(sensorNames);
+
+        if (segmentSize < SEGMENT_HEADER_SIZE + recordingHeader.length + SensorRecordFormat.RECORD_SIZE) {
+            throw new IllegalArgumentException("Segment size too small: " + segmentSize);
+        }
+
+        // Remove the segments of a previous log with the same name
+        deleteSegments(directory, name);
+        SensorRecordIndex.indexFile(directory, name).delete();
+
+        segment = mapSegment(0);
+        segmentsCount = 1;
+
+        rollThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runRollLoop();
+            }
+        }, "HeartDeep-SegmentLog");
+        rollThread.start();
+    }
+
+    @Override
+    public void writeRecord(long timestamp, int sensorId, float x, float y, float z) {
+        if (closed) {
+            return;
+        }
+
+        if (segment == null || segment.buffer.remaining() < SensorRecordFormat.RECORD_SIZE) {
+            if (segment != null) {
+                retiredSegments.add(segment);
+            }
+            segment = nextSegment();
+            if (segment == null) {
+                droppedRecordsCount++;
+                droppedRecordsMetric.increment();
+                return;
+            }
+        }
+
+        MappedByteBuffer buffer = segment.buffer;
+        SensorRecordFormat.putRecord(buffer, timestamp, sensorId, x, y, z);
+        buffer.putLong(USED_BYTES_OFFSET, buffer.position());
+        index.add(timestamp);
+        recordsCount++;
+        bytesWrittenMetric.add(SensorRecordFormat.RECORD_SIZE);
+    }
+
+    /**
+     * Takes the segment mapped ahead by the rolling thread. Waits for it if it is still being mapped,
+     * but not if the last attempt to create it failed
+     *
+     * @return The next segment, or {@code null} if it could not be created (yet)
+     */
+    private Segment nextSegment() {
+        Segment next;
+        if (rollFailed) {
+            next = preparedSegments.poll();
+        } else {
+            try {
+                next = preparedSegments.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+
+        if (next == FAILED_SEGMENT) {
+            rollFailed = true;
+            return null;
+        }
+        if (next != null) {
+            rollFailed = false;
+            segmentsCount++;
+        }
+        return next;
+    }
+
+    /**
+     * The loop run by the rolling thread: maps the next segment ahead whenever it was taken, and completes the full segments,
+     * until {@link #END_OF_LOG} is met
+     */
+    private void runRollLoop() {
+        Segment retired = null;
+        while (true) {
+            // The next segment first: the writer may be waiting for it
+            if (preparedSegments.isEmpty()) {
+                try {
+                    preparedSegments.add(mapSegment(nextSegmentIndex));
+                    nextSegmentIndex++;
+                } catch (IOException e) {
+                    preparedSegments.add(FAILED_SEGMENT);
+                }
+            }
+            if (retired != null) {
+                completeSegment(retired);
+            }
+
+            try {
+                // Wakes up now and then to try again to create a segment it failed to create
+                retired = retiredSegments.poll(RETRY_DELAY_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                // Only close() can stop this thread
+                retired = null;
+                continue;
+            }
+            if (retired == END_OF_LOG) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Creates and maps a segment, and writes its header
+     *
+     * @param segmentIndex The index of the segment
+     * @return The segment, positioned after its header
+     * @throws IOException If the segment cannot be created
+     */
+    private Segment mapSegment(int segmentIndex) throws IOException {
+        File file = segmentFile(directory, name, segmentIndex);
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        MappedByteBuffer buffer;
+        try {
+            buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        } catch (IOException e) {
+            randomAccessFile.close();
+            file.delete();
+            throw e;
+        }
+
+        buffer.putInt(SEGMENT_MAGIC);
+        buffer.putInt(segmentIndex);
+        buffer.putLong(0);
+        if (segmentIndex == 0) {
+            buffer.put(recordingHeader);
+        }
+        buffer.putLong(USED_BYTES_OFFSET, buffer.position());
+        return new Segment(segmentIndex, randomAccessFile, buffer);
+    }
+
+    /**
+     * Flushes a full segment to storage and closes its file. The segment is not truncated: it is still mapped
+     * (until its buffer is garbage collected), and its header tells its used size
+     *
+     * @param segment The segment to complete
+     */
+    private void completeSegment(Segment segment) {
+        try {
+            segment.buffer.force();
+            segment.file.close();
+        } catch (IOException e) {
+            if (ioError == null) {
+                ioError = e;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+        if (segment != null) {
+            retiredSegments.add(segment);
+            segment = null;
+        }
+        retiredSegments.add(END_OF_LOG);
+
+        boolean interrupted = false;
+        while (true) {
+            try {
+                rollThread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        // The segment mapped ahead was not used
+        Segment unused = preparedSegments.poll();
+        if (unused != null && unused != FAILED_SEGMENT) {
+            try {
+                unused.file.close();
+            } catch (IOException e) {
+                // It is deleted anyway
+            }
+            segmentFile(directory, name, unused.index).delete();
+        }
+
+        if (ioError != null) {
+            throw ioError;
+        }
+
+        index.writeTo(SensorRecordIndex.indexFile(directory, name));
+    }
+
+    @Override
+    public void abort() {
+        try {
+            close();
+        } catch (IOException e) {
+            // The segments are deleted anyway
+        }
+
+        deleteSegments(directory, name);
+        SensorRecordIndex.indexFile(directory, name).delete();
+    }
+
+    /**
+     * Gets the sparse index of the records written so far
+     *
+     * @return The index
+     */
+    public SensorRecordIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Gets the number of records written so far
+     *
+     * @return The number of records written (and not dropped)
+     */
+    public long getRecordsCount() {
+        return recordsCount;
+    }
+
+    /**
+     * Gets the number of records dropped because the next segment could not be created
+     *
+     * @return The number of dropped records
+     */
+    public long getDroppedRecordsCount() {
+        return droppedRecordsCount;
+    }
+
+    /**
+     * Gets the number of segments used so far
+     *
+     * @return The number of segment files
+     */
+    public int getSegmentsCount() {
+        return segmentsCount;
+    }
+
+
+    /* Reading */
+
+    /**
+     * Gets the file of a given segment of a log
+     *
+     * @param directory The directory holding the segments
+     * @param name      The name of the log
+     * @param index     The index of the segment
+     * @return The segment file
+     */
+    public static File segmentFile(File directory, String name, int index) {
+        return new File(directory, name + String.format(Locale.US, ".seg%04d", index));
+    }
+
+    /**
+     * Indicates whether a log with the given name exists
+     *
+     * @param directory The directory holding the segments
+     * @param name      The name of the log
+     * @return {@code true} if its first segment exists, {@code false} otherwise
+     */
+    public static boolean exists(File directory, String name) {
+        return segmentFile(directory, name, 0).isFile();
+    }
+
+    /**
+     * Deletes all the segments of a log
+     *
+     * @param directory The directory holding the segments
+     * @param name      The name of the log
+     */
+    public static void deleteSegments(File directory, String name) {
+        for (int i = 0; segmentFile(directory, name, i).delete(); i++) {
+            // Nothing else to do
+        }
+    }
+
+    /**
+     * Opens a log as a single logical stream, holding a recording in the binary format (see {@link SensorRecordFormat}).
+     * The segments are mapped one after the other, as the stream is read.
+     *
+     * @param directory The directory holding the segments
+     * @param name      The name of the log
+     * @return The stream of the recording
+     * @throws IOException If the first segment cannot be opened
+     */
+    public static InputStream openStream(File directory, String name) throws IOException {
+        return new LogInputStream(directory, name);
+    }
+
+    /**
+     * A mapped segment file
+     */
+    private static class Segment {
+
+        /**
+         * The index of the segment
+         */
+        private final int index;
+
+        /**
+         * The file of the segment
+         */
+        private final RandomAccessFile file;
+
+        /**
+         * The mapped content of the segment
+         */
+        private final MappedByteBuffer buffer;
+
+        Segment(int index, RandomAccessFile file, MappedByteBuffer buffer) {
+            this.index = index;
+            this.file = file;
+            this.buffer = buffer;
+        }
+    }
+
+    /**
+     * The logical stream over all the segments of a log
+     */
+    private static class LogInputStream extends InputStream {
+
+        /**
+         * The directory holding the segments
+         */
+        private final File directory;
+
+        /**
+         * The name of the log
+         */
+        private final String name;
+
+        /**
+         * The index of the segment being read
+         */
+        private int segmentIndex = -1;
+
+        /**
+         * The payload of the segment being read, or {@code null} when all segments have been read
+         */
+        private ByteBuffer payload = null;
+
+        LogInputStream(File directory, String name) throws IOException {
+            this.directory = directory;
+            this.name = name;
+            if (!nextSegment()) {
+                throw new IOException("No segment found for log " + name);
+            }
+        }
+
+        /**
+         * Maps the payload of the next segment
+         *
+         * @return {@code false} if there is no next segment
+         * @throws IOException If the segment is malformed or cannot be read
+         */
+        private boolean nextSegment() throws IOException {
+            File file = segmentFile(directory, name, segmentIndex + 1);
+            if (!file.isFile()) {
+                payload = null;
+                return false;
+            }
+
+            segmentIndex++;
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+            try {
+                FileChannel channel = randomAccessFile.getChannel();
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+                if (mapped.limit() < SEGMENT_HEADER_SIZE || mapped.getInt(0) != SEGMENT_MAGIC || mapped.getInt(4) != segmentIndex) {
+                    throw new IOException("Malformed segment " + file);
+                }
+                long used = mapped.getLong(USED_BYTES_OFFSET);
+                if (used < SEGMENT_HEADER_SIZE || used > mapped.limit()) {
+                    throw new IOException("Malformed segment " + file);
+                }
+
+                mapped.position(SEGMENT_HEADER_SIZE);
+                mapped.limit((int) used);
+                payload = mapped;
+            } finally {
+                // The mapping stays valid once the file is closed
+                randomAccessFile.close();
+            }
+
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            while (payload != null && !payload.hasRemaining()) {
+                nextSegment();
+            }
+            return payload == null ? -1 : payload.get() & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (payload != null && !payload.hasRemaining()) {
+                nextSegment();
+            }
+            if (payload == null) {
+                return -1;
+            }
+
+            int n = Math.min(len, payload.remaining());
+            payload.get(b, off, n);
+            return n;
+        }
+
+        /**
+         * Skips bytes without reading them: whole segments are only mapped to check them
+         */
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = 0;
+            while (payload != null && skipped < n) {
+                int step = (int) Math.min(n - skipped, payload.remaining());
+                payload.position(payload.position() + step);
+                skipped += step;
+                if (!payload.hasRemaining()) {
+                    nextSegment();
+                }
+            }
+            return skipped;
+        }
+    }
+}
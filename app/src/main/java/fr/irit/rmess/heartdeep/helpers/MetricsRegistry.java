@@ -0,0 +1,479 @@
+/***********************************************************************
+ Name............ : MetricsRegistry.java
+ Description..... : A registry of lock-free counters and gauges updated by the capture path
+ Author.......... : Kevin Jiokeng for IRIT, RMESS Team
+ Creation Date... : 18/10/2026
+ ************************************************************************/
+
+package fr.irit.rmess.heartdeep.helpers;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import fr.irit.rmess.heartdeep.datatype.HeartDeepObservable;
+import fr.irit.rmess.heartdeep.datatype.HeartDeepObserver;
+
+/**
+ * A registry of named counters and gauges, updated by the capture path (sensor listener, storage, windows handoff)
+ * and read through {@link Snapshot snapshots}.
+ *
+ * Metrics are looked up by name once (typically when capture starts) and then updated through their object:
+ * updating a metric is a single atomic operation, without lock nor allocation.
+ * Snapshots can be taken on demand ({@link #snapshot()}) or periodically ({@link #startPeriodicSnapshots(long)}),
+ * in which case they are delivered to the registered observers, from a background thread.
+ */
+public class MetricsRegistry implements HeartDeepObservable<MetricsRegistry.Snapshot> {
+
+    /**
+     * The prefix of the counters of sensor events, followed by the sensor name (as given by Sensor.getStringType())
+     */
+    public static final String SENSOR_EVENTS_PREFIX = "sensor.events.";
+
+    /**
+     * The counter of windows handed off for processing
+     */
+    public static final String WINDOWS_EMITTED = "windows.emitted";
+
+    /**
+     * The counter of windows dropped because the processing could not keep up
+     */
+    public static final String WINDOWS_DROPPED = "windows.dropped";
+
+    /**
+     * The counter of windows whose processing failed (an exception thrown by the processing or by an observer)
+     */
+    public static final String WINDOWS_FAILED = "windows.failed";
+
+    /**
+     * The gauge of the number of windows waiting to be processed
+     */
+    public static final String WINDOWS_QUEUE_DEPTH = "windows.queue_depth";
+
+    /**
+     * The gauge of the time (in microseconds) taken to process the last window; its high-water mark is the longest one
+     */
+    public static final String WINDOWS_PROCESSING_TIME = "windows.processing_time_us";
+
+    /**
+     * The prefix of the gauges of the number of readings of a sensor buffered when a window is emitted, followed by the sensor name
+     */
+    public static final String BUFFER_FILL_PREFIX = "buffer.";
+
+    /**
+     * The counter of gaps in the readings of the windowed sensors, found while resampling them
+     */
+    public static final String READINGS_GAPS = "capture.gaps";
+
+    /**
+     * The counter of time-aligned multi-sensor frames joined from the sensor events
+     */
+    public static final String FRAMES_JOINED = "capture.frames";
+
+    /**
+     * The counter of bytes written to storage by the recording sinks
+     */
+    public static final String BYTES_WRITTEN = "storage.bytes_written";
+
+    /**
+     * The counter of records dropped by the recording sinks
+     */
+    public static final String RECORDS_DROPPED = "storage.records_dropped";
+
+    /**
+     * The gauge of the number of chunks waiting to be written by the streaming writer
+     */
+    public static final String STORAGE_QUEUE_DEPTH = "storage.queue_depth";
+
+    /**
+     * The suffix appended to the name of a gauge to report its high-water mark in snapshots
+     */
+    public static final String HIGH_WATER_MARK_SUFFIX = ".max";
+
+    /**
+     * The registry shared by all HeartDeep components
+     */
+    private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+
+    /**
+     * The registered counters, by name
+     */
+    private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+
+    /**
+     * The registered gauges, by name
+     */
+    private final ConcurrentMap<String, Gauge> gauges = new ConcurrentHashMap<>();
+
+    /**
+     * The observers notified of periodic snapshots
+     */
+    private final List<HeartDeepObserver<Snapshot>> observers = new CopyOnWriteArrayList<>();
+
+    /**
+     * The last snapshot taken, the next one reports the counter changes since it
+     */
+    private Snapshot lastSnapshot = null;
+
+    /**
+     * The scheduler of periodic snapshots, or {@code null} if they are not running
+     */
+    private ScheduledExecutorService scheduler = null;
+
+    /**
+     * Gets the registry shared by all HeartDeep components
+     *
+     * @return The default registry
+     */
+    public static MetricsRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Gets a counter, registering it if needed
+     *
+     * @param name The name of the counter
+     * @return The counter with this name
+     */
+    public Counter counter(String name) {
+        Counter counter = counters.get(name);
+        if (counter == null) {
+            Counter newCounter = new Counter();
+            counter = counters.putIfAbsent(name, newCounter);
+            if (counter == null) {
+                counter = newCounter;
+            }
+        }
+        return counter;
+    }
+
+    /**
+     * Gets a gauge, registering it if needed
+     *
+     * @param name The name of the gauge
+     * @return The gauge with this name
+     */
+    public Gauge gauge(String name) {
+        Gauge gauge = gauges.get(name);
+        if (gauge == null) {
+            Gauge newGauge = new Gauge();
+            gauge = gauges.putIfAbsent(name, newGauge);
+            if (gauge == null) {
+                gauge = newGauge;
+            }
+        }
+        return gauge;
+    }
+
+    /**
+     * Resets all the metrics (typically at the beginning of a session)
+     */
+    public synchronized void reset() {
+        for (Counter counter : counters.values()) {
+            counter.value.set(0);
+        }
+        for (Gauge gauge : gauges.values()) {
+            gauge.value.set(0);
+            gauge.highWaterMark.set(0);
+        }
+        lastSnapshot = null;
+    }
+
+    /**
+     * Takes a snapshot of all the metrics
+     *
+     * @return The current values, with the counter changes since the previous snapshot
+     */
+    public synchronized Snapshot snapshot() {
+        Map<String, Long> values = new TreeMap<>();
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            values.put(entry.getKey(), entry.getValue().get());
+        }
+        for (Map.Entry<String, Gauge> entry : gauges.entrySet()) {
+            values.put(entry.getKey(), entry.getValue().get());
+            values.put(entry.getKey() + HIGH_WATER_MARK_SUFFIX, entry.getValue().getHighWaterMark());
+        }
+
+        Snapshot snapshot = new Snapshot(System.nanoTime(), values, counters.keySet(), lastSnapshot);
+        lastSnapshot = snapshot;
+        return snapshot;
+    }
+
+    /**
+     * Starts taking snapshots periodically, and delivering them to the registered observers (from a background thread).
+     * Does nothing if periodic snapshots are already running.
+     *
+     * @param periodMillis The time between two snapshots, in milliseconds
+     */
+    public synchronized void startPeriodicSnapshots(long periodMillis) {
+        if (scheduler != null) {
+            return;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "HeartDeep-Metrics");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        scheduler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                notifyAllObservers(snapshot());
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops taking snapshots periodically
+     */
+    public synchronized void stopPeriodicSnapshots() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    @Override
+    public void registerObserver(HeartDeepObserver<Snapshot> observer) {
+        if (!observers.contains(observer)) {
+            observers.add(observer);
+        }
+    }
+
+    @Override
+    public void unRegisterObserver(HeartDeepObserver<Snapshot> observer) {
+        observers.remove(observer);
+    }
+
+    @Override
+    public void notifyObserver(HeartDeepObserver<Snapshot> observer, Snapshot newValue) {
+        observer.update(this, newValue);
+    }
+
+    @Override
+    public void notifyAllObservers(Snapshot newValue) {
+        for (HeartDeepObserver<Snapshot> observer : observers) {
+            notifyObserver(observer, newValue);
+        }
+    }
+
+
+    /**
+     * A monotonic counter
+     */
+    public static class Counter {
+
+        /**
+         * The current value
+         */
+        private final AtomicLong value = new AtomicLong();
+
+        /**
+         * Adds one to this counter
+         */
+        public void increment() {
+            value.incrementAndGet();
+        }
+
+        /**
+         * Adds some amount to this counter
+         *
+         * @param delta The amount to add
+         */
+        public void add(long delta) {
+            value.addAndGet(delta);
+        }
+
+        /**
+         * Gets the value of this counter
+         *
+         * @return The current value
+         */
+        public long get() {
+            return value.get();
+        }
+    }
+
+    /**
+     * A gauge: an instantaneous value, with its high-water mark
+     */
+    public static class Gauge {
+
+        /**
+         * The current value
+         */
+        private final AtomicLong value = new AtomicLong();
+
+        /**
+         * The highest value ever set
+         */
+        private final AtomicLong highWaterMark = new AtomicLong();
+
+        /**
+         * Sets the value of this gauge, and raises its high-water mark if needed
+         *
+         * @param newValue The new value
+         */
+        public void set(long newValue) {
+            value.lazySet(newValue);
+
+            long max = highWaterMark.get();
+            while (newValue > max) {
+                if (highWaterMark.compareAndSet(max, newValue)) {
+                    break;
+                }
+                max = highWaterMark.get();
+            }
+        }
+
+        /**
+         * Gets the value of this gauge
+         *
+         * @return The last value set
+         */
+        public long get() {
+            return value.get();
+        }
+
+        /**
+         * Gets the high-water mark of this gauge
+         *
+         * @return The highest value ever set
+         */
+        public long getHighWaterMark() {
+            return highWaterMark.get();
+        }
+    }
+
+    /**
+     * An immutable snapshot of the metrics of a registry
+     */
+    public static class Snapshot {
+
+        /**
+         * The time (System.nanoTime()) at which the snapshot was taken
+         */
+        private final long time;
+
+        /**
+         * The time (in nanoseconds) elapsed since the previous snapshot, or 0 if there is none
+         */
+        private final long elapsedNanos;
+
+        /**
+         * The values of the metrics, by name
+         */
+        private final Map<String, Long> values;
+
+        /**
+         * The names of the metrics which are counters
+         */
+        private final Set<String> counterNames;
+
+        /**
+         * The values of the metrics at the previous snapshot, by name (empty if there is none)
+         */
+        private final Map<String, Long> previousValues;
+
+        Snapshot(long time, Map<String, Long> values, Set<String> counterNames, Snapshot previous) {
+            this.time = time;
+            this.values = Collections.unmodifiableMap(values);
+            this.counterNames = Collections.unmodifiableSet(new HashSet<>(counterNames));
+            if (previous != null) {
+                this.elapsedNanos = time - previous.time;
+                this.previousValues = previous.values;
+            } else {
+                this.elapsedNanos = 0;
+                this.previousValues = Collections.emptyMap();
+            }
+        }
+
+        /**
+         * Gets the time at which the snapshot was taken
+         *
+         * @return The time, as given by System.nanoTime()
+         */
+        public long getTime() {
+            return time;
+        }
+
+        /**
+         * Gets the time elapsed since the previous snapshot
+         *
+         * @return The time in nanoseconds, or 0 if this is the first snapshot
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * Gets the values of all the metrics. Gauge high-water marks are named after the gauge, with {@link #HIGH_WATER_MARK_SUFFIX}
+         *
+         * @return The values by name, sorted by name
+         */
+        public Map<String, Long> getValues() {
+            return values;
+        }
+
+        /**
+         * Gets the value of a metric
+         *
+         * @param name The name of the metric
+         * @return Its value, or 0 if there is no such metric
+         */
+        public long getValue(String name) {
+            Long value = values.get(name);
+            return value == null ? 0 : value;
+        }
+
+        /**
+         * Gets the change of a metric since the previous snapshot
+         *
+         * @param name The name of the metric
+         * @return The change of its value
+         */
+        public long getDelta(String name) {
+            Long previous = previousValues.get(name);
+            return getValue(name) - (previous == null ? 0 : previous);
+        }
+
+        /**
+         * Gets the rate of change of a metric since the previous snapshot (typically, the events rate of a counter)
+         *
+         * @param name The name of the metric
+         * @return The change per second, or 0 if this is the first snapshot
+         */
+        public double getRate(String name) {
+            return elapsedNanos == 0 ? 0 : getDelta(name) * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            for (Map.Entry<String, Long> entry : values.entrySet()) {
+                if (builder.length() > 0) {
+                    builder.append(", ");
+                }
+                builder.append(entry.getKey()).append('=').append(entry.getValue());
+                if (elapsedNanos != 0 && counterNames.contains(entry.getKey())) {
+                    builder.append(" (").append(Math.round(getRate(entry.getKey()))).append("/s)");
+                }
+            }
+            return builder.toString();
+        }
+    }
+}
@@ -0,0 +1,290 @@
+/***********************************************************************
+ Name............ : SensorCsvEncoder.java
+ Description..... : A sensor records sink encoding records as CSV lines into a reusable byte buffer
+ Author.......... : Kevin Jiokeng for IRIT, RMESS Team
+ Creation Date... : 18/10/2026
+ ************************************************************************/
+
+package fr.irit.rmess.heartdeep.helpers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * A sensor records sink encoding records as lines of the CSV format {@code timestamp,sensor,x,y,z} historically written by HeartDeep.
+ *
+ * Lines are encoded directly into a reusable byte buffer (see {@link DecimalEncoding}), with the sensor names encoded once and for all,
+ * so encoding a record allocates nothing. The output is byte-for-byte the one of the former
+ * {@code timestamp + "," + sensor + "," + x + "," + y + "," + z + "\n"} expression.
+ *
+ * The encoder can be used on its own to format single lines (see {@link #encodeRecord(byte[], int, long, int, float, float, float)}),
+ * or as a sink appending lines to a stream, the buffer being written to the stream whenever it is full.
+ * This class is not thread-safe.
+ */
+public class SensorCsvEncoder implements SensorRecordSink {
+
+    /**
+     * The default size (in bytes) of the buffer of a sink
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The encoding of the CSV text
+     */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * The encoded sensor names, indexed by sensor id
+     */
+    private final byte[][] sensorNames;
+
+    /**
+     * The maximum size (in bytes) of a line, new line character included
+     */
+    private final int maxLineLength;
+
+    /**
+     * The stream the lines are written to, or {@code null} if this encoder only formats single lines
+     */
+    private final OutputStream outputStream;
+
+    /**
+     * The buffer lines are encoded into before being written to the stream
+     */
+    private final byte[] buffer;
+
+    /**
+     * The number of bytes used in {@link #buffer}
+     */
+    private int position = 0;
+
+    /**
+     * Indicates whether this sink has been closed
+     */
+    private boolean closed = false;
+
+    /**
+     * The first error met while writing to the stream, if any
+     */
+    private IOException ioError = null;
+
+    /**
+     * The number of records encoded so far
+     */
+    private long recordsCount = 0;
+
+    /**
+     * Creates an encoder formatting single lines only (it cannot be used as a sink)
+     *
+     * @param sensorNames The sensors dictionary: the name of each sensor, indexed by its id
+     */
+    public SensorCsvEncoder(String[] sensorNames) {
+        this(null, sensorNames, 0);
+    }
+
+    /**
+     * Creates a sink writing CSV to the given stream, with the {@link #DEFAULT_BUFFER_SIZE default buffer size}.
+     * The header line is not written: see {@link #writeHeader()}.
+     *
+     * @param outputStream The stream to write to. It is closed when the sink is closed
+     * @param sensorNames  The sensors dictionary: the name of each sensor, indexed by its id
+     */
+    public SensorCsvEncoder(OutputStream outputStream, String[] sensorNames) {
+        this(outputStream, sensorNames, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a sink writing CSV to the given stream.
+     * The header line is not written: see {@link #writeHeader()}.
+     *
+     * @param outputStream The stream to write to. It is closed when the sink is closed
+     * @param sensorNames  The sensors dictionary: the name of each sensor, indexed by its id
+     * @param bufferSize   The size (in bytes) of the buffer. It is raised to the size of the longest line if needed
+     */
+    public SensorCsvEncoder(OutputStream outputStream, String[] sensorNames, int bufferSize) {
+        this.sensorNames = new byte[sensorNames.length][];
+        int maxNameLength = 0;
+        for (int i = 0; i < sensorNames.length; i++) {
+            this.sensorNames[i] = sensorNames[i].getBytes(UTF_8);
+            maxNameLength = Math.max(maxNameLength, this.sensorNames[i].length);
+        }
+
+        this.maxLineLength = DecimalEncoding.MAX_LONG_LENGTH + maxNameLength + 3 * DecimalEncoding.MAX_FLOAT_LENGTH + 5;
+        this.outputStream = outputStream;
+        this.buffer = outputStream == null ? null : new byte[Math.max(bufferSize, maxLineLength)];
+    }
+
+    /**
+     * Gets the maximum size of an encoded line
+     *
+     * @return The size in bytes, new line character included
+     */
+    public int getMaxLineLength() {
+        return maxLineLength;
+    }
+
+    /**
+     * Encodes a record as a CSV line (without the new line character)
+     *
+     * @param dest      The array to write to. It must have at least {@link #getMaxLineLength()} bytes after {@code offset}
+     * @param offset    The index at which to write
+     * @param timestamp The timestamp of the reading
+     * @param sensorId  The id of the sensor in the dictionary
+     * @param x         The reading along x axis
+     * @param y         The reading along y axis
+     * @param z         The reading along z axis
+     * @return The index following the last written byte
+     */
+    public int encodeRecord(byte[] dest, int offset, long timestamp, int sensorId, float x, float y, float z) {
+        byte[] sensorName = sensorNames[sensorId];
+
+        offset = DecimalEncoding.putLong(dest, offset, timestamp);
+        dest[offset++] = ',';
+        System.arraycopy(sensorName, 0, dest, offset, sensorName.length);
+        offset += sensorName.length;
+        dest[offset++] = ',';
+        offset = DecimalEncoding.putFloat(dest, offset, x);
+        dest[offset++] = ',';
+        offset = DecimalEncoding.putFloat(dest, offset, y);
+        dest[offset++] = ',';
+        return DecimalEncoding.putFloat(dest, offset, z);
+    }
+
+    /**
+     * Appends the header line {@link SensorRecordFormat#CSV_HEADER}
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public void writeHeader() throws IOException {
+        checkWritable();
+        byte[] header = (SensorRecordFormat.CSV_HEADER + "\n").getBytes(UTF_8);
+        if (buffer.length - position < header.length) {
+            writeBuffer();
+        }
+        System.arraycopy(header, 0, buffer, position, header.length);
+        position += header.length;
+    }
+
+    /**
+     * Appends a record as a CSV line. Write errors are reported by {@link #flush()} and {@link #close()}
+     */
+    @Override
+    public void writeRecord(long timestamp, int sensorId, float x, float y, float z) {
+        if (closed || outputStream == null) {
+            return;
+        }
+
+        if (buffer.length - position < maxLineLength) {
+            try {
+                writeBuffer();
+            } catch (IOException e) {
+                if (ioError == null) {
+                    ioError = e;
+                }
+            }
+        }
+
+        position = encodeRecord(buffer, position, timestamp, sensorId, x, y, z);
+        buffer[position++] = '\n';
+        recordsCount++;
+    }
+
+    /**
+     * Writes the buffered lines to the stream, and flushes it
+     *
+     * @throws IOException If an I/O error occurs (now or while writing previous records)
+     */
+    public void flush() throws IOException {
+        checkWritable();
+        writeBuffer();
+        outputStream.flush();
+        if (ioError != null) {
+            throw ioError;
+        }
+    }
+
+    /**
+     * Writes the buffered lines and closes the stream
+     *
+     * @throws IOException If an I/O error occurs (now or while writing previous records)
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed || outputStream == null) {
+            return;
+        }
+
+        closed = true;
+        try {
+            writeBuffer();
+        } catch (IOException e) {
+            if (ioError == null) {
+                ioError = e;
+            }
+        }
+
+        try {
+            outputStream.close();
+        } catch (IOException e) {
+            if (ioError == null) {
+                ioError = e;
+            }
+        }
+
+        if (ioError != null) {
+            throw ioError;
+        }
+    }
+
+    /**
+     * Closes the stream, discarding the buffered lines and any error
+     */
+    @Override
+    public void abort() {
+        position = 0;
+        try {
+            close();
+        } catch (IOException e) {
+            // Nothing more to do
+        }
+    }
+
+    /**
+     * Gets the number of records encoded so far
+     *
+     * @return The number of records
+     */
+    public long getRecordsCount() {
+        return recordsCount;
+    }
+
+    /**
+     * Writes the content of the buffer to the stream, and empties it
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    private void writeBuffer() throws IOException {
+        if (position == 0) {
+            return;
+        }
+
+        int length = position;
+        position = 0;
+        if (ioError == null) {
+            outputStream.write(buffer, 0, length);
+        }
+    }
+
+    /**
+     * Checks that this encoder can write to a stream
+     */
+    private void checkWritable() throws IOException {
+        if (outputStream == null) {
+            throw new IllegalStateException("This encoder has no output stream");
+        }
+        if (closed) {
+            throw new IOException("Sink closed");
+        }
+    }
+}
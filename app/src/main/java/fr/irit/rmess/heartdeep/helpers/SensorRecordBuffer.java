@@ -0,0 +1,123 @@
+/***********************************************************************
+ Name............ : SensorRecordBuffer.java
+ Description..... : An in-memory buffer storing sensor readings in the binary recording format
+ Author.......... : Kevin Jiokeng for IRIT, RMESS Team
+ Creation Date... : 18/10/2026
+ ************************************************************************/
+
+package fr.irit.rmess.heartdeep.helpers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An in-memory buffer storing sensor readings in the binary recording format (see {@link SensorRecordFormat}).
+ *
+ * Records are encoded in fixed-size chunks, so the buffer grows without ever copying what is already stored.
+ * This class is not thread-safe.
+ */
+public class SensorRecordBuffer implements SensorRecordSink {
+
+    /**
+     * The size (in bytes) of a chunk. It is a multiple of {@link SensorRecordFormat#RECORD_SIZE}
+     */
+    private static final int CHUNK_SIZE = 2978 * SensorRecordFormat.RECORD_SIZE;
+
+    /**
+     * The encoded header of the recording
+     */
+    private final byte[] header;
+
+    /**
+     * The chunks storing the encoded records. All of them are full, except the last one
+     */
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+
+    /**
+     * The chunk records are currently appended to
+     */
+    private ByteBuffer currentChunk = null;
+
+    /**
+     * The number of records stored
+     */
+    private long recordsCount = 0;
+
+    /**
+     * Creates an empty buffer for a recording of the given sensors
+     *
+     * @param sensorNames The sensors dictionary: the name of each sensor, indexed by its id
+     */
+    public SensorRecordBuffer(String[] sensorNames) {
+        header = SensorRecordFormat.encodeHeader(sensorNames);
+    }
+
+    @Override
+    public void writeRecord(long timestamp, int sensorId, float x, float y, float z) {
+        if (currentChunk == null || !currentChunk.hasRemaining()) {
+            currentChunk = ByteBuffer.allocate(CHUNK_SIZE);
+            chunks.add(currentChunk);
+        }
+
+        SensorRecordFormat.putRecord(currentChunk, timestamp, sensorId, x, y, z);
+        recordsCount++;
+    }
+
+    /**
+     * Writes the whole recording (header and records) to the given stream
+     *
+     * @param out The stream to write to
+     * @throws IOException If an I/O error occurs
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(header);
+        for (ByteBuffer chunk : chunks) {
+            out.write(chunk.array(), 0, chunk.position());
+        }
+    }
+
+    /**
+     * Does nothing: the records stay available until {@link #clear()} is called
+     */
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Removes all the records from the buffer (see {@link #clear()})
+     */
+    @Override
+    public void abort() {
+        clear();
+    }
+
+    /**
+     * Removes all the records from the buffer and releases its memory
+     */
+    public void clear() {
+        chunks.clear();
+        currentChunk = null;
+        recordsCount = 0;
+    }
+
+    /**
+     * Gets the number of records stored in the buffer
+     *
+     * @return The number of records
+     */
+    public long getRecordsCount() {
+        return recordsCount;
+    }
+
+    /**
+     * Gets the size of the whole recording (header and records)
+     *
+     * @return The size in bytes
+     */
+    public long getSizeInBytes() {
+        return header.length + recordsCount * SensorRecordFormat.RECORD_SIZE;
+    }
+}
@@ -0,0 +1,93 @@
+/***********************************************************************
+ Name............ : SensorRecordCsvConverter.java
+ Description..... : A helper class converting binary recordings to CSV
+ Author.......... : Kevin Jiokeng for IRIT, RMESS Team
+ Creation Date... : 18/10/2026
+ ************************************************************************/
+
+package fr.irit.rmess.heartdeep.helpers;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A helper class converting binary recordings (see {@link SensorRecordFormat}) to the CSV format
+ * {@code timestamp,sensor,x,y,z} historically written by HeartDeep.
+ *
+ * The conversion is streamed: only one record is held in memory at a time,
+ * and lines are encoded with a {@link SensorCsvEncoder}, without allocating anything per record.
+ */
+public class SensorRecordCsvConverter {
+
+    private SensorRecordCsvConverter() {
+    }
+
+    /**
+     * Converts a binary recording to CSV
+     *
+     * @param in  The stream to read the binary recording from
+     * @param out The stream to write the CSV (UTF-8) to. It is flushed but not closed
+     * @return The number of converted records
+     * @throws IOException If an I/O error occurs or if the recording is malformed
+     */
+    public static long convert(InputStream in, OutputStream out) throws IOException {
+        DataInputStream dataIn = new DataInputStream(in instanceof BufferedInputStream ? in : new BufferedInputStream(in));
+        String[] sensorNames = SensorRecordFormat.readHeader(dataIn);
+
+        SensorCsvEncoder encoder = new SensorCsvEncoder(out, sensorNames);
+        encoder.writeHeader();
+
+        long count = 0;
+        while (true) {
+            long timestamp;
+            try {
+                timestamp = dataIn.readLong();
+            } catch (EOFException e) {
+                break;
+            }
+            int sensorId = dataIn.readShort();
+            float x = dataIn.readFloat();
+            float y = dataIn.readFloat();
+            float z = dataIn.readFloat();
+
+            if (sensorId < 0 || sensorId >= sensorNames.length) {
+                throw new IOException("Unknown sensor id " + sensorId + " in record " + count);
+            }
+
+            encoder.writeRecord(timestamp, sensorId, x, y, z);
+            count++;
+        }
+
+        encoder.flush();
+        return count;
+    }
+
+    /**
+     * Converts a binary recording file to a CSV file
+     *
+     * @param binaryFile The binary recording to convert
+     * @param csvFile    The CSV file to create (or overwrite)
+     * @return The number of converted records
+     * @throws IOException If an I/O error occurs or if the recording is malformed
+     */
+    public static long convert(File binaryFile, File csvFile) throws IOException {
+        InputStream in = new FileInputStream(binaryFile);
+        try {
+            OutputStream out = new FileOutputStream(csvFile);
+            try {
+                return convert(in, out);
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+}
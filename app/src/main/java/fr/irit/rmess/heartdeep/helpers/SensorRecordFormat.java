@@ -0,0 +1,142 @@
+/***********************************************************************
+ Name............ : SensorRecordFormat.java
+ Description..... : The description of the binary format used to record sensor readings
+ Author.......... : Kevin Jiokeng for IRIT, RMESS Team
+ Creation Date... : 18/10/2026
+ ************************************************************************/
+
+package fr.irit.rmess.heartdeep.helpers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The description of the binary format used to record sensor readings.
+ *
+ * A recording starts with a header:
+ * <ul>
+ *     <li>the magic number {@link #MAGIC} (int)</li>
+ *     <li>the format version {@link #VERSION} (short)</li>
+ *     <li>the number of sensors in the dictionary (short)</li>
+ *     <li>for each sensor of the dictionary, its name (as written by {@link DataOutput#writeUTF(String)}).
+ *     The id of a sensor is its index in the dictionary</li>
+ * </ul>
+ * It is followed by fixed-width records of {@link #RECORD_SIZE} bytes:
+ * timestamp (long), sensor id (short), x (float), y (float), z (float).
+ * All values are big-endian.
+ */
+public final class SensorRecordFormat {
+
+    /**
+     * The magic number at the beginning of every recording ("HDR1")
+     */
+    public static final int MAGIC = 0x48445231;
+
+    /**
+     * The version of the format
+     */
+    public static final short VERSION = 1;
+
+    /**
+     * The size (in bytes) of a single record
+     */
+    public static final int RECORD_SIZE = 8 + 2 + 3 * 4;
+
+    /**
+     * The extension of binary recording files
+     */
+    public static final String FILE_EXTENSION = ".hdb";
+
+    /**
+     * The header line of the CSV representation of a recording
+     */
+    public static final String CSV_HEADER = "timestamp,sensor,x,y,z";
+
+    private SensorRecordFormat() {
+    }
+
+    /**
+     * Writes a recording header
+     *
+     * @param out         The output to write to
+     * @param sensorNames The sensors dictionary: the name of each sensor, indexed by its id
+     * @throws IOException If an I/O error occurs
+     */
+    public static void writeHeader(DataOutput out, String[] sensorNames) throws IOException {
+        if (sensorNames.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many sensors: " + sensorNames.length);
+        }
+
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeShort(sensorNames.length);
+        for (String sensorName : sensorNames) {
+            out.writeUTF(sensorName);
+        }
+    }
+
+    /**
+     * Encodes a recording header in a new array
+     *
+     * @param sensorNames The sensors dictionary: the name of each sensor, indexed by its id
+     * @return The encoded header
+     */
+    public static byte[] encodeHeader(String[] sensorNames) {
+        ByteArrayOutputStream headerStream = new ByteArrayOutputStream();
+        try {
+            writeHeader(new DataOutputStream(headerStream), sensorNames);
+        } catch (IOException e) {
+            // Cannot happen with an in-memory stream
+            throw new IllegalStateException(e);
+        }
+        return headerStream.toByteArray();
+    }
+
+    /**
+     * Reads a recording header
+     *
+     * @param in The input to read from
+     * @return The sensors dictionary: the name of each sensor, indexed by its id
+     * @throws IOException If an I/O error occurs or if the input is not a recording in a supported version
+     */
+    public static String[] readHeader(DataInput in) throws IOException {
+        int magic = in.readInt();
+        if (magic != MAGIC) {
+            throw new IOException("Not a HeartDeep recording (bad magic number " + Integer.toHexString(magic) + ")");
+        }
+
+        short version = in.readShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported recording version " + version);
+        }
+
+        String[] sensorNames = new String[in.readShort()];
+        for (int i = 0; i < sensorNames.length; i++) {
+            sensorNames[i] = in.readUTF();
+        }
+
+        return sensorNames;
+    }
+
+    /**
+     * Encodes a single record at the current position of the given buffer
+     *
+     * @param buffer    The buffer to write to. It must have at least {@link #RECORD_SIZE} remaining bytes
+     * @param timestamp The timestamp of the reading
+     * @param sensorId  The id of the sensor in the dictionary
+     * @param x         The reading along x axis
+     * @param y         The reading along y axis
+     * @param z         The reading along z axis
+     */
+    public static void putRecord(ByteBuffer buffer, long timestamp, int sensorId, float x, float y, float z) {
+        buffer.putLong(timestamp);
+        buffer.putShort((short) sensorId);
+        buffer.putFloat(x);
+        buffer.putFloat(y);
+        buffer.putFloat(z);
+    }
+}
@@ -0,0 +1,468 @@
+/***********************************************************************
+ Name............ : SensorRecordIndex.java
+ Description..... : A sparse index of the timestamps of a binary recording, to seek inside it
+ Author.......... : Kevin Jiokeng for IRIT, RMESS Team
+ Creation Date... : 18/10/2026
+ ************************************************************************/
+
+package fr.irit.rmess.heartdeep.helpers;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A sparse index of the timestamps of a binary recording (see {@link SensorRecordFormat}): the records are split into blocks of
+ * a fixed number of records, and the index holds the lowest and highest timestamps of each block.
+ * Records having a fixed size, the byte offset of a block follows from its first record number. The records of compressed
+ * recordings do not, so their index also holds the byte offset of each block (see {@link #addBlock(long, int, long, long)}):
+ * its blocks are then the blocks of the compressed recording.
+ *
+ * The records of the different sensors are interleaved, so their timestamps are only roughly increasing: a time range is
+ * located by binary search over the highest timestamp of the blocks so far and the lowest timestamp of the blocks to come,
+ * which bound it whatever the order of the records within the blocks.
+ *
+ * The index is filled by the recording sinks as records are written (see {@link #add(long)}), and saved next to the recording,
+ * in a sidecar file named after it (see {@link #indexFile(File, String)}):
+ * <ul>
+ *     <li>the magic number {@link #MAGIC} (int)</li>
+ *     <li>the format version {@link #VERSION} (short)</li>
+ *     <li>the number of records per block (int)</li>
+ *     <li>the number of records (long)</li>
+ *     <li>the number of blocks (int)</li>
+ *     <li>whether the byte offsets of the blocks are held (boolean)</li>
+ *     <li>for each block, its lowest and highest timestamps (longs), then its byte offset (long) if they are held</li>
+ * </ul>
+ * All values are big-endian. Indexes of the version 1, without the boolean, are still read.
+ *
+ * An index is filled by a single thread (the one writing the records), and can be searched from any thread.
+ */
+public class SensorRecordIndex {
+
+    /**
+     * The magic number at the beginning of every index file ("HDI1")
+     */
+    public static final int MAGIC = 0x48444931;
+
+    /**
+     * The version of the index format
+     */
+    public static final short VERSION = 2;
+
+    /**
+     * The extension of index files, appended to the name of the recording
+     */
+    public static final String FILE_EXTENSION = ".idx";
+
+    /**
+     * The default number of records per block (about 22 kB of records, for 16 bytes of index)
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 1024;
+
+    /**
+     * The number of records per block
+     */
+    private final int blockSize;
+
+    /**
+     * The number of indexed records
+     */
+    private long recordsCount = 0;
+
+    /**
+     * The number of blocks (the last one being possibly partial)
+     */
+    private int blocksCount = 0;
+
+    /**
+     * The lowest timestamp of each block
+     */
+    private long[] minTimestamps;
+
+    /**
+     * The highest timestamp of each block
+     */
+    private long[] maxTimestamps;
+
+    /**
+     * The byte offset of each block in the recording, or {@code null} if the index is filled record by record
+     */
+    private long[] blockOffsets = null;
+
+    /**
+     * The highest timestamp of the blocks up to each block (included), or {@code null} if not computed since the last record
+     */
+    private long[] maxTimestampsSoFar = null;
+
+    /**
+     * The lowest timestamp of the blocks from each block (included), or {@code null} if not computed since the last record
+     */
+    private long[] minTimestampsToCome = null;
+
+    /**
+     * Creates an empty index with the {@link #DEFAULT_BLOCK_SIZE default block size}
+     */
+    public SensorRecordIndex() {
+        this(DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Creates an empty index
+     *
+     * @param blockSize The number of records per block
+     */
+    public SensorRecordIndex(int blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Invalid block size: " + blockSize);
+        }
+
+        this.blockSize = blockSize;
+        minTimestamps = new long[64];
+        maxTimestamps = new long[64];
+    }
+
+    /**
+     * Indexes the next record of the recording
+     *
+     * @param timestamp The timestamp of the record
+     */
+    public synchronized void add(long timestamp) {
+        if (blockOffsets != null) {
+            throw new IllegalStateException("Index filled block by block");
+        }
+
+        if (recordsCount % blockSize == 0) {
+            growBlocks();
+            minTimestamps[blocksCount] = timestamp;
+            maxTimestamps[blocksCount] = timestamp;
+            blocksCount++;
+        } else if (timestamp < minTimestamps[blocksCount - 1]) {
+            minTimestamps[blocksCount - 1] = timestamp;
+        } else if (timestamp > maxTimestamps[blocksCount - 1]) {
+            maxTimestamps[blocksCount - 1] = timestamp;
+        }
+
+        recordsCount++;
+        maxTimestampsSoFar = null;
+        minTimestampsToCome = null;
+    }
+
+    /**
+     * Indexes the next block of the recording, for the recordings whose records do not have a fixed size.
+     * Only the last block may hold less than {@link #getBlockSize()} records
+     *
+     * @param offset       The byte offset of the block in the recording
+     * @param count        The number of records of the block
+     * @param minTimestamp The lowest timestamp of the block
+     * @param maxTimestamp The highest timestamp of the block
+     */
+    public synchronized void addBlock(long offset, int count, long minTimestamp, long maxTimestamp) {
+        if (blocksCount > 0 && blockOffsets == null) {
+            throw new IllegalStateException("Index filled record by record");
+        }
+        if (count <= 0 || count > blockSize || recordsCount % blockSize != 0) {
+            throw new IllegalArgumentException("Block of " + count + " records after " + recordsCount + " records, with blocks of " + blockSize);
+        }
+
+        if (blockOffsets == null) {
+            blockOffsets = new long[minTimestamps.length];
+        }
+        growBlocks();
+        minTimestamps[blocksCount] = minTimestamp;
+        maxTimestamps[blocksCount] = maxTimestamp;
+        blockOffsets[blocksCount] = offset;
+        blocksCount++;
+
+        recordsCount += count;
+        maxTimestampsSoFar = null;
+        minTimestampsToCome = null;
+    }
+
+    /**
+     * Makes room for one more block, doubling the arrays if needed
+     */
+    private void growBlocks() {
+        if (blocksCount == minTimestamps.length) {
+            minTimestamps = Arrays.copyOf(minTimestamps, 2 * blocksCount);
+            maxTimestamps = Arrays.copyOf(maxTimestamps, 2 * blocksCount);
+            if (blockOffsets != null) {
+                blockOffsets = Arrays.copyOf(blockOffsets, 2 * blocksCount);
+            }
+        }
+    }
+
+
+    /* Seeking */
+
+    /**
+     * Finds the first record which may be in a time range: all the records before it are before the range
+     *
+     * @param from The beginning of the time range
+     * @return The number of the first record of the first block holding a record at or after {@code from},
+     * or the number of records if there is none
+     */
+    public synchronized long getFirstRecord(long from) {
+        computeBounds();
+
+        // The highest timestamps so far are increasing: find the first block reaching the range
+        int low = 0;
+        int high = blocksCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (maxTimestampsSoFar[middle] < from) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return Math.min((long) low * blockSize, recordsCount);
+    }
+
+    /**
+     * Finds the end of the records which may be in a time range: all the records from it are after the range
+     *
+     * @param to The end of the time range (excluded)
+     * @return The number of the first record of the first block from which all the records are at or after {@code to},
+     * or the number of records if there is none
+     */
+    public synchronized long getEndRecord(long to) {
+        computeBounds();
+
+        // The lowest timestamps to come are increasing: find the first block past the range
+        int low = 0;
+        int high = blocksCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (minTimestampsToCome[middle] < to) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return Math.min((long) low * blockSize, recordsCount);
+    }
+
+    /**
+     * Computes the bounds of the timestamps before and after each block, if records were added since the last computation
+     */
+    private void computeBounds() {
+        if (maxTimestampsSoFar != null) {
+            return;
+        }
+
+        long[] minToCome = new long[blocksCount];
+        long[] maxSoFar = new long[blocksCount];
+        for (int i = 0; i < blocksCount; i++) {
+            maxSoFar[i] = i == 0 ? maxTimestamps[i] : Math.max(maxSoFar[i - 1], maxTimestamps[i]);
+        }
+        for (int i = blocksCount - 1; i >= 0; i--) {
+            minToCome[i] = i == blocksCount - 1 ? minTimestamps[i] : Math.min(minToCome[i + 1], minTimestamps[i]);
+        }
+
+        minTimestampsToCome = minToCome;
+        maxTimestampsSoFar = maxSoFar;
+    }
+
+
+    /* Persistence */
+
+    /**
+     * Gets the index file of a recording
+     *
+     * @param directory The directory holding the recording
+     * @param name      The name of the recording
+     * @return The index file, next to the recording
+     */
+    public static File indexFile(File directory, String name) {
+        return new File(directory, name + FILE_EXTENSION);
+    }
+
+    /**
+     * Writes this index
+     *
+     * @param out The stream to write to. It is flushed but not closed
+     * @throws IOException If an I/O error occurs
+     */
+    public synchronized void writeTo(OutputStream out) throws IOException {
+        DataOutputStream dataOut = new DataOutputStream(new BufferedOutputStream(out));
+        dataOut.writeInt(MAGIC);
+        dataOut.writeShort(VERSION);
+        dataOut.writeInt(blockSize);
+        dataOut.writeLong(recordsCount);
+        dataOut.writeInt(blocksCount);
+        dataOut.writeBoolean(blockOffsets != null);
+        for (int i = 0; i < blocksCount; i++) {
+            dataOut.writeLong(minTimestamps[i]);
+            dataOut.writeLong(maxTimestamps[i]);
+            if (blockOffsets != null) {
+                dataOut.writeLong(blockOffsets[i]);
+            }
+        }
+        dataOut.flush();
+    }
+
+    /**
+     * Writes this index to a file
+     *
+     * @param file The file to create (or overwrite)
+     * @throws IOException If an I/O error occurs
+     */
+    public void writeTo(File file) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            writeTo(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads an index
+     *
+     * @param in The stream to read from. It is not closed
+     * @return The index
+     * @throws IOException If an I/O error occurs or if the input is not an index in a supported version
+     */
+    public static SensorRecordIndex readFrom(InputStream in) throws IOException {
+        DataInputStream dataIn = new DataInputStream(new BufferedInputStream(in));
+        int magic = dataIn.readInt();
+        if (magic != MAGIC) {
+            throw new IOException("Not a HeartDeep recording index (bad magic number " + Integer.toHexString(magic) + ")");
+        }
+
+        short version = dataIn.readShort();
+        if (version != VERSION && version != 1) {
+            throw new IOException("Unsupported recording index version " + version);
+        }
+
+        int blockSize = dataIn.readInt();
+        long recordsCount = dataIn.readLong();
+        int blocksCount = dataIn.readInt();
+        if (blockSize <= 0 || recordsCount < 0 || blocksCount != (recordsCount + blockSize - 1) / blockSize) {
+            throw new IOException("Malformed recording index: " + blocksCount + " blocks of " + blockSize + " for " + recordsCount + " records");
+        }
+
+        boolean hasOffsets = version != 1 && dataIn.readBoolean();
+
+        SensorRecordIndex index = new SensorRecordIndex(blockSize);
+        index.recordsCount = recordsCount;
+        index.blocksCount = blocksCount;
+        index.minTimestamps = new long[Math.max(1, blocksCount)];
+        index.maxTimestamps = new long[Math.max(1, blocksCount)];
+        index.blockOffsets = hasOffsets ? new long[Math.max(1, blocksCount)] : null;
+        for (int i = 0; i < blocksCount; i++) {
+            index.minTimestamps[i] = dataIn.readLong();
+            index.maxTimestamps[i] = dataIn.readLong();
+            if (hasOffsets) {
+                index.blockOffsets[i] = dataIn.readLong();
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Reads an index from a file
+     *
+     * @param file The index file
+     * @return The index
+     * @throws IOException If an I/O error occurs or if the file is not an index in a supported version
+     */
+    public static SensorRecordIndex readFrom(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            return readFrom(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Builds the index of a recording by reading it entirely (for the recordings saved without their index)
+     *
+     * @param in        The stream to read the binary recording from. It is not closed
+     * @param blockSize The number of records per block
+     * @return The index
+     * @throws IOException If an I/O error occurs or if the recording is malformed
+     */
+    public static SensorRecordIndex build(InputStream in, int blockSize) throws IOException {
+        DataInputStream dataIn = new DataInputStream(in instanceof BufferedInputStream ? in : new BufferedInputStream(in));
+        SensorRecordFormat.readHeader(dataIn);
+
+        SensorRecordIndex index = new SensorRecordIndex(blockSize);
+        while (true) {
+            long timestamp;
+            try {
+                timestamp = dataIn.readLong();
+            } catch (EOFException e) {
+                break;
+            }
+            if (dataIn.skipBytes(SensorRecordFormat.RECORD_SIZE - 8) != SensorRecordFormat.RECORD_SIZE - 8) {
+                throw new IOException("Truncated record " + index.recordsCount);
+            }
+            index.add(timestamp);
+        }
+        return index;
+    }
+
+
+    /* Getters */
+
+    /**
+     * Gets the number of records per block
+     *
+     * @return The block size
+     */
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Gets the number of indexed records
+     *
+     * @return The number of records
+     */
+    public long getRecordsCount() {
+        return recordsCount;
+    }
+
+    /**
+     * Gets the number of blocks
+     *
+     * @return The number of blocks, the last one being possibly partial
+     */
+    public int getBlocksCount() {
+        return blocksCount;
+    }
+
+    /**
+     * Indicates whether the index holds the byte offset of each block (see {@link #addBlock(long, int, long, long)})
+     *
+     * @return {@code true} if it does
+     */
+    public synchronized boolean hasBlockOffsets() {
+        return blockOffsets != null;
+    }
+
+    /**
+     * Gets the byte offset of a block in the recording
+     *
+     * @param block The number of the block
+     * @return The byte offset of the block
+     * @throws IllegalStateException If the index does not hold the byte offsets of the blocks
+     */
+    public synchronized long getBlockOffset(int block) {
+        if (blockOffsets == null) {
+            throw new IllegalStateException("Index without block offsets");
+        }
+        return blockOffsets[block];
+    }
+}
@@ -0,0 +1,392 @@
+/***********************************************************************
+ Name............ : SensorRecordReader.java
+ Description..... : A reader of binary recordings seeking to time ranges with their sparse index
+ Author.......... : Kevin Jiokeng for IRIT, RMESS Team
+ Creation Date... : 18/10/2026
+ ************************************************************************/
+
+package fr.irit.rmess.heartdeep.helpers;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A reader of binary recordings (see {@link SensorRecordFormat}), whatever the storage backend they were written with,
+ * streaming the records of a time range only.
+ *
+ * The reader {@link #seek(long, long) seeks} to the first block of records which may be in the range, as given by the sparse index
+ * of the recording (see {@link SensorRecordIndex}), skipping the records before it without reading them, and stops at the end
+ * of the last block which may be in it: looking at a few minutes of a multi-hour recording only reads these minutes.
+ * Recordings saved without their index have it built (and saved) by a full read when they are first opened.
+ * The index of compressed recordings (see {@link CompressedRecordWriter}) holds the byte offset of their blocks, which are the blocks
+ * of the index: the reader jumps to the first block which may be in the range, and only decodes from there. Their index is built from
+ * the block headers alone if they were saved without it.
+ *
+ * Usage: {@code reader.seek(from, to); while (reader.next()) { ... reader.getTimestamp() ... }}.
+ * Records are read one at a time, without allocating anything per record. A reader is used by a single thread.
+ */
+public class SensorRecordReader implements Closeable {
+
+    /**
+     * The directory holding the recording
+     */
+    private final File directory;
+
+    /**
+     * The name of the recording
+     */
+    private final String name;
+
+    /**
+     * The sensors dictionary: the name of each sensor, indexed by its id
+     */
+    private final String[] sensorNames;
+
+    /**
+     * The size (in bytes) of the recording header, before the first record
+     */
+    private final int headerSize;
+
+    /**
+     * The sparse index of the recording
+     */
+    private final SensorRecordIndex index;
+
+    /**
+     * The stream of the recording, or {@code null} once closed or if the recording is read with {@link #compressedIn}
+     */
+    private DataInputStream in;
+
+    /**
+     * The reader of the compressed recording whose index holds the byte offsets of its blocks, or {@code null} once closed or otherwise
+     */
+    private CompressedRecordReader compressedIn;
+
+    /**
+     * The number of the next record of the stream
+     */
+    private long position = 0;
+
+    /**
+     * The number of the record after the last one which may be in the range
+     */
+    private long endRecord;
+
+    /**
+     * The beginning of the time range
+     */
+    private long from = Long.MIN_VALUE;
+
+    /**
+     * The end of the time range (excluded)
+     */
+    private long to = Long.MAX_VALUE;
+
+    /**
+     * The timestamp of the current record
+     */
+    private long timestamp;
+
+    /**
+     * The id of the sensor of the current record
+     */
+    private int sensorId;
+
+    /**
+     * The reading along x axis of the current record
+     */
+    private float x;
+
+    /**
+     * The reading along y axis of the current record
+     */
+    private float y;
+
+    /**
+     * The reading along z axis of the current record
+     */
+    private float z;
+
+    /**
+     * Opens a recording, positioned on its first record (its whole time range is selected).
+     * Its index is read from its sidecar file, or built and saved if it has none
+     *
+     * @param directory The directory holding the recording
+     * @param name      The name of the recording
+     * @throws IOException If the recording cannot be opened, or if it is malformed
+     */
+    public SensorRecordReader(File directory, String name) throws IOException {
+        this.directory = directory;
+        this.name = name;
+
+        File file = new File(directory, name);
+        File indexFile = SensorRecordIndex.indexFile(directory, name);
+        if (indexFile.isFile()) {
+            index = SensorRecordIndex.readFrom(indexFile);
+        } else {
+            if (!MappedSegmentLog.exists(directory, name) && CompressedRecordReader.isCompressed(file)) {
+                index = CompressedRecordReader.buildIndex(file);
+            } else {
+                InputStream recording = openStream(directory, name);
+                try {
+                    index = SensorRecordIndex.build(recording, SensorRecordIndex.DEFAULT_BLOCK_SIZE);
+                } finally {
+                    recording.close();
+                }
+            }
+            try {
+                index.writeTo(indexFile);
+            } catch (IOException e) {
+                // The index is just rebuilt next time
+                indexFile.delete();
+            }
+        }
+        endRecord = index.getRecordsCount();
+
+        if (index.hasBlockOffsets()) {
+            compressedIn = new CompressedRecordReader(file);
+            sensorNames = compressedIn.getSensorNames();
+            headerSize = 0;
+            return;
+        }
+
+        in = new DataInputStream(new BufferedInputStream(openStream(directory, name)));
+        try {
+            sensorNames = SensorRecordFormat.readHeader(in);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        headerSize = SensorRecordFormat.encodeHeader(sensorNames).length;
+    }
+
+    /**
+     * Opens a recording as a single stream in the binary format, whatever the storage backend it was written with
+     *
+     * @param directory The directory holding the recording
+     * @param name      The name of the recording
+     * @return The stream of the recording
+     * @throws IOException If the recording cannot be opened
+     */
+    public static InputStream openStream(File directory, String name) throws IOException {
+        if (MappedSegmentLog.exists(directory, name)) {
+            return MappedSegmentLog.openStream(directory, name);
+        }
+
+        File file = new File(directory, name);
+        if (CompressedRecordReader.isCompressed(file)) {
+            return CompressedRecordReader.openStream(file);
+        }
+        return new FileInputStream(file);
+    }
+
+
+    /* Reading */
+
+    /**
+     * Selects a time range, and positions the reader before its first record.
+     * Seeking forward skips the records in between, seeking backward reopens the recording.
+     * In a compressed recording, the reader jumps to the block of the first record, forward or backward
+     *
+     * @param from The beginning of the time range
+     * @param to   The end of the time range (excluded)
+     * @throws IOException If an I/O error occurs
+     */
+    public void seek(long from, long to) throws IOException {
+        ensureOpen();
+        this.from = from;
+        this.to = to;
+
+        long firstRecord = index.getFirstRecord(from);
+        endRecord = Math.max(firstRecord, index.getEndRecord(to));
+
+        if (compressedIn != null) {
+            // The first record starts a block of the index, which is a block of the recording
+            if (firstRecord != position && firstRecord < index.getRecordsCount()) {
+                compressedIn.seekToBlock(index.getBlockOffset((int) (firstRecord / index.getBlockSize())));
+            }
+            position = firstRecord;
+            return;
+        }
+
+        if (firstRecord < position) {
+            in.close();
+            in = new DataInputStream(new BufferedInputStream(openStream(directory, name)));
+            skipFully(headerSize);
+            position = 0;
+        }
+        skipFully((firstRecord - position) * SensorRecordFormat.RECORD_SIZE);
+        position = firstRecord;
+    }
+
+    /**
+     * Reads the next record of the time range
+     *
+     * @return {@code true} if a record was read (see the getters), {@code false} if there are no more records in the range
+     * @throws IOException If an I/O error occurs or if the recording is malformed
+     */
+    public boolean next() throws IOException {
+        ensureOpen();
+        while (position < endRecord) {
+            if (!readRecord()) {
+                // The recording is shorter than its index
+                endRecord = position;
+                return false;
+            }
+            position++;
+
+            if (sensorId < 0 || sensorId >= sensorNames.length) {
+                throw new IOException("Unknown sensor id " + sensorId + " in record " + (position - 1));
+            }
+            if (timestamp >= from && timestamp < to) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads the next record of the recording into the fields of the current record
+     *
+     * @return {@code false} at the end of the recording
+     * @throws IOException If an I/O error occurs or if the recording is malformed
+     */
+    private boolean readRecord() throws IOException {
+        if (compressedIn != null) {
+            if (!compressedIn.next()) {
+                return false;
+            }
+            timestamp = compressedIn.getTimestamp();
+            sensorId = compressedIn.getSensorId();
+            x = compressedIn.getX();
+            y = compressedIn.getY();
+            z = compressedIn.getZ();
+            return true;
+        }
+
+        try {
+            timestamp = in.readLong();
+        } catch (EOFException e) {
+            return false;
+        }
+        sensorId = in.readShort();
+        x = in.readFloat();
+        y = in.readFloat();
+        z = in.readFloat();
+        return true;
+    }
+
+    /**
+     * Skips bytes of the recording, without reading them when the stream can seek
+     *
+     * @param bytes The number of bytes to skip
+     * @throws IOException If an I/O error occurs, or if the recording ends before
+     */
+    private void skipFully(long bytes) throws IOException {
+        while (bytes > 0) {
+            long skipped = in.skip(bytes);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new EOFException("Recording " + name + " shorter than its index");
+                }
+                skipped = 1;
+            }
+            bytes -= skipped;
+        }
+    }
+
+    /**
+     * Checks that the reader was not closed
+     *
+     * @throws IOException If it was
+     */
+    private void ensureOpen() throws IOException {
+        if (in == null && compressedIn == null) {
+            throw new IOException("Reader of " + name + " closed");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (in != null) {
+            in.close();
+            in = null;
+        }
+        if (compressedIn != null) {
+            compressedIn.close();
+            compressedIn = null;
+        }
+    }
+
+
+    /* Getters */
+
+    /**
+     * Gets the sensors dictionary of the recording
+     *
+     * @return The name of each sensor, indexed by its id
+     */
+    public String[] getSensorNames() {
+        return sensorNames.clone();
+    }
+
+    /**
+     * Gets the sparse index of the recording
+     *
+     * @return The index
+     */
+    public SensorRecordIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Gets the timestamp of the current record
+     *
+     * @return The timestamp of the reading
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Gets the sensor of the current record
+     *
+     * @return The id of the sensor in the dictionary
+     */
+    public int getSensorId() {
+        return sensorId;
+    }
+
+    /**
+     * Gets the reading along x axis of the current record
+     *
+     * @return The reading along x axis
+     */
+    public float getX() {
+        return x;
+    }
+
+    /**
+     * Gets the reading along y axis of the current record
+     *
+     * @return The reading along y axis
+     */
+    public float getY() {
+        return y;
+    }
+
+    /**
+     * Gets the reading along z axis of the current record
+     *
+     * @return The reading along z axis
+     */
+    public float getZ() {
+        return z;
+    }
+}
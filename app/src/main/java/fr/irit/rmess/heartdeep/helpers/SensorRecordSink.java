@@ -0,0 +1,41 @@
+/***********************************************************************
+ Name............ : SensorRecordSink.java
+ Description..... : A custom interface to define the behavior of a destination of sensor records
+ Author.......... : Kevin Jiokeng for IRIT, RMESS Team
+ Creation Date... : 18/10/2026
+ ************************************************************************/
+
+package fr.irit.rmess.heartdeep.helpers;
+
+import java.io.IOException;
+
+/**
+ * A custom interface to define the behavior of a destination of sensor records, in the binary recording format (see {@link SensorRecordFormat}).
+ * Records are written by a single thread (typically the sensor listener one).
+ */
+public interface SensorRecordSink {
+    /**
+     * Appends a record
+     *
+     * @param timestamp The timestamp of the reading
+     * @param sensorId  The id of the sensor in the dictionary
+     * @param x         The reading along x axis
+     * @param y         The reading along y axis
+     * @param z         The reading along z axis
+     */
+    void writeRecord(long timestamp, int sensorId, float x, float y, float z);
+
+    /**
+     * Makes sure all the records written so far are persisted, and releases the resources held by this sink.
+     * No record can be written afterwards.
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    void close() throws IOException;
+
+    /**
+     * Releases the resources held by this sink and discards all the records written so far.
+     * Used when a recording is cancelled. No record can be written afterwards.
+     */
+    void abort();
+}
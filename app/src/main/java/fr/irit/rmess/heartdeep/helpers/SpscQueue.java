@@ -0,0 +1,136 @@
+/***********************************************************************
+ Name............ : SpscQueue.java
+ Description..... : A bounded lock-free single-producer/single-consumer queue
+ Author.......... : Kevin Jiokeng for IRIT, RMESS Team
+ Creation Date... : 18/10/2026
+ ************************************************************************/
+
+package fr.irit.rmess.heartdeep.helpers;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded lock-free queue for exactly one producer thread and one consumer thread.
+ *
+ * {@link #offer(Object)} must only be called by the producer and {@link #poll()} only by the consumer;
+ * {@link #size()} can be called from any thread. Neither operation blocks nor allocates.
+ *
+ * @param <E> The type of the queued elements
+ */
+public class SpscQueue<E> {
+
+    /**
+     * The storage of the queued elements
+     */
+    private final Object[] buffer;
+
+    /**
+     * The mask used to wrap indexes around the buffer ({@code capacity - 1})
+     */
+    private final int mask;
+
+    /**
+     * The index of the next element to be polled. Only written by the consumer
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * The index of the next element to be offered. Only written by the producer
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * The last value of {@link #head} read by the producer (avoids reading it at each offer)
+     */
+    private long cachedHead = 0;
+
+    /**
+     * The last value of {@link #tail} read by the consumer (avoids reading it at each poll)
+     */
+    private long cachedTail = 0;
+
+    /**
+     * Creates a queue able to hold at least {@code minCapacity} elements.
+     * The actual capacity is rounded up to the next power of two.
+     *
+     * @param minCapacity The minimum number of elements the queue should be able to hold
+     */
+    public SpscQueue(int minCapacity) {
+        if (minCapacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + minCapacity);
+        }
+
+        int capacity = Integer.highestOneBit(minCapacity);
+        if (capacity < minCapacity) {
+            capacity <<= 1;
+        }
+
+        buffer = new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Adds an element at the tail of the queue. Must only be called by the producer thread.
+     *
+     * @param element The element to add (not {@code null})
+     * @return {@code true} if the element was added, {@code false} if the queue is full
+     */
+    public boolean offer(E element) {
+        if (element == null) {
+            throw new NullPointerException("Null elements are not supported");
+        }
+
+        long currentTail = tail.get();
+        if (currentTail - cachedHead >= buffer.length) {
+            cachedHead = head.get();
+            if (currentTail - cachedHead >= buffer.length) {
+                return false;
+            }
+        }
+
+        buffer[(int) currentTail & mask] = element;
+        tail.lazySet(currentTail + 1);
+        return true;
+    }
+
+    /**
+     * Removes the element at the head of the queue. Must only be called by the consumer thread.
+     *
+     * @return The removed element, or {@code null} if the queue is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long currentHead = head.get();
+        if (currentHead >= cachedTail) {
+            cachedTail = tail.get();
+            if (currentHead >= cachedTail) {
+                return null;
+            }
+        }
+
+        int index = (int) currentHead & mask;
+        E element = (E) buffer[index];
+        buffer[index] = null;
+        head.lazySet(currentHead + 1);
+        return element;
+    }
+
+    /**
+     * Gets the number of queued elements. The value may be stale as soon as it is returned
+     *
+     * @return The number of queued elements
+     */
+    public int size() {
+        long size = tail.get() - head.get();
+        return size < 0 ? 0 : (int) Math.min(size, buffer.length);
+    }
+
+    /**
+     * Gets the capacity of this queue
+     *
+     * @return The maximum number of elements the queue can hold
+     */
+    public int capacity() {
+        return buffer.length;
+    }
+}
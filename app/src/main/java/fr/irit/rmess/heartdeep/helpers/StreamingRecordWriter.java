@@ -0,0 +1,447 @@
+/***********************************************************************
+ Name............ : StreamingRecordWriter.java
+ Description..... : A sensor records sink streaming fixed-size chunks to a file on a dedicated I/O thread
+ Author.......... : Kevin Jiokeng for IRIT, RMESS Team
+ Creation Date... : 18/10/2026
+ ************************************************************************/
+
+package fr.irit.rmess.heartdeep.helpers;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A sensor records sink streaming records to a file (or any stream) while the recording goes on.
+ *
+ * Records are encoded into a fixed number of preallocated chunks. Full chunks are handed off to a dedicated I/O thread
+ * which writes them and gives them back, so memory use is constant whatever the length of the session.
+ * Writing a record never blocks nor allocates: if the I/O thread is so late that no chunk is free, the record is dropped
+ * (and counted, see {@link #getDroppedRecordsCount()}).
+ *
+ * Records written to a file are indexed (see {@link SensorRecordIndex}), and the index is saved next to the file when the writer is closed.
+ *
+ * Records must be written by a single thread. The statistics getters can be called from any thread.
+ */
+public class StreamingRecordWriter implements SensorRecordSink {
+
+    /**
+     * The default size (in bytes) of a chunk. It is a multiple of {@link SensorRecordFormat#RECORD_SIZE}
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 2978 * SensorRecordFormat.RECORD_SIZE;
+
+    /**
+     * The default number of chunks (about 1 MB of memory with the default chunk size)
+     */
+    public static final int DEFAULT_CHUNKS_COUNT = 16;
+
+    /**
+     * A special chunk telling the I/O thread to stop
+     */
+    private static final ByteBuffer END_OF_STREAM = ByteBuffer.allocate(0);
+
+    /**
+     * The stream the records are written to. Only used by the I/O thread after construction
+     */
+    private final OutputStream outputStream;
+
+    /**
+     * The file the records are written to, or {@code null} if the writer was created on a stream
+     */
+    private final File file;
+
+    /**
+     * The sparse index of the records written (and not dropped) so far
+     */
+    private final SensorRecordIndex index = new SensorRecordIndex();
+
+    /**
+     * The chunks available to be filled
+     */
+    private final BlockingQueue<ByteBuffer> freeChunks;
+
+    /**
+     * The full chunks waiting to be written by the I/O thread
+     */
+    private final BlockingQueue<ByteBuffer> fullChunks;
+
+    /**
+     * The dedicated I/O thread
+     */
+    private final Thread ioThread;
+
+    /**
+     * The chunk records are currently appended to, or {@code null} if none is available
+     */
+    private ByteBuffer currentChunk;
+
+    /**
+     * Indicates whether this writer has been closed
+     */
+    private boolean closed = false;
+
+    /**
+     * The first error met by the I/O thread, if any
+     */
+    private volatile IOException ioError = null;
+
+    /**
+     * The number of records written (and not dropped) so far
+     */
+    private volatile long recordsCount = 0;
+
+    /**
+     * The number of records dropped because no chunk was available
+     */
+    private volatile long droppedRecordsCount = 0;
+
+    /**
+     * The number of chunks written by the I/O thread
+     */
+    private volatile long flushedChunksCount = 0;
+
+    /**
+     * The number of bytes written to the stream (header included)
+     */
+    private volatile long bytesWritten = 0;
+
+    /**
+     * The app-wide counter of bytes written to storage
+     */
+    private final MetricsRegistry.Counter bytesWrittenMetric = MetricsRegistry.getDefault().counter(MetricsRegistry.BYTES_WRITTEN);
+
+    /**
+     * The app-wide counter of records dropped by the recording sinks
+     */
+    private final MetricsRegistry.Counter droppedRecordsMetric = MetricsRegistry.getDefault().counter(MetricsRegistry.RECORDS_DROPPED);
+
+    /**
+     * The app-wide gauge of the number of chunks waiting to be written
+     */
+    private final MetricsRegistry.Gauge queueDepthMetric = MetricsRegistry.getDefault().gauge(MetricsRegistry.STORAGE_QUEUE_DEPTH);
+
+    /**
+     * The time (in nanoseconds) taken by the last chunk write
+     */
+    private volatile long lastFlushLatency = 0;
+
+    /**
+     * The longest time (in nanoseconds) taken by a chunk write
+     */
+    private volatile long maxFlushLatency = 0;
+
+    /**
+     * The total time (in nanoseconds) spent writing chunks
+     */
+    private volatile long totalFlushLatency = 0;
+
+    /**
+     * Creates a writer for the given file, with the default chunk size and count.
+     * The recording header is written immediately.
+     *
+     * @param file        The file to write to (created or overwritten)
+     * @param sensorNames The sensors dictionary: the name of each sensor, indexed by its id
+     * @throws IOException If the file cannot be opened or the header cannot be written
+     */
+    public StreamingRecordWriter(File file, String[] sensorNames) throws IOException {
+        this(new FileOutputStream(file), file, sensorNames, DEFAULT_CHUNK_SIZE, DEFAULT_CHUNKS_COUNT);
+    }
+
+    /**
+     * Creates a writer for the given stream.
+     * The recording header is written immediately.
+     *
+     * @param outputStream The stream to write to. It is closed when the writer is closed
+     * @param sensorNames  The sensors dictionary: the name of each sensor, indexed by its id
+     * @param chunkSize    The size (in bytes) of a chunk. It is rounded down to a multiple of {@link SensorRecordFormat#RECORD_SIZE}
+     * @param chunksCount  The number of chunks. Memory use is bounded by {@code chunkSize * chunksCount}
+     * @throws IOException If the header cannot be written
+     */
+    public StreamingRecordWriter(OutputStream outputStream, String[] sensorNames, int chunkSize, int chunksCount) throws IOException {
+        this(outputStream, null, sensorNames, chunkSize, chunksCount);
+    }
+
+    private StreamingRecordWriter(OutputStream outputStream, File file, String[] sensorNames, int chunkSize, int chunksCount) throws IOException {
+        int recordsPerChunk = chunkSize / SensorRecordFormat.RECORD_SIZE;
+        if (recordsPerChunk <= 0 || chunksCount <= 0) {
+            outputStream.close();
+            throw new IllegalArgumentException("Invalid chunks configuration: " + chunksCount + " chunks of " + chunkSize + " bytes");
+        }
+
+        this.outputStream = outputStream;
+        this.file = file;
+        if (file != null) {
+            // Remove the index of a previous recording with the same name
+            indexFile().delete();
+        }
+
+        freeChunks = new ArrayBlockingQueue<>(chunksCount);
+        fullChunks = new ArrayBlockingQueue<>(chunksCount + 1);
+        for (int i = 0; i < chunksCount; i++) {
+            freeChunks.add(ByteBuffer.allocate(recordsPerChunk * SensorRecordFormat.RECORD_SIZE));
+        }
+        currentChunk = freeChunks.poll();
+
+        try {
+            byte[] header = SensorRecordFormat.encodeHeader(sensorNames);
+            outputStream.write(header);
+            bytesWritten = header.length;
+        } catch (IOException e) {
+            outputStream.close();
+            throw e;
+        }
+
+        ioThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runIoLoop();
+            }
+        }, "HeartDeep-RecordWriter");
+        ioThread.start();
+    }
+
+    @Override
+    public void writeRecord(long timestamp, int sensorId, float x, float y, float z) {
+        if (closed) {
+            return;
+        }
+
+        if (currentChunk == null) {
+            currentChunk = freeChunks.poll();
+            if (currentChunk == null) {
+                droppedRecordsCount++;
+                droppedRecordsMetric.increment();
+                return;
+            }
+        }
+
+        SensorRecordFormat.putRecord(currentChunk, timestamp, sensorId, x, y, z);
+        index.add(timestamp);
+        recordsCount++;
+
+        if (!currentChunk.hasRemaining()) {
+            fullChunks.add(currentChunk);
+            queueDepthMetric.set(fullChunks.size());
+            currentChunk = freeChunks.poll();
+        }
+    }
+
+    /**
+     * Hands the partially filled current chunk off to the I/O thread, so the records written so far reach the stream soon.
+     * Does not wait for the actual write.
+     */
+    public void flush() {
+        if (closed || currentChunk == null || currentChunk.position() == 0) {
+            return;
+        }
+
+        fullChunks.add(currentChunk);
+        queueDepthMetric.set(fullChunks.size());
+        currentChunk = freeChunks.poll();
+    }
+
+    /**
+     * Writes all the pending records, stops the I/O thread and closes the stream.
+     * If the writer was created on a file, its index is then saved next to it
+     *
+     * @throws IOException If an I/O error occurred while writing
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        flush();
+        closed = true;
+        fullChunks.add(END_OF_STREAM);
+
+        boolean interrupted = false;
+        while (true) {
+            try {
+                ioThread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        try {
+            outputStream.close();
+        } catch (IOException e) {
+            if (ioError == null) {
+                ioError = e;
+            }
+        }
+
+        if (ioError != null) {
+            throw ioError;
+        }
+
+        if (file != null) {
+            index.writeTo(indexFile());
+        }
+    }
+
+    /**
+     * Gets the index file of the file written to
+     *
+     * @return The file the index is saved to
+     */
+    private File indexFile() {
+        return SensorRecordIndex.indexFile(file.getAbsoluteFile().getParentFile(), file.getName());
+    }
+
+    /**
+     * Closes this writer, discarding any error, and deletes the file it was writing to (if it was created on a file).
+     * Used when a recording is cancelled.
+     */
+    @Override
+    public void abort() {
+        try {
+            close();
+        } catch (IOException e) {
+            // The file is deleted anyway
+        }
+
+        if (file != null) {
+            file.delete();
+            indexFile().delete();
+        }
+    }
+
+    /**
+     * The loop run by the I/O thread: writes full chunks and gives them back, until {@link #END_OF_STREAM} is met
+     */
+    private void runIoLoop() {
+        while (true) {
+            ByteBuffer chunk;
+            try {
+                chunk = fullChunks.take();
+            } catch (InterruptedException e) {
+                // Only close() can stop this thread
+                continue;
+            }
+            queueDepthMetric.set(fullChunks.size());
+
+            if (chunk == END_OF_STREAM) {
+                return;
+            }
+
+            if (ioError == null) {
+                long start = System.nanoTime();
+                try {
+                    outputStream.write(chunk.array(), 0, chunk.position());
+                    bytesWritten += chunk.position();
+                    bytesWrittenMetric.add(chunk.position());
+                } catch (IOException e) {
+                    ioError = e;
+                }
+                long latency = System.nanoTime() - start;
+
+                lastFlushLatency = latency;
+                totalFlushLatency += latency;
+                if (latency > maxFlushLatency) {
+                    maxFlushLatency = latency;
+                }
+                flushedChunksCount++;
+            }
+
+            chunk.clear();
+            freeChunks.add(chunk);
+        }
+    }
+
+
+    /* Statistics */
+
+    /**
+     * Gets the number of full chunks waiting to be written by the I/O thread
+     *
+     * @return The current queue depth
+     */
+    public int getQueueDepth() {
+        int depth = fullChunks.size();
+        return depth > 0 && fullChunks.peek() == END_OF_STREAM ? depth - 1 : depth;
+    }
+
+    /**
+     * Gets the time taken by the last chunk write
+     *
+     * @return The latency in nanoseconds
+     */
+    public long getLastFlushLatencyNanos() {
+        return lastFlushLatency;
+    }
+
+    /**
+     * Gets the longest time taken by a chunk write
+     *
+     * @return The latency in nanoseconds
+     */
+    public long getMaxFlushLatencyNanos() {
+        return maxFlushLatency;
+    }
+
+    /**
+     * Gets the average time taken by a chunk write
+     *
+     * @return The latency in nanoseconds, or 0 if no chunk was written
+     */
+    public long getAverageFlushLatencyNanos() {
+        long count = flushedChunksCount;
+        return count == 0 ? 0 : totalFlushLatency / count;
+    }
+
+    /**
+     * Gets the number of chunks written so far
+     *
+     * @return The number of chunks written by the I/O thread
+     */
+    public long getFlushedChunksCount() {
+        return flushedChunksCount;
+    }
+
+    /**
+     * Gets the number of bytes written to the stream so far (header included)
+     *
+     * @return The number of bytes written
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Gets the number of records accepted so far
+     *
+     * @return The number of records written (and not dropped)
+     */
+    public long getRecordsCount() {
+        return recordsCount;
+    }
+
+    /**
+     * Gets the sparse index of the records written so far
+     *
+     * @return The index
+     */
+    public SensorRecordIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Gets the number of records dropped because the I/O thread could not keep up
+     *
+     * @return The number of dropped records
+     */
+    public long getDroppedRecordsCount() {
+        return droppedRecordsCount;
+    }
+}
@@ -0,0 +1,355 @@
+/***********************************************************************
+ Name............ : TimeSeriesCodec.java
+ Description..... : Helper functions compressing series of timestamps and readings
+ Author.......... : Kevin Jiokeng for IRIT, RMESS Team
+ Creation Date... : 18/10/2026
+ ************************************************************************/
+
+package fr.irit.rmess.heartdeep.helpers;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Helper functions compressing the series of one sensor channel (timestamps and readings along each axis) into a bit stream,
+ * in the way of the Gorilla time series database:
+ * <ul>
+ *     <li>timestamps, nearly regular, are encoded as the zigzag varint of their delta-of-delta: a single byte while the
+ *     period jitters by less than 64 ns, a few bytes otherwise. The first timestamp and the first delta are encoded as is</li>
+ *     <li>readings, close to the previous ones, are encoded as the XOR of their bits with the previous reading: a single 0 bit
+ *     if it is 0 (same reading), otherwise the meaningful bits of the XOR, within the leading and trailing zeros of the
+ *     previous XOR when they fit, or prefixed by their own leading zeros (5 bits) and length (5 bits). The first reading is
+ *     encoded as is</li>
+ * </ul>
+ * Varints are written 8 bits at a time in the bit stream, which is only padded at its end.
+ */
+final class TimeSeriesCodec {
+
+    private TimeSeriesCodec() {
+    }
+
+    /**
+     * Encodes a series of timestamps
+     *
+     * @param out        The bit stream to write to
+     * @param timestamps The timestamps
+     * @param n          The number of timestamps to encode (the first ones of the array)
+     */
+    static void encodeTimestamps(BitWriter out, long[] timestamps, int n) {
+        long previousDelta = 0;
+        for (int i = 0; i < n; i++) {
+            if (i == 0) {
+                out.writeVarLong(timestamps[0]);
+            } else {
+                long delta = timestamps[i] - timestamps[i - 1];
+                out.writeVarLong(i == 1 ? delta : delta - previousDelta);
+                previousDelta = delta;
+            }
+        }
+    }
+
+    /**
+     * Decodes a series of timestamps
+     *
+     * @param in         The bit stream to read from
+     * @param timestamps The array to decode the timestamps into
+     * @param n          The number of timestamps to decode
+     * @throws IOException If the bit stream ends before
+     */
+    static void decodeTimestamps(BitReader in, long[] timestamps, int n) throws IOException {
+        long delta = 0;
+        for (int i = 0; i < n; i++) {
+            if (i == 0) {
+                timestamps[0] = in.readVarLong();
+            } else {
+                delta = i == 1 ? in.readVarLong() : delta + in.readVarLong();
+                timestamps[i] = timestamps[i - 1] + delta;
+            }
+        }
+    }
+
+    /**
+     * Encodes a series of readings
+     *
+     * @param out      The bit stream to write to
+     * @param readings The readings
+     * @param n        The number of readings to encode (the first ones of the array)
+     */
+    static void encodeReadings(BitWriter out, float[] readings, int n) {
+        if (n == 0) {
+            return;
+        }
+
+        int previous = Float.floatToRawIntBits(readings[0]);
+        out.write(previous, 32);
+
+        // The window of meaningful bits of the previous XOR (none yet)
+        int previousLeading = Integer.MAX_VALUE;
+        int previousTrailing = 0;
+        for (int i = 1; i < n; i++) {
+            int bits = Float.floatToRawIntBits(readings[i]);
+            int xor = bits ^ previous;
+            previous = bits;
+
+            if (xor == 0) {
+                out.write(0, 1);
+                continue;
+            }
+
+            int leading = Integer.numberOfLeadingZeros(xor);
+            int trailing = Integer.numberOfTrailingZeros(xor);
+            if (leading >= previousLeading && trailing >= previousTrailing) {
+                out.write(0b10, 2);
+                out.write(xor >>> previousTrailing, 32 - previousLeading - previousTrailing);
+            } else {
+                int meaningful = 32 - leading - trailing;
+                out.write(0b11, 2);
+                out.write(leading, 5);
+                out.write(meaningful - 1, 5);
+                out.write(xor >>> trailing, meaningful);
+                previousLeading = leading;
+                previousTrailing = trailing;
+            }
+        }
+    }
+
+    /**
+     * Decodes a series of readings
+     *
+     * @param in       The bit stream to read from
+     * @param readings The array to decode the readings into
+     * @param n        The number of readings to decode
+     * @throws IOException If the bit stream ends before, or is malformed
+     */
+    static void decodeReadings(BitReader in, float[] readings, int n) throws IOException {
+        if (n == 0) {
+            return;
+        }
+
+        int previous = in.read(32);
+        readings[0] = Float.intBitsToFloat(previous);
+
+        int previousLeading = -1;
+        int previousTrailing = 0;
+        for (int i = 1; i < n; i++) {
+            if (in.read(1) != 0) {
+                if (in.read(1) == 0) {
+                    if (previousLeading < 0) {
+                        throw new IOException("Malformed readings: no previous meaningful bits");
+                    }
+                    previous ^= in.read(32 - previousLeading - previousTrailing) << previousTrailing;
+                } else {
+                    int leading = in.read(5);
+                    int meaningful = in.read(5) + 1;
+                    int trailing = 32 - leading - meaningful;
+                    if (trailing < 0) {
+                        throw new IOException("Malformed readings: " + leading + " leading zeros and " + meaningful + " meaningful bits");
+                    }
+                    previous ^= in.read(meaningful) << trailing;
+                    previousLeading = leading;
+                    previousTrailing = trailing;
+                }
+            }
+            readings[i] = Float.intBitsToFloat(previous);
+        }
+    }
+
+
+    /* Bit streams */
+
+    /**
+     * A bit stream written into a growable, reusable byte array
+     */
+    static final class BitWriter {
+
+        /**
+         * The bytes written so far
+         */
+        private byte[] bytes;
+
+        /**
+         * The number of complete bytes in {@link #bytes}
+         */
+        private int length = 0;
+
+        /**
+         * The bits not yet making a complete byte (the lowest {@link #pendingCount} bits)
+         */
+        private long pending = 0;
+
+        /**
+         * The number of pending bits (less than 8 between writes)
+         */
+        private int pendingCount = 0;
+
+        /**
+         * Creates an empty bit stream
+         *
+         * @param initialCapacity The initial capacity (in bytes) of the array
+         */
+        BitWriter(int initialCapacity) {
+            bytes = new byte[Math.max(16, initialCapacity)];
+        }
+
+        /**
+         * Writes the lowest bits of a value, most significant first
+         *
+         * @param value The value
+         * @param count The number of bits to write (at most 32)
+         */
+        void write(int value, int count) {
+            if (count == 0) {
+                return;
+            }
+
+            pending = (pending << count) | ((value & 0xFFFFFFFFL) & (0xFFFFFFFFL >>> (32 - count)));
+            pendingCount += count;
+            while (pendingCount >= 8) {
+                if (length == bytes.length) {
+                    bytes = Arrays.copyOf(bytes, 2 * length);
+                }
+                pendingCount -= 8;
+                bytes[length++] = (byte) (pending >>> pendingCount);
+            }
+        }
+
+        /**
+         * Writes a value as a zigzag varint: 7 bits per byte, the highest bit telling whether more bytes follow
+         *
+         * @param value The value
+         */
+        void writeVarLong(long value) {
+            long zigzag = (value << 1) ^ (value >> 63);
+            while ((zigzag & ~0x7FL) != 0) {
+                write((int) ((zigzag & 0x7F) | 0x80), 8);
+                zigzag >>>= 7;
+            }
+            write((int) zigzag, 8);
+        }
+
+        /**
+         * Pads the pending bits with zeros to complete the last byte
+         */
+        void pad() {
+            if (pendingCount > 0) {
+                write(0, 8 - pendingCount);
+            }
+        }
+
+        /**
+         * Empties the stream, keeping its array
+         */
+        void reset() {
+            length = 0;
+            pending = 0;
+            pendingCount = 0;
+        }
+
+        /**
+         * Gets the bytes written
+         *
+         * @return The array holding them (the {@link #length()} first ones)
+         */
+        byte[] bytes() {
+            return bytes;
+        }
+
+        /**
+         * Gets the number of complete bytes written
+         *
+         * @return The number of bytes
+         */
+        int length() {
+            return length;
+        }
+    }
+
+    /**
+     * A bit stream read from a byte array
+     */
+    static final class BitReader {
+
+        /**
+         * The bytes to read
+         */
+        private byte[] bytes;
+
+        /**
+         * The number of bytes to read
+         */
+        private int length;
+
+        /**
+         * The index of the next byte to read
+         */
+        private int position;
+
+        /**
+         * The bits read but not consumed yet (the lowest {@link #availableCount} bits)
+         */
+        private long available;
+
+        /**
+         * The number of bits read but not consumed yet
+         */
+        private int availableCount;
+
+        /**
+         * Starts reading bytes
+         *
+         * @param bytes  The bytes to read
+         * @param length The number of bytes to read (the first ones of the array)
+         */
+        void reset(byte[] bytes, int length) {
+            this.bytes = bytes;
+            this.length = length;
+            position = 0;
+            available = 0;
+            availableCount = 0;
+        }
+
+        /**
+         * Reads bits, most significant first
+         *
+         * @param count The number of bits to read (at most 32)
+         * @return The value of the bits
+         * @throws IOException If the stream ends before
+         */
+        int read(int count) throws IOException {
+            if (count == 0) {
+                return 0;
+            }
+
+            while (availableCount < count) {
+                if (position == length) {
+                    throw new IOException("Truncated bit stream");
+                }
+                available = (available << 8) | (bytes[position++] & 0xFF);
+                availableCount += 8;
+            }
+            availableCount -= count;
+            return (int) ((available >>> availableCount) & (0xFFFFFFFFL >>> (32 - count)));
+        }
+
+        /**
+         * Reads a zigzag varint
+         *
+         * @return The value
+         * @throws IOException If the stream ends before, or if the varint is too long
+         */
+        long readVarLong() throws IOException {
+            long zigzag = 0;
+            for (int shift = 0; ; shift += 7) {
+                if (shift > 63) {
+                    throw new IOException("Malformed varint");
+                }
+                int b = read(8);
+                zigzag |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    break;
+                }
+            }
+            return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/***********************************************************************
+ Name............ : BiquadCascade.java
+ Description..... : A streaming IIR filter made of cascaded second-order sections
+ Author.......... : Kevin Jiokeng for IRIT, RMESS Team
+ Creation Date... : 18/10/2026
+ ************************************************************************/
+
+package fr.irit.rmess.heartdeep.processing;
+
+/**
+ * A streaming IIR filter made of cascaded second-order sections (biquads), run on several channels (typically the 3 axes of a sensor).
+ *
+ * Each section runs in the transposed direct form II, which only keeps 2 state values per channel: the state carries over
+ * from one call to the next, so a stream can be filtered window after window as if it was filtered at once.
+ * Butterworth low-pass, high-pass and band-pass cascades are designed by the static factory methods, with the bilinear transform.
+ *
+ * An instance is not thread-safe: it is meant to be owned by the processing thread.
+ */
+public class BiquadCascade {
+
+    /**
+     * The number of sections
+     */
+    private final int sectionsCount;
+
+    /**
+     * The number of channels filtered
+     */
+    private final int channelsCount;
+
+    /**
+     * The coefficients of the sections, normalized by a0: b0, b1, b2, a1, a2 for each section
+     */
+    private final double[] coefficients;
+
+    /**
+     * The state of the sections: 2 values per section and per channel
+     */
+    private final double[] state;
+
+    /**
+     * Creates a cascade
+     *
+     * @param coefficients  The coefficients of the sections, normalized by a0: b0, b1, b2, a1, a2 for each section
+     * @param channelsCount The number of channels filtered
+     */
+    public BiquadCascade(double[] coefficients, int channelsCount) {
+        if (coefficients.length == 0 || coefficients.length % 5 != 0) {
+            throw new IllegalArgumentException("Expected 5 coefficients per section: " + coefficients.length);
+        }
+
+        this.coefficients = coefficients.clone();
+        this.sectionsCount = coefficients.length / 5;
+        this.channelsCount = channelsCount;
+        this.state = new double[2 * sectionsCount * channelsCount];
+    }
+
+    /**
+     * Designs a Butterworth low-pass cascade
+     *
+     * @param order         The order of the filter: an even number
+     * @param cutoff        The cutoff frequency (-3 dB), in Hz
+     * @param samplingRate  The sampling rate, in Hz
+     * @param channelsCount The number of channels filtered
+     * @return The cascade
+     */
+    public static BiquadCascade butterworthLowPass(int order, double cutoff, double samplingRate, int channelsCount) {
+        return new BiquadCascade(butterworthSections(order, cutoff, samplingRate, false), channelsCount);
+    }
+
+    /**
+     * Designs a Butterworth high-pass cascade
+     *
+     * @param order         The order of the filter: an even number
+     * @param cutoff        The cutoff frequency (-3 dB), in Hz
+     * @param samplingRate  The sampling rate, in Hz
+     * @param channelsCount The number of channels filtered
+     * @return The cascade
+     */
+    public static BiquadCascade butterworthHighPass(int order, double cutoff, double samplingRate, int channelsCount) {
+        return new BiquadCascade(butterworthSections(order, cutoff, samplingRate, true), channelsCount);
+    }
+
+    /**
+     * Designs a band-pass cascade: a Butterworth high-pass followed by a Butterworth low-pass
+     *
+     * @param order         The order of each of the high-pass and low-pass filters: an even number
+     * @param lowCutoff     The low cutoff frequency (-3 dB), in Hz
+     * @param highCutoff    The high cutoff frequency (-3 dB), in Hz
+     * @param samplingRate  The sampling rate, in Hz
+     * @param channelsCount The number of channels filtered
+     * @return The cascade
+     */
+    public static BiquadCascade butterworthBandPass(int order, double lowCutoff, double highCutoff, double samplingRate, int channelsCount) {
+        double[] highPass = butterworthSections(order, lowCutoff, samplingRate, true);
+        double[] lowPass = butterworthSections(order, highCutoff, samplingRate, false);
+        double[] sections = new double[highPass.length + lowPass.length];
+        System.arraycopy(highPass, 0, sections, 0, highPass.length);
+        System.arraycopy(lowPass, 0, sections, highPass.length, lowPass.length);
+        return new BiquadCascade(sections, channelsCount);
+    }
+
+    /**
+     * Computes the coefficients of the sections of a Butterworth filter
+     *
+     * @param order        The order of the filter: an even number
+     * @param cutoff       The cutoff frequency (-3 dB), in Hz: below the Nyquist frequency
+     * @param samplingRate The sampling rate, in Hz
+     * @param highPass     {@code true} for a high-pass filter, {@code false} for a low-pass one
+     * @return The coefficients, normalized by a0: b0, b1, b2, a1, a2 for each section
+     */
+    private static double[] butterworthSections(int order, double cutoff, double samplingRate, boolean highPass) {
+        if (order <= 0 || order % 2 != 0) {
+            throw new IllegalArgumentException("Order must be even and positive: " + order);
+        }
+        if (cutoff <= 0 || cutoff >= samplingRate / 2) {
+            throw new IllegalArgumentException("Cutoff must be between 0 and the Nyquist frequency: " + cutoff);
+        }
+
+        int sections = order / 2;
+        double[] coefficients = new double[5 * sections];
+        double w0 = 2 * Math.PI * cutoff / samplingRate;
+        double cos = Math.cos(w0);
+        double sin = Math.sin(w0);
+        for (int k = 0; k < sections; k++) {
+            // The quality factor of the k-th pair of poles of the Butterworth polynomial
+            double q = 1 / (2 * Math.cos(Math.PI * (2 * k + 1) / (2 * order)));
+            double alpha = sin / (2 * q);
+            double a0 = 1 + alpha;
+
+            int offset = 5 * k;
+            if (highPass) {
+                coefficients[offset] = (1 + cos) / 2 / a0;
+                coefficients[offset + 1] = -(1 + cos) / a0;
+            } else {
+                coefficients[offset] = (1 - cos) / 2 / a0;
+                coefficients[offset + 1] = (1 - cos) / a0;
+            }
+            coefficients[offset + 2] = coefficients[offset];
+            coefficients[offset + 3] = -2 * cos / a0;
+            coefficients[offset + 4] = (1 - alpha) / a0;
+        }
+        return coefficients;
+    }
+
+    /**
+     * Filters values of a channel in place, continuing from the previous call on this channel
+     *
+     * @param channel The channel the values belong to
+     * @param values  The values, replaced by the filtered ones
+     * @param n       The number of values to filter, from index 0
+     */
+    public void filter(int channel, double[] values, int n) {
+        for (int section = 0; section < sectionsCount; section++) {
+            int c = 5 * section;
+            double b0 = coefficients[c];
+            double b1 = coefficients[c + 1];
+            double b2 = coefficients[c + 2];
+            double a1 = coefficients[c + 3];
+            double a2 = coefficients[c + 4];
+
+            int s = 2 * (channel * sectionsCount + section);
+            double s1 = state[s];
+            double s2 = state[s + 1];
+            for (int i = 0; i < n; i++) {
+                double input = values[i];
+                double output = b0 * input + s1;
+                s1 = b1 * input - a1 * output + s2;
+                s2 = b2 * input - a2 * output;
+                values[i] = output;
+            }
+            state[s] = s1;
+            state[s + 1] = s2;
+        }
+    }
+
+    /**
+     * Sets the state of a channel as if the filter had only been fed a constant value, to avoid the transient of a step
+     *
+     * @param channel The channel
+     * @param value   The constant value
+     */
+    public void settle(int channel, double value) {
+        double input = value;
+        for (int section = 0; section < sectionsCount; section++) {
+            int c = 5 * section;
+            double b0 = coefficients[c];
+            double b1 = coefficients[c + 1];
+            double b2 = coefficients[c + 2];
+            double a1 = coefficients[c + 3];
+            double a2 = coefficients[c + 4];
+
+            // Steady state of the section for a constant input: output = gain.input
+            double output = input * (b0 + b1 + b2) / (1 + a1 + a2);
+            int s = 2 * (channel * sectionsCount + section);
+            state[s + 1] = b2 * input - a2 * output;
+            state[s] = b1 * input - a1 * output + state[s + 1];
+            input = output;
+        }
+    }
+
+    /**
+     * Resets the state of all the channels, as if no value had been filtered
+     */
+    public void reset() {
+        for (int i = 0; i < state.length; i++) {
+            state[i] = 0;
+        }
+    }
+
+    /**
+     * Gets the number of channels filtered
+     *
+     * @return The number of channels
+     */
+    public int getChannelsCount() {
+        return channelsCount;
+    }
+}
@@ -0,0 +1,218 @@
+/***********************************************************************
+ Name............ : FilterBank.java
+ Description..... : The processing stage band-pass filtering the cardiac and respiration bands of a 3-axis stream
+ Author.......... : Kevin Jiokeng for IRIT, RMESS Team
+ Creation Date... : 18/10/2026
+ ************************************************************************/
+
+package fr.irit.rmess.heartdeep.processing;
+
+import fr.irit.rmess.heartdeep.datatype.SensorReadings;
+
+/**
+ * The processing stage band-pass filtering a 3-axis stream (the accelerometer or gyroscope windows) into physiological bands:
+ * <ul>
+ *     <li>the cardiac band ({@link #CARDIAC_LOW_CUTOFF} to {@link #CARDIAC_HIGH_CUTOFF} Hz), for seismocardiography:
+ *     a Butterworth high-pass removing gravity and drift, then a linear-phase FIR low-pass preserving the shape of the beats;</li>
+ *     <li>the respiration band ({@link #RESPIRATION_LOW_CUTOFF} to {@link #RESPIRATION_HIGH_CUTOFF} Hz): a Butterworth band-pass.</li>
+ * </ul>
+ * The coefficients are designed once, in the constructor, for the (uniform) sampling rate of the stream.
+ * Windows are filtered in place (or into reusable readings), and the state of the filters carries over from one window to the next: a stream filtered
+ * window after window is the same as if it was filtered at once. The state restarts (settled on the first reading,
+ * to avoid the transient of a step) when the timestamps of the stream go backwards or jump by more than a maximum gap.
+ *
+ * An instance is not thread-safe: it is meant to be owned by the processing thread, one instance per stream.
+ */
+public class FilterBank {
+
+    /**
+     * The cardiac band: for seismocardiography
+     */
+    public static final int BAND_CARDIAC = 0;
+
+    /**
+     * The respiration band
+     */
+    public static final int BAND_RESPIRATION = 1;
+
+    /**
+     * The low cutoff frequency of the cardiac band, in Hz
+     */
+    public static final double CARDIAC_LOW_CUTOFF = 0.5;
+
+    /**
+     * The high cutoff frequency of the cardiac band, in Hz (lowered to {@link #MAX_CUTOFF_RATIO} times the sampling rate if needed)
+     */
+    public static final double CARDIAC_HIGH_CUTOFF = 40;
+
+    /**
+     * The low cutoff frequency of the respiration band, in Hz
+     */
+    public static final double RESPIRATION_LOW_CUTOFF = 0.1;
+
+    /**
+     * The high cutoff frequency of the respiration band, in Hz
+     */
+    public static final double RESPIRATION_HIGH_CUTOFF = 0.7;
+
+    /**
+     * The highest cutoff frequency allowed, relatively to the sampling rate (just below the Nyquist frequency)
+     */
+    private static final double MAX_CUTOFF_RATIO = 0.45;
+
+    /**
+     * The order of the Butterworth filters
+     */
+    private static final int BUTTERWORTH_ORDER = 4;
+
+    /**
+     * The duration (in seconds) covered by the taps of the FIR low-pass filter, setting its transition band (about 8 Hz wide)
+     */
+    private static final double FIR_DURATION = 0.4;
+
+    /**
+     * The number of axes of the filtered stream
+     */
+    private static final int AXES = 3;
+
+    /**
+     * The sampling rate the filters are designed for, in Hz
+     */
+    private final double samplingRate;
+
+    /**
+     * The maximum time (in nanoseconds) between two consecutive readings, above which the filters restart
+     */
+    private final double maxGap;
+
+    /**
+     * The high-pass filter of the cardiac band
+     */
+    private final BiquadCascade cardiacHighPass;
+
+    /**
+     * The low-pass filter of the cardiac band
+     */
+    private final FirFilter cardiacLowPass;
+
+    /**
+     * The band-pass filter of the respiration band
+     */
+    private final BiquadCascade respirationBandPass;
+
+    /**
+     * The timestamp of the last reading filtered in each band, or {@code NaN} if none was
+     */
+    private final double[] lastTimestamps = {Double.NaN, Double.NaN};
+
+    /**
+     * Creates a filter bank and designs its filters
+     *
+     * @param samplingRate The (uniform) sampling rate of the stream, in Hz
+     * @param maxGap       The maximum time (in nanoseconds) between two consecutive readings, above which the filters restart
+     */
+    public FilterBank(double samplingRate, double maxGap) {
+        this.samplingRate = samplingRate;
+        this.maxGap = maxGap;
+
+        double cardiacHighCutoff = Math.min(CARDIAC_HIGH_CUTOFF, MAX_CUTOFF_RATIO * samplingRate);
+        int tapsCount = 2 * (int) (FIR_DURATION * samplingRate / 2) + 1;
+
+        cardiacHighPass = BiquadCascade.butterworthHighPass(BUTTERWORTH_ORDER, CARDIAC_LOW_CUTOFF, samplingRate, AXES);
+        cardiacLowPass = FirFilter.lowPass(tapsCount, cardiacHighCutoff, samplingRate, WindowFunction.TYPE_HAMMING, AXES);
+        respirationBandPass = BiquadCascade.butterworthBandPass(BUTTERWORTH_ORDER, RESPIRATION_LOW_CUTOFF, RESPIRATION_HIGH_CUTOFF,
+                samplingRate, AXES);
+    }
+
+    /**
+     * Filters readings in place, continuing from the previous readings filtered in the same band
+     *
+     * @param readings The readings, in increasing timestamp order, replaced by the filtered ones (the timestamps are kept)
+     * @param band     The band to keep: one of the BAND_* constants
+     */
+    public void filterInPlace(SensorReadings readings, int band) {
+        int n = readings.getN();
+        if (n == 0) {
+            return;
+        }
+
+        double firstTimestamp = readings.getTimestamp(0);
+        double lastTimestamp = lastTimestamps[band];
+        boolean restart = Double.isNaN(lastTimestamp) || firstTimestamp <= lastTimestamp || firstTimestamp - lastTimestamp > maxGap;
+        lastTimestamps[band] = readings.getTimestamp(n - 1);
+
+        filterAxis(0, readings.getX(), n, band, restart);
+        filterAxis(1, readings.getY(), n, band, restart);
+        filterAxis(2, readings.getZ(), n, band, restart);
+    }
+
+    /**
+     * Filters readings into other readings, continuing from the previous readings filtered in the same band.
+     * The readings are left as they are; the arrays of the filtered readings are reused (and grown if needed),
+     * so that a stream filtered window after window into the same readings allocates nothing once warmed up
+     *
+     * @param readings The readings, in increasing timestamp order
+     * @param band     The band to keep: one of the BAND_* constants
+     * @param filtered The readings receiving the filtered ones, with the same timestamps (their type and length are set too)
+     */
+    public void filter(SensorReadings readings, int band, SensorReadings filtered) {
+        int n = readings.getN();
+        filtered.setType(readings.getType());
+        filtered.ensureCapacity(n);
+        filtered.setN(n);
+        if (n == 0) {
+            return;
+        }
+
+        System.arraycopy(readings.getX(), 0, filtered.getX(), 0, n);
+        System.arraycopy(readings.getY(), 0, filtered.getY(), 0, n);
+        System.arraycopy(readings.getZ(), 0, filtered.getZ(), 0, n);
+        System.arraycopy(readings.getTimestamps(), 0, filtered.getTimestamps(), 0, n);
+        filterInPlace(filtered, band);
+    }
+
+    /**
+     * Filters the readings along one axis in place
+     *
+     * @param axis    The axis (the channel of the filters)
+     * @param values  The readings along the axis
+     * @param n       The number of readings
+     * @param band    The band to keep: one of the BAND_* constants
+     * @param restart Whether the filters restart, settled on the first reading
+     */
+    private void filterAxis(int axis, double[] values, int n, int band, boolean restart) {
+        if (band == BAND_CARDIAC) {
+            if (restart) {
+                cardiacHighPass.settle(axis, values[0]);
+                cardiacLowPass.settle(axis, 0);
+            }
+            cardiacHighPass.filter(axis, values, n);
+            cardiacLowPass.filter(axis, values, n);
+        } else if (band == BAND_RESPIRATION) {
+            if (restart) {
+                respirationBandPass.settle(axis, values[0]);
+            }
+            respirationBandPass.filter(axis, values, n);
+        } else {
+            throw new IllegalArgumentException("Unknown band: " + band);
+        }
+    }
+
+    /**
+     * Gets the sampling rate the filters are designed for
+     *
+     * @return The sampling rate, in Hz
+     */
+    public double getSamplingRate() {
+        return samplingRate;
+    }
+
+    /**
+     * Gets the delay introduced in the cardiac band by its linear-phase low-pass filter
+     *
+     * @return The delay, in number of readings
+     */
+    public int getCardiacDelay() {
+        return cardiacLowPass.getDelay();
+    }
+}
@@ -0,0 +1,164 @@
+/***********************************************************************
+ Name............ : FirFilter.java
+ Description..... : A streaming FIR filter, with a windowed-sinc low-pass design
+ Author.......... : Kevin Jiokeng for IRIT, RMESS Team
+ Creation Date... : 18/10/2026
+ ************************************************************************/
+
+package fr.irit.rmess.heartdeep.processing;
+
+/**
+ * A streaming finite impulse response (FIR) filter, run on several channels (typically the 3 axes of a sensor).
+ *
+ * The last input values of each channel are kept in a history, which carries over from one call to the next.
+ * The history is stored twice in a row, so that the convolution always reads it contiguously, without wrapping indexes.
+ * With symmetric taps (such as the windowed-sinc designs of {@link #lowPass(int, double, double, int, int)}), the filter
+ * has a linear phase: the waveforms are not distorted, only delayed by (taps - 1) / 2 values.
+ *
+ * An instance is not thread-safe: it is meant to be owned by the processing thread.
+ */
+public class FirFilter {
+
+    /**
+     * The taps (impulse response) of the filter
+     */
+    private final double[] taps;
+
+    /**
+     * The number of channels filtered
+     */
+    private final int channelsCount;
+
+    /**
+     * The history of the input values of each channel, stored twice in a row: 2 * taps.length values per channel
+     */
+    private final double[] history;
+
+    /**
+     * The index in the history of each channel where the next input value is written
+     */
+    private final int[] positions;
+
+    /**
+     * Creates a filter
+     *
+     * @param taps          The taps (impulse response) of the filter
+     * @param channelsCount The number of channels filtered
+     */
+    public FirFilter(double[] taps, int channelsCount) {
+        if (taps.length == 0) {
+            throw new IllegalArgumentException("A filter needs at least one tap");
+        }
+
+        this.taps = taps.clone();
+        this.channelsCount = channelsCount;
+        this.history = new double[2 * taps.length * channelsCount];
+        this.positions = new int[channelsCount];
+    }
+
+    /**
+     * Designs a low-pass filter by the window method: a sinc truncated by a window function, normalized to a unit gain at 0 Hz
+     *
+     * @param tapsCount      The number of taps: an odd number, for an integer delay. The transition band is about
+     *                       3.3 * samplingRate / tapsCount Hz wide with a Hamming window
+     * @param cutoff         The cutoff frequency (-6 dB), in Hz
+     * @param samplingRate   The sampling rate, in Hz
+     * @param windowFunction The window function truncating the sinc: one of the WindowFunction.TYPE_* constants
+     * @param channelsCount  The number of channels filtered
+     * @return The filter
+     */
+    public static FirFilter lowPass(int tapsCount, double cutoff, double samplingRate, int windowFunction, int channelsCount) {
+        if (tapsCount <= 0 || tapsCount % 2 == 0) {
+            throw new IllegalArgumentException("The number of taps must be odd: " + tapsCount);
+        }
+        if (cutoff <= 0 || cutoff >= samplingRate / 2) {
+            throw new IllegalArgumentException("Cutoff must be between 0 and the Nyquist frequency: " + cutoff);
+        }
+
+        double[] taps = WindowFunction.coefficients(windowFunction, tapsCount);
+        double normalizedCutoff = 2 * cutoff / samplingRate;
+        int middle = tapsCount / 2;
+        double sum = 0;
+        for (int i = 0; i < tapsCount; i++) {
+            int k = i - middle;
+            double sinc = k == 0 ? normalizedCutoff : Math.sin(Math.PI * normalizedCutoff * k) / (Math.PI * k);
+            taps[i] *= sinc;
+            sum += taps[i];
+        }
+        for (int i = 0; i < tapsCount; i++) {
+            taps[i] /= sum;
+        }
+        return new FirFilter(taps, channelsCount);
+    }
+
+    /**
+     * Filters values of a channel in place, continuing from the previous call on this channel
+     *
+     * @param channel The channel the values belong to
+     * @param values  The values, replaced by the filtered ones
+     * @param n       The number of values to filter, from index 0
+     */
+    public void filter(int channel, double[] values, int n) {
+        int length = taps.length;
+        int base = 2 * length * channel;
+        int position = positions[channel];
+        for (int i = 0; i < n; i++) {
+            // Write the input at both copies: the last length inputs are then contiguous, the newest at position + length
+            history[base + position] = values[i];
+            history[base + position + length] = values[i];
+            position = position + 1 == length ? 0 : position + 1;
+
+            // history[start + j] is the input j - length + 1 values ago, paired with taps[length - 1 - j]
+            int start = base + position;
+            double output = 0;
+            for (int j = 0; j < length; j++) {
+                output += taps[length - 1 - j] * history[start + j];
+            }
+            values[i] = output;
+        }
+        positions[channel] = position;
+    }
+
+    /**
+     * Sets the history of a channel as if the filter had only been fed a constant value, to avoid the transient of a step
+     *
+     * @param channel The channel
+     * @param value   The constant value
+     */
+    public void settle(int channel, double value) {
+        int base = 2 * taps.length * channel;
+        for (int i = 0; i < 2 * taps.length; i++) {
+            history[base + i] = value;
+        }
+    }
+
+    /**
+     * Resets the history of all the channels, as if no value had been filtered
+     */
+    public void reset() {
+        for (int i = 0; i < history.length; i++) {
+            history[i] = 0;
+        }
+        for (int i = 0; i < channelsCount; i++) {
+            positions[i] = 0;
+        }
+    }
+
+    /**
+     * Gets the delay introduced by the filter, for symmetric taps
+     *
+     * @return The delay, in number of values
+     */
+    public int getDelay() {
+        return (taps.length - 1) / 2;
+    }
+
+    /**
+     * Gets the number of channels filtered
+     *
+     * @return The number of channels
+     */
+    public int getChannelsCount() {
+        return channelsCount;
+    }
+}
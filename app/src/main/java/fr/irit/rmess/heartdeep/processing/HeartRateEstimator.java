@@ -0,0 +1,341 @@
+/***********************************************************************
+ Name............ : HeartRateEstimator.java
+ Description..... : A real-time heart rate estimator, by sliding autocorrelation of the cardiac band of the accelerometer
+ Author.......... : Kevin Jiokeng for IRIT, RMESS Team
+ Creation Date... : 18/10/2026
+ ************************************************************************/
+
+package fr.irit.rmess.heartdeep.processing;
+
+import fr.irit.rmess.heartdeep.datatype.SensorReadings;
+
+/**
+ * A real-time heart rate estimator, working on the cardiac band of the accelerometer readings (see {@link FilterBank}).
+ *
+ * The magnitude of the 3 axes is averaged over blocks of readings into an envelope sampled at about {@link #ENVELOPE_RATE} Hz,
+ * in which every heart beat shows as a burst. The autocorrelation of the envelope over the last {@link #ANALYSIS_DURATION} seconds
+ * is kept for the lags of plausible heart rates ({@link #MIN_BPM} to {@link #MAX_BPM}): it is updated incrementally,
+ * adding the products of each new envelope value and removing the ones of the value leaving the analysis window,
+ * so the cost per reading does not depend on the length of the analysis window.
+ * After each pushed window, the first normalized autocorrelation peak about as high as the highest one (periodic beats
+ * also give peaks at multiples of their period) gives the beat period, refined by parabolic interpolation,
+ * and its height (between 0 and 1) the confidence of the estimate.
+ *
+ * The estimator restarts when timestamps go backwards or jump by more than a maximum gap.
+ *
+ * An instance is not thread-safe: it is meant to be owned by the processing thread.
+ */
+public class HeartRateEstimator {
+
+    /**
+     * The lowest heart rate estimated, in beats per minute
+     */
+    public static final double MIN_BPM = 40;
+
+    /**
+     * The highest heart rate estimated, in beats per minute
+     */
+    public static final double MAX_BPM = 180;
+
+    /**
+     * The approximate sampling rate of the envelope, in Hz
+     */
+    private static final double ENVELOPE_RATE = 50;
+
+    /**
+     * The duration (in seconds) of the analysis window of the autocorrelation: several beats even at the lowest heart rate
+     */
+    private static final double ANALYSIS_DURATION = 8;
+
+    /**
+     * The height, relatively to the highest autocorrelation peak, above which a peak at a shorter lag is preferred
+     */
+    private static final double SUBHARMONIC_RATIO = 0.85;
+
+    /**
+     * The sampling rate of the readings, in Hz
+     */
+    private final double samplingRate;
+
+    /**
+     * The maximum time (in nanoseconds) between two consecutive readings, above which the estimator restarts
+     */
+    private final double maxGap;
+
+    /**
+     * The number of readings averaged into an envelope value
+     */
+    private final int blockSize;
+
+    /**
+     * The actual sampling rate of the envelope, in Hz
+     */
+    private final double envelopeRate;
+
+    /**
+     * The number of envelope values of the analysis window
+     */
+    private final int analysisLength;
+
+    /**
+     * The shortest lag searched, in envelope values (the highest heart rate)
+     */
+    private final int minLag;
+
+    /**
+     * The longest lag searched, in envelope values (the lowest heart rate)
+     */
+    private final int maxLag;
+
+    /**
+     * The circular buffer of the last envelope values: the analysis window and the longest lag (plus one) before it
+     */
+    private final double[] envelope;
+
+    /**
+     * The mask of the indexes in {@link #envelope}, whose length is a power of two
+     */
+    private final int mask;
+
+    /**
+     * The sums of the products of the envelope values of the analysis window and the ones lag values before, for each lag
+     * (index 0 being the sum of squares)
+     */
+    private final double[] products;
+
+    /**
+     * The sum of the envelope values of the analysis window
+     */
+    private double sum = 0;
+
+    /**
+     * The number of envelope values computed since the last restart
+     */
+    private long envelopeCount = 0;
+
+    /**
+     * The sum of the magnitudes of the readings of the current block
+     */
+    private double blockSum = 0;
+
+    /**
+     * The number of readings of the current block
+     */
+    private int blockCount = 0;
+
+    /**
+     * The timestamp of the last reading pushed, or {@code NaN} if none was
+     */
+    private double lastTimestamp = Double.NaN;
+
+    /**
+     * The last estimated heart rate, in beats per minute, or {@code NaN} if none was estimated since the last restart
+     */
+    private double bpm = Double.NaN;
+
+    /**
+     * The confidence of the last estimated heart rate, between 0 and 1
+     */
+    private double confidence = 0;
+
+    /**
+     * Creates an estimator
+     *
+     * @param samplingRate The (uniform) sampling rate of the readings, in Hz
+     * @param maxGap       The maximum time (in nanoseconds) between two consecutive readings, above which the estimator restarts
+     */
+    public HeartRateEstimator(double samplingRate, double maxGap) {
+        this.samplingRate = samplingRate;
+        this.maxGap = maxGap;
+        this.blockSize = Math.max(1, (int) Math.round(samplingRate / ENVELOPE_RATE));
+        this.envelopeRate = samplingRate / blockSize;
+        this.analysisLength = (int) Math.round(ANALYSIS_DURATION * envelopeRate);
+        this.minLag = Math.max(2, (int) Math.floor(60 * envelopeRate / MAX_BPM));
+        this.maxLag = (int) Math.ceil(60 * envelopeRate / MIN_BPM);
+
+        int capacity = Integer.highestOneBit(analysisLength + maxLag + 1) << 1;
+        this.envelope = new double[capacity];
+        this.mask = capacity - 1;
+        this.products = new double[maxLag + 2];
+    }
+
+    /**
+     * Pushes readings of the cardiac band, and updates the estimate
+     *
+     * @param readings The readings, in increasing timestamp order, following the ones previously pushed
+     */
+    public void push(SensorReadings readings) {
+        int n = readings.getN();
+        double[] x = readings.getX();
+        double[] y = readings.getY();
+        double[] z = readings.getZ();
+        for (int i = 0; i < n; i++) {
+            double timestamp = readings.getTimestamp(i);
+            if (!Double.isNaN(lastTimestamp) && (timestamp <= lastTimestamp || timestamp - lastTimestamp > maxGap)) {
+                reset();
+            }
+            lastTimestamp = timestamp;
+
+            blockSum += Math.sqrt(x[i] * x[i] + y[i] * y[i] + z[i] * z[i]);
+            if (++blockCount == blockSize) {
+                addEnvelopeValue(blockSum / blockSize);
+                blockSum = 0;
+                blockCount = 0;
+            }
+        }
+
+        if (envelopeCount >= analysisLength + maxLag + 1) {
+            estimate();
+        }
+    }
+
+    /**
+     * Adds a value to the envelope, and slides the autocorrelation window by one value
+     *
+     * @param value The envelope value
+     */
+    private void addEnvelopeValue(double value) {
+        // Values before the restart are zeros (see reset()), so they neither add nor remove anything
+        int newest = (int) (envelopeCount & mask);
+        int leaving = (int) ((envelopeCount - analysisLength) & mask);
+        envelope[newest] = value;
+        double left = envelopeCount >= analysisLength ? envelope[leaving] : 0;
+
+        sum += value - left;
+        products[0] += value * value - left * left;
+        for (int lag = minLag - 1; lag <= maxLag + 1; lag++) {
+            double before = envelope[(newest - lag) & mask];
+            double leftBefore = envelope[(leaving - lag) & mask];
+            products[lag] += value * before - left * leftBefore;
+        }
+        envelopeCount++;
+    }
+
+    /**
+     * Estimates the heart rate from the autocorrelation of the envelope
+     */
+    private void estimate() {
+        double mean = sum / analysisLength;
+        double variance = products[0] / analysisLength - mean * mean;
+        if (variance <= 0) {
+            bpm = Double.NaN;
+            confidence = 0;
+            return;
+        }
+
+        // The highest local maximum of the normalized autocorrelation, over the lags of plausible heart rates
+        double highest = 0;
+        for (int lag = minLag; lag <= maxLag; lag++) {
+            double r = correlation(lag, mean, variance);
+            if (r > highest && isPeak(lag, r, mean, variance)) {
+                highest = r;
+            }
+        }
+        if (highest <= 0) {
+            bpm = Double.NaN;
+            confidence = 0;
+            return;
+        }
+
+        // Periodic beats also give peaks at multiples of their period, about as high: keep the first one close to the highest
+        int bestLag = minLag;
+        double best = correlation(minLag, mean, variance);
+        for (int lag = minLag; lag <= maxLag; lag++) {
+            double r = correlation(lag, mean, variance);
+            if (r >= SUBHARMONIC_RATIO * highest && isPeak(lag, r, mean, variance)) {
+                bestLag = lag;
+                best = r;
+                break;
+            }
+        }
+
+        // Parabolic interpolation of the peak, for a lag finer than an envelope value
+        double previous = correlation(bestLag - 1, mean, variance);
+        double next = correlation(bestLag + 1, mean, variance);
+        double curvature = previous - 2 * best + next;
+        double lag = bestLag + (curvature < 0 ? 0.5 * (previous - next) / curvature : 0);
+
+        bpm = 60 * envelopeRate / lag;
+        confidence = Math.min(1, best);
+    }
+
+    /**
+     * Tells whether the normalized autocorrelation has a local maximum at a lag
+     *
+     * @param lag      The lag, in envelope values
+     * @param r        The autocorrelation at the lag
+     * @param mean     The mean of the envelope over the analysis window
+     * @param variance The variance of the envelope over the analysis window
+     * @return {@code true} if the autocorrelation is not lower at the lags next to it
+     */
+    private boolean isPeak(int lag, double r, double mean, double variance) {
+        return r >= correlation(lag - 1, mean, variance) && r >= correlation(lag + 1, mean, variance);
+    }
+
+    /**
+     * Computes the normalized autocorrelation of the envelope at a lag
+     *
+     * @param lag      The lag, in envelope values
+     * @param mean     The mean of the envelope over the analysis window
+     * @param variance The variance of the envelope over the analysis window
+     * @return The autocorrelation, 1 at lag 0
+     */
+    private double correlation(int lag, double mean, double variance) {
+        return (products[lag] / analysisLength - mean * mean) / variance;
+    }
+
+    /**
+     * Restarts the estimator, as if no reading had been pushed
+     */
+    public void reset() {
+        for (int i = 0; i < envelope.length; i++) {
+            envelope[i] = 0;
+        }
+        for (int i = 0; i < products.length; i++) {
+            products[i] = 0;
+        }
+        sum = 0;
+        envelopeCount = 0;
+        blockSum = 0;
+        blockCount = 0;
+        lastTimestamp = Double.NaN;
+        bpm = Double.NaN;
+        confidence = 0;
+    }
+
+    /**
+     * Tells whether a heart rate was estimated since the last restart: the analysis window must be full first
+     *
+     * @return {@code true} if {@link #getBpm()} is a heart rate
+     */
+    public boolean hasEstimate() {
+        return !Double.isNaN(bpm);
+    }
+
+    /**
+     * Gets the last estimated heart rate
+     *
+     * @return The heart rate, in beats per minute, or {@code NaN} if none was estimated since the last restart
+     */
+    public double getBpm() {
+        return bpm;
+    }
+
+    /**
+     * Gets the confidence of the last estimated heart rate: the height of its autocorrelation peak
+     *
+     * @return The confidence, between 0 (noise) and 1 (perfectly periodic beats)
+     */
+    public double getConfidence() {
+        return confidence;
+    }
+
+    /**
+     * Gets the sampling rate of the readings the estimator is designed for
+     *
+     * @return The sampling rate, in Hz
+     */
+    public double getSamplingRate() {
+        return samplingRate;
+    }
+}
@@ -0,0 +1,324 @@
+/***********************************************************************
+ Name............ : OrientationFilter.java
+ Description..... : A Madgwick orientation filter, fusing the accelerometer, gyroscope and magnetometer readings
+ Author.......... : Kevin Jiokeng for IRIT, RMESS Team
+ Creation Date... : 18/10/2026
+ ************************************************************************/
+
+package fr.irit.rmess.heartdeep.processing;
+
+/**
+ * A Madgwick orientation filter, fusing the readings of the (raw) accelerometer, gyroscope and magnetometer into the orientation
+ * of the device, as a unit quaternion: the rotation from the device frame to the earth frame, whose x axis points to the magnetic north,
+ * y axis to the west and z axis up.
+ *
+ * Each update integrates the angular rate of the gyroscope, then corrects the drift with one step of gradient descent towards the
+ * orientation in which the gravity (measured by the accelerometer) points down and the magnetic field (measured by the magnetometer)
+ * lies in the north-up plane. Without magnetometer readings, only the inclination is corrected and the heading drifts.
+ *
+ * The state is made of 4 doubles, and updates never allocate: the filter can run for every sensor event.
+ * An instance is not thread-safe: it is meant to be owned by a single thread.
+ */
+public class OrientationFilter {
+
+    /**
+     * The default gain of the gradient descent step: the usual value, for a fast convergence with low-cost sensors
+     */
+    public static final double DEFAULT_BETA = 0.1;
+
+    /**
+     * The gain of the gradient descent step, in rad/s: the higher, the faster the accelerometer and magnetometer correct the drift
+     * of the gyroscope, but the more their noise shows
+     */
+    private final double beta;
+
+    /**
+     * The scalar part of the orientation quaternion
+     */
+    private double q0 = 1;
+
+    /**
+     * The x part of the orientation quaternion
+     */
+    private double q1 = 0;
+
+    /**
+     * The y part of the orientation quaternion
+     */
+    private double q2 = 0;
+
+    /**
+     * The z part of the orientation quaternion
+     */
+    private double q3 = 0;
+
+    /**
+     * Whether the orientation was initialized since the last reset
+     */
+    private boolean initialized = false;
+
+    /**
+     * Creates a filter, with the identity orientation
+     *
+     * @param beta The gain of the gradient descent step, in rad/s (see {@link #DEFAULT_BETA})
+     */
+    public OrientationFilter(double beta) {
+        this.beta = beta;
+    }
+
+    /**
+     * Initializes the orientation directly from the gravity and the magnetic field, for the filter not to converge from the identity
+     *
+     * @param ax The acceleration along x axis of the device (any unit)
+     * @param ay The acceleration along y axis of the device
+     * @param az The acceleration along z axis of the device
+     * @param mx The magnetic field along x axis of the device (any unit), or 0 along all the axes to leave the heading arbitrary
+     * @param my The magnetic field along y axis of the device
+     * @param mz The magnetic field along z axis of the device
+     */
+    public void initialize(double ax, double ay, double az, double mx, double my, double mz) {
+        double norm = Math.sqrt(ax * ax + ay * ay + az * az);
+        if (norm == 0) {
+            return;
+        }
+        double upX = ax / norm;
+        double upY = ay / norm;
+        double upZ = az / norm;
+
+        // East is normal to the up and the magnetic field directions (any horizontal direction without magnetic field)
+        double eastX = my * upZ - mz * upY;
+        double eastY = mz * upX - mx * upZ;
+        double eastZ = mx * upY - my * upX;
+        norm = Math.sqrt(eastX * eastX + eastY * eastY + eastZ * eastZ);
+        if (norm < 1e-6 * Math.sqrt(mx * mx + my * my + mz * mz) || norm == 0) {
+            double refX = Math.abs(upX) < 0.9 ? 1 : 0;
+            double refY = 1 - refX;
+            eastX = refY * upZ;
+            eastY = -refX * upZ;
+            eastZ = refX * upY - refY * upX;
+            norm = Math.sqrt(eastX * eastX + eastY * eastY + eastZ * eastZ);
+        }
+        eastX /= norm;
+        eastY /= norm;
+        eastZ /= norm;
+        double northX = upY * eastZ - upZ * eastY;
+        double northY = upZ * eastX - upX * eastZ;
+        double northZ = upX * eastY - upY * eastX;
+
+        // The rows of the rotation matrix from the device frame to the earth frame are north, west and up
+        setFromRotationMatrix(northX, northY, northZ, -eastX, -eastY, -eastZ, upX, upY, upZ);
+        initialized = true;
+    }
+
+    /**
+     * Sets the orientation quaternion from a rotation matrix
+     */
+    private void setFromRotationMatrix(double r00, double r01, double r02,
+                                       double r10, double r11, double r12,
+                                       double r20, double r21, double r22) {
+        double trace = r00 + r11 + r22;
+        if (trace > 0) {
+            double s = 0.5 / Math.sqrt(trace + 1);
+            q0 = 0.25 / s;
+            q1 = (r21 - r12) * s;
+            q2 = (r02 - r20) * s;
+            q3 = (r10 - r01) * s;
+        } else if (r00 > r11 && r00 > r22) {
+            double s = 2 * Math.sqrt(1 + r00 - r11 - r22);
+            q0 = (r21 - r12) / s;
+            q1 = 0.25 * s;
+            q2 = (r01 + r10) / s;
+            q3 = (r02 + r20) / s;
+        } else if (r11 > r22) {
+            double s = 2 * Math.sqrt(1 + r11 - r00 - r22);
+            q0 = (r02 - r20) / s;
+            q1 = (r01 + r10) / s;
+            q2 = 0.25 * s;
+            q3 = (r12 + r21) / s;
+        } else {
+            double s = 2 * Math.sqrt(1 + r22 - r00 - r11);
+            q0 = (r10 - r01) / s;
+            q1 = (r02 + r20) / s;
+            q2 = (r12 + r21) / s;
+            q3 = 0.25 * s;
+        }
+        normalize();
+    }
+
+    /**
+     * Updates the orientation with readings of the sensors
+     *
+     * @param gx The angular rate around x axis of the device, in rad/s
+     * @param gy The angular rate around y axis of the device, in rad/s
+     * @param gz The angular rate around z axis of the device, in rad/s
+     * @param ax The acceleration along x axis of the device (any unit), or 0 along all the axes if unknown
+     * @param ay The acceleration along y axis of the device
+     * @param az The acceleration along z axis of the device
+     * @param mx The magnetic field along x axis of the device (any unit), or 0 along all the axes if unknown
+     * @param my The magnetic field along y axis of the device
+     * @param mz The magnetic field along z axis of the device
+     * @param dt The time elapsed since the previous update, in seconds
+     */
+    public void update(double gx, double gy, double gz, double ax, double ay, double az,
+                       double mx, double my, double mz, double dt) {
+        // Rate of change of the quaternion, from the gyroscope
+        double qDot0 = 0.5 * (-q1 * gx - q2 * gy - q3 * gz);
+        double qDot1 = 0.5 * (q0 * gx + q2 * gz - q3 * gy);
+        double qDot2 = 0.5 * (q0 * gy - q1 * gz + q3 * gx);
+        double qDot3 = 0.5 * (q0 * gz + q1 * gy - q2 * gx);
+
+        double accNorm = Math.sqrt(ax * ax + ay * ay + az * az);
+        if (accNorm > 0) {
+            ax /= accNorm;
+            ay /= accNorm;
+            az /= accNorm;
+
+            double s0;
+            double s1;
+            double s2;
+            double s3;
+            double magNorm = Math.sqrt(mx * mx + my * my + mz * mz);
+            double q0q0 = q0 * q0;
+            double q1q1 = q1 * q1;
+            double q2q2 = q2 * q2;
+            double q3q3 = q3 * q3;
+            if (magNorm > 0) {
+                mx /= magNorm;
+                my /= magNorm;
+                mz /= magNorm;
+
+                double q0q1 = q0 * q1;
+                double q0q2 = q0 * q2;
+                double q0q3 = q0 * q3;
+                double q1q2 = q1 * q2;
+                double q1q3 = q1 * q3;
+                double q2q3 = q2 * q3;
+
+                // The direction of the magnetic field in the earth frame, in the north-up plane: (bx, 0, bz)
+                double hx = mx * (q0q0 + q1q1 - q2q2 - q3q3) + 2 * my * (q1q2 - q0q3) + 2 * mz * (q0q2 + q1q3);
+                double hy = 2 * mx * (q0q3 + q1q2) + my * (q0q0 - q1q1 + q2q2 - q3q3) + 2 * mz * (q2q3 - q0q1);
+                double bx = Math.sqrt(hx * hx + hy * hy);
+                double bz = 2 * mx * (q1q3 - q0q2) + 2 * my * (q0q1 + q2q3) + mz * (q0q0 - q1q1 - q2q2 + q3q3);
+
+                // The errors between the measured and estimated directions of the gravity and the magnetic field
+                double fgx = 2 * (q1q3 - q0q2) - ax;
+                double fgy = 2 * (q0q1 + q2q3) - ay;
+                double fgz = 1 - 2 * (q1q1 + q2q2) - az;
+                double fbx = 2 * bx * (0.5 - q2q2 - q3q3) + 2 * bz * (q1q3 - q0q2) - mx;
+                double fby = 2 * bx * (q1q2 - q0q3) + 2 * bz * (q0q1 + q2q3) - my;
+                double fbz = 2 * bx * (q0q2 + q1q3) + 2 * bz * (0.5 - q1q1 - q2q2) - mz;
+
+                // Gradient of the errors (transposed jacobian times the errors)
+                s0 = -2 * q2 * fgx + 2 * q1 * fgy
+                        - 2 * bz * q2 * fbx + (-2 * bx * q3 + 2 * bz * q1) * fby + 2 * bx * q2 * fbz;
+                s1 = 2 * q3 * fgx + 2 * q0 * fgy - 4 * q1 * fgz
+                        + 2 * bz * q3 * fbx + (2 * bx * q2 + 2 * bz * q0) * fby + (2 * bx * q3 - 4 * bz * q1) * fbz;
+                s2 = -2 * q0 * fgx + 2 * q3 * fgy - 4 * q2 * fgz
+                        + (-4 * bx * q2 - 2 * bz * q0) * fbx + (2 * bx * q1 + 2 * bz * q3) * fby + (2 * bx * q0 - 4 * bz * q2) * fbz;
+                s3 = 2 * q1 * fgx + 2 * q2 * fgy
+                        + (-4 * bx * q3 + 2 * bz * q1) * fbx + (-2 * bx * q0 + 2 * bz * q2) * fby + 2 * bx * q1 * fbz;
+            } else {
+                double fgx = 2 * (q1 * q3 - q0 * q2) - ax;
+                double fgy = 2 * (q0 * q1 + q2 * q3) - ay;
+                double fgz = 1 - 2 * (q1q1 + q2q2) - az;
+
+                s0 = -2 * q2 * fgx + 2 * q1 * fgy;
+                s1 = 2 * q3 * fgx + 2 * q0 * fgy - 4 * q1 * fgz;
+                s2 = -2 * q0 * fgx + 2 * q3 * fgy - 4 * q2 * fgz;
+                s3 = 2 * q1 * fgx + 2 * q2 * fgy;
+            }
+
+            // One step of gradient descent, along the normalized gradient
+            double norm = Math.sqrt(s0 * s0 + s1 * s1 + s2 * s2 + s3 * s3);
+            if (norm > 0) {
+                qDot0 -= beta * s0 / norm;
+                qDot1 -= beta * s1 / norm;
+                qDot2 -= beta * s2 / norm;
+                qDot3 -= beta * s3 / norm;
+            }
+        }
+
+        q0 += qDot0 * dt;
+        q1 += qDot1 * dt;
+        q2 += qDot2 * dt;
+        q3 += qDot3 * dt;
+        normalize();
+        initialized = true;
+    }
+
+    /**
+     * Normalizes the orientation quaternion
+     */
+    private void normalize() {
+        double norm = Math.sqrt(q0 * q0 + q1 * q1 + q2 * q2 + q3 * q3);
+        q0 /= norm;
+        q1 /= norm;
+        q2 /= norm;
+        q3 /= norm;
+    }
+
+    /**
+     * Resets the orientation to the identity, as if the filter was never updated
+     */
+    public void reset() {
+        q0 = 1;
+        q1 = 0;
+        q2 = 0;
+        q3 = 0;
+        initialized = false;
+    }
+
+    /**
+     * Tells whether the orientation was initialized or updated since the last reset
+     *
+     * @return {@code true} if the filter has an orientation
+     */
+    public boolean isInitialized() {
+        return initialized;
+    }
+
+    /**
+     * Gets the scalar part of the orientation quaternion
+     *
+     * @return The w component
+     */
+    public double getW() {
+        return q0;
+    }
+
+    /**
+     * Gets the x part of the orientation quaternion
+     *
+     * @return The x component
+     */
+    public double getX() {
+        return q1;
+    }
+
+    /**
+     * Gets the y part of the orientation quaternion
+     *
+     * @return The y component
+     */
+    public double getY() {
+        return q2;
+    }
+
+    /**
+     * Gets the z part of the orientation quaternion
+     *
+     * @return The z component
+     */
+    public double getZ() {
+        return q3;
+    }
+
+    /**
+     * Gets the gain of the gradient descent step
+     *
+     * @return The gain, in rad/s
+     */
+    public double getBeta() {
+        return beta;
+    }
+}
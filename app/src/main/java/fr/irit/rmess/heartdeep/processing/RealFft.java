@@ -0,0 +1,232 @@
+/***********************************************************************
+ Name............ : RealFft.java
+ Description..... : An in-place Fast Fourier Transform of real signals, with precomputed tables
+ Author.......... : Kevin Jiokeng for IRIT, RMESS Team
+ Creation Date... : 18/10/2026
+ ************************************************************************/
+
+package fr.irit.rmess.heartdeep.processing;
+
+/**
+ * An in-place Fast Fourier Transform of real signals of a fixed power-of-two size.
+ *
+ * The N real samples are packed as N/2 complex ones, transformed by an iterative radix-2 FFT,
+ * then split into the spectrum of the real signal. The twiddle factors and the bit-reversal permutation
+ * are computed once, in the constructor: a transform does not allocate.
+ *
+ * The spectrum is packed in the input array, in the usual layout of real FFTs:
+ * <pre>
+ *     data[0]      = Re(X[0])       (the DC component, whose imaginary part is 0)
+ *     data[1]      = Re(X[N/2])     (the Nyquist component, whose imaginary part is 0)
+ *     data[2k]     = Re(X[k])       for 0 &lt; k &lt; N/2
+ *     data[2k + 1] = Im(X[k])       for 0 &lt; k &lt; N/2
+ * </pre>
+ * with X[k] = sum of x[j].exp(-2i.pi.j.k/N) (no scaling).
+ *
+ * An instance holds no state between transforms, but is not meant to be shared between threads.
+ */
+public class RealFft {
+
+    /**
+     * The smallest supported size
+     */
+    public static final int MIN_SIZE = 4;
+
+    /**
+     * The number of real samples transformed
+     */
+    private final int size;
+
+    /**
+     * The number of complex samples of the packed signal: size / 2
+     */
+    private final int halfSize;
+
+    /**
+     * The cosines of the twiddle factors of the complex FFT: cos(2.pi.j/halfSize), for j &lt; halfSize / 2
+     */
+    private final double[] cosTable;
+
+    /**
+     * The sines of the twiddle factors of the complex FFT: sin(2.pi.j/halfSize), for j &lt; halfSize / 2
+     */
+    private final double[] sinTable;
+
+    /**
+     * The cosines of the twiddle factors splitting the packed spectrum: cos(2.pi.k/size), for k &lt;= halfSize / 2
+     */
+    private final double[] splitCosTable;
+
+    /**
+     * The sines of the twiddle factors splitting the packed spectrum: sin(2.pi.k/size), for k &lt;= halfSize / 2
+     */
+    private final double[] splitSinTable;
+
+    /**
+     * The bit-reversal permutation of the complex samples: the index each one is swapped with
+     */
+    private final int[] bitReversal;
+
+    /**
+     * Creates a transform and computes its tables
+     *
+     * @param size The number of real samples to transform: a power of two, at least {@link #MIN_SIZE}
+     */
+    public RealFft(int size) {
+        if (size < MIN_SIZE || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("Size must be a power of two, at least " + MIN_SIZE + ": " + size);
+        }
+
+        this.size = size;
+        this.halfSize = size / 2;
+
+        cosTable = new double[halfSize / 2];
+        sinTable = new double[halfSize / 2];
+        for (int j = 0; j < halfSize / 2; j++) {
+            double angle = 2 * Math.PI * j / halfSize;
+            cosTable[j] = Math.cos(angle);
+            sinTable[j] = Math.sin(angle);
+        }
+
+        splitCosTable = new double[halfSize / 2 + 1];
+        splitSinTable = new double[halfSize / 2 + 1];
+        for (int k = 0; k <= halfSize / 2; k++) {
+            double angle = 2 * Math.PI * k / size;
+            splitCosTable[k] = Math.cos(angle);
+            splitSinTable[k] = Math.sin(angle);
+        }
+
+        bitReversal = new int[halfSize];
+        int bits = Integer.numberOfTrailingZeros(halfSize);
+        for (int i = 0; i < halfSize; i++) {
+            bitReversal[i] = Integer.reverse(i) >>> (32 - bits);
+        }
+    }
+
+    /**
+     * Gets the smallest power of two holding a given number of samples
+     *
+     * @param n The number of samples
+     * @return The smallest power of two, at least {@link #MIN_SIZE}, greater than or equal to n
+     */
+    public static int sizeFor(int n) {
+        if (n <= MIN_SIZE) {
+            return MIN_SIZE;
+        }
+        return Integer.highestOneBit(n - 1) << 1;
+    }
+
+    /**
+     * Gets the number of real samples transformed
+     *
+     * @return The size of this transform
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Transforms a real signal, in place
+     *
+     * @param data The {@link #getSize()} real samples to transform, replaced by their packed spectrum (see the class documentation)
+     */
+    public void forward(double[] data) {
+        if (data.length < size) {
+            throw new IllegalArgumentException("Expected at least " + size + " samples: " + data.length);
+        }
+
+        complexForward(data);
+        split(data);
+    }
+
+    /**
+     * Computes the magnitudes of a packed spectrum
+     *
+     * @param data       A spectrum packed by {@link #forward(double[])}
+     * @param magnitudes The array receiving the magnitudes |X[k]|, for 0 &lt;= k &lt;= N/2 (so at least N/2 + 1 values)
+     * @param scale      The factor every magnitude is multiplied by
+     */
+    public void magnitudes(double[] data, double[] magnitudes, double scale) {
+        magnitudes[0] = Math.abs(data[0]) * scale;
+        magnitudes[halfSize] = Math.abs(data[1]) * scale;
+        for (int k = 1; k < halfSize; k++) {
+            double re = data[2 * k];
+            double im = data[2 * k + 1];
+            magnitudes[k] = Math.sqrt(re * re + im * im) * scale;
+        }
+    }
+
+    /**
+     * Runs the iterative radix-2 FFT of the halfSize complex samples, interleaved in data
+     *
+     * @param data The interleaved complex samples (real part at 2j, imaginary part at 2j + 1), replaced by their transform
+     */
+    private void complexForward(double[] data) {
+        // Bit-reversal permutation
+        for (int i = 0; i < halfSize; i++) {
+            int j = bitReversal[i];
+            if (i < j) {
+                double re = data[2 * i];
+                double im = data[2 * i + 1];
+                data[2 * i] = data[2 * j];
+                data[2 * i + 1] = data[2 * j + 1];
+                data[2 * j] = re;
+                data[2 * j + 1] = im;
+            }
+        }
+
+        // Butterflies, from the smallest spans to the largest
+        for (int span = 1; span < halfSize; span <<= 1) {
+            int tableStride = halfSize / (2 * span);
+            for (int start = 0; start < halfSize; start += 2 * span) {
+                for (int j = 0; j < span; j++) {
+                    double wr = cosTable[j * tableStride];
+                    double wi = -sinTable[j * tableStride];
+
+                    int a = 2 * (start + j);
+                    int b = 2 * (start + j + span);
+                    double br = data[b] * wr - data[b + 1] * wi;
+                    double bi = data[b] * wi + data[b + 1] * wr;
+                    data[b] = data[a] - br;
+                    data[b + 1] = data[a + 1] - bi;
+                    data[a] += br;
+                    data[a + 1] += bi;
+                }
+            }
+        }
+    }
+
+    /**
+     * Splits the transform of the packed complex signal into the spectrum of the real one, in place
+     *
+     * @param data The transform of the packed signal, replaced by the packed spectrum of the real signal
+     */
+    private void split(double[] data) {
+        // DC and Nyquist components
+        double re0 = data[0];
+        double im0 = data[1];
+        data[0] = re0 + im0;
+        data[1] = re0 - im0;
+
+        // X[k] and X[N/2 - k] both depend on Z[k] and Z[N/2 - k]: compute them in pairs
+        for (int k = 1; k <= halfSize / 2; k++) {
+            int a = 2 * k;
+            int b = 2 * (halfSize - k);
+
+            // Even part E = (Z[k] + conj(Z[N/2 - k])) / 2 and odd part O = (Z[k] - conj(Z[N/2 - k])) / 2
+            double evenRe = (data[a] + data[b]) / 2;
+            double evenIm = (data[a + 1] - data[b + 1]) / 2;
+            double oddRe = (data[a] - data[b]) / 2;
+            double oddIm = (data[a + 1] + data[b + 1]) / 2;
+
+            double c = splitCosTable[k];
+            double s = splitSinTable[k];
+
+            // X[k] = E - i.exp(-2i.pi.k/N).O, and symmetrically for X[N/2 - k]
+            data[a] = evenRe - s * oddRe + c * oddIm;
+            data[a + 1] = evenIm - s * oddIm - c * oddRe;
+            data[b] = evenRe + s * oddRe - c * oddIm;
+            data[b + 1] = -evenIm - s * oddIm - c * oddRe;
+        }
+    }
+}
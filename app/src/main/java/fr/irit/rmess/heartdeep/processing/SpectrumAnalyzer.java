@@ -0,0 +1,186 @@
+/***********************************************************************
+ Name............ : SpectrumAnalyzer.java
+ Description..... : The processing stage computing the amplitude spectra of windows of sensor readings
+ Author.......... : Kevin Jiokeng for IRIT, RMESS Team
+ Creation Date... : 18/10/2026
+ ************************************************************************/
+
+package fr.irit.rmess.heartdeep.processing;
+
+import fr.irit.rmess.heartdeep.datatype.SensorReadings;
+
+/**
+ * The processing stage computing the amplitude spectra of windows of sensor readings, along each axis.
+ *
+ * The readings of a window are zero-padded to the next power of two and transformed by a {@link RealFft}.
+ * The resulting frequential SensorReadings hold one value per frequency bin, from 0 Hz to the Nyquist frequency,
+ * with the frequencies (in Hz) in place of the timestamps. The sampling rate is deduced from the timestamps of the window.
+ * The amplitudes are scaled so that a sinusoid of amplitude A falling on a bin reads A.
+ *
+ * The transforms (and their tables) are created once per size and the work buffer grows to the largest window:
+ * once warmed up, only the returned SensorReadings are allocated, since they are handed to other threads.
+ * {@link #analyze(SensorReadings, SensorReadings)} fills caller-owned ones instead, for callers able to reuse them.
+ *
+ * An instance is not thread-safe: it is meant to be owned by the processing thread.
+ */
+public class SpectrumAnalyzer {
+
+    /**
+     * The transforms created so far, indexed by the base 2 logarithm of their size
+     */
+    private final RealFft[] transforms = new RealFft[31];
+
+    /**
+     * Whether the mean of the readings is removed before the transform, so that gravity or a sensor bias does not leak
+     * into the lowest bins
+     */
+    private final boolean removeMean;
+
+    /**
+     * The buffer the readings of an axis are copied to and transformed in
+     */
+    private double[] work = new double[0];
+
+    /**
+     * Creates an analyzer removing the mean of the readings before the transform
+     */
+    public SpectrumAnalyzer() {
+        this(true);
+    }
+
+    /**
+     * Creates an analyzer
+     *
+     * @param removeMean Whether the mean of the readings is removed before the transform
+     */
+    public SpectrumAnalyzer(boolean removeMean) {
+        this.removeMean = removeMean;
+    }
+
+    /**
+     * Gets the frequential type matching a temporal type of readings
+     *
+     * @param temporalType The type of the temporal readings: one of SensorReadings.TYPE_*_READINGS
+     * @return The matching SensorReadings.TYPE_*_FREQUENTIAL_READINGS type, or {@code null} if there is none
+     */
+    public static String frequentialTypeOf(String temporalType) {
+        if (SensorReadings.TYPE_ACCELEROMETER_READINGS.equals(temporalType)) {
+            return SensorReadings.TYPE_ACCELEROMETER_FREQUENTIAL_READINGS;
+        }
+        if (SensorReadings.TYPE_GYROSCOPE_READINGS.equals(temporalType)) {
+            return SensorReadings.TYPE_GYROSCOPE_FREQUENTIAL_READINGS;
+        }
+        return null;
+    }
+
+    /**
+     * Gets the number of frequency bins of the spectrum of a number of readings
+     *
+     * @param n The number of readings
+     * @return The number of bins, or 0 if there are too few readings to deduce a sampling rate
+     */
+    public static int getSpectrumLength(int n) {
+        if (n < 2) {
+            return 0;
+        }
+        return RealFft.sizeFor(n) / 2 + 1;
+    }
+
+    /**
+     * Computes the amplitude spectrum of temporal readings into new frequential readings
+     *
+     * @param readings The temporal readings, with timestamps in nanoseconds
+     * @return The frequential readings, of the type given by {@link #frequentialTypeOf(String)}
+     */
+    public SensorReadings analyze(SensorReadings readings) {
+        int length = getSpectrumLength(readings.getN());
+        SensorReadings spectrum = new SensorReadings(frequentialTypeOf(readings.getType()), length,
+                new double[length], new double[length], new double[length], new double[length]);
+        analyze(readings, spectrum);
+        return spectrum;
+    }
+
+    /**
+     * Computes the amplitude spectrum of temporal readings into existing frequential readings.
+     * The arrays of the spectrum must hold at least {@link #getSpectrumLength(int)} values; its length is set accordingly.
+     *
+     * @param readings The temporal readings, with timestamps in nanoseconds
+     * @param spectrum The readings receiving the amplitudes, and the frequencies (in Hz) in place of the timestamps
+     */
+    public void analyze(SensorReadings readings, SensorReadings spectrum) {
+        int n = readings.getN();
+        int length = getSpectrumLength(n);
+        double duration = length == 0 ? 0 : readings.getTimestamp(n - 1) - readings.getTimestamp(0);
+        if (duration <= 0) {
+            spectrum.setN(0);
+            return;
+        }
+
+        RealFft fft = transform(RealFft.sizeFor(n));
+        int size = fft.getSize();
+        if (work.length < size) {
+            work = new double[size];
+        }
+
+        double[] frequencies = spectrum.getTimestamps();
+        double samplingRate = (n - 1) * 1e9 / duration;
+        for (int k = 0; k < length; k++) {
+            frequencies[k] = k * samplingRate / size;
+        }
+
+        analyzeAxis(fft, readings.getX(), n, spectrum.getX());
+        analyzeAxis(fft, readings.getY(), n, spectrum.getY());
+        analyzeAxis(fft, readings.getZ(), n, spectrum.getZ());
+        spectrum.setN(length);
+    }
+
+    /**
+     * Computes the amplitude spectrum of the readings along one axis
+     *
+     * @param fft        The transform to use, of a size holding the readings
+     * @param values     The readings along the axis
+     * @param n          The number of readings
+     * @param amplitudes The array receiving the size / 2 + 1 amplitudes
+     */
+    private void analyzeAxis(RealFft fft, double[] values, int n, double[] amplitudes) {
+        int size = fft.getSize();
+
+        double mean = 0;
+        if (removeMean) {
+            for (int i = 0; i < n; i++) {
+                mean += values[i];
+            }
+            mean /= n;
+        }
+
+        for (int i = 0; i < n; i++) {
+            work[i] = values[i] - mean;
+        }
+        for (int i = n; i < size; i++) {
+            work[i] = 0;
+        }
+
+        fft.forward(work);
+
+        // Single-sided amplitudes: every bin but DC and Nyquist also holds the energy of its negative frequency
+        fft.magnitudes(work, amplitudes, 2.0 / n);
+        amplitudes[0] /= 2;
+        amplitudes[size / 2] /= 2;
+    }
+
+    /**
+     * Gets the transform of a given size, creating it the first time
+     *
+     * @param size The size of the transform: a power of two
+     * @return The transform
+     */
+    private RealFft transform(int size) {
+        int log = Integer.numberOfTrailingZeros(size);
+        RealFft fft = transforms[log];
+        if (fft == null) {
+            fft = new RealFft(size);
+            transforms[log] = fft;
+        }
+        return fft;
+    }
+}
@@ -0,0 +1,346 @@
+/***********************************************************************
+ Name............ : StreamingResampler.java
+ Description..... : A streaming resampler of 3-axis sensor readings to a uniform sampling rate
+ Author.......... : Kevin Jiokeng for IRIT, RMESS Team
+ Creation Date... : 18/10/2026
+ ************************************************************************/
+
+package fr.irit.rmess.heartdeep.processing;
+
+/**
+ * A streaming resampler of 3-axis sensor readings to a uniform sampling rate.
+ *
+ * Sensor timestamps are jittery, and every sensor runs at its own rate: the readings pushed here are interpolated
+ * on a fixed grid of timestamps (origin + k.period), and the resulting samples are handed to a {@link Listener} as they are known.
+ * Readings may be pushed in any chunks (one by one, or in batches): the interpolation state is carried from one to the next.
+ *
+ * Two interpolations are supported:
+ * <ul>
+ *     <li>linear, between the two readings around a grid timestamp: samples are known as soon as a reading is past them;</li>
+ *     <li>cubic (Hermite, with the slopes of the neighbouring readings): smoother, but samples are known one reading later.</li>
+ * </ul>
+ *
+ * When two consecutive readings are further apart than a maximum gap, nothing is interpolated between them:
+ * the gap is reported to the listener, and the resampling restarts at the next grid timestamp.
+ * Readings whose timestamp does not increase are ignored.
+ *
+ * The state is a fixed history of 4 readings: pushing readings does not allocate.
+ * An instance is not thread-safe: readings must be pushed by a single thread, on which the listener is called.
+ */
+public class StreamingResampler {
+
+    /**
+     * A custom interface to define the behavior of a class receiving resampled readings
+     */
+    public interface Listener {
+        /**
+         * Called for each sample of the grid, in increasing timestamp order
+         *
+         * @param timestamp The timestamp of the sample (on the grid), in nanoseconds
+         * @param x         The interpolated reading along x axis
+         * @param y         The interpolated reading along y axis
+         * @param z         The interpolated reading along z axis
+         */
+        void onSample(long timestamp, double x, double y, double z);
+
+        /**
+         * Called when two consecutive readings are too far apart: the samples in between are missing
+         *
+         * @param lastTimestamp The timestamp of the reading before the gap
+         * @param nextTimestamp The timestamp of the reading after the gap
+         */
+        void onGap(long lastTimestamp, long nextTimestamp);
+    }
+
+    /**
+     * The linear interpolation
+     */
+    public static final int INTERPOLATION_LINEAR = 0;
+
+    /**
+     * The cubic (Hermite) interpolation
+     */
+    public static final int INTERPOLATION_CUBIC = 1;
+
+    /**
+     * The number of readings kept for the interpolation
+     */
+    private static final int HISTORY = 4;
+
+    /**
+     * The time (in nanoseconds) between two samples of the grid
+     */
+    private final long period;
+
+    /**
+     * The interpolation: one of the INTERPOLATION_* constants
+     */
+    private final int interpolation;
+
+    /**
+     * The maximum time (in nanoseconds) between two consecutive readings, above which they are not interpolated
+     */
+    private final long maxGap;
+
+    /**
+     * The object receiving the samples
+     */
+    private final Listener listener;
+
+    /**
+     * The timestamps of the last readings, the newest last
+     */
+    private final long[] timestamps = new long[HISTORY];
+
+    /**
+     * The last readings along x axis, the newest last
+     */
+    private final double[] x = new double[HISTORY];
+
+    /**
+     * The last readings along y axis, the newest last
+     */
+    private final double[] y = new double[HISTORY];
+
+    /**
+     * The last readings along z axis, the newest last
+     */
+    private final double[] z = new double[HISTORY];
+
+    /**
+     * The number of readings in the history (at most {@link #HISTORY})
+     */
+    private int count = 0;
+
+    /**
+     * The timestamp of the next sample of the grid
+     */
+    private long nextTimestamp;
+
+    /**
+     * The number of samples handed to the listener
+     */
+    private long samplesCount = 0;
+
+    /**
+     * The number of gaps reported to the listener
+     */
+    private long gapsCount = 0;
+
+    /**
+     * Creates a resampler
+     *
+     * @param origin        A timestamp of the grid (in nanoseconds): no sample is produced before it
+     * @param period        The time (in nanoseconds) between two samples of the grid
+     * @param interpolation The interpolation: one of the INTERPOLATION_* constants
+     * @param maxGap        The maximum time (in nanoseconds) between two consecutive readings, above which they are not interpolated
+     * @param listener      The object receiving the samples
+     */
+    public StreamingResampler(long origin, long period, int interpolation, long maxGap, Listener listener) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Period must be positive: " + period);
+        }
+        if (interpolation != INTERPOLATION_LINEAR && interpolation != INTERPOLATION_CUBIC) {
+            throw new IllegalArgumentException("Unknown interpolation: " + interpolation);
+        }
+
+        this.nextTimestamp = origin;
+        this.period = period;
+        this.interpolation = interpolation;
+        this.maxGap = maxGap;
+        this.listener = listener;
+    }
+
+    /**
+     * Pushes a reading, and hands the samples it completes to the listener
+     *
+     * @param timestamp The timestamp of the reading, in nanoseconds
+     * @param xValue    The reading along x axis
+     * @param yValue    The reading along y axis
+     * @param zValue    The reading along z axis
+     */
+    public void push(long timestamp, double xValue, double yValue, double zValue) {
+        if (count > 0) {
+            long last = timestamps[count - 1];
+            if (timestamp <= last) {
+                return;
+            }
+            if (timestamp - last > maxGap) {
+                flush();
+                gapsCount++;
+                listener.onGap(last, timestamp);
+            }
+        }
+
+        // Keep the grid, but skip the samples which cannot be interpolated anymore
+        if (count == 0 && nextTimestamp < timestamp) {
+            nextTimestamp += (timestamp - nextTimestamp + period - 1) / period * period;
+        }
+
+        if (count == HISTORY) {
+            for (int i = 1; i < HISTORY; i++) {
+                timestamps[i - 1] = timestamps[i];
+                x[i - 1] = x[i];
+                y[i - 1] = y[i];
+                z[i - 1] = z[i];
+            }
+            count--;
+        }
+        timestamps[count] = timestamp;
+        x[count] = xValue;
+        y[count] = yValue;
+        z[count] = zValue;
+        count++;
+
+        if (count == 1) {
+            // A sample right on the first reading needs no interpolation
+            if (nextTimestamp == timestamp) {
+                emit(timestamp, xValue, yValue, zValue);
+            }
+        } else if (interpolation == INTERPOLATION_LINEAR) {
+            interpolateLinear(count - 2);
+        } else if (count >= 3) {
+            // The segment before the newest reading now has both its slopes
+            interpolateCubic(count - 3, true);
+        }
+    }
+
+    /**
+     * Hands the samples which are still pending to the listener, as if the stream ended with the last reading.
+     * With the cubic interpolation, the last segment is interpolated with a one-sided slope.
+     * Readings pushed afterwards are interpolated as after a gap.
+     */
+    public void flush() {
+        if (interpolation == INTERPOLATION_CUBIC && count >= 2) {
+            interpolateCubic(count - 2, false);
+        }
+        count = 0;
+    }
+
+    /**
+     * Interpolates linearly the samples between two consecutive readings of the history
+     *
+     * @param first The index of the first reading of the segment
+     */
+    private void interpolateLinear(int first) {
+        long t1 = timestamps[first];
+        long t2 = timestamps[first + 1];
+        double length = t2 - t1;
+        while (nextTimestamp <= t2) {
+            double s = (nextTimestamp - t1) / length;
+            emit(nextTimestamp,
+                    x[first] + s * (x[first + 1] - x[first]),
+                    y[first] + s * (y[first + 1] - y[first]),
+                    z[first] + s * (z[first + 1] - z[first]));
+        }
+    }
+
+    /**
+     * Interpolates with cubic Hermite polynomials the samples between two consecutive readings of the history
+     *
+     * @param first   The index of the first reading of the segment
+     * @param hasNext Whether the reading following the segment is in the history (otherwise the end slope is one-sided)
+     */
+    private void interpolateCubic(int first, boolean hasNext) {
+        int previous = first > 0 ? first - 1 : first;
+        int second = first + 1;
+        int next = hasNext ? first + 2 : second;
+
+        long t1 = timestamps[first];
+        long t2 = timestamps[second];
+        double length = t2 - t1;
+
+        // Slopes (per segment length) at both ends, from the neighbouring readings
+        double mx1 = slope(x, previous, first, second) * length;
+        double my1 = slope(y, previous, first, second) * length;
+        double mz1 = slope(z, previous, first, second) * length;
+        double mx2 = slope(x, first, second, next) * length;
+        double my2 = slope(y, first, second, next) * length;
+        double mz2 = slope(z, first, second, next) * length;
+
+        while (nextTimestamp <= t2) {
+            double s = (nextTimestamp - t1) / length;
+            double s2 = s * s;
+            double s3 = s2 * s;
+            double h00 = 2 * s3 - 3 * s2 + 1;
+            double h10 = s3 - 2 * s2 + s;
+            double h01 = -2 * s3 + 3 * s2;
+            double h11 = s3 - s2;
+            emit(nextTimestamp,
+                    h00 * x[first] + h10 * mx1 + h01 * x[second] + h11 * mx2,
+                    h00 * y[first] + h10 * my1 + h01 * y[second] + h11 * my2,
+                    h00 * z[first] + h10 * mz1 + h01 * z[second] + h11 * mz2);
+        }
+    }
+
+    /**
+     * Estimates the slope of the readings at a reading of the history, from its neighbours.
+     * The slopes of both sides are weighted by the length of the other side, which keeps the estimate
+     * accurate to the second order when readings are unevenly spaced
+     *
+     * @param values  The readings along an axis
+     * @param before  The index of the previous reading (the reading itself if there is none)
+     * @param at      The index of the reading
+     * @param after   The index of the next reading (the reading itself if there is none)
+     * @return The slope, per nanosecond
+     */
+    private double slope(double[] values, int before, int at, int after) {
+        if (before == at) {
+            return (values[after] - values[at]) / (timestamps[after] - timestamps[at]);
+        }
+        if (after == at) {
+            return (values[at] - values[before]) / (timestamps[at] - timestamps[before]);
+        }
+
+        double lengthBefore = timestamps[at] - timestamps[before];
+        double lengthAfter = timestamps[after] - timestamps[at];
+        double slopeBefore = (values[at] - values[before]) / lengthBefore;
+        double slopeAfter = (values[after] - values[at]) / lengthAfter;
+        return (lengthAfter * slopeBefore + lengthBefore * slopeAfter) / (lengthBefore + lengthAfter);
+    }
+
+    /**
+     * Hands a sample to the listener, and moves to the next timestamp of the grid
+     */
+    private void emit(long timestamp, double xValue, double yValue, double zValue) {
+        samplesCount++;
+        nextTimestamp += period;
+        listener.onSample(timestamp, xValue, yValue, zValue);
+    }
+
+    /**
+     * Gets the timestamp before which all the samples have been handed to the listener
+     *
+     * @return The timestamp of the next sample of the grid
+     */
+    public long getNextTimestamp() {
+        return nextTimestamp;
+    }
+
+    /**
+     * Gets the time between two samples of the grid
+     *
+     * @return The period, in nanoseconds
+     */
+    public long getPeriod() {
+        return period;
+    }
+
+    /**
+     * Gets the number of samples handed to the listener so far
+     *
+     * @return The number of samples
+     */
+    public long getSamplesCount() {
+        return samplesCount;
+    }
+
+    /**
+     * Gets the number of gaps reported to the listener so far
+     *
+     * @return The number of gaps
+     */
+    public long getGapsCount() {
+        return gapsCount;
+    }
+}
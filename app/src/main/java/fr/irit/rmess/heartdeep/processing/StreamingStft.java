@@ -0,0 +1,337 @@
+/***********************************************************************
+ Name............ : StreamingStft.java
+ Description..... : An incremental short-time Fourier transform of a stream of 3-axis sensor readings
+ Author.......... : Kevin Jiokeng for IRIT, RMESS Team
+ Creation Date... : 18/10/2026
+ ************************************************************************/
+
+package fr.irit.rmess.heartdeep.processing;
+
+import fr.irit.rmess.heartdeep.datatype.SensorReadings;
+
+/**
+ * An incremental short-time Fourier transform (STFT) of a stream of 3-axis sensor readings.
+ *
+ * Readings are pushed as they come (whatever the length of the windows they were captured in) into circular buffers
+ * holding the last frame: each reading is copied once, and overlapping readings are never moved.
+ * Every hop, the frame is tapered by a {@link WindowFunction}, transformed by a {@link RealFft},
+ * and its amplitude spectra (one per axis) are handed to a {@link Listener} as frequential SensorReadings,
+ * with the frequencies (in Hz) in place of the timestamps. The successive frames make up a spectrogram.
+ *
+ * The stream restarts from an empty frame when timestamps go backwards or jump by more than a maximum gap,
+ * for instance between two recordings, so that frames never mix unrelated readings.
+ *
+ * An instance is not thread-safe: readings must be pushed by a single thread, on which the listener is called.
+ */
+public class StreamingStft {
+
+    /**
+     * A custom interface to define the behavior of a class receiving the frames of a STFT
+     */
+    public interface Listener {
+        /**
+         * Called for each frame of the spectrogram
+         *
+         * @param stft         The STFT which computed the frame
+         * @param frame        The amplitude spectra of the frame, with the frequencies (in Hz) in place of the timestamps.
+         *                     It is a new instance, which can be handed to other threads
+         * @param endTimestamp The timestamp (in nanoseconds) of the last reading of the frame
+         */
+        void onFrame(StreamingStft stft, SensorReadings frame, double endTimestamp);
+    }
+
+    /**
+     * The type of the frames: one of SensorReadings.TYPE_*_FREQUENTIAL_READINGS
+     */
+    private final String frameType;
+
+    /**
+     * The number of readings of a frame
+     */
+    private final int windowLength;
+
+    /**
+     * The number of readings between the ends of two consecutive frames
+     */
+    private final int hopSize;
+
+    /**
+     * The window function tapering the frames: one of the WindowFunction.TYPE_* constants
+     */
+    private final int windowFunction;
+
+    /**
+     * The maximum time (in nanoseconds) between two consecutive readings, above which the stream restarts
+     */
+    private final long maxGap;
+
+    /**
+     * The object receiving the frames
+     */
+    private final Listener listener;
+
+    /**
+     * The coefficients of the window function
+     */
+    private final double[] coefficients;
+
+    /**
+     * The factor turning the magnitudes of the transform into single-sided amplitudes
+     */
+    private final double amplitudeScale;
+
+    /**
+     * The transform of the frames, zero-padded to a power of two
+     */
+    private final RealFft fft;
+
+    /**
+     * The buffer a tapered frame is copied to and transformed in
+     */
+    private final double[] work;
+
+    /**
+     * The circular buffer of the readings of the frame along x axis
+     */
+    private final double[] x;
+
+    /**
+     * The circular buffer of the readings of the frame along y axis
+     */
+    private final double[] y;
+
+    /**
+     * The circular buffer of the readings of the frame along z axis
+     */
+    private final double[] z;
+
+    /**
+     * The circular buffer of the timestamps of the readings of the frame
+     */
+    private final double[] timestamps;
+
+    /**
+     * The index the next reading is written at in the circular buffers (the oldest reading, once they are full)
+     */
+    private int head = 0;
+
+    /**
+     * The number of readings in the circular buffers
+     */
+    private int count = 0;
+
+    /**
+     * The number of readings pushed since the last frame
+     */
+    private int sinceLastFrame = 0;
+
+    /**
+     * The number of frames computed so far
+     */
+    private long framesCount = 0;
+
+    /**
+     * Creates a STFT
+     *
+     * @param frameType      The type of the frames: one of SensorReadings.TYPE_*_FREQUENTIAL_READINGS
+     * @param windowLength   The number of readings of a frame
+     * @param hopSize        The number of readings between the ends of two consecutive frames: at most windowLength
+     *                       (the overlap of consecutive frames is windowLength - hopSize)
+     * @param windowFunction The window function tapering the frames: one of the WindowFunction.TYPE_* constants
+     * @param maxGap         The maximum time (in nanoseconds) between two consecutive readings, above which the stream restarts
+     * @param listener       The object receiving the frames
+     */
+    public StreamingStft(String frameType, int windowLength, int hopSize, int windowFunction, long maxGap, Listener listener) {
+        if (windowLength < 2) {
+            throw new IllegalArgumentException("Window length must be at least 2: " + windowLength);
+        }
+        if (hopSize < 1 || hopSize > windowLength) {
+            throw new IllegalArgumentException("Hop size must be between 1 and the window length: " + hopSize);
+        }
+
+        this.frameType = frameType;
+        this.windowLength = windowLength;
+        this.hopSize = hopSize;
+        this.windowFunction = windowFunction;
+        this.maxGap = maxGap;
+        this.listener = listener;
+
+        coefficients = WindowFunction.coefficients(windowFunction, windowLength);
+        double coefficientsSum = 0;
+        for (double coefficient : coefficients) {
+            coefficientsSum += coefficient;
+        }
+        amplitudeScale = 2 / coefficientsSum;
+
+        fft = new RealFft(RealFft.sizeFor(windowLength));
+        work = new double[fft.getSize()];
+
+        x = new double[windowLength];
+        y = new double[windowLength];
+        z = new double[windowLength];
+        timestamps = new double[windowLength];
+    }
+
+    /**
+     * Pushes all the readings of a window
+     *
+     * @param readings The readings, in increasing timestamp order
+     */
+    public void push(SensorReadings readings) {
+        int n = readings.getN();
+        if (n == 0) {
+            return;
+        }
+
+        double[] readingsX = readings.getX();
+        double[] readingsY = readings.getY();
+        double[] readingsZ = readings.getZ();
+        double[] readingsTimestamps = readings.getTimestamps();
+        for (int i = 0; i < n; i++) {
+            push(readingsTimestamps[i], readingsX[i], readingsY[i], readingsZ[i]);
+        }
+    }
+
+    /**
+     * Pushes a reading, and computes a frame if a hop is complete
+     *
+     * @param timestamp The timestamp of the reading, in nanoseconds
+     * @param xValue    The reading along x axis
+     * @param yValue    The reading along y axis
+     * @param zValue    The reading along z axis
+     */
+    public void push(double timestamp, double xValue, double yValue, double zValue) {
+        if (count > 0) {
+            double last = timestamps[(head + windowLength - 1) % windowLength];
+            if (timestamp <= last || timestamp - last > maxGap) {
+                reset();
+            }
+        }
+
+        x[head] = xValue;
+        y[head] = yValue;
+        z[head] = zValue;
+        timestamps[head] = timestamp;
+        head = head + 1 == windowLength ? 0 : head + 1;
+        if (count < windowLength) {
+            count++;
+        }
+        sinceLastFrame++;
+
+        // The first frame is computed as soon as the buffers are full, then every hop
+        if (count == windowLength && (sinceLastFrame >= hopSize || framesCount == 0)) {
+            sinceLastFrame = 0;
+            framesCount++;
+            emitFrame();
+        }
+    }
+
+    /**
+     * Drops the buffered readings: the next frame will only hold readings pushed afterwards
+     */
+    public void reset() {
+        head = 0;
+        count = 0;
+        sinceLastFrame = 0;
+        framesCount = 0;
+    }
+
+    /**
+     * Computes the spectra of the current frame and hands them to the listener
+     */
+    private void emitFrame() {
+        // Once the buffers are full, head is the index of the oldest reading
+        double oldest = timestamps[head];
+        double newest = timestamps[(head + windowLength - 1) % windowLength];
+        double samplingRate = (windowLength - 1) * 1e9 / (newest - oldest);
+
+        int bins = fft.getSize() / 2 + 1;
+        SensorReadings frame = new SensorReadings(frameType, bins);
+        double[] frequencies = frame.getTimestamps();
+        for (int k = 0; k < bins; k++) {
+            frequencies[k] = k * samplingRate / fft.getSize();
+        }
+
+        transformAxis(x, frame.getX());
+        transformAxis(y, frame.getY());
+        transformAxis(z, frame.getZ());
+
+        listener.onFrame(this, frame, newest);
+    }
+
+    /**
+     * Computes the amplitude spectrum of the current frame along one axis
+     *
+     * @param values     The circular buffer of the readings along the axis
+     * @param amplitudes The array receiving the amplitudes
+     */
+    private void transformAxis(double[] values, double[] amplitudes) {
+        double mean = 0;
+        for (int i = 0; i < windowLength; i++) {
+            mean += values[i];
+        }
+        mean /= windowLength;
+
+        // Unroll the circular buffer from its oldest reading (at head), tapering it
+        int firstPart = windowLength - head;
+        for (int i = 0; i < firstPart; i++) {
+            work[i] = (values[head + i] - mean) * coefficients[i];
+        }
+        for (int i = firstPart; i < windowLength; i++) {
+            work[i] = (values[i - firstPart] - mean) * coefficients[i];
+        }
+        for (int i = windowLength; i < work.length; i++) {
+            work[i] = 0;
+        }
+
+        fft.forward(work);
+        fft.magnitudes(work, amplitudes, amplitudeScale);
+        amplitudes[0] /= 2;
+        amplitudes[work.length / 2] /= 2;
+    }
+
+    /**
+     * Gets the type of the frames
+     *
+     * @return One of SensorReadings.TYPE_*_FREQUENTIAL_READINGS
+     */
+    public String getFrameType() {
+        return frameType;
+    }
+
+    /**
+     * Gets the number of readings of a frame
+     *
+     * @return The window length
+     */
+    public int getWindowLength() {
+        return windowLength;
+    }
+
+    /**
+     * Gets the number of readings between the ends of two consecutive frames
+     *
+     * @return The hop size
+     */
+    public int getHopSize() {
+        return hopSize;
+    }
+
+    /**
+     * Gets the window function tapering the frames
+     *
+     * @return One of the WindowFunction.TYPE_* constants
+     */
+    public int getWindowFunction() {
+        return windowFunction;
+    }
+
+    /**
+     * Gets the number of frames computed since the stream (re)started
+     *
+     * @return The number of frames
+     */
+    public long getFramesCount() {
+        return framesCount;
+    }
+}
@@ -0,0 +1,90 @@
+/***********************************************************************
+ Name............ : WindowFunction.java
+ Description..... : The window (tapering) functions applied to frames of readings before a spectral analysis
+ Author.......... : Kevin Jiokeng for IRIT, RMESS Team
+ Creation Date... : 18/10/2026
+ ************************************************************************/
+
+package fr.irit.rmess.heartdeep.processing;
+
+/**
+ * The window (tapering) functions applied to frames of readings before a spectral analysis, to limit spectral leakage.
+ * Functions are identified by one of the TYPE_* constants, and their coefficients are computed once per frame length.
+ */
+public final class WindowFunction {
+
+    /**
+     * The rectangular window: no tapering. The best frequency resolution, but the most leakage
+     */
+    public static final int TYPE_RECTANGULAR = 0;
+
+    /**
+     * The Hann window: a good default trade-off between resolution and leakage
+     */
+    public static final int TYPE_HANN = 1;
+
+    /**
+     * The Hamming window: a lower first side lobe than Hann, but side lobes which decay slower
+     */
+    public static final int TYPE_HAMMING = 2;
+
+    /**
+     * The Blackman window: the least leakage, but the widest main lobe
+     */
+    public static final int TYPE_BLACKMAN = 3;
+
+    /**
+     * Not instantiable: only static methods
+     */
+    private WindowFunction() {
+    }
+
+    /**
+     * Indicates whether a window function is known
+     *
+     * @param type The window function
+     * @return {@code true} if it is one of the TYPE_* constants, {@code false} otherwise
+     */
+    public static boolean isKnown(int type) {
+        return type >= TYPE_RECTANGULAR && type <= TYPE_BLACKMAN;
+    }
+
+    /**
+     * Computes the coefficients of a window function
+     *
+     * @param type   The window function: one of the TYPE_* constants
+     * @param length The number of coefficients (the frame length)
+     * @return The coefficients, to be multiplied with the readings of a frame
+     */
+    public static double[] coefficients(int type, int length) {
+        if (!isKnown(type)) {
+            throw new IllegalArgumentException("Unknown window function: " + type);
+        }
+
+        double[] coefficients = new double[length];
+        if (length == 1) {
+            coefficients[0] = 1;
+            return coefficients;
+        }
+
+        // Symmetric windows
+        for (int i = 0; i < length; i++) {
+            double phase = 2 * Math.PI * i / (length - 1);
+            switch (type) {
+                case TYPE_RECTANGULAR:
+                    coefficients[i] = 1;
+                    break;
+                case TYPE_HANN:
+                    coefficients[i] = 0.5 - 0.5 * Math.cos(phase);
+                    break;
+                case TYPE_HAMMING:
+                    coefficients[i] = 0.54 - 0.46 * Math.cos(phase);
+                    break;
+                case TYPE_BLACKMAN:
+                    coefficients[i] = 0.42 - 0.5 * Math.cos(phase) + 0.08 * Math.cos(2 * phase);
+                    break;
+            }
+        }
+        return coefficients;
+    }
+}
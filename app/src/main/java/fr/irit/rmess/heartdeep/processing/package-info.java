@@ -0,0 +1,15 @@
+/**
+ * Name............ : package-info.java
+ * Description..... : A file used to generate the javadoc of the current package
+ * Author.......... : Kevin Jiokeng for IRIT, RMESS Team
+ * Creation Date... : 18/10/2026
+ */
+
+/**
+ * Provides the signal processing stages run on windows of sensor readings (spectral analysis, ...).
+ * Stages are meant to run on the processing thread for every window: they reuse their work buffers instead of allocating.
+ * Nothing in this package depends on Android, so it can be tested and benchmarked on the JVM.
+ *
+ * @author Kevin Jiokeng
+ */
+package fr.irit.rmess.heartdeep.processing;
@@ -0,0 +1,70 @@
+package fr.irit.rmess.heartdeep.capture;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import fr.irit.rmess.heartdeep.datatype.TimelinedData;
+import fr.irit.rmess.heartdeep.processing.OrientationFilter;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the tracking of the orientation from the frames of a joiner, the gyroscope being slower than the reference sensor
+ */
+public class OrientationTrackerTest {
+
+    private static final int LIN = 10;
+    private static final int GYR = 4;
+    private static final int ACC = 1;
+
+    private static final long FIRST_TIMESTAMP = 123456789000L;
+
+    @Test
+    public void slowerGyroscope_isIntegrated_throughTheJoiner() {
+        final List<TimelinedData[]> windows = new ArrayList<>();
+        OrientationTracker tracker = new OrientationTracker(ACC, GYR, -1, OrientationFilter.DEFAULT_BETA,
+                1000000000L, 100000000L, new OrientationTracker.Listener() {
+            @Override
+            public void onOrientations(TimelinedData[] orientations) {
+                windows.add(orientations);
+            }
+        });
+        SensorFrameJoiner joiner = new SensorFrameJoiner(new int[]{LIN, ACC, GYR}, 5000000L, 50000000L, 1024, tracker);
+
+        // The device lies flat and turns around the vertical axis at 1 rad/s for 10 s:
+        // reference and accelerometer at 200 Hz, gyroscope at 100 Hz (offset by 2 ms)
+        float[] linear = {0, 0, 0};
+        float[] gravity = {0, 0, 9.81f};
+        float[] rate = {0, 0, 1};
+        for (long t = 0; t <= 10000000000L; t += 5000000L) {
+            joiner.onSensorEvent(LIN, FIRST_TIMESTAMP + t, linear);
+            joiner.onSensorEvent(ACC, FIRST_TIMESTAMP + t, gravity);
+            if (t % 10000000L == 0) {
+                joiner.onSensorEvent(GYR, FIRST_TIMESTAMP + t + 2000000L, rate);
+            }
+        }
+
+        // One orientation per gyroscope reading, the frames repeating a reading being skipped
+        assertEquals(9, windows.size());
+        double yaw = 0;
+        double previous = Double.NaN;
+        int count = 0;
+        long lastTimestamp = 0;
+        for (TimelinedData[] window : windows) {
+            assertEquals(100, window[0].getN(), 1);
+            for (int i = 0; i < window[0].getN(); i++) {
+                double angle = 2 * Math.atan2(window[3].getValue(i), window[0].getValue(i));
+                if (!Double.isNaN(previous)) {
+                    yaw += Math.IEEEremainder(angle - previous, 2 * Math.PI);
+                }
+                previous = angle;
+                lastTimestamp = window[0].getTimestamp(i);
+                count++;
+            }
+        }
+        assertEquals(count - 1, (lastTimestamp - windows.get(0)[0].getTimestamp(0)) / 10000000L);
+        assertEquals((count - 1) * 0.01, yaw, 0.01);
+    }
+}
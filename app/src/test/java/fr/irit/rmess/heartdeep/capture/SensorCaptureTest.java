@@ -0,0 +1,298 @@
+package fr.irit.rmess.heartdeep.capture;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import fr.irit.rmess.heartdeep.datatype.FloatSensorReadings;
+import fr.irit.rmess.heartdeep.datatype.SensorReadings;
+import fr.irit.rmess.heartdeep.datatype.SensorReadingsWindow;
+import fr.irit.rmess.heartdeep.helpers.SensorRecordBuffer;
+import fr.irit.rmess.heartdeep.processing.StreamingResampler;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the windowing and recording of sensor events delivered in batches, with a fake event source
+ */
+public class SensorCaptureTest {
+
+    private static final int ACC = 10;
+    private static final int GYR = 4;
+    private static final int MAG = 2;
+
+    /**
+     * The sampling period of the fake sensors: 400 Hz
+     */
+    private static final long PERIOD = 2500000L;
+
+    private static final long SAMPLE_LENGTH = 20000000L;
+    private static final long RECORDING_LENGTH = 1000000000L;
+    private static final long FIRST_TIMESTAMP = 123456789000L;
+
+    @Test
+    public void batchedDelivery_windowsHoldBothSensorsOverTheSamePeriod() {
+        RecordingListener listener = new RecordingListener();
+        SensorCapture capture = new SensorCapture(accAndGyr(), 0, SAMPLE_LENGTH, RECORDING_LENGTH, 500000000L, 4096, listener);
+        SensorRecordBuffer records = new SensorRecordBuffer(new String[]{"acc", "gyr"});
+        capture.setRecordSink(records);
+
+        // Batches of 200 ms: all the accelerometer events, then all the gyroscope and magnetometer ones
+        FakeSensorEventSource source = new FakeSensorEventSource(200000000L, ACC, GYR, MAG);
+        source.start(capture);
+        source.deliver(1200000000L);
+
+        assertEquals(1, listener.startedCount);
+        assertEquals(FIRST_TIMESTAMP, listener.startTimestamp);
+        assertEquals(1, listener.completedCount);
+        assertTrue(capture.isCompleted());
+
+        // 400 readings per second, per recorded sensor
+        assertEquals(800, records.getRecordsCount());
+
+        assertEquals(RECORDING_LENGTH / SAMPLE_LENGTH, listener.windows.size());
+        for (int i = 0; i < listener.windows.size(); i++) {
+            FloatSensorReadings[] window = listener.windows.get(i);
+            long windowStart = FIRST_TIMESTAMP + i * SAMPLE_LENGTH;
+            for (FloatSensorReadings readings : window) {
+                assertEquals(SAMPLE_LENGTH / PERIOD, readings.getN());
+                for (int j = 0; j < readings.getN(); j++) {
+                    assertTrue(readings.getTimestamp(j) >= windowStart);
+                    assertTrue(readings.getTimestamp(j) < windowStart + SAMPLE_LENGTH);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void stoppedSensor_doesNotStallWindows() {
+        RecordingListener listener = new RecordingListener();
+        long maxSkew = 100000000L;
+        SensorCapture capture = new SensorCapture(accAndGyr(), 0, SAMPLE_LENGTH, RECORDING_LENGTH, maxSkew, 4096, listener);
+
+        FakeSensorEventSource source = new FakeSensorEventSource(0, ACC, GYR);
+        source.start(capture);
+        source.deliver(100000000L);
+        source.stopSensor(GYR);
+        source.deliver(500000000L);
+
+        assertFalse(capture.isCompleted());
+        // Windows are emitted up to maxSkew behind the accelerometer
+        int expectedWindows = (int) ((600000000L - maxSkew) / SAMPLE_LENGTH);
+        assertTrue(listener.windows.size() >= expectedWindows - 1);
+        assertTrue(listener.windows.size() <= expectedWindows + 1);
+
+        source.deliver(600000000L);
+        assertTrue(capture.isCompleted());
+    }
+
+    @Test
+    public void beginningDelay_skipsFirstEvents() {
+        RecordingListener listener = new RecordingListener();
+        SensorCapture capture = new SensorCapture(accAndGyr(), 50000000L, SAMPLE_LENGTH, RECORDING_LENGTH, 500000000L, 4096, listener);
+
+        FakeSensorEventSource source = new FakeSensorEventSource(0, ACC, GYR);
+        source.start(capture);
+        source.deliver(40000000L);
+        assertFalse(capture.isRecording());
+
+        source.deliver(20000000L);
+        assertTrue(capture.isRecording());
+        assertEquals(FIRST_TIMESTAMP + 50000000L, capture.getRecordingBeginningTimestamp());
+    }
+
+    @Test
+    public void resampling_windowsHoldTheSameUniformTimestampsForBothSensors() {
+        RecordingListener listener = new RecordingListener();
+        SensorCapture capture = new SensorCapture(accAndGyr(), 0, SAMPLE_LENGTH, RECORDING_LENGTH, 500000000L, 4096, listener);
+        capture.setResampling(PERIOD, StreamingResampler.INTERPOLATION_CUBIC, 50000000L);
+
+        // Jittery timestamps, at a different rate for each sensor, delivered in batches of 100 ms
+        FakeSensorEventSource source = new FakeSensorEventSource(100000000L, ACC, GYR);
+        source.setJitter(ACC, 2000000L, 400000L);
+        source.setJitter(GYR, 1900000L, 500000L);
+        source.start(capture);
+        source.deliver(RECORDING_LENGTH + 100000000L);
+
+        assertTrue(capture.isCompleted());
+        assertEquals(0, listener.gapsCount);
+        assertEquals(RECORDING_LENGTH / SAMPLE_LENGTH, listener.windows.size());
+        for (int i = 0; i < listener.windows.size(); i++) {
+            // The filters of the window are designed from the period it was resampled at
+            assertEquals(PERIOD, (long) listener.resamplingPeriods.get(i));
+            FloatSensorReadings accReadings = listener.windows.get(i)[0];
+            FloatSensorReadings gyrReadings = listener.windows.get(i)[1];
+            assertEquals(SAMPLE_LENGTH / PERIOD, accReadings.getN());
+            assertEquals(SAMPLE_LENGTH / PERIOD, gyrReadings.getN());
+            for (int j = 0; j < accReadings.getN(); j++) {
+                double expected = FIRST_TIMESTAMP + i * SAMPLE_LENGTH + j * PERIOD;
+                assertEquals(expected, accReadings.getTimestamp(j), 0);
+                assertEquals(expected, gyrReadings.getTimestamp(j), 0);
+            }
+        }
+    }
+
+    @Test
+    public void unpacedChannel_flowsIntoWindowsWithoutDelayingThem() {
+        RecordingListener listener = new RecordingListener();
+        SensorChannels channels = accAndGyr();
+        channels.register(MAG, "mag", SensorReadings.TYPE_MAGNETOMETER_READINGS, false);
+        SensorCapture capture = new SensorCapture(channels, 0, SAMPLE_LENGTH, RECORDING_LENGTH, 500000000L, 4096, listener);
+
+        // The magnetometer is delivered with a whole batch of delay: windows do not wait for it
+        FakeSensorEventSource source = new FakeSensorEventSource(0, ACC, GYR);
+        source.start(capture);
+        source.deliver(200000000L);
+        int windowsCount = listener.windows.size();
+        assertTrue(windowsCount >= 200000000L / SAMPLE_LENGTH - 1);
+
+        FakeSensorEventSource magSource = new FakeSensorEventSource(0, MAG);
+        magSource.start(capture);
+        magSource.deliver(200000000L);
+        source.deliver(100000000L);
+
+        // The readings delivered late end up in the next window, along with the other sensors
+        int magReadingsCount = 0;
+        for (FloatSensorReadings[] window : listener.windows) {
+            assertEquals(3, window.length);
+            assertEquals(SensorReadings.TYPE_ACCELEROMETER_READINGS, window[0].getType());
+            assertEquals(SensorReadings.TYPE_MAGNETOMETER_READINGS, window[2].getType());
+            magReadingsCount += window[2].getN();
+        }
+        assertEquals(0, listener.windows.get(windowsCount - 1)[2].getN());
+        assertEquals(200000000L / PERIOD, magReadingsCount);
+    }
+
+    /**
+     * Builds the channels of the accelerometer and the gyroscope, both pacing the windows
+     */
+    private static SensorChannels accAndGyr() {
+        SensorChannels channels = new SensorChannels();
+        channels.register(ACC, "acc", SensorReadings.TYPE_ACCELEROMETER_READINGS, true);
+        channels.register(GYR, "gyr", SensorReadings.TYPE_GYROSCOPE_READINGS, true);
+        return channels;
+    }
+
+    /**
+     * A listener keeping track of what it was notified of
+     */
+    private static class RecordingListener implements SensorCapture.Listener {
+        private int startedCount = 0;
+        private long startTimestamp = -1;
+        private int completedCount = 0;
+        private int gapsCount = 0;
+        private final List<FloatSensorReadings[]> windows = new ArrayList<>();
+        private final List<Long> resamplingPeriods = new ArrayList<>();
+
+        @Override
+        public void onRecordingStarted(long timestamp) {
+            startedCount++;
+            startTimestamp = timestamp;
+        }
+
+        @Override
+        public void onWindow(SensorReadingsWindow window) {
+            // Kept, so never released (nor recycled)
+            windows.add(window.getReadings());
+            resamplingPeriods.add(window.getResamplingPeriod());
+        }
+
+        @Override
+        public void onWindowsLeaked(int count) {
+        }
+
+        @Override
+        public void onReadingsGap(int sensorType, long lastTimestamp, long nextTimestamp) {
+            gapsCount++;
+        }
+
+        @Override
+        public void onRecordingCompleted(long timestamp) {
+            completedCount++;
+        }
+    }
+
+    /**
+     * A fake source of sensors sampled at 400 Hz, delivering their events like a sensor hub would:
+     * in batches covering a fixed time, one sensor after the other, or one by one when batching is disabled.
+     * Sensors may also be given their own period, with a deterministic jitter
+     */
+    private static class FakeSensorEventSource implements SensorEventSource {
+        private final long batchLength;
+        private final int[] sensorTypes;
+        private final boolean[] stopped;
+        private final long[] periods;
+        private final long[] jitters;
+        private final long[] nextTimestamps;
+        private final float[] values = new float[3];
+        private SensorEventSink sink;
+        private long now = FIRST_TIMESTAMP;
+
+        FakeSensorEventSource(long batchLength, int... sensorTypes) {
+            this.batchLength = batchLength;
+            this.sensorTypes = sensorTypes;
+            this.stopped = new boolean[sensorTypes.length];
+            this.periods = new long[sensorTypes.length];
+            this.jitters = new long[sensorTypes.length];
+            this.nextTimestamps = new long[sensorTypes.length];
+            for (int i = 0; i < sensorTypes.length; i++) {
+                periods[i] = PERIOD;
+                nextTimestamps[i] = FIRST_TIMESTAMP;
+            }
+        }
+
+        void setJitter(int sensorType, long period, long jitter) {
+            for (int i = 0; i < sensorTypes.length; i++) {
+                if (sensorTypes[i] == sensorType) {
+                    periods[i] = period;
+                    jitters[i] = jitter;
+                }
+            }
+        }
+
+        @Override
+        public void start(SensorEventSink sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public void stop() {
+            sink = null;
+        }
+
+        void stopSensor(int sensorType) {
+            for (int i = 0; i < sensorTypes.length; i++) {
+                if (sensorTypes[i] == sensorType) {
+                    stopped[i] = true;
+                }
+            }
+        }
+
+        /**
+         * Delivers the events of the given duration, from where the previous call stopped
+         */
+        void deliver(long duration) {
+            long end = now + duration;
+            long step = batchLength > 0 ? batchLength : PERIOD;
+            while (now < end) {
+                long batchEnd = Math.min(now + step, end);
+                for (int i = 0; i < sensorTypes.length; i++) {
+                    if (stopped[i]) {
+                        continue;
+                    }
+                    while (nextTimestamps[i] < batchEnd) {
+                        long t = nextTimestamps[i];
+                        values[0] = t % 7;
+                        values[1] = -i;
+                        values[2] = 1;
+                        sink.onSensorEvent(sensorTypes[i], t, values);
+                        // The first event of every sensor is right at the beginning, so that recordings start at FIRST_TIMESTAMP
+                        nextTimestamps[i] += periods[i] + (jitters[i] == 0 ? 0 : (t * 31 + i) % jitters[i] - jitters[i] / 2);
+                    }
+                }
+                now = batchEnd;
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package fr.irit.rmess.heartdeep.capture;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the join of sensors running at different rates, delivered in batches, into time-aligned frames
+ */
+public class SensorFrameJoinerTest {
+
+    private static final int ACC = 10;
+    private static final int GYR = 4;
+    private static final int MAG = 2;
+
+    private static final long FIRST_TIMESTAMP = 123456789000L;
+
+    private static final long TOLERANCE = 5000000L;
+
+    @Test
+    public void batchedSensors_areJoinedWithTheirNearestReading() {
+        FrameCollector collector = new FrameCollector();
+        SensorFrameJoiner joiner = new SensorFrameJoiner(new int[]{ACC, GYR, MAG}, TOLERANCE, 500000000L, 1024, collector);
+
+        // 100 ms batches: accelerometer at 400 Hz, gyroscope at 250 Hz (offset by 1 ms), magnetometer at 100 Hz
+        float[] values = new float[3];
+        for (long batch = 0; batch < 10; batch++) {
+            long batchStart = FIRST_TIMESTAMP + batch * 100000000L;
+            for (int sensor = 0; sensor < 3; sensor++) {
+                int type = sensor == 0 ? ACC : sensor == 1 ? GYR : MAG;
+                long period = sensor == 0 ? 2500000L : sensor == 1 ? 4000000L : 10000000L;
+                long offset = sensor == 1 ? 1000000L : 0;
+                for (long t = batchStart + offset; t < batchStart + 100000000L; t += period) {
+                    values[0] = t / 1000;
+                    joiner.onSensorEvent(type, t, values);
+                }
+            }
+        }
+
+        // The last frames wait for the next batch of the other sensors: only the ones up to the last magnetometer reading
+        // minus the tolerance are emitted
+        assertEquals((990000000L - TOLERANCE) / 2500000L + 1, collector.frames.size());
+        assertEquals(collector.frames.size(), joiner.getFramesCount());
+        for (int i = 0; i < collector.frames.size(); i++) {
+            SensorFrame frame = collector.frames.get(i);
+            long timestamp = FIRST_TIMESTAMP + i * 2500000L;
+            assertEquals(timestamp, frame.getTimestamp());
+
+            for (int sensor = 1; sensor < 3; sensor++) {
+                long period = sensor == 1 ? 4000000L : 10000000L;
+                long offset = sensor == 1 ? 1000000L : 0;
+                long nearest = FIRST_TIMESTAMP + offset + Math.round((double) (timestamp - FIRST_TIMESTAMP - offset) / period) * period;
+                assertTrue(frame.isPresent(sensor) == Math.abs(nearest - timestamp) <= TOLERANCE);
+                if (frame.isPresent(sensor)) {
+                    assertEquals(Math.abs(nearest - timestamp), Math.abs(frame.getSensorTimestamp(sensor) - timestamp));
+                    assertEquals((float) (frame.getSensorTimestamp(sensor) / 1000), frame.getValue(sensor, 0), 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void stoppedSensor_doesNotStallFrames() {
+        FrameCollector collector = new FrameCollector();
+        long maxSkew = 50000000L;
+        SensorFrameJoiner joiner = new SensorFrameJoiner(new int[]{ACC, GYR}, TOLERANCE, maxSkew, 1024, collector);
+
+        float[] values = new float[3];
+        for (long t = FIRST_TIMESTAMP; t < FIRST_TIMESTAMP + 200000000L; t += 2500000L) {
+            joiner.onSensorEvent(ACC, t, values);
+            if (t < FIRST_TIMESTAMP + 100000000L) {
+                joiner.onSensorEvent(GYR, t, values);
+            }
+        }
+
+        // Frames lag at most maxSkew behind the accelerometer, the gyroscope being absent after it stopped
+        assertTrue(collector.frames.size() >= (200000000L - maxSkew) / 2500000L - 1);
+        SensorFrame last = collector.frames.get(collector.frames.size() - 1);
+        assertFalse(last.isPresent(1));
+        assertTrue(collector.frames.get(0).isPresent(1));
+    }
+
+    /**
+     * A listener keeping a copy of the frames it receives
+     */
+    private static class FrameCollector implements SensorFrameJoiner.Listener {
+        private final List<SensorFrame> frames = new ArrayList<>();
+
+        @Override
+        public void onFrame(SensorFrame frame) {
+            frames.add(frame.copy());
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package fr.irit.rmess.heartdeep.datatype;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the ring buffer of sensor readings: capacity rounding, overwriting of the oldest readings, and drains across the
+ * end of the storage
+ */
+public class SensorReadingsRingBufferTest {
+
+    @Test
+    public void capacity_isRoundedUpToAPowerOfTwo() {
+        assertEquals(1, new SensorReadingsRingBuffer(1).capacity());
+        assertEquals(8, new SensorReadingsRingBuffer(5).capacity());
+        assertEquals(8, new SensorReadingsRingBuffer(8).capacity());
+        assertEquals(16, new SensorReadingsRingBuffer(9).capacity());
+        assertEquals(SensorReadingsRingBuffer.DEFAULT_CAPACITY, new SensorReadingsRingBuffer().capacity());
+
+        try {
+            new SensorReadingsRingBuffer(0);
+            fail("Created a buffer without capacity");
+        } catch (IllegalArgumentException expected) {
+            // The capacity must be positive
+        }
+    }
+
+    @Test
+    public void fullBuffer_overwritesTheOldestReadings() {
+        SensorReadingsRingBuffer buffer = new SensorReadingsRingBuffer(8);
+        for (int i = 0; i < 13; i++) {
+            write(buffer, i);
+        }
+        assertEquals(8, buffer.size());
+        assertEquals(5, buffer.getOverwrittenCount());
+
+        // The 8 newest readings are left, in order
+        double[] x = new double[8];
+        double[] y = new double[8];
+        double[] z = new double[8];
+        double[] timestamps = new double[8];
+        assertEquals(8, buffer.drainTo(x, y, z, timestamps));
+        for (int i = 0; i < 8; i++) {
+            assertEquals(1000 + 5 + i, timestamps[i], 0);
+            assertEquals(5 + i, x[i], 0);
+            assertEquals(-(5 + i), y[i], 0);
+            assertEquals(0.5 * (5 + i), z[i], 0);
+        }
+        assertTrue(buffer.isEmpty());
+        assertEquals(5, buffer.getOverwrittenCount());
+    }
+
+    @Test
+    public void drains_spanTheEndOfTheStorage() {
+        SensorReadingsRingBuffer buffer = new SensorReadingsRingBuffer(8);
+        FloatSensorReadings target = new FloatSensorReadings(SensorReadings.TYPE_ACCELEROMETER_READINGS, 0);
+
+        // Move the head to the middle of the storage, then fill the buffer so that it wraps around
+        for (int i = 0; i < 6; i++) {
+            write(buffer, i);
+        }
+        assertEquals(6, buffer.drainTo(target, 1006));
+        for (int i = 6; i < 14; i++) {
+            write(buffer, i);
+        }
+        assertEquals(8, buffer.size());
+        assertEquals(0, buffer.getOverwrittenCount());
+
+        // Counting and draining across the wrap boundary
+        assertEquals(0, buffer.countBefore(1006));
+        assertEquals(1, buffer.countBefore(1007));
+        assertEquals(4, buffer.countBefore(1010));
+        assertEquals(8, buffer.countBefore(2000));
+
+        assertEquals(4, buffer.drainTo(target, 1010));
+        assertEquals(4, target.getN());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(1006 + i, target.getTimestamps()[i]);
+            assertEquals(6 + i, target.getX()[i], 0);
+        }
+        assertEquals(4, buffer.size());
+
+        FloatSensorReadings rest = buffer.drain(SensorReadings.TYPE_ACCELEROMETER_READINGS);
+        assertEquals(4, rest.getN());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(1010 + i, rest.getTimestamps()[i]);
+            assertEquals(-(10 + i), rest.getY()[i], 0);
+            assertEquals(0.5 * (10 + i), rest.getZ()[i], 0);
+        }
+        assertTrue(buffer.isEmpty());
+    }
+
+    private static void write(SensorReadingsRingBuffer buffer, int i) {
+        buffer.write(1000 + i, i, -i, 0.5f * i);
+    }
+}
@@ -0,0 +1,142 @@
+package fr.irit.rmess.heartdeep.datatype;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the compact binary encoding of the data types
+ */
+public class SensorReadingsTest {
+
+    private static SensorReadings sampleReadings(int n) {
+        SensorReadings sensorReadings = new SensorReadings(SensorReadings.TYPE_ACCELEROMETER_READINGS, n);
+        for (int i = 0; i < n; i++) {
+            sensorReadings.setX(i, Math.sin(i));
+            sensorReadings.setY(i, Math.cos(i));
+            sensorReadings.setZ(i, -i);
+            sensorReadings.getTimestamps()[i] = 1e14 + 2.5e6 * i;
+        }
+        return sensorReadings;
+    }
+
+    @Test
+    public void encode_decode_roundTrip() {
+        SensorReadings sensorReadings = sampleReadings(10);
+        ByteBuffer buffer = ByteBuffer.allocate(sensorReadings.getEncodedSize());
+        sensorReadings.encode(buffer);
+        assertEquals(0, buffer.remaining());
+
+        buffer.flip();
+        assertEquals(sensorReadings, SensorReadings.decode(buffer));
+    }
+
+    @Test
+    public void javaSerialization_roundTrip() throws Exception {
+        SensorReadings sensorReadings = sampleReadings(100);
+        TimelinedData timelinedData = new TimelinedData(TimelinedData.TYPE_TIMELINED_BARO_READINGS, 2,
+                new double[]{1013.25, 1013.5}, new long[]{5, 10});
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(sensorReadings);
+        out.writeObject(timelinedData);
+        out.writeObject(new SensorReadings(SensorReadings.TYPE_GYROSCOPE_READINGS));
+        out.close();
+
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(sensorReadings, in.readObject());
+        assertEquals(timelinedData, in.readObject());
+        assertEquals(new SensorReadings(SensorReadings.TYPE_GYROSCOPE_READINGS), in.readObject());
+    }
+
+    @Test
+    public void floatReadings_roundTrip_andWidenExactly() throws Exception {
+        SensorReadingsRingBuffer ringBuffer = new SensorReadingsRingBuffer(8);
+        for (int i = 0; i < 12; i++) {
+            // Wraps around the buffer, the 4 first readings being overwritten
+            ringBuffer.write(100000000000000L + 2500000L * i, (float) Math.sin(i), (float) Math.cos(i), 9.81f + i);
+        }
+        FloatSensorReadings floatReadings = ringBuffer.drain(SensorReadings.TYPE_ACCELEROMETER_READINGS);
+        assertEquals(8, floatReadings.getN());
+        assertEquals(100000000000000L + 2500000L * 4, floatReadings.getTimestamps()[0]);
+
+        ByteBuffer buffer = ByteBuffer.allocate(floatReadings.getEncodedSize());
+        floatReadings.encode(buffer);
+        assertEquals(0, buffer.remaining());
+        buffer.flip();
+        assertEquals(floatReadings, FloatSensorReadings.decode(buffer));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(floatReadings);
+        out.close();
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(floatReadings, in.readObject());
+
+        SensorReadings widened = floatReadings.toSensorReadings();
+        for (int i = 0; i < 8; i++) {
+            assertEquals((float) Math.sin(i + 4), widened.getX(i), 0);
+            assertEquals(floatReadings.getZ(i), widened.getZ(i), 0);
+            assertEquals(floatReadings.getTimestamp(i), widened.getTimestamp(i), 0);
+        }
+
+        // Widened into reused readings, grown on the first window only
+        SensorReadings reused = new SensorReadings(SensorReadings.TYPE_GYROSCOPE_READINGS, 0);
+        floatReadings.widenTo(reused);
+        double[] x = reused.getX();
+        floatReadings.widenTo(reused);
+        assertSame(x, reused.getX());
+        assertEquals(SensorReadings.TYPE_ACCELEROMETER_READINGS, reused.getType());
+        assertEquals(8, reused.getN());
+        for (int i = 0; i < 8; i++) {
+            assertEquals(widened.getX(i), reused.getX(i), 0);
+            assertEquals(widened.getY(i), reused.getY(i), 0);
+            assertEquals(widened.getZ(i), reused.getZ(i), 0);
+            assertEquals(widened.getTimestamp(i), reused.getTimestamp(i), 0);
+        }
+    }
+
+    @Test
+    public void views_shareTheReadings_withinTheirBounds() {
+        SensorReadings sensorReadings = sampleReadings(100);
+        SensorReadingsView view = sensorReadings.slice(10, 60);
+        assertEquals(50, view.getN());
+        assertEquals(sensorReadings.getX(10), view.getX(0), 0);
+        assertEquals(sensorReadings.getTimestamp(59), view.getTimestamp(49), 0);
+
+        // Slices of slices are over the same readings, by index or by timestamp
+        SensorReadingsView byTime = view.sliceByTime(sensorReadings.getTimestamp(20), sensorReadings.getTimestamp(30) - 1);
+        assertSame(sensorReadings, byTime.getReadings());
+        assertEquals(20, byTime.getOffset());
+        assertEquals(10, byTime.getN());
+        assertEquals(byTime, sensorReadings.slice(20, 30));
+        assertEquals(byTime.hashCode(), sensorReadings.slice(20, 30).hashCode());
+        assertNotEquals(byTime, sensorReadings.slice(21, 31));
+        assertEquals(0, view.sliceByTime(0, 1).getN());
+
+        // No copy: changes of the readings are seen through the views
+        sensorReadings.setZ(25, 42);
+        assertEquals(42, byTime.getZ(5), 0);
+        assertEquals(new SensorReadings(byTime.toSensorReadings()), byTime.toSensorReadings());
+
+        try {
+            byTime.getX(10);
+            fail("Read past the end of the view");
+        } catch (IndexOutOfBoundsException expected) {
+            // The view is 10-long
+        }
+        try {
+            view.slice(40, 51);
+            fail("Sliced past the end of the view");
+        } catch (IndexOutOfBoundsException expected) {
+            // The view is 50-long
+        }
+    }
+}
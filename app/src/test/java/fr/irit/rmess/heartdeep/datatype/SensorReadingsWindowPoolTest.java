@@ -0,0 +1,70 @@
+package fr.irit.rmess.heartdeep.datatype;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the recycling of the windows released by all their holders, and the detection of the ones never released
+ */
+public class SensorReadingsWindowPoolTest {
+
+    private static final String[] TYPES = {SensorReadings.TYPE_ACCELEROMETER_READINGS, SensorReadings.TYPE_GYROSCOPE_READINGS};
+
+    @Test
+    public void releasedWindows_areRecycled_andRefilledInPlace() {
+        SensorReadingsWindowPool pool = new SensorReadingsWindowPool(TYPES, 0, 4);
+        SensorReadingsRingBuffer ringBuffer = new SensorReadingsRingBuffer(64);
+
+        SensorReadingsWindow first = null;
+        for (int w = 0; w < 100; w++) {
+            SensorReadingsWindow window = pool.acquire();
+            for (int i = 0; i < 10; i++) {
+                ringBuffer.write(w * 10 + i, i, -i, w);
+            }
+            assertEquals(10, ringBuffer.drainTo(window.getReadings()[0], Long.MAX_VALUE));
+            assertEquals(SensorReadings.TYPE_ACCELEROMETER_READINGS, window.getReadings()[0].getType());
+            assertEquals(w * 10, window.getReadings()[0].getTimestamp(0), 0);
+            assertEquals(0, window.getReadings()[1].getN());
+
+            // The processing and an observer hold the window
+            window.retain();
+            window.release();
+            assertEquals(1, window.getReferenceCount());
+            window.release();
+
+            if (first == null) {
+                first = window;
+            }
+            assertSame(first, window);
+        }
+        assertEquals(1, pool.getAllocatedCount());
+
+        try {
+            first.release();
+            fail("Released more than retained");
+        } catch (IllegalStateException expected) {
+            // The window was already back in the pool
+        }
+    }
+
+    @Test
+    public void windowsNeverReleased_areReportedAsLeaked() throws InterruptedException {
+        SensorReadingsWindowPool pool = new SensorReadingsWindowPool(TYPES, 16, 4);
+        pool.setLeakDetection(true);
+        pool.acquire().release();
+        for (int i = 0; i < 3; i++) {
+            // Dropped without being released (the first one being the recycled window)
+            pool.acquire();
+            pool.acquire();
+        }
+
+        // Leaks are detected once the windows are collected, when a window is acquired
+        for (int attempt = 0; attempt < 50 && pool.getLeakedCount() < 6; attempt++) {
+            System.gc();
+            Thread.sleep(10);
+            pool.acquire().release();
+        }
+        assertEquals(6, pool.getLeakedCount());
+    }
+}
@@ -0,0 +1,62 @@
+package fr.irit.rmess.heartdeep.datatype;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the statistics computed in a single pass, and their merge window after window
+ */
+public class SensorStatisticsTest {
+
+    @Test
+    public void mergedWindows_giveTheStatisticsOfAllTheReadings() {
+        Random random = new Random(3);
+        int windows = 7;
+        int n = 250;
+        double[] all = new double[windows * n];
+        SensorStatistics session = new SensorStatistics(SensorReadings.TYPE_ACCELEROMETER_READINGS);
+        for (int w = 0; w < windows; w++) {
+            // A large offset (as the gravity) with small variations, and windows of different levels
+            FloatSensorReadings readings = new FloatSensorReadings(SensorReadings.TYPE_ACCELEROMETER_READINGS, n);
+            for (int i = 0; i < n; i++) {
+                readings.getX()[i] = (float) (9.81 + 0.2 * w + 0.01 * random.nextGaussian());
+                readings.getY()[i] = -1;
+                readings.getZ()[i] = (float) random.nextGaussian();
+                all[w * n + i] = readings.getX()[i];
+            }
+
+            SensorStatistics window = SensorStatistics.of(readings);
+            assertEquals(n, window.getCount());
+            assertEquals(-1, window.getMean(SensorStatistics.AXIS_Y), 0);
+            assertEquals(0, window.getVariance(SensorStatistics.AXIS_Y), 0);
+            assertEquals(1, window.getRms(SensorStatistics.AXIS_Y), 0);
+            session.merge(window);
+        }
+
+        double sum = 0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (double value : all) {
+            sum += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        double mean = sum / all.length;
+        double squares = 0;
+        double deviations = 0;
+        for (double value : all) {
+            squares += value * value;
+            deviations += (value - mean) * (value - mean);
+        }
+
+        assertEquals(all.length, session.getCount());
+        assertEquals(mean, session.getMean(SensorStatistics.AXIS_X), 1e-12);
+        assertEquals(deviations / all.length, session.getVariance(SensorStatistics.AXIS_X), 1e-12);
+        assertEquals(Math.sqrt(squares / all.length), session.getRms(SensorStatistics.AXIS_X), 1e-12);
+        assertEquals(min, session.getMin(SensorStatistics.AXIS_X), 0);
+        assertEquals(max, session.getMax(SensorStatistics.AXIS_X), 0);
+    }
+}
@@ -0,0 +1,75 @@
+package fr.irit.rmess.heartdeep.datatype;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the appended time series: growth, bounded retention, and the lookups by timestamp
+ */
+public class TimelinedDataTest {
+
+    @Test
+    public void appendedValues_areLookedUpAndInterpolatedByTime() {
+        TimelinedData history = new TimelinedData(TimelinedData.TYPE_TIMELINED_BARO_READINGS);
+        for (int i = 0; i < 1000; i++) {
+            history.append(10L * i, i);
+        }
+        assertEquals(1000, history.getN());
+
+        assertEquals(0, history.indexOf(-5));
+        assertEquals(3, history.indexOf(25));
+        assertEquals(3, history.indexOf(30));
+        assertEquals(1000, history.indexOf(100000));
+
+        TimelinedData range = history.rangeByTime(25, 60);
+        assertEquals(TimelinedData.TYPE_TIMELINED_BARO_READINGS, range.getType());
+        assertEquals(3, range.getN());
+        assertEquals(30, range.getTimestamp(0));
+        assertEquals(5, range.getValue(2), 0);
+        assertEquals(0, history.rangeByTime(60, 25).getN());
+
+        assertEquals(2.5, history.valueAt(25), 1e-12);
+        assertEquals(3, history.valueAt(30), 0);
+        assertEquals(0, history.valueAt(-100), 0);
+        assertEquals(999, history.valueAt(100000), 0);
+        assertTrue(Double.isNaN(new TimelinedData(TimelinedData.TYPE_TIMELINED_BARO_READINGS).valueAt(0)));
+
+        try {
+            history.append(0, 0);
+            fail("Appended a value before the last one");
+        } catch (IllegalArgumentException expected) {
+            // Timestamps are kept in order
+        }
+    }
+
+    @Test
+    public void boundedHistory_evictsTheOldestValues() {
+        TimelinedData history = new TimelinedData(TimelinedData.TYPE_TIMELINED_ORIENTATIONS);
+        history.setRetention(100);
+        for (int i = 0; i < 1050; i++) {
+            history.append(i, -i);
+        }
+
+        assertEquals(100, history.getN());
+        assertEquals(950, history.getTimestamp(0));
+        assertEquals(-1049, history.getValue(99), 0);
+        assertEquals(-960, history.valueAt(960), 0);
+        assertEquals(-950, history.valueAt(0), 0);
+
+        TimelinedData copy = new TimelinedData(history);
+        assertEquals(history, copy);
+        assertEquals(history.hashCode(), copy.hashCode());
+        copy.setValue(0, 42);
+        assertEquals(-950, history.getValue(0), 0);
+
+        // The arrays are handed out with the values at their beginning
+        assertEquals(950, history.getTimestamps()[0]);
+        assertEquals(-1049, history.getValues()[99], 0);
+        assertEquals(copy.getN(), history.getN());
+
+        history.setRetention(10);
+        assertEquals(10, history.getN());
+        assertEquals(1040, history.getTimestamp(0));
+    }
+}
@@ -0,0 +1,93 @@
+package fr.irit.rmess.heartdeep.helpers;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that compressed recordings decode to the exact records, both through the reader and as a binary recording
+ */
+public class CompressedRecordWriterTest {
+
+    private static final String[] SENSOR_NAMES = {"android.sensor.accelerometer", "android.sensor.gyroscope", "android.sensor.light"};
+
+    @Test
+    public void compressedRecording_decodesToTheSameRecords() throws Exception {
+        // Jittered periods, smooth readings, repeated readings, and special values
+        Random random = new Random(7);
+        int n = 10000;
+        long[] timestamps = new long[n];
+        int[] sensorIds = new int[n];
+        float[][] readings = new float[n][3];
+        long timestamp = 123456789012345L;
+        for (int i = 0; i < n; i++) {
+            timestamp += 1250000 + random.nextInt(20000);
+            timestamps[i] = timestamp;
+            sensorIds[i] = i % 5 == 4 ? 2 : i % 2;
+            for (int axis = 0; axis < 3; axis++) {
+                readings[i][axis] = sensorIds[i] == 2 ? 42 : (float) (9.81 * Math.sin(0.01 * i + axis) + 0.01 * random.nextGaussian());
+            }
+        }
+        readings[100][0] = Float.NaN;
+        readings[101][1] = Float.NEGATIVE_INFINITY;
+        readings[102][2] = -0.0f;
+        readings[103][0] = Float.MIN_VALUE;
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        SensorRecordBuffer binary = new SensorRecordBuffer(SENSOR_NAMES);
+        // As many blocks as the recording needs, so that no record is dropped however late the I/O thread is
+        CompressedRecordWriter writer = new CompressedRecordWriter(compressed, SENSOR_NAMES, 1000, 10);
+        for (int i = 0; i < n; i++) {
+            writer.writeRecord(timestamps[i], sensorIds[i], readings[i][0], readings[i][1], readings[i][2]);
+            binary.writeRecord(timestamps[i], sensorIds[i], readings[i][0], readings[i][1], readings[i][2]);
+        }
+        writer.close();
+        assertEquals(0, writer.getDroppedRecordsCount());
+        assertEquals(n, writer.getRecordsCount());
+        assertEquals(10, writer.getBlocksCount());
+        assertEquals(compressed.size(), writer.getBytesWritten());
+        // Even with noisy readings and jittered timestamps
+        assertTrue(compressed.size() < n * SensorRecordFormat.RECORD_SIZE * 2 / 3);
+
+        CompressedRecordReader reader = new CompressedRecordReader(new ByteArrayInputStream(compressed.toByteArray()));
+        assertTrue(Arrays.equals(SENSOR_NAMES, reader.getSensorNames()));
+        for (int i = 0; i < n; i++) {
+            assertTrue(reader.next());
+            assertEquals(timestamps[i], reader.getTimestamp());
+            assertEquals(sensorIds[i], reader.getSensorId());
+            assertEquals(Float.floatToRawIntBits(readings[i][0]), Float.floatToRawIntBits(reader.getX()));
+            assertEquals(Float.floatToRawIntBits(readings[i][1]), Float.floatToRawIntBits(reader.getY()));
+            assertEquals(Float.floatToRawIntBits(readings[i][2]), Float.floatToRawIntBits(reader.getZ()));
+        }
+        assertFalse(reader.next());
+        reader.close();
+
+        // Records being written in timestamp order, the decoded stream is the binary recording
+        File directory = Files.createTempDirectory("heartdeep").toFile();
+        File file = new File(directory, "session.hdb");
+        Files.write(file.toPath(), compressed.toByteArray());
+        assertTrue(CompressedRecordReader.isCompressed(file));
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        binary.writeTo(expected);
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        InputStream in = SensorRecordReader.openStream(directory, "session.hdb");
+        byte[] buffer = new byte[1000];
+        for (int read; (read = in.read(buffer)) > 0; ) {
+            decoded.write(buffer, 0, read);
+        }
+        in.close();
+        assertTrue(Arrays.equals(expected.toByteArray(), decoded.toByteArray()));
+
+        file.delete();
+        directory.delete();
+    }
+}
@@ -0,0 +1,49 @@
+package fr.irit.rmess.heartdeep.helpers;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that numbers are encoded exactly like Long.toString and Float.toString do
+ */
+public class DecimalEncodingTest {
+    @Test
+    public void putFloat_matchesFloatToString() {
+        float[] specialValues = {0f, -0f, 1f, -1f, 0.1f, 9.81f, 100f, 1e-3f, 9.999999e-4f, 9999999f, 1e7f, 1.5e-5f,
+                Float.MIN_VALUE, Float.MIN_NORMAL, Float.MAX_VALUE, Float.NaN, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY};
+        for (float value : specialValues) {
+            assertFloatEncoding(value);
+        }
+
+        Random random = new Random(42);
+        for (int i = 0; i < 1000000; i++) {
+            assertFloatEncoding(Float.intBitsToFloat(random.nextInt()));
+            assertFloatEncoding((float) (random.nextGaussian() * 20));
+        }
+    }
+
+    @Test
+    public void putLong_matchesLongToString() {
+        long[] values = {0, 1, -1, 9, 10, 123456789012345L, -2500000, Long.MAX_VALUE, Long.MIN_VALUE};
+        byte[] buffer = new byte[DecimalEncoding.MAX_LONG_LENGTH];
+        for (long value : values) {
+            int length = DecimalEncoding.putLong(buffer, 0, value);
+            assertEquals(Long.toString(value), new String(buffer, 0, length));
+        }
+    }
+
+    private static void assertFloatEncoding(float value) {
+        byte[] buffer = new byte[DecimalEncoding.MAX_FLOAT_LENGTH + 1];
+        int length = DecimalEncoding.putFloat(buffer, 1, value) - 1;
+        String encoded = new String(buffer, 1, length);
+
+        assertEquals(Float.toString(value), encoded);
+        assertTrue(length <= DecimalEncoding.MAX_FLOAT_LENGTH);
+        if (!Float.isNaN(value)) {
+            assertEquals(Float.floatToIntBits(value), Float.floatToIntBits(Float.parseFloat(encoded)));
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package fr.irit.rmess.heartdeep.helpers;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the segments of a log read back as a single recording, and that a segment which cannot be created drops records
+ */
+public class MappedSegmentLogTest {
+    @Test
+    public void openStream_concatenatesSegments() throws Exception {
+        File directory = Files.createTempDirectory("heartdeep").toFile();
+        String[] sensorNames = {"android.sensor.accelerometer", "android.sensor.magnetic_field"};
+        SensorRecordBuffer expected = new SensorRecordBuffer(sensorNames);
+
+        MappedSegmentLog log = new MappedSegmentLog(directory, "session.hdb", sensorNames, 4096);
+        for (int i = 0; i < 1000; i++) {
+            log.writeRecord(1000L * i, i % 2, i, i * 0.25f, -i);
+            expected.writeRecord(1000L * i, i % 2, i, i * 0.25f, -i);
+        }
+        log.close();
+        assertTrue(log.getSegmentsCount() > 1);
+        assertEquals(0, log.getDroppedRecordsCount());
+
+        ByteArrayOutputStream expectedOut = new ByteArrayOutputStream();
+        expected.writeTo(expectedOut);
+
+        ByteArrayOutputStream actualOut = new ByteArrayOutputStream();
+        InputStream in = MappedSegmentLog.openStream(directory, "session.hdb");
+        byte[] buffer = new byte[1000];
+        for (int n; (n = in.read(buffer)) > 0; ) {
+            actualOut.write(buffer, 0, n);
+        }
+        in.close();
+
+        assertArrayEquals(expectedOut.toByteArray(), actualOut.toByteArray());
+
+        MappedSegmentLog.deleteSegments(directory, "session.hdb");
+        assertFalse(MappedSegmentLog.exists(directory, "session.hdb"));
+        directory.delete();
+    }
+
+    @Test
+    public void failedRoll_dropsRecords_andKeepsTheWrittenOnes() throws Exception {
+        File directory = Files.createTempDirectory("heartdeep").toFile();
+        String[] sensorNames = {"android.sensor.accelerometer"};
+
+        // A (non-empty) directory in place of the second segment: it cannot be created
+        File blocker = MappedSegmentLog.segmentFile(directory, "session.hdb", 1);
+        assertTrue(blocker.mkdir());
+        File blockerContent = new File(blocker, "content");
+        assertTrue(blockerContent.createNewFile());
+
+        SensorRecordBuffer expected = new SensorRecordBuffer(sensorNames);
+        MappedSegmentLog log = new MappedSegmentLog(directory, "session.hdb", sensorNames, 4096);
+        for (int i = 0; i < 1000; i++) {
+            log.writeRecord(1000L * i, 0, i, i * 0.25f, -i);
+            if (log.getRecordsCount() > expected.getRecordsCount()) {
+                expected.writeRecord(1000L * i, 0, i, i * 0.25f, -i);
+            }
+        }
+        log.close();
+        assertEquals(1, log.getSegmentsCount());
+        assertTrue(log.getRecordsCount() > 0);
+        assertEquals(1000, log.getRecordsCount() + log.getDroppedRecordsCount());
+
+        ByteArrayOutputStream expectedOut = new ByteArrayOutputStream();
+        expected.writeTo(expectedOut);
+        ByteArrayOutputStream actualOut = new ByteArrayOutputStream();
+        InputStream in = MappedSegmentLog.openStream(directory, "session.hdb");
+        byte[] buffer = new byte[1000];
+        for (int n; (n = in.read(buffer)) > 0; ) {
+            actualOut.write(buffer, 0, n);
+        }
+        in.close();
+        assertArrayEquals(expectedOut.toByteArray(), actualOut.toByteArray());
+
+        MappedSegmentLog.deleteSegments(directory, "session.hdb");
+        SensorRecordIndex.indexFile(directory, "session.hdb").delete();
+        blockerContent.delete();
+        blocker.delete();
+        directory.delete();
+    }
+}
@@ -0,0 +1,69 @@
+package fr.irit.rmess.heartdeep.helpers;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the counters, gauges and snapshots of the metrics registry, and the log sampler
+ */
+public class MetricsRegistryTest {
+    @Test
+    public void counters_areNotLostUnderContention() throws Exception {
+        final MetricsRegistry registry = new MetricsRegistry();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    MetricsRegistry.Counter counter = registry.counter("events");
+                    for (int j = 0; j < 100000; j++) {
+                        counter.increment();
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(400000, registry.counter("events").get());
+    }
+
+    @Test
+    public void snapshot_reportsValuesDeltasAndHighWaterMarks() {
+        MetricsRegistry registry = new MetricsRegistry();
+        MetricsRegistry.Counter counter = registry.counter("events");
+        MetricsRegistry.Gauge gauge = registry.gauge("queue");
+
+        counter.add(10);
+        gauge.set(7);
+        gauge.set(3);
+        MetricsRegistry.Snapshot first = registry.snapshot();
+        assertEquals(10, first.getValue("events"));
+        assertEquals(3, first.getValue("queue"));
+        assertEquals(7, first.getValue("queue" + MetricsRegistry.HIGH_WATER_MARK_SUFFIX));
+        assertEquals(0, first.getElapsedNanos());
+
+        counter.add(5);
+        MetricsRegistry.Snapshot second = registry.snapshot();
+        assertEquals(15, second.getValue("events"));
+        assertEquals(5, second.getDelta("events"));
+
+        registry.reset();
+        assertEquals(0, registry.snapshot().getValue("queue" + MetricsRegistry.HIGH_WATER_MARK_SUFFIX));
+    }
+
+    @Test
+    public void logSampler_samplesAtMostOncePerInterval() {
+        LogSampler sampler = new LogSampler(1000);
+
+        assertTrue(sampler.sample(0));
+        assertFalse(sampler.sample(500));
+        assertFalse(sampler.sample(999));
+        assertTrue(sampler.sample(1000));
+        assertEquals(2, sampler.getAndResetSkippedCount());
+        assertEquals(0, sampler.getAndResetSkippedCount());
+    }
+}
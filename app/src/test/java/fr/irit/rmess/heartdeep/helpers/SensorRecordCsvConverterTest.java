@@ -0,0 +1,44 @@
+package fr.irit.rmess.heartdeep.helpers;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that binary recordings convert back to the historical CSV format
+ */
+public class SensorRecordCsvConverterTest {
+    @Test
+    public void convert_matchesLegacyCsv() throws Exception {
+        String[] sensorNames = {"android.sensor.linear_acceleration", "android.sensor.gyroscope"};
+        SensorRecordBuffer buffer = new SensorRecordBuffer(sensorNames);
+
+        StringBuilder expected = new StringBuilder("timestamp,sensor,x,y,z\n");
+        long timestamp = 123456789012345L;
+        for (int i = 0; i < 10000; i++) {
+            int sensorId = i % 2;
+            float x = (float) Math.sin(i) * 9.81f;
+            float y = -i * 0.001f;
+            float z = i == 5 ? Float.NaN : 1e-5f * i;
+            buffer.writeRecord(timestamp, sensorId, x, y, z);
+
+            // Same expression as the one formerly used by HeartDeepSensorListenerService.onSensorChanged
+            String data = timestamp + "," + sensorNames[sensorId] + "," + x + "," + y + "," + z;
+            expected.append(data + "\n");
+            timestamp += 2500000;
+        }
+
+        ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        buffer.writeTo(binary);
+        assertEquals(buffer.getSizeInBytes(), binary.size());
+
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        long count = SensorRecordCsvConverter.convert(new ByteArrayInputStream(binary.toByteArray()), csv);
+
+        assertEquals(10000, count);
+        assertArrayEquals(expected.toString().getBytes("UTF-8"), csv.toByteArray());
+    }
+}
@@ -0,0 +1,153 @@
+package fr.irit.rmess.heartdeep.helpers;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the index saved with a recording lets the reader stream exactly the records of a time range, whatever its storage backend
+ */
+public class SensorRecordReaderTest {
+
+    private static final String[] SENSOR_NAMES = {"android.sensor.accelerometer", "android.sensor.gyroscope"};
+
+    private static final int RECORDS = 20000;
+
+    /**
+     * The timestamp of a record: increasing, but the gyroscope ones are late by a few records
+     */
+    private static long timestampOf(int record) {
+        return 1000L * record - (record % 2 == 1 ? 3500 : 0);
+    }
+
+    private static void write(SensorRecordSink sink) throws Exception {
+        for (int i = 0; i < RECORDS; i++) {
+            sink.writeRecord(timestampOf(i), i % 2, i, -i, 0.5f * i);
+        }
+        sink.close();
+    }
+
+    private static void checkRange(SensorRecordReader reader, long from, long to) throws Exception {
+        reader.seek(from, to);
+        int expected = 0;
+        for (int i = 0; i < RECORDS; i++) {
+            if (timestampOf(i) >= from && timestampOf(i) < to) {
+                assertTrue(reader.next());
+                assertEquals(timestampOf(i), reader.getTimestamp());
+                assertEquals(i % 2, reader.getSensorId());
+                assertEquals(i, reader.getX(), 0);
+                assertEquals(-i, reader.getY(), 0);
+                assertEquals(0.5f * i, reader.getZ(), 0);
+                expected++;
+            }
+        }
+        assertFalse(reader.next());
+        assertTrue(expected > 0 || to <= from);
+    }
+
+    /**
+     * Checks a range of a compressed recording, whose records come out of each block by timestamp rather than in the written order
+     */
+    private static void checkUnorderedRange(SensorRecordReader reader, long from, long to) throws Exception {
+        reader.seek(from, to);
+        boolean[] read = new boolean[RECORDS];
+        while (reader.next()) {
+            int i = (int) reader.getX();
+            assertFalse(read[i]);
+            read[i] = true;
+            assertEquals(timestampOf(i), reader.getTimestamp());
+            assertEquals(i % 2, reader.getSensorId());
+            assertEquals(-i, reader.getY(), 0);
+            assertEquals(0.5f * i, reader.getZ(), 0);
+        }
+        for (int i = 0; i < RECORDS; i++) {
+            assertEquals(timestampOf(i) >= from && timestampOf(i) < to, read[i]);
+        }
+    }
+
+    @Test
+    public void reader_seeksToTimeRanges_ofBothStorageBackends() throws Exception {
+        File directory = Files.createTempDirectory("heartdeep").toFile();
+        write(new StreamingRecordWriter(new File(directory, "streamed.hdb"), SENSOR_NAMES));
+        write(new MappedSegmentLog(directory, "mapped.hdb", SENSOR_NAMES, 64 * 1024));
+        assertTrue(SensorRecordIndex.indexFile(directory, "streamed.hdb").isFile());
+        assertTrue(SensorRecordIndex.indexFile(directory, "mapped.hdb").isFile());
+
+        for (String name : new String[]{"streamed.hdb", "mapped.hdb"}) {
+            SensorRecordReader reader = new SensorRecordReader(directory, name);
+            assertTrue(Arrays.equals(SENSOR_NAMES, reader.getSensorNames()));
+            assertEquals(RECORDS, reader.getIndex().getRecordsCount());
+
+            // Forward, backward, at the edges, and across the late records
+            checkRange(reader, 12345000, 12400000);
+            checkRange(reader, 3000000, 3001000);
+            checkRange(reader, -5000, 10000);
+            checkRange(reader, 19990000, Long.MAX_VALUE);
+            checkRange(reader, 1023000, 1026000);
+            checkRange(reader, 50000, 40000);
+            reader.close();
+        }
+
+        // A recording without index has it built when opened
+        assertTrue(SensorRecordIndex.indexFile(directory, "streamed.hdb").delete());
+        SensorRecordReader reader = new SensorRecordReader(directory, "streamed.hdb");
+        assertEquals(RECORDS, reader.getIndex().getRecordsCount());
+        checkRange(reader, 7777000, 7800000);
+        reader.close();
+        assertTrue(SensorRecordIndex.indexFile(directory, "streamed.hdb").isFile());
+
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void reader_seeksToBlocks_ofCompressedRecordings() throws Exception {
+        File directory = Files.createTempDirectory("heartdeep").toFile();
+        // Enough blocks for none of the records to be dropped, small enough to seek among them
+        write(new CompressedRecordWriter(new File(directory, "compressed.hdb"), SENSOR_NAMES, 1024, RECORDS / 1024 + 1));
+        File indexFile = SensorRecordIndex.indexFile(directory, "compressed.hdb");
+        assertTrue(indexFile.isFile());
+
+        SensorRecordIndex saved = SensorRecordIndex.readFrom(indexFile);
+        assertTrue(saved.hasBlockOffsets());
+        assertEquals(1024, saved.getBlockSize());
+        assertEquals(RECORDS, saved.getRecordsCount());
+
+        // The index built from the block headers is the saved one
+        SensorRecordIndex built = CompressedRecordReader.buildIndex(new File(directory, "compressed.hdb"));
+        assertEquals(saved.getBlocksCount(), built.getBlocksCount());
+        for (int block = 0; block < saved.getBlocksCount(); block++) {
+            assertEquals(saved.getBlockOffset(block), built.getBlockOffset(block));
+        }
+
+        for (int pass = 0; pass < 2; pass++) {
+            SensorRecordReader reader = new SensorRecordReader(directory, "compressed.hdb");
+            assertTrue(Arrays.equals(SENSOR_NAMES, reader.getSensorNames()));
+            assertTrue(reader.getIndex().hasBlockOffsets());
+
+            // Forward, backward, within a block, across blocks and at the edges
+            checkUnorderedRange(reader, 12345000, 12400000);
+            checkUnorderedRange(reader, 3000000, 3001000);
+            checkUnorderedRange(reader, 4090000, 4100000);
+            checkUnorderedRange(reader, -5000, 10000);
+            checkUnorderedRange(reader, 19990000, Long.MAX_VALUE);
+            checkUnorderedRange(reader, 50000, 40000);
+            checkUnorderedRange(reader, Long.MIN_VALUE, Long.MAX_VALUE);
+            reader.close();
+
+            // A recording without index has it rebuilt from its block headers
+            assertTrue(indexFile.delete());
+        }
+
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+}
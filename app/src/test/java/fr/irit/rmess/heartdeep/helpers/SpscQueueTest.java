@@ -0,0 +1,81 @@
+package fr.irit.rmess.heartdeep.helpers;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the bounded single-producer/single-consumer queue: capacity, full and empty states, wrap-around, and a concurrent
+ * producer and consumer
+ */
+public class SpscQueueTest {
+
+    @Test
+    public void queue_wrapsAround_andReportsFullAndEmpty() {
+        SpscQueue<Integer> queue = new SpscQueue<>(5);
+        assertEquals(8, queue.capacity());
+        assertNull(queue.poll());
+        assertEquals(0, queue.size());
+
+        int next = 0;
+        int expected = 0;
+        for (int round = 0; round < 10; round++) {
+            // Fill the queue, from a head moving around the buffer
+            while (queue.offer(next)) {
+                next++;
+            }
+            assertEquals(8, queue.size());
+            assertFalse(queue.offer(-1));
+
+            // Empty it partially, so that the next round wraps around
+            for (int i = 0; i < 3 + round % 5; i++) {
+                assertEquals(Integer.valueOf(expected++), queue.poll());
+            }
+        }
+        while (expected < next) {
+            assertEquals(Integer.valueOf(expected++), queue.poll());
+        }
+        assertNull(queue.poll());
+        assertEquals(0, queue.size());
+
+        try {
+            queue.offer(null);
+            fail("Offered a null element");
+        } catch (NullPointerException expectedException) {
+            // Null means empty
+        }
+    }
+
+    @Test
+    public void concurrentProducerAndConsumer_keepTheOrder() throws InterruptedException {
+        final SpscQueue<Long> queue = new SpscQueue<>(64);
+        final long count = 1000000;
+
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (long i = 0; i < count; ) {
+                    if (queue.offer(i)) {
+                        i++;
+                    } else {
+                        Thread.yield();
+                    }
+                }
+            }
+        });
+        producer.start();
+
+        long expected = 0;
+        while (expected < count) {
+            Long element = queue.poll();
+            if (element == null) {
+                Thread.yield();
+                continue;
+            }
+            assertEquals(expected, element.longValue());
+            expected++;
+        }
+        producer.join();
+        assertNull(queue.poll());
+    }
+}
@@ -0,0 +1,35 @@
+package fr.irit.rmess.heartdeep.helpers;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the streaming writer produces the same recording as the in-memory buffer
+ */
+public class StreamingRecordWriterTest {
+    @Test
+    public void close_writesAllRecords() throws Exception {
+        String[] sensorNames = {"android.sensor.gyroscope"};
+        SensorRecordBuffer expected = new SensorRecordBuffer(sensorNames);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // Small chunks, so that the I/O thread is solicited a lot
+        StreamingRecordWriter writer = new StreamingRecordWriter(out, sensorNames, 10 * SensorRecordFormat.RECORD_SIZE, 1000);
+
+        for (int i = 0; i < 5005; i++) {
+            writer.writeRecord(i, 0, i, -i, 0.5f * i);
+            expected.writeRecord(i, 0, i, -i, 0.5f * i);
+        }
+        writer.close();
+
+        ByteArrayOutputStream expectedOut = new ByteArrayOutputStream();
+        expected.writeTo(expectedOut);
+
+        assertEquals(0, writer.getDroppedRecordsCount());
+        assertEquals(0, writer.getQueueDepth());
+        assertEquals(expectedOut.size(), writer.getBytesWritten());
+        assertArrayEquals(expectedOut.toByteArray(), out.toByteArray());
+    }
+}
@@ -0,0 +1,109 @@
+package fr.irit.rmess.heartdeep.processing;
+
+import org.junit.Test;
+
+import fr.irit.rmess.heartdeep.datatype.SensorReadings;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the bands of the filter bank, and that its state carries over from one window to the next
+ */
+public class FilterBankTest {
+
+    private static final double SAMPLING_RATE = 400;
+
+    private static final double PERIOD = 1e9 / SAMPLING_RATE;
+
+    @Test
+    public void windowAfterWindow_isTheSameAsAtOnce() {
+        int n = 4000;
+        FilterBank atOnce = new FilterBank(SAMPLING_RATE, 1e8);
+        SensorReadings all = readings(0, n, 10, 0.3);
+        atOnce.filterInPlace(all, FilterBank.BAND_CARDIAC);
+
+        FilterBank windowed = new FilterBank(SAMPLING_RATE, 1e8);
+        for (int start = 0; start < n; start += 8) {
+            SensorReadings window = readings(start, 8, 10, 0.3);
+            windowed.filterInPlace(window, FilterBank.BAND_CARDIAC);
+            for (int i = 0; i < 8; i++) {
+                assertEquals(all.getX(start + i), window.getX(i), 1e-9);
+                assertEquals(all.getZ(start + i), window.getZ(i), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void filteringIntoReusedReadings_isTheSameAsInPlace_andKeepsTheReadings() {
+        FilterBank inPlace = new FilterBank(SAMPLING_RATE, 1e8);
+        FilterBank into = new FilterBank(SAMPLING_RATE, 1e8);
+        SensorReadings filtered = new SensorReadings(SensorReadings.TYPE_GYROSCOPE_READINGS, 0);
+
+        // Windows of growing then shrinking sizes, so that the filtered readings are grown and then reused
+        int start = 0;
+        for (int size : new int[]{0, 5, 64, 300, 17, 300}) {
+            SensorReadings window = readings(start, size, 10, 0.3);
+            SensorReadings expected = readings(start, size, 10, 0.3);
+            inPlace.filterInPlace(expected, FilterBank.BAND_RESPIRATION);
+            into.filter(window, FilterBank.BAND_RESPIRATION, filtered);
+
+            assertEquals(SensorReadings.TYPE_ACCELEROMETER_READINGS, filtered.getType());
+            assertEquals(size, filtered.getN());
+            for (int i = 0; i < size; i++) {
+                assertEquals(expected.getX(i), filtered.getX(i), 0);
+                assertEquals(expected.getZ(i), filtered.getZ(i), 0);
+                assertEquals(expected.getTimestamp(i), filtered.getTimestamp(i), 0);
+                assertEquals(9.81, window.getY(i), 0);
+            }
+            start += size;
+        }
+    }
+
+    @Test
+    public void cardiacBand_keepsBeatsAndRemovesDriftAndNoise() {
+        assertEquals(1, gain(FilterBank.BAND_CARDIAC, 10), 0.02);
+        assertEquals(1, gain(FilterBank.BAND_CARDIAC, 2), 0.02);
+        assertTrue(gain(FilterBank.BAND_CARDIAC, 0.05) < 0.01);
+        assertTrue(gain(FilterBank.BAND_CARDIAC, 100) < 0.01);
+    }
+
+    @Test
+    public void respirationBand_keepsBreathingOnly() {
+        assertEquals(1, gain(FilterBank.BAND_RESPIRATION, 0.3), 0.05);
+        assertTrue(gain(FilterBank.BAND_RESPIRATION, 5) < 0.01);
+        assertTrue(gain(FilterBank.BAND_RESPIRATION, 0.01) < 0.05);
+    }
+
+    /**
+     * Measures the steady-state gain of a band at a frequency, on the x axis
+     */
+    private static double gain(int band, double frequency) {
+        FilterBank filterBank = new FilterBank(SAMPLING_RATE, 1e8);
+        // Long enough for the transients to vanish, even at the lowest frequencies
+        int n = (int) (SAMPLING_RATE * Math.max(60, 10 / frequency));
+        SensorReadings readings = readings(0, n, frequency, 0);
+        filterBank.filterInPlace(readings, band);
+
+        double max = 0;
+        int lastPeriod = (int) Math.max(SAMPLING_RATE / frequency, SAMPLING_RATE);
+        for (int i = n - lastPeriod; i < n; i++) {
+            max = Math.max(max, Math.abs(readings.getX(i)));
+        }
+        return max;
+    }
+
+    /**
+     * Builds readings at 400 Hz: a unit sinusoid along x, plus an offset (like gravity), and another sinusoid along z
+     */
+    private static SensorReadings readings(int first, int n, double frequency, double zFrequency) {
+        SensorReadings readings = new SensorReadings(SensorReadings.TYPE_ACCELEROMETER_READINGS, n);
+        for (int i = 0; i < n; i++) {
+            double t = (first + i) / SAMPLING_RATE;
+            readings.getTimestamps()[i] = 1e9 + (first + i) * PERIOD;
+            readings.setX(i, Math.sin(2 * Math.PI * frequency * t));
+            readings.setY(i, 9.81);
+            readings.setZ(i, 0.2 * Math.sin(2 * Math.PI * zFrequency * t) + Math.sin(2 * Math.PI * 25 * t));
+        }
+        return readings;
+    }
+}
@@ -0,0 +1,66 @@
+package fr.irit.rmess.heartdeep.processing;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import fr.irit.rmess.heartdeep.datatype.SensorReadings;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the heart rate estimated from synthetic seismocardiograms, pushed window after window
+ */
+public class HeartRateEstimatorTest {
+
+    private static final double SAMPLING_RATE = 400;
+
+    private static final double PERIOD = 1e9 / SAMPLING_RATE;
+
+    @Test
+    public void periodicBeats_giveTheirRateWithHighConfidence() {
+        double[] rates = {48, 75, 130};
+        for (double rate : rates) {
+            HeartRateEstimator estimator = new HeartRateEstimator(SAMPLING_RATE, 1e8);
+            Random random = new Random(42);
+            for (int start = 0; start < 20 * SAMPLING_RATE; start += 200) {
+                estimator.push(beats(start, 200, rate, 0.2, random));
+            }
+
+            assertTrue(estimator.hasEstimate());
+            assertEquals(rate, estimator.getBpm(), 1.5);
+            assertTrue(estimator.getConfidence() > 0.7);
+        }
+    }
+
+    @Test
+    public void noise_givesLowConfidence_andGapsRestart() {
+        HeartRateEstimator estimator = new HeartRateEstimator(SAMPLING_RATE, 1e8);
+        Random random = new Random(7);
+        for (int start = 0; start < 20 * SAMPLING_RATE; start += 200) {
+            estimator.push(beats(start, 200, 0, 1, random));
+        }
+        assertTrue(estimator.getConfidence() < 0.4);
+
+        // A gap of 1 s: nothing is estimated until the analysis window is full again
+        estimator.push(beats((int) (21 * SAMPLING_RATE), 200, 75, 0, random));
+        assertFalse(estimator.hasEstimate());
+    }
+
+    /**
+     * Builds readings of the cardiac band: a short 25 Hz burst along x and z at each beat, plus white noise
+     */
+    private static SensorReadings beats(int first, int n, double rate, double noise, Random random) {
+        SensorReadings readings = new SensorReadings(SensorReadings.TYPE_ACCELEROMETER_READINGS, n);
+        for (int i = 0; i < n; i++) {
+            double t = (first + i) / SAMPLING_RATE;
+            double sinceBeat = rate > 0 ? t % (60 / rate) : 1;
+            double burst = sinceBeat < 0.08 ? Math.sin(2 * Math.PI * 25 * sinceBeat) : 0;
+            readings.getTimestamps()[i] = 1e9 + (first + i) * PERIOD;
+            readings.setX(i, burst + noise * random.nextGaussian());
+            readings.setY(i, noise * random.nextGaussian());
+            readings.setZ(i, 0.5 * burst + noise * random.nextGaussian());
+        }
+        return readings;
+    }
+}
@@ -0,0 +1,98 @@
+package fr.irit.rmess.heartdeep.processing;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the orientations fused by the filter, from the readings of a device in a known orientation
+ */
+public class OrientationFilterTest {
+
+    /**
+     * The gravity reaction measured by the accelerometer at rest, in the earth frame (north, west, up)
+     */
+    private static final double[] GRAVITY = {0, 0, 9.81};
+
+    /**
+     * A magnetic field pointing north and down, in the earth frame, in uT
+     */
+    private static final double[] FIELD = {20, 0, -40};
+
+    @Test
+    public void staticDevice_isInitializedAndConvergesToItsOrientation() {
+        double[] orientation = quaternion(0.3, -0.5, 0.7, 1.2);
+        double[] acc = toDevice(orientation, GRAVITY);
+        double[] mag = toDevice(orientation, FIELD);
+
+        OrientationFilter initialized = new OrientationFilter(OrientationFilter.DEFAULT_BETA);
+        initialized.initialize(acc[0], acc[1], acc[2], mag[0], mag[1], mag[2]);
+        assertSameOrientation(orientation, initialized, 1e-9);
+
+        OrientationFilter converged = new OrientationFilter(0.5);
+        for (int i = 0; i < 20000; i++) {
+            converged.update(0, 0, 0, acc[0], acc[1], acc[2], mag[0], mag[1], mag[2], 0.0025);
+        }
+        assertSameOrientation(orientation, converged, 1e-3);
+    }
+
+    @Test
+    public void rotatingDevice_isTracked() {
+        // The device turns around the vertical axis at 1 rad/s, being tilted
+        double rate = 1;
+        double dt = 0.0025;
+        OrientationFilter filter = new OrientationFilter(OrientationFilter.DEFAULT_BETA);
+        double[] start = quaternion(0.2, 0, 0.3, 0);
+        double[] acc = toDevice(start, GRAVITY);
+        double[] mag = toDevice(start, FIELD);
+        filter.initialize(acc[0], acc[1], acc[2], mag[0], mag[1], mag[2]);
+
+        // The angular rate, constant in the device frame
+        double[] gyr = toDevice(start, new double[]{0, 0, rate});
+        for (int i = 1; i <= 2000; i++) {
+            double[] orientation = multiply(quaternion(rate * i * dt, 0, 0, 1), start);
+            acc = toDevice(orientation, GRAVITY);
+            mag = toDevice(orientation, FIELD);
+            filter.update(gyr[0], gyr[1], gyr[2], acc[0], acc[1], acc[2], mag[0], mag[1], mag[2], dt);
+            if (i % 400 == 0) {
+                assertSameOrientation(orientation, filter, 2e-3);
+            }
+        }
+    }
+
+    private static void assertSameOrientation(double[] expected, OrientationFilter filter, double delta) {
+        // q and -q are the same rotation
+        double sign = Math.signum(expected[0] * filter.getW() + expected[1] * filter.getX()
+                + expected[2] * filter.getY() + expected[3] * filter.getZ());
+        assertEquals(expected[0], sign * filter.getW(), delta);
+        assertEquals(expected[1], sign * filter.getX(), delta);
+        assertEquals(expected[2], sign * filter.getY(), delta);
+        assertEquals(expected[3], sign * filter.getZ(), delta);
+    }
+
+    /**
+     * Builds the unit quaternion of a rotation by an angle around an axis
+     */
+    private static double[] quaternion(double angle, double axisX, double axisY, double axisZ) {
+        double norm = Math.sqrt(axisX * axisX + axisY * axisY + axisZ * axisZ);
+        double sin = Math.sin(angle / 2) / norm;
+        return new double[]{Math.cos(angle / 2), axisX * sin, axisY * sin, axisZ * sin};
+    }
+
+    private static double[] multiply(double[] a, double[] b) {
+        return new double[]{
+                a[0] * b[0] - a[1] * b[1] - a[2] * b[2] - a[3] * b[3],
+                a[0] * b[1] + a[1] * b[0] + a[2] * b[3] - a[3] * b[2],
+                a[0] * b[2] - a[1] * b[3] + a[2] * b[0] + a[3] * b[1],
+                a[0] * b[3] + a[1] * b[2] - a[2] * b[1] + a[3] * b[0]};
+    }
+
+    /**
+     * Expresses a vector of the earth frame in the device frame, for a device in the given orientation
+     */
+    private static double[] toDevice(double[] q, double[] v) {
+        double[] conjugate = {q[0], -q[1], -q[2], -q[3]};
+        double[] rotated = multiply(multiply(conjugate, new double[]{0, v[0], v[1], v[2]}), q);
+        return new double[]{rotated[1], rotated[2], rotated[3]};
+    }
+}
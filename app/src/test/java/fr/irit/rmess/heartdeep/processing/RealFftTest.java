@@ -0,0 +1,87 @@
+package fr.irit.rmess.heartdeep.processing;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import fr.irit.rmess.heartdeep.datatype.SensorReadings;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the real FFT against a naive DFT, and the amplitude spectra of the spectrum analyzer
+ */
+public class RealFftTest {
+
+    @Test
+    public void forward_matchesNaiveDft() {
+        Random random = new Random(42);
+        for (int size = RealFft.MIN_SIZE; size <= 1024; size *= 2) {
+            double[] signal = new double[size];
+            for (int i = 0; i < size; i++) {
+                signal[i] = random.nextGaussian();
+            }
+
+            double[] data = signal.clone();
+            new RealFft(size).forward(data);
+
+            for (int k = 0; k <= size / 2; k++) {
+                double re = 0;
+                double im = 0;
+                for (int j = 0; j < size; j++) {
+                    double angle = -2 * Math.PI * j * k / size;
+                    re += signal[j] * Math.cos(angle);
+                    im += signal[j] * Math.sin(angle);
+                }
+
+                double tolerance = 1e-9 * size;
+                if (k == 0) {
+                    assertEquals(re, data[0], tolerance);
+                } else if (k == size / 2) {
+                    assertEquals(re, data[1], tolerance);
+                } else {
+                    assertEquals("Re X[" + k + "] of size " + size, re, data[2 * k], tolerance);
+                    assertEquals("Im X[" + k + "] of size " + size, im, data[2 * k + 1], tolerance);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void sizeFor_roundsUpToPowersOfTwo() {
+        assertEquals(4, RealFft.sizeFor(1));
+        assertEquals(8, RealFft.sizeFor(8));
+        assertEquals(16, RealFft.sizeFor(9));
+        assertEquals(1024, RealFft.sizeFor(1000));
+    }
+
+    @Test
+    public void analyze_findsTheAmplitudeAndFrequencyOfASinusoid() {
+        // 256 readings at 400 Hz, a 25 Hz sinusoid (on a bin) plus an offset which is removed
+        int n = 256;
+        double samplingRate = 400;
+        SensorReadings readings = new SensorReadings(SensorReadings.TYPE_ACCELEROMETER_READINGS, n);
+        for (int i = 0; i < n; i++) {
+            readings.getTimestamps()[i] = 1000000000L + i * 1e9 / samplingRate;
+            readings.setX(i, 9.81 + 2 * Math.sin(2 * Math.PI * 25 * i / samplingRate));
+            readings.setY(i, 0.5);
+        }
+
+        SensorReadings spectrum = new SpectrumAnalyzer().analyze(readings);
+
+        assertEquals(SensorReadings.TYPE_ACCELEROMETER_FREQUENTIAL_READINGS, spectrum.getType());
+        assertEquals(n / 2 + 1, spectrum.getN());
+        assertEquals(samplingRate / 2, spectrum.getTimestamp(n / 2), 1e-6);
+
+        int peak = 0;
+        for (int k = 0; k < spectrum.getN(); k++) {
+            if (spectrum.getX(k) > spectrum.getX(peak)) {
+                peak = k;
+            }
+            assertEquals(0, spectrum.getY(k), 1e-9);
+        }
+        assertEquals(25, spectrum.getTimestamp(peak), 1e-6);
+        assertEquals(2, spectrum.getX(peak), 1e-9);
+        assertEquals(0, spectrum.getX(0), 1e-9);
+    }
+}
@@ -0,0 +1,112 @@
+package fr.irit.rmess.heartdeep.processing;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the samples of the streaming resampler on jittery readings, and the report of gaps
+ */
+public class StreamingResamplerTest {
+
+    private static final long PERIOD = 2500000L;
+
+    private static final long ORIGIN = 1000000000L;
+
+    @Test
+    public void linear_reproducesALinearSignalOnTheGrid() {
+        SampleCollector collector = new SampleCollector();
+        StreamingResampler resampler = new StreamingResampler(ORIGIN, PERIOD, StreamingResampler.INTERPOLATION_LINEAR, 50000000L, collector);
+
+        Random random = new Random(1);
+        long timestamp = ORIGIN - 1000000L;
+        while (timestamp < ORIGIN + 100000000L) {
+            resampler.push(timestamp, line(timestamp), -line(timestamp), 3);
+            timestamp += 1500000L + random.nextInt(1000000);
+        }
+
+        assertTrue(collector.timestamps.size() >= 39);
+        for (int i = 0; i < collector.timestamps.size(); i++) {
+            long sampleTimestamp = collector.timestamps.get(i);
+            assertEquals(ORIGIN + i * PERIOD, sampleTimestamp);
+            assertEquals(line(sampleTimestamp), collector.x.get(i), 1e-9);
+        }
+    }
+
+    @Test
+    public void cubic_isCloseToASmoothSignalWhateverTheChunks() {
+        SampleCollector oneByOne = new SampleCollector();
+        StreamingResampler resampler = new StreamingResampler(ORIGIN, PERIOD, StreamingResampler.INTERPOLATION_CUBIC, 50000000L, oneByOne);
+
+        // A 1.2 Hz sinusoid (like a heartbeat) sampled at about 500 Hz with jitter
+        Random random = new Random(2);
+        long timestamp = ORIGIN;
+        while (timestamp < ORIGIN + 1000000000L) {
+            resampler.push(timestamp, wave(timestamp), 0, 0);
+            timestamp += 1600000L + random.nextInt(800000);
+        }
+        resampler.flush();
+
+        assertEquals(0, resampler.getGapsCount());
+        assertEquals(oneByOne.timestamps.size(), resampler.getSamplesCount());
+        for (int i = 0; i < oneByOne.timestamps.size(); i++) {
+            long sampleTimestamp = oneByOne.timestamps.get(i);
+            assertEquals(ORIGIN + i * PERIOD, sampleTimestamp);
+            assertEquals(wave(sampleTimestamp), oneByOne.x.get(i), 1e-6);
+        }
+    }
+
+    @Test
+    public void gap_isReportedAndNotInterpolated() {
+        SampleCollector collector = new SampleCollector();
+        StreamingResampler resampler = new StreamingResampler(ORIGIN, PERIOD, StreamingResampler.INTERPOLATION_LINEAR, 10000000L, collector);
+
+        for (long timestamp = ORIGIN; timestamp <= ORIGIN + 20000000L; timestamp += 2000000L) {
+            resampler.push(timestamp, 1, 1, 1);
+        }
+        long afterGap = ORIGIN + 60000000L + 300000L;
+        for (long timestamp = afterGap; timestamp <= afterGap + 20000000L; timestamp += 2000000L) {
+            resampler.push(timestamp, 2, 2, 2);
+        }
+
+        assertEquals(1, collector.gaps);
+        for (int i = 0; i < collector.timestamps.size(); i++) {
+            long sampleTimestamp = collector.timestamps.get(i);
+            assertEquals(0, (sampleTimestamp - ORIGIN) % PERIOD);
+            assertTrue(sampleTimestamp <= ORIGIN + 20000000L || sampleTimestamp >= afterGap);
+            assertEquals(sampleTimestamp < afterGap ? 1 : 2, collector.x.get(i), 0);
+        }
+    }
+
+    private static double line(long timestamp) {
+        return (timestamp - ORIGIN) * 1e-7 + 0.5;
+    }
+
+    private static double wave(long timestamp) {
+        return Math.sin(2 * Math.PI * 1.2 * (timestamp - ORIGIN) / 1e9);
+    }
+
+    /**
+     * A listener keeping the samples it receives
+     */
+    private static class SampleCollector implements StreamingResampler.Listener {
+        private final List<Long> timestamps = new ArrayList<>();
+        private final List<Double> x = new ArrayList<>();
+        private int gaps = 0;
+
+        @Override
+        public void onSample(long timestamp, double xValue, double yValue, double zValue) {
+            timestamps.add(timestamp);
+            x.add(xValue);
+        }
+
+        @Override
+        public void onGap(long lastTimestamp, long nextTimestamp) {
+            gaps++;
+        }
+    }
+}
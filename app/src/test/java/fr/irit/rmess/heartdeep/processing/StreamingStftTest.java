@@ -0,0 +1,107 @@
+package fr.irit.rmess.heartdeep.processing;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import fr.irit.rmess.heartdeep.datatype.SensorReadings;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the frames of the streaming STFT: their rate, their content, and the restart of the stream on gaps
+ */
+public class StreamingStftTest {
+
+    private static final double PERIOD = 2500000;
+
+    private static final double FIRST_TIMESTAMP = 123456789000.0;
+
+    @Test
+    public void frames_areEmittedEveryHopOnceTheWindowIsFull() {
+        FrameCollector collector = new FrameCollector();
+        StreamingStft stft = new StreamingStft(SensorReadings.TYPE_ACCELEROMETER_FREQUENTIAL_READINGS,
+                64, 16, WindowFunction.TYPE_HANN, 1000000000L, collector);
+
+        // Pushed in windows of 8 readings, which do not match the hop size
+        int total = 64 + 3 * 16 + 5;
+        for (int start = 0; start < total; start += 8) {
+            stft.push(readings(start, Math.min(8, total - start)));
+        }
+
+        assertEquals(4, collector.frames.size());
+        assertEquals(SensorReadings.TYPE_ACCELEROMETER_FREQUENTIAL_READINGS, collector.frames.get(0).getType());
+        assertEquals(33, collector.frames.get(0).getN());
+        for (int i = 0; i < collector.frames.size(); i++) {
+            assertEquals(FIRST_TIMESTAMP + (63 + 16 * i) * PERIOD, collector.endTimestamps.get(i), 1e-3);
+        }
+    }
+
+    @Test
+    public void frame_matchesTheSpectrumOfTheLastReadings() {
+        FrameCollector collector = new FrameCollector();
+        int windowLength = 128;
+        StreamingStft stft = new StreamingStft(SensorReadings.TYPE_GYROSCOPE_FREQUENTIAL_READINGS,
+                windowLength, 48, WindowFunction.TYPE_RECTANGULAR, 1000000000L, collector);
+
+        // The circular buffers wrap around several times
+        int total = windowLength + 5 * 48;
+        stft.push(readings(0, total));
+        SensorReadings lastFrame = collector.frames.get(collector.frames.size() - 1);
+
+        SensorReadings expected = new SpectrumAnalyzer().analyze(readings(total - windowLength, windowLength));
+        assertEquals(expected.getN(), lastFrame.getN());
+        for (int k = 0; k < expected.getN(); k++) {
+            assertEquals(expected.getTimestamp(k), lastFrame.getTimestamp(k), 1e-9);
+            assertEquals(expected.getX(k), lastFrame.getX(k), 1e-9);
+            assertEquals(expected.getY(k), lastFrame.getY(k), 1e-9);
+            assertEquals(expected.getZ(k), lastFrame.getZ(k), 1e-9);
+        }
+    }
+
+    @Test
+    public void gap_restartsTheStream() {
+        FrameCollector collector = new FrameCollector();
+        StreamingStft stft = new StreamingStft(SensorReadings.TYPE_ACCELEROMETER_FREQUENTIAL_READINGS,
+                64, 64, WindowFunction.TYPE_HANN, 100000000L, collector);
+
+        stft.push(readings(0, 60));
+        // 1 s later: the 60 first readings must not be mixed with the next ones
+        stft.push(readings(400, 60));
+        assertEquals(0, collector.frames.size());
+
+        stft.push(readings(460, 4));
+        assertEquals(1, collector.frames.size());
+        assertEquals(FIRST_TIMESTAMP + 463 * PERIOD, collector.endTimestamps.get(0), 1e-3);
+    }
+
+    /**
+     * Builds readings at 400 Hz: sinusoids of different frequencies along each axis
+     */
+    private static SensorReadings readings(int first, int n) {
+        SensorReadings readings = new SensorReadings(SensorReadings.TYPE_ACCELEROMETER_READINGS, n);
+        for (int i = 0; i < n; i++) {
+            int index = first + i;
+            readings.getTimestamps()[i] = FIRST_TIMESTAMP + index * PERIOD;
+            readings.setX(i, Math.sin(2 * Math.PI * 1.2 * index * PERIOD / 1e9));
+            readings.setY(i, 3 + Math.cos(2 * Math.PI * 40 * index * PERIOD / 1e9));
+            readings.setZ(i, index % 5);
+        }
+        return readings;
+    }
+
+    /**
+     * A listener keeping the frames it receives
+     */
+    private static class FrameCollector implements StreamingStft.Listener {
+        private final List<SensorReadings> frames = new ArrayList<>();
+        private final List<Double> endTimestamps = new ArrayList<>();
+
+        @Override
+        public void onFrame(StreamingStft stft, SensorReadings frame, double endTimestamp) {
+            frames.add(frame);
+            endTimestamps.add(endTimestamp);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/***********************************************************************
+ Name............ : CaptureBenchmark.java
+ Description..... : Benchmarks of the per-event work done by the sensor listener
+ Author.......... : Kevin Jiokeng for IRIT, RMESS Team
+ Creation Date... : 18/10/2026
+ ************************************************************************/
+
+package fr.irit.rmess.heartdeep.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import fr.irit.rmess.heartdeep.datatype.SensorReadingsRingBuffer;
+import fr.irit.rmess.heartdeep.helpers.SensorCsvEncoder;
+import fr.irit.rmess.heartdeep.helpers.SensorRecordBuffer;
+import fr.irit.rmess.heartdeep.helpers.StreamingRecordWriter;
+
+/**
+ * Benchmarks of the per-event work done by HeartDeepSensorListenerService.onSensorChanged:
+ * formatting of the CSV line and buffering of the readings, as done before and as done now.
+ * One operation is one sensor event.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CaptureBenchmark {
+
+    /**
+     * The name of the sensor, as given by Sensor.getStringType()
+     */
+    private static final String SENSOR_NAME = "android.sensor.linear_acceleration";
+
+    /**
+     * The number of distinct events cycled through
+     */
+    private static final int EVENTS_COUNT = 1024;
+
+    private final float[][] values = new float[EVENTS_COUNT][3];
+
+    private final long[] timestamps = new long[EVENTS_COUNT];
+
+    private int eventIndex = 0;
+
+    private StringBuilder recordsStringBuilder;
+
+    private List<double[]> readingsList;
+
+    private List<Long> timestampsList;
+
+    private SensorReadingsRingBuffer ringBuffer;
+
+    private SensorRecordBuffer recordBuffer;
+
+    private StreamingRecordWriter streamingWriter;
+
+    private SensorCsvEncoder csvEncoder;
+
+    private byte[] csvLine;
+
+    @Setup
+    public void setup() throws IOException {
+        for (int i = 0; i < EVENTS_COUNT; i++) {
+            for (int axis = 0; axis < 3; axis++) {
+                values[i][axis] = SampleData.value(i, axis);
+            }
+            timestamps[i] = SampleData.FIRST_TIMESTAMP + SampleData.PERIOD * i;
+        }
+
+        recordsStringBuilder = new StringBuilder();
+        readingsList = new ArrayList<>();
+        timestampsList = new ArrayList<>();
+        ringBuffer = new SensorReadingsRingBuffer();
+        recordBuffer = new SensorRecordBuffer(new String[]{SENSOR_NAME});
+        streamingWriter = new StreamingRecordWriter(new NullOutputStream(), new String[]{SENSOR_NAME},
+                StreamingRecordWriter.DEFAULT_CHUNK_SIZE, StreamingRecordWriter.DEFAULT_CHUNKS_COUNT);
+        csvEncoder = new SensorCsvEncoder(new String[]{SENSOR_NAME});
+        csvLine = new byte[csvEncoder.getMaxLineLength()];
+    }
+
+    /**
+     * Empties the buffers which are only emptied at the end of a session in the app, so that they do not grow forever
+     */
+    @Setup(Level.Iteration)
+    public void resetSessionBuffers() {
+        recordsStringBuilder.setLength(0);
+        recordsStringBuilder.trimToSize();
+        recordBuffer.clear();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        streamingWriter.close();
+    }
+
+    private int nextEvent() {
+        int index = eventIndex;
+        eventIndex = (index + 1) & (EVENTS_COUNT - 1);
+        return index;
+    }
+
+    /**
+     * The CSV line formerly built for every event with string concatenation
+     */
+    @Benchmark
+    public String csvLineFormatting() {
+        int i = nextEvent();
+        return timestamps[i] + "," + SENSOR_NAME + ","
+                + values[i][0] + "," + values[i][1] + "," + values[i][2];
+    }
+
+    /**
+     * The same CSV line, encoded into a reusable byte buffer
+     */
+    @Benchmark
+    public int csvLineEncoding() {
+        int i = nextEvent();
+        return csvEncoder.encodeRecord(csvLine, 0, timestamps[i], 0, values[i][0], values[i][1], values[i][2]);
+    }
+
+    /**
+     * The former recording path: CSV line appended to the session StringBuilder
+     */
+    @Benchmark
+    public StringBuilder csvLineAppend() {
+        int i = nextEvent();
+        String data = timestamps[i] + "," + SENSOR_NAME + ","
+                + values[i][0] + "," + values[i][1] + "," + values[i][2];
+        recordsStringBuilder.append(data + "\n");
+        return recordsStringBuilder;
+    }
+
+    /**
+     * The former processing buffers: a double[3] and a boxed Long per event, in ArrayLists emptied at every window
+     */
+    @Benchmark
+    public List<double[]> listBuffersAppend() {
+        int i = nextEvent();
+        if (readingsList.size() == 8) { // About a 20 ms window
+            readingsList.clear();
+            timestampsList.clear();
+        }
+        readingsList.add(new double[]{values[i][0], values[i][1], values[i][2]});
+        timestampsList.add(timestamps[i]);
+        return readingsList;
+    }
+
+    /**
+     * The current processing buffers
+     */
+    @Benchmark
+    public SensorReadingsRingBuffer ringBufferWrite() {
+        int i = nextEvent();
+        ringBuffer.write(timestamps[i], values[i][0], values[i][1], values[i][2]);
+        return ringBuffer;
+    }
+
+    /**
+     * The in-memory binary recording
+     */
+    @Benchmark
+    public SensorRecordBuffer recordBufferWrite() {
+        int i = nextEvent();
+        recordBuffer.writeRecord(timestamps[i], 0, values[i][0], values[i][1], values[i][2]);
+        return recordBuffer;
+    }
+
+    /**
+     * The current recording path: binary record streamed by the background writer
+     */
+    @Benchmark
+    public StreamingRecordWriter streamingWriterWrite() {
+        int i = nextEvent();
+        streamingWriter.writeRecord(timestamps[i], 0, values[i][0], values[i][1], values[i][2]);
+        return streamingWriter;
+    }
+
+    /**
+     * An output stream discarding everything, standing for a fast storage
+     */
+    private static class NullOutputStream extends OutputStream {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+}
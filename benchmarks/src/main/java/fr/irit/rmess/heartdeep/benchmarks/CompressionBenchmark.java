@@ -0,0 +1,181 @@
+/***********************************************************************
+ Name............ : CompressionBenchmark.java
+ Description..... : Benchmarks of the storage formats of a recorded session
+ Author.......... : Kevin Jiokeng for IRIT, RMESS Team
+ Creation Date... : 18/10/2026
+ ************************************************************************/
+
+package fr.irit.rmess.heartdeep.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import fr.irit.rmess.heartdeep.helpers.CompressedRecordReader;
+import fr.irit.rmess.heartdeep.helpers.CompressedRecordWriter;
+import fr.irit.rmess.heartdeep.helpers.SensorCsvEncoder;
+import fr.irit.rmess.heartdeep.helpers.SensorRecordBuffer;
+import fr.irit.rmess.heartdeep.helpers.SensorRecordFormat;
+
+/**
+ * Benchmarks of the storage formats of a recorded session, as read back for offline processing: CSV (parsed line by line),
+ * the binary format, and the compressed format (see {@link CompressedRecordWriter}); and of the compression itself.
+ * One operation is the whole session. The size of the session in each format is printed when the benchmark state is set up.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompressionBenchmark {
+
+    /**
+     * The sensors of the session
+     */
+    private static final String[] SENSOR_NAMES = {"android.sensor.accelerometer", "android.sensor.gyroscope"};
+
+    /**
+     * The number of records of the session: about 2 minutes of two sensors at 400 Hz
+     */
+    private static final int RECORDS_COUNT = 100000;
+
+    private final long[] timestamps = new long[RECORDS_COUNT];
+
+    private final float[][] values = new float[RECORDS_COUNT][3];
+
+    private byte[] csv;
+
+    private byte[] binary;
+
+    private byte[] compressed;
+
+    @Setup
+    public void setup() throws IOException {
+        // Sensor timestamps jitter by a few microseconds around their period
+        Random random = new Random(11);
+        for (int i = 0; i < RECORDS_COUNT; i++) {
+            timestamps[i] = SampleData.FIRST_TIMESTAMP + SampleData.PERIOD / 2 * i + random.nextInt(10000);
+            for (int axis = 0; axis < 3; axis++) {
+                values[i][axis] = SampleData.value(i / 2, axis + 3 * (i % 2));
+            }
+        }
+
+        ByteArrayOutputStream csvOut = new ByteArrayOutputStream();
+        SensorCsvEncoder csvEncoder = new SensorCsvEncoder(csvOut, SENSOR_NAMES);
+        csvEncoder.writeHeader();
+        SensorRecordBuffer recordBuffer = new SensorRecordBuffer(SENSOR_NAMES);
+        for (int i = 0; i < RECORDS_COUNT; i++) {
+            csvEncoder.writeRecord(timestamps[i], i % 2, values[i][0], values[i][1], values[i][2]);
+            recordBuffer.writeRecord(timestamps[i], i % 2, values[i][0], values[i][1], values[i][2]);
+        }
+        csvEncoder.close();
+        csv = csvOut.toByteArray();
+
+        ByteArrayOutputStream binaryOut = new ByteArrayOutputStream();
+        recordBuffer.writeTo(binaryOut);
+        binary = binaryOut.toByteArray();
+
+        compressed = compress();
+
+        System.out.println();
+        System.out.println("Session of " + RECORDS_COUNT + " records: CSV=" + csv.length + " bytes, binary=" + binary.length
+                + " bytes, compressed=" + compressed.length + " bytes (" + String.format("%.1f", (double) csv.length / compressed.length)
+                + "x smaller than CSV)");
+    }
+
+    private byte[] compress() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(RECORDS_COUNT * 16);
+        // Enough blocks for the whole session: no record is dropped while the I/O thread compresses
+        CompressedRecordWriter writer = new CompressedRecordWriter(out, SENSOR_NAMES, CompressedRecordWriter.DEFAULT_BLOCK_SIZE,
+                RECORDS_COUNT / CompressedRecordWriter.DEFAULT_BLOCK_SIZE + 1);
+        for (int i = 0; i < RECORDS_COUNT; i++) {
+            writer.writeRecord(timestamps[i], i % 2, values[i][0], values[i][1], values[i][2]);
+        }
+        writer.close();
+        return out.toByteArray();
+    }
+
+    /**
+     * Compression of the session
+     */
+    @Benchmark
+    public byte[] encodeCompressed() throws IOException {
+        return compress();
+    }
+
+    /**
+     * The CSV session parsed as an offline processing script would
+     */
+    @Benchmark
+    public double decodeCsv() throws IOException {
+        Map<String, Integer> sensorIds = new HashMap<>();
+        for (int i = 0; i < SENSOR_NAMES.length; i++) {
+            sensorIds.put(SENSOR_NAMES[i], i);
+        }
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(csv), "UTF-8"));
+        double checksum = 0;
+        reader.readLine();
+        for (String line; (line = reader.readLine()) != null; ) {
+            String[] fields = line.split(",");
+            long timestamp = Long.parseLong(fields[0]);
+            int sensorId = sensorIds.get(fields[1]);
+            checksum += timestamp + sensorId + Float.parseFloat(fields[2]) + Float.parseFloat(fields[3]) + Float.parseFloat(fields[4]);
+        }
+        return checksum;
+    }
+
+    /**
+     * The binary session read record by record
+     */
+    @Benchmark
+    public double decodeBinary() throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(binary));
+        SensorRecordFormat.readHeader(in);
+        double checksum = 0;
+        while (true) {
+            long timestamp;
+            try {
+                timestamp = in.readLong();
+            } catch (EOFException e) {
+                break;
+            }
+            checksum += timestamp + in.readShort() + in.readFloat() + in.readFloat() + in.readFloat();
+        }
+        return checksum;
+    }
+
+    /**
+     * The compressed session decoded record by record
+     */
+    @Benchmark
+    public double decodeCompressed() throws IOException {
+        CompressedRecordReader reader = new CompressedRecordReader(new ByteArrayInputStream(compressed));
+        double checksum = 0;
+        while (reader.next()) {
+            checksum += reader.getTimestamp() + reader.getSensorId() + reader.getX() + reader.getY() + reader.getZ();
+        }
+        reader.close();
+        return checksum;
+    }
+}
@@ -0,0 +1,54 @@
+/***********************************************************************
+ Name............ : LegacySensorReadings.java
+ Description..... : A replica of SensorReadings relying on default Java serialization
+ Author.......... : Kevin Jiokeng for IRIT, RMESS Team
+ Creation Date... : 18/10/2026
+ ************************************************************************/
+
+package fr.irit.rmess.heartdeep.benchmarks;
+
+import java.io.Serializable;
+
+import fr.irit.rmess.heartdeep.datatype.SensorReadings;
+
+/**
+ * A replica of the fields of {@link SensorReadings}, relying on default (reflective) Java serialization
+ * as SensorReadings used to. It is the baseline of the serialization benchmarks.
+ */
+public class LegacySensorReadings implements Serializable {
+
+    private String type;
+
+    private int n;
+
+    private double[] x;
+
+    private double[] y;
+
+    private double[] z;
+
+    private double[] timestamps;
+
+    /**
+     * Copies the fields of a SensorReadings instance
+     *
+     * @param sensorReadings The instance to be copied
+     */
+    public LegacySensorReadings(SensorReadings sensorReadings) {
+        this.type = sensorReadings.getType();
+        this.n = sensorReadings.getN();
+        this.x = sensorReadings.getX().clone();
+        this.y = sensorReadings.getY().clone();
+        this.z = sensorReadings.getZ().clone();
+        this.timestamps = sensorReadings.getTimestamps().clone();
+    }
+
+    /**
+     * Gets the number of readings
+     *
+     * @return The number of readings
+     */
+    public int getN() {
+        return n;
+    }
+}
@@ -0,0 +1,77 @@
+/***********************************************************************
+ Name............ : SampleData.java
+ Description..... : Helper functions generating realistic data for the benchmarks
+ Author.......... : Kevin Jiokeng for IRIT, RMESS Team
+ Creation Date... : 18/10/2026
+ ************************************************************************/
+
+package fr.irit.rmess.heartdeep.benchmarks;
+
+import fr.irit.rmess.heartdeep.datatype.FloatSensorReadings;
+import fr.irit.rmess.heartdeep.datatype.SensorReadings;
+
+/**
+ * Helper functions generating realistic data for the benchmarks
+ */
+final class SampleData {
+
+    /**
+     * The period (in nanoseconds) of the generated readings: about 400 Hz, the fastest rate of common accelerometers
+     */
+    static final long PERIOD = 2500000L;
+
+    /**
+     * The timestamp of the first generated reading
+     */
+    static final long FIRST_TIMESTAMP = 123456789012345L;
+
+    private SampleData() {
+    }
+
+    /**
+     * Gets the reading along a given axis of the i-th generated reading: a small oscillation, like a phone lying on a chest
+     *
+     * @param i    The index of the reading
+     * @param axis The axis (0, 1 or 2)
+     * @return The value of the reading
+     */
+    static float value(int i, int axis) {
+        return (float) (0.05 * Math.sin(0.0392 * i + axis) + 0.01 * Math.sin(0.7 * i * (axis + 1)));
+    }
+
+    /**
+     * Generates a SensorReadings instance
+     *
+     * @param type The type of the readings
+     * @param n    The number of readings
+     * @return The generated readings
+     */
+    static SensorReadings sensorReadings(String type, int n) {
+        SensorReadings sensorReadings = new SensorReadings(type, n);
+        for (int i = 0; i < n; i++) {
+            sensorReadings.setX(i, value(i, 0));
+            sensorReadings.setY(i, value(i, 1));
+            sensorReadings.setZ(i, value(i, 2));
+            sensorReadings.getTimestamps()[i] = FIRST_TIMESTAMP + PERIOD * i;
+        }
+        return sensorReadings;
+    }
+
+    /**
+     * Generates a FloatSensorReadings instance, holding the same readings as {@link #sensorReadings(String, int)}
+     *
+     * @param type The type of the readings
+     * @param n    The number of readings
+     * @return The generated readings
+     */
+    static FloatSensorReadings floatSensorReadings(String type, int n) {
+        FloatSensorReadings sensorReadings = new FloatSensorReadings(type, n);
+        for (int i = 0; i < n; i++) {
+            sensorReadings.getX()[i] = value(i, 0);
+            sensorReadings.getY()[i] = value(i, 1);
+            sensorReadings.getZ()[i] = value(i, 2);
+            sensorReadings.getTimestamps()[i] = FIRST_TIMESTAMP + PERIOD * i;
+        }
+        return sensorReadings;
+    }
+}
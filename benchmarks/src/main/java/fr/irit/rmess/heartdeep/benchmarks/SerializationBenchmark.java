@@ -0,0 +1,172 @@
+/***********************************************************************
+ Name............ : SerializationBenchmark.java
+ Description..... : Benchmarks of the serialization of SensorReadings
+ Author.......... : Kevin Jiokeng for IRIT, RMESS Team
+ Creation Date... : 18/10/2026
+ ************************************************************************/
+
+package fr.irit.rmess.heartdeep.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import fr.irit.rmess.heartdeep.datatype.FloatSensorReadings;
+import fr.irit.rmess.heartdeep.datatype.SensorReadings;
+
+/**
+ * Benchmarks of the serialization of SensorReadings: the default (reflective) Java serialization SensorReadings used to rely on,
+ * versus its current Externalizable implementation and its raw ByteBuffer encoding,
+ * and the same with the single-precision FloatSensorReadings the readings are captured in.
+ * The size of each serialized form is printed when the benchmark state is set up.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    /**
+     * The number of readings: a 20 ms window at the fastest rate, or a few seconds of readings
+     */
+    @Param({"10", "1000"})
+    public int n;
+
+    private SensorReadings sensorReadings;
+
+    private LegacySensorReadings legacySensorReadings;
+
+    private byte[] legacySerialized;
+
+    private byte[] externalizableSerialized;
+
+    private ByteBuffer encodeBuffer;
+
+    private ByteBuffer encoded;
+
+    private FloatSensorReadings floatSensorReadings;
+
+    private byte[] floatSerialized;
+
+    private ByteBuffer floatEncodeBuffer;
+
+    private ByteBuffer floatEncoded;
+
+    @Setup
+    public void setup() throws IOException {
+        sensorReadings = SampleData.sensorReadings(SensorReadings.TYPE_ACCELEROMETER_READINGS, n);
+        legacySensorReadings = new LegacySensorReadings(sensorReadings);
+
+        legacySerialized = serialize(legacySensorReadings);
+        externalizableSerialized = serialize(sensorReadings);
+
+        encodeBuffer = ByteBuffer.allocate(sensorReadings.getEncodedSize());
+        encoded = ByteBuffer.allocate(sensorReadings.getEncodedSize());
+        sensorReadings.encode(encoded);
+        encoded.flip();
+
+        floatSensorReadings = SampleData.floatSensorReadings(SensorReadings.TYPE_ACCELEROMETER_READINGS, n);
+        floatSerialized = serialize(floatSensorReadings);
+        floatEncodeBuffer = ByteBuffer.allocate(floatSensorReadings.getEncodedSize());
+        floatEncoded = ByteBuffer.allocate(floatSensorReadings.getEncodedSize());
+        floatSensorReadings.encode(floatEncoded);
+        floatEncoded.flip();
+
+        System.out.println();
+        System.out.println("Serialized size for n=" + n + ": default=" + legacySerialized.length + " bytes, externalizable="
+                + externalizableSerialized.length + " bytes, ByteBuffer encoding=" + sensorReadings.getEncodedSize() + " bytes");
+        System.out.println("Serialized size for n=" + n + " in single precision: externalizable=" + floatSerialized.length
+                + " bytes, ByteBuffer encoding=" + floatSensorReadings.getEncodedSize() + " bytes");
+    }
+
+    private static byte[] serialize(Object object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(object);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        try {
+            return in.readObject();
+        } finally {
+            in.close();
+        }
+    }
+
+    @Benchmark
+    public byte[] serializeDefault() throws IOException {
+        return serialize(legacySensorReadings);
+    }
+
+    @Benchmark
+    public byte[] serializeExternalizable() throws IOException {
+        return serialize(sensorReadings);
+    }
+
+    @Benchmark
+    public byte[] serializeExternalizableFloat() throws IOException {
+        return serialize(floatSensorReadings);
+    }
+
+    @Benchmark
+    public ByteBuffer encodeByteBuffer() {
+        encodeBuffer.clear();
+        sensorReadings.encode(encodeBuffer);
+        return encodeBuffer;
+    }
+
+    @Benchmark
+    public Object deserializeDefault() throws IOException, ClassNotFoundException {
+        return deserialize(legacySerialized);
+    }
+
+    @Benchmark
+    public Object deserializeExternalizable() throws IOException, ClassNotFoundException {
+        return deserialize(externalizableSerialized);
+    }
+
+    @Benchmark
+    public SensorReadings decodeByteBuffer() {
+        encoded.rewind();
+        return SensorReadings.decode(encoded);
+    }
+
+    @Benchmark
+    public ByteBuffer encodeByteBufferFloat() {
+        floatEncodeBuffer.clear();
+        floatSensorReadings.encode(floatEncodeBuffer);
+        return floatEncodeBuffer;
+    }
+
+    @Benchmark
+    public Object deserializeExternalizableFloat() throws IOException, ClassNotFoundException {
+        return deserialize(floatSerialized);
+    }
+
+    @Benchmark
+    public FloatSensorReadings decodeByteBufferFloat() {
+        floatEncoded.rewind();
+        return FloatSensorReadings.decode(floatEncoded);
+    }
+}
@@ -0,0 +1,193 @@
+/***********************************************************************
+ Name............ : WindowBenchmark.java
+ Description..... : Benchmarks of the per-window work done on sensor readings
+ Author.......... : Kevin Jiokeng for IRIT, RMESS Team
+ Creation Date... : 18/10/2026
+ ************************************************************************/
+
+package fr.irit.rmess.heartdeep.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import fr.irit.rmess.heartdeep.datatype.FloatSensorReadings;
+import fr.irit.rmess.heartdeep.datatype.SensorReadings;
+import fr.irit.rmess.heartdeep.datatype.SensorReadingsRingBuffer;
+import fr.irit.rmess.heartdeep.datatype.SensorReadingsView;
+import fr.irit.rmess.heartdeep.processing.FilterBank;
+import fr.irit.rmess.heartdeep.processing.HeartRateEstimator;
+import fr.irit.rmess.heartdeep.processing.SpectrumAnalyzer;
+
+/**
+ * Benchmarks of the per-window work done on sensor readings: building the window from the capture buffers,
+ * the copy constructor, slices, equals and hashCode of SensorReadings, the spectral analysis, the filtering and the heart rate estimation.
+ * Serialization is covered by {@link SerializationBenchmark}. One operation is one window.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WindowBenchmark {
+
+    /**
+     * The number of readings of a window: 20 ms at the fastest rate, or a few seconds of readings
+     */
+    @Param({"10", "1000"})
+    public int n;
+
+    private final List<double[]> readingsList = new ArrayList<>();
+
+    private final List<Long> timestampsList = new ArrayList<>();
+
+    private SensorReadingsRingBuffer ringBuffer;
+
+    private SensorReadings sensorReadings;
+
+    private SensorReadings sensorReadingsCopy;
+
+    private final SpectrumAnalyzer spectrumAnalyzer = new SpectrumAnalyzer();
+
+    private SensorReadings spectrum;
+
+    private FilterBank filterBank;
+
+    private SensorReadings filtered;
+
+    private HeartRateEstimator heartRateEstimator;
+
+    private SensorReadings cardiac;
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < n; i++) {
+            readingsList.add(new double[]{SampleData.value(i, 0), SampleData.value(i, 1), SampleData.value(i, 2)});
+            timestampsList.add(SampleData.FIRST_TIMESTAMP + SampleData.PERIOD * i);
+        }
+
+        ringBuffer = new SensorReadingsRingBuffer(n);
+        sensorReadings = SampleData.sensorReadings(SensorReadings.TYPE_ACCELEROMETER_READINGS, n);
+        sensorReadingsCopy = new SensorReadings(sensorReadings);
+        spectrum = spectrumAnalyzer.analyze(sensorReadings);
+        filterBank = new FilterBank(1e9 / SampleData.PERIOD, Double.MAX_VALUE);
+        filtered = new SensorReadings(sensorReadings);
+        heartRateEstimator = new HeartRateEstimator(1e9 / SampleData.PERIOD, Double.MAX_VALUE);
+        cardiac = new SensorReadings(sensorReadings);
+    }
+
+    /**
+     * The former window building: unboxing and copying the ArrayList buffers (former buildLastSensorReadings)
+     */
+    @Benchmark
+    public SensorReadings buildFromLists() {
+        int size = readingsList.size();
+        double[] x = new double[size];
+        double[] y = new double[size];
+        double[] z = new double[size];
+        double[] timestamps = new double[size];
+        double[] readings;
+        for (int i = 0; i < size; i++) {
+            readings = readingsList.get(i);
+            x[i] = readings[0];
+            y[i] = readings[1];
+            z[i] = readings[2];
+            timestamps[i] = timestampsList.get(i);
+        }
+        return new SensorReadings(SensorReadings.TYPE_ACCELEROMETER_READINGS, size, x, y, z, timestamps);
+    }
+
+    /**
+     * The current window building: filling the ring buffer (as the events would) and draining it
+     */
+    @Benchmark
+    public FloatSensorReadings drainRingBuffer() {
+        long timestamp = SampleData.FIRST_TIMESTAMP;
+        for (int i = 0; i < n; i++) {
+            ringBuffer.write(timestamp, SampleData.value(i, 0), SampleData.value(i, 1), SampleData.value(i, 2));
+            timestamp += SampleData.PERIOD;
+        }
+        return ringBuffer.drain(SensorReadings.TYPE_ACCELEROMETER_READINGS);
+    }
+
+    @Benchmark
+    public SensorReadings copyConstructor() {
+        return new SensorReadings(sensorReadings);
+    }
+
+    /**
+     * Taking the second half of the window, as an overlapping analysis window would: a copy of the range...
+     */
+    @Benchmark
+    public SensorReadings sliceCopy() {
+        return sensorReadings.slice(n / 2, n).toSensorReadings();
+    }
+
+    /**
+     * ... versus a view sharing the readings
+     */
+    @Benchmark
+    public SensorReadingsView sliceView() {
+        return sensorReadings.slice(n / 2, n);
+    }
+
+    @Benchmark
+    public boolean equalsCopy() {
+        return sensorReadings.equals(sensorReadingsCopy);
+    }
+
+    @Benchmark
+    public int hashCodeReadings() {
+        return sensorReadings.hashCode();
+    }
+
+    /**
+     * The amplitude spectra of the 3 axes, into reused frequential readings (no allocation once warmed up)
+     */
+    @Benchmark
+    public SensorReadings spectrum() {
+        spectrumAnalyzer.analyze(sensorReadings, spectrum);
+        return spectrum;
+    }
+
+    /**
+     * The cardiac band filtering of the 3 axes, in place. The timestamps are shifted to keep the stream going on
+     */
+    @Benchmark
+    public SensorReadings filterCardiac() {
+        double[] timestamps = filtered.getTimestamps();
+        double shift = n * SampleData.PERIOD;
+        for (int i = 0; i < n; i++) {
+            timestamps[i] += shift;
+        }
+        filterBank.filterInPlace(filtered, FilterBank.BAND_CARDIAC);
+        return filtered;
+    }
+
+    /**
+     * The update of the heart rate estimate with a window. The timestamps are shifted to keep the stream going on
+     */
+    @Benchmark
+    public double heartRate() {
+        double[] timestamps = cardiac.getTimestamps();
+        double shift = n * SampleData.PERIOD;
+        for (int i = 0; i < n; i++) {
+            timestamps[i] += shift;
+        }
+        heartRateEstimator.push(cardiac);
+        return heartRateEstimator.getBpm();
+    }
+}